@@ -198,7 +198,7 @@ public class HistogramPlotExample
             Float2IntMap totalHeights;
 
             @Override
-            public void setData( int totalNumValues, float binSize, Float2IntMap... counts )
+            protected void buildBars( int totalNumValues, float binSize, Float2IntMap... counts )
             {
                 totalHeights = new Float2IntOpenHashMap( );
                 totalHeights.defaultReturnValue( 0 );
@@ -212,7 +212,7 @@ public class HistogramPlotExample
                     }
                 }
 
-                super.setData( totalNumValues, binSize, counts );
+                super.buildBars( totalNumValues, binSize, counts );
             }
 
             @Override
@@ -131,6 +131,9 @@ public class LayoutManager
         }
 
         this.unmodifiableLayoutList = Collections.unmodifiableList( Lists.newArrayList( temp ) );
+
+        // Canvases hit-test against this list, so mouse wrappers must not reuse old results
+        GlimpseLayout.invalidateHitTests( );
     }
 
     public static class LayoutOrder
@@ -26,17 +26,362 @@
  */
 package com.metsci.glimpse.core.event.mouse;
 
+import static com.metsci.glimpse.core.context.TargetStackUtil.newTargetStack;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
 import java.util.List;
+import java.util.Objects;
 
+import com.jogamp.opengl.GLAutoDrawable;
 import com.metsci.glimpse.core.canvas.GlimpseCanvas;
+import com.metsci.glimpse.core.context.GlimpseBounds;
+import com.metsci.glimpse.core.context.GlimpseContext;
+import com.metsci.glimpse.core.context.GlimpseTarget;
 import com.metsci.glimpse.core.context.GlimpseTargetStack;
+import com.metsci.glimpse.core.layout.GlimpseLayout;
 
 public abstract class MouseWrapperImpl<I> extends MouseWrapper<I>
 {
 
+    /**
+     * The region around a hit-tested point within which every bounds check made during the
+     * hit-test would have come out the same way -- so the hit-test result would be the same.
+     */
+    protected static class HitTestRegion
+    {
+        public final int x;
+        public final int y;
+
+        public long minX = Long.MIN_VALUE;
+        public long maxX = Long.MAX_VALUE;
+        public long minY = Long.MIN_VALUE;
+        public long maxY = Long.MAX_VALUE;
+
+        public HitTestRegion( int x, int y )
+        {
+            this.x = x;
+            this.y = y;
+        }
+
+        public boolean contains( int x, int y )
+        {
+            return ( minX <= x && x < maxX && minY <= y && y < maxY );
+        }
+
+        public void constrain( GlimpseBounds bounds, boolean interior )
+        {
+            long x0 = bounds.getX( );
+            long y0 = bounds.getY( );
+            long x1 = x0 + bounds.getWidth( );
+            long y1 = y0 + bounds.getHeight( );
+
+            boolean inside = ( bounds.getWidth( ) > 0 && bounds.getHeight( ) > 0 && x0 <= this.x && this.x < x1 && y0 <= this.y && this.y < y1 );
+            if ( inside != interior )
+            {
+                // Interior-ness was decided by something other than position, so don't trust the region
+                this.minX = this.maxX;
+                return;
+            }
+
+            if ( bounds.getWidth( ) <= 0 || bounds.getHeight( ) <= 0 )
+            {
+                // Empty bounds never contain any point
+                return;
+            }
+
+            if ( inside )
+            {
+                this.minX = max( this.minX, x0 );
+                this.maxX = min( this.maxX, x1 );
+                this.minY = max( this.minY, y0 );
+                this.maxY = min( this.maxY, y1 );
+            }
+            else if ( this.x < x0 )
+            {
+                this.maxX = min( this.maxX, x0 );
+            }
+            else if ( this.x >= x1 )
+            {
+                this.minX = max( this.minX, x1 );
+            }
+            else if ( this.y < y0 )
+            {
+                this.maxY = min( this.maxY, y0 );
+            }
+            else
+            {
+                this.minY = max( this.minY, y1 );
+            }
+        }
+    }
+
+
+    protected boolean coalesceMotion;
+
+    // latest moved or dragged event not yet delivered, when coalescing
+    protected I pendingMotion;
+    protected boolean pendingMotionDragged;
+    protected boolean motionFlushScheduled;
+
+    // non-null only while a hit-test is recording its bounds checks
+    protected HitTestRegion hitTestRecording;
+
+    // result of the most recent coalesced hit-test, reusable while the pointer stays in hitTestRegion
+    protected HitTestRegion hitTestRegion;
+    protected boolean hitTestButtonDown;
+    protected int hitTestLayoutGeneration;
+    protected GlimpseBounds hitTestCanvasBounds;
+    protected List<GlimpseTargetStack> hitTestHovered;
+    protected List<GlimpseTargetStack> hitTestDragHovered;
+
     public MouseWrapperImpl( GlimpseCanvas canvas, FocusBehavior focusBehavior )
     {
         super( canvas, focusBehavior );
+
+        this.coalesceMotion = false;
+        this.pendingMotion = null;
+        this.pendingMotionDragged = false;
+        this.motionFlushScheduled = false;
+
+        this.hitTestRecording = null;
+        this.hitTestRegion = null;
+    }
+
+    /**
+     * When enabled, moved and dragged events are held instead of being delivered as they arrive,
+     * and only the latest one is delivered, once per rendered frame. Glimpse listeners measure
+     * motion between successive positions, so they still see the full distance moved. Any other
+     * mouse event delivers the held motion event first, so ordering is preserved.
+     * <p>
+     * While enabled, hit-test results are also reused as long as the pointer stays within a
+     * region where they can't change, and layouts haven't changed. Layout changes are detected
+     * through {@link GlimpseLayout#getHitTestGeneration()}, and by checking that the cached
+     * target stacks are still visible and still have the same bounds. Any non-motion event
+     * discards the cached result, as does {@link #invalidateHitTest()}.
+     * <p>
+     * Relies on the canvas being animated -- held events are delivered when the next frame is
+     * drawn. Disabled by default. Must be called on the thread that delivers mouse events.
+     */
+    public void setCoalesceMotion( boolean coalesceMotion )
+    {
+        if ( !coalesceMotion )
+        {
+            this.flushMotion( );
+        }
+
+        this.coalesceMotion = coalesceMotion;
+        this.invalidateHitTest( );
+    }
+
+    public boolean isCoalesceMotion( )
+    {
+        return this.coalesceMotion;
+    }
+
+    public void invalidateHitTest( )
+    {
+        this.hitTestRegion = null;
+        this.hitTestCanvasBounds = null;
+        this.hitTestHovered = null;
+        this.hitTestDragHovered = null;
+    }
+
+    /**
+     * Delivers the held motion event, if there is one.
+     */
+    public void flushMotion( )
+    {
+        I event = this.pendingMotion;
+        if ( event == null || this.hoveredSet == null ) return;
+
+        this.pendingMotion = null;
+        if ( this.pendingMotionDragged )
+        {
+            this.deliverMouseDragged( event );
+        }
+        else
+        {
+            this.deliverMouseMoved( event );
+        }
+    }
+
+    protected void holdMotion( I event, boolean dragged )
+    {
+        if ( this.pendingMotion != null && this.pendingMotionDragged != dragged )
+        {
+            this.flushMotion( );
+        }
+
+        this.pendingMotion = event;
+        this.pendingMotionDragged = dragged;
+
+        if ( !this.motionFlushScheduled )
+        {
+            this.motionFlushScheduled = true;
+            this.scheduleMotionFlush( );
+        }
+    }
+
+    /**
+     * Arranges for {@link #flushMotion()} to run on the event thread once the next frame is drawn.
+     */
+    protected void scheduleMotionFlush( )
+    {
+        Runnable flush = ( ) ->
+        {
+            this.motionFlushScheduled = false;
+            this.flushMotion( );
+        };
+
+        GLAutoDrawable drawable = ( this.canvas == null ? null : this.canvas.getGLDrawable( ) );
+        boolean queued = ( drawable != null && drawable.invoke( false, d ->
+        {
+            this.invokeOnEventThread( flush );
+            return true;
+        } ) );
+
+        if ( !queued )
+        {
+            flush.run( );
+        }
+    }
+
+    /**
+     * Runs the given task on the thread that delivers mouse events. Called from the thread that
+     * draws the canvas, which may or may not be the same thread. The default implementation runs
+     * the task immediately.
+     */
+    protected void invokeOnEventThread( Runnable task )
+    {
+        task.run( );
+    }
+
+    /**
+     * Returns the event's position in the coordinates used by {@link GlimpseBounds}, as an
+     * array of { x, y }. Returns null if hit-test results for the event can't be reused. The
+     * default implementation returns null.
+     */
+    protected int[] hitTestPoint( I e )
+    {
+        return null;
+    }
+
+    /**
+     * Updates the hovered stacks for the event -- equivalent to {@link #getContainingTargets(Object)},
+     * but reusing the previous result when coalescing and nothing relevant has changed.
+     */
+    protected void hitTestHovered( I event )
+    {
+        int[] point = ( this.coalesceMotion ? this.hitTestPoint( event ) : null );
+        if ( point == null )
+        {
+            this.getContainingTargets( event );
+            return;
+        }
+
+        boolean buttonDown = this.isButtonDown( event );
+        GlimpseBounds canvasBounds = this.canvas.getTargetBounds( );
+
+        int layoutGeneration = GlimpseLayout.getHitTestGeneration( );
+
+        if ( this.hitTestRegion != null
+                && this.hitTestRegion.contains( point[0], point[1] )
+                && this.hitTestButtonDown == buttonDown
+                && this.hitTestLayoutGeneration == layoutGeneration
+                && canvasBounds != null && canvasBounds.equals( this.hitTestCanvasBounds )
+                && this.areStacksCurrent( this.hitTestHovered ) )
+        {
+            // Replay the hovered additions the original hit-test made
+            for ( GlimpseTargetStack stack : this.hitTestHovered )
+            {
+                this.addHovered( stack );
+            }
+            if ( !buttonDown )
+            {
+                for ( GlimpseTargetStack stack : this.hitTestDragHovered )
+                {
+                    this.addDragHovered( stack );
+                }
+            }
+        }
+        else
+        {
+            // Callers clear the hovered stacks first, so whatever is hovered afterwards was added by the hit-test
+            this.hitTestRecording = new HitTestRegion( point[0], point[1] );
+            try
+            {
+                this.getContainingTargets( event );
+            }
+            finally
+            {
+                this.hitTestRegion = this.hitTestRecording;
+                this.hitTestRecording = null;
+            }
+
+            this.hitTestButtonDown = buttonDown;
+            this.hitTestLayoutGeneration = layoutGeneration;
+            this.hitTestCanvasBounds = canvasBounds;
+            this.hitTestHovered = this.copyHovered( );
+            this.hitTestDragHovered = ( buttonDown ? null : this.copyDragHovered( ) );
+        }
+    }
+
+    /**
+     * Returns true if every target in the given stacks is still visible, and still lays out
+     * to the same bounds.
+     */
+    protected boolean areStacksCurrent( List<GlimpseTargetStack> stacks )
+    {
+        for ( GlimpseTargetStack stack : stacks )
+        {
+            List<GlimpseTarget> targets = stack.getTargetList( );
+            List<GlimpseBounds> bounds = stack.getBoundsList( );
+
+            GlimpseTargetStack current = newTargetStack( );
+            for ( int i = 0; i < targets.size( ); i++ )
+            {
+                GlimpseTarget target = targets.get( i );
+                if ( !target.isVisible( ) ) return false;
+
+                // The root is the canvas, whose bounds were already checked
+                GlimpseBounds targetBounds = ( i == 0 ? bounds.get( i ) : target.getTargetBounds( current ) );
+                if ( !Objects.equals( targetBounds, bounds.get( i ) ) ) return false;
+
+                current.push( target, targetBounds );
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean handleInterior( I e, GlimpseContext context, GlimpseBounds bounds )
+    {
+        boolean interior = super.handleInterior( e, context, bounds );
+
+        if ( this.hitTestRecording != null && bounds != null )
+        {
+            this.hitTestRecording.constrain( bounds, interior );
+        }
+
+        return interior;
+    }
+
+    /**
+     * Called before delivering any non-motion event.
+     */
+    protected void beforeNonMotionEvent( )
+    {
+        this.flushMotion( );
+        this.invalidateHitTest( );
+    }
+
+    @Override
+    public void dispose( )
+    {
+        this.pendingMotion = null;
+        this.invalidateHitTest( );
+        super.dispose( );
     }
 
     public void mouseClicked0( I event )
@@ -48,6 +393,8 @@ public abstract class MouseWrapperImpl<I> extends MouseWrapper<I>
     {
         if ( event == null ) return;
 
+        this.beforeNonMotionEvent( );
+
         // save the old hovered stacks
         List<GlimpseTargetStack> oldHovered = clearHovered( );
 
@@ -65,6 +412,8 @@ public abstract class MouseWrapperImpl<I> extends MouseWrapper<I>
     {
         if ( event == null ) return;
 
+        this.beforeNonMotionEvent( );
+
         // save the old hovered stacks
         List<GlimpseTargetStack> oldHovered = clearHovered( );
 
@@ -79,6 +428,8 @@ public abstract class MouseWrapperImpl<I> extends MouseWrapper<I>
     {
         if ( event == null ) return false;
 
+        this.beforeNonMotionEvent( );
+
         List<GlimpseTargetStack> list = getContainingTargets( event );
 
         setAllHovered( list );
@@ -105,6 +456,8 @@ public abstract class MouseWrapperImpl<I> extends MouseWrapper<I>
     {
         if ( event == null ) return false;
 
+        this.beforeNonMotionEvent( );
+
         boolean handled = false;
 
         // always always deliver the mouseUp event regardless of which
@@ -137,15 +490,29 @@ public abstract class MouseWrapperImpl<I> extends MouseWrapper<I>
         return handled;
     }
 
+    /**
+     * When coalescing, holds the event for later delivery and returns false.
+     */
     public boolean mouseDragged0( I event )
     {
         if ( event == null ) return false;
 
+        if ( this.coalesceMotion )
+        {
+            this.holdMotion( event, true );
+            return false;
+        }
+
+        return this.deliverMouseDragged( event );
+    }
+
+    protected boolean deliverMouseDragged( I event )
+    {
         // save the old hovered stacks
         List<GlimpseTargetStack> oldHovered = clearHovered( );
 
         // call getContainingTarget to setHovered correctly
-        getContainingTargets( event );
+        hitTestHovered( event );
 
         // get the new hovered stacks
         List<GlimpseTargetStack> newHovered = getHovered( );
@@ -170,17 +537,31 @@ public abstract class MouseWrapperImpl<I> extends MouseWrapper<I>
         return false;
     }
 
+    /**
+     * When coalescing, holds the event for later delivery and returns false.
+     */
     public boolean mouseMoved0( I event )
     {
         if ( event == null ) return false;
 
+        if ( this.coalesceMotion )
+        {
+            this.holdMotion( event, false );
+            return false;
+        }
+
+        return this.deliverMouseMoved( event );
+    }
+
+    protected boolean deliverMouseMoved( I event )
+    {
         // if the mouse is hovering, recalculate hovered components every event
         // isButtonDown check isn't necessary like it is for MouseWrapperSWT.mouseMove(),
         // since this event would be a mouseDragged if it was
         List<GlimpseTargetStack> oldHovered = clearAllHovered( );
 
         // call getContainingTarget to setHovered correctly
-        getContainingTargets( event );
+        hitTestHovered( event );
 
         // get the new hovered stacks
         List<GlimpseTargetStack> newHovered = getHovered( );
@@ -209,6 +590,8 @@ public abstract class MouseWrapperImpl<I> extends MouseWrapper<I>
     {
         if ( event == null ) return false;
 
+        this.beforeNonMotionEvent( );
+
         // stacks with low indices are on top in the layout, and
         // have their mouse events generated first
         for ( GlimpseTargetStack stack : getContainingTargets( event ) )
@@ -80,6 +80,18 @@ public class MouseWrapperNewt extends MouseWrapperImpl<MouseEvent> implements Mo
         return true;
     }
 
+    @Override
+    protected int[] hitTestPoint( MouseEvent e )
+    {
+        return new int[] { (int) ( e.getX( ) / scaleX ), (int) ( ( glWindow.getSurfaceHeight( ) - e.getY( ) ) / scaleY ) };
+    }
+
+    @Override
+    protected void invokeOnEventThread( Runnable task )
+    {
+        glWindow.runOnEDTIfAvail( false, task );
+    }
+
     protected MouseEvent toLocalCoords( MouseEvent e, GlimpseTargetStack stack )
     {
         if ( stack == null ) return null;
@@ -35,6 +35,8 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 
+import javax.swing.SwingUtilities;
+
 import com.metsci.glimpse.core.canvas.GlimpseCanvas;
 import com.metsci.glimpse.core.context.GlimpseBounds;
 import com.metsci.glimpse.core.context.GlimpseTargetStack;
@@ -74,6 +76,20 @@ public class MouseWrapperSwing extends MouseWrapperImpl<MouseEvent> implements M
         return e.getComponent( ) != null;
     }
 
+    @Override
+    protected int[] hitTestPoint( MouseEvent e )
+    {
+        if ( e.getComponent( ) == null ) return null;
+
+        return new int[] { e.getX( ), e.getComponent( ).getBounds( ).height - e.getY( ) };
+    }
+
+    @Override
+    protected void invokeOnEventThread( Runnable task )
+    {
+        SwingUtilities.invokeLater( task );
+    }
+
     protected MouseEvent toLocalCoords( MouseEvent e, GlimpseTargetStack stack )
     {
         if ( stack == null ) return null;
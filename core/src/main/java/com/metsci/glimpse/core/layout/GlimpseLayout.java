@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.metsci.glimpse.core.canvas.LayoutManager;
@@ -49,6 +50,7 @@ import com.metsci.glimpse.core.event.mouse.GlimpseMouseWheelListener;
 import com.metsci.glimpse.core.event.mouse.Mouseable;
 import com.metsci.glimpse.core.painter.base.GlimpsePainter;
 import com.metsci.glimpse.core.painter.base.GlimpsePainterCallback;
+import com.metsci.glimpse.core.support.PaintProfiler;
 import com.metsci.glimpse.core.support.settings.LookAndFeel;
 
 /**
@@ -72,10 +74,19 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
 {
     protected String name = "";
 
-    // stores true when child GlimpseLayouts have been laid out
-    // for a given GlimpseLayoutStack. A null or false value
+    // incremented by invalidateLayout( ), so that stale layouts can be
+    // detected without clearing the per-stack caches
+    protected int layoutGeneration;
+
+    // incremented whenever any GlimpseLayout is invalidated, or changes visibility,
+    // z-order, or event handling, so that cached mouse hit-test results can be
+    // recognized as stale
+    protected static final AtomicInteger hitTestGeneration = new AtomicInteger( );
+
+    // stores the layoutGeneration at which child GlimpseLayouts were last
+    // laid out for a given GlimpseLayoutStack. A null or old value
     // indicates that the children must be laid out again
-    protected GlimpseLayoutCache<Boolean> layoutClean;
+    protected GlimpseLayoutCache<Integer> layoutClean;
 
     // stores the location/bounds of this GlimpseLayout
     // as laid out inside its parent GlimpseLayout for
@@ -112,7 +123,8 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
 
     public GlimpseLayout( GlimpseLayout parent, String name )
     {
-        this.layoutClean = new GlimpseLayoutCache<Boolean>( );
+        this.layoutGeneration = 0;
+        this.layoutClean = new GlimpseLayoutCache<Integer>( );
         this.layoutCache = new GlimpseLayoutCache<GlimpseBounds>( );
         this.layoutDelegate = new GlimpseLayoutDelegate( this );
 
@@ -203,6 +215,11 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
         lock.lock( );
         try
         {
+            // plots reapply unchanged layout data whenever they are reconfigured; only skip for
+            // immutable constraint strings, since other data (e.g. a MiG CC) may have been
+            // modified in place and reapplied to pick up the change
+            if ( layoutData instanceof String && layoutData.equals( layoutDelegate.getLayoutData( ) ) ) return;
+
             layoutDelegate.setLayoutData( layoutData );
             invalidateLayout( );
         }
@@ -310,6 +327,7 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
         {
             manager.setZOrder( layout, zOrder );
             layoutDelegate.setZOrder( layout, zOrder );
+            hitTestGeneration.incrementAndGet( );
         }
         finally
         {
@@ -478,8 +496,9 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
         lock.lock( );
         try
         {
-            layoutClean.clear( );
+            layoutGeneration++;
             layoutDelegate.invalidateLayout( );
+            hitTestGeneration.incrementAndGet( );
         }
         finally
         {
@@ -531,6 +550,9 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
     // (the GlimseTarget which we are "painting onto")
     public void paintTo( GlimpseContext context )
     {
+        PaintProfiler profiler = PaintProfiler.getActive( );
+        if ( profiler != null ) profiler.prePaint( this, context );
+
         lock.lock( );
         try
         {
@@ -550,6 +572,8 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
         finally
         {
             lock.unlock( );
+
+            if ( profiler != null ) profiler.postPaint( this, context );
         }
     }
 
@@ -731,14 +755,14 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
 
     protected boolean isDirty( GlimpseTargetStack stack )
     {
-        Boolean isClean = layoutClean.getValue( stack );
+        Integer cleanGeneration = layoutClean.getValue( stack );
 
-        return isClean == null || !isClean;
+        return cleanGeneration == null || cleanGeneration != layoutGeneration;
     }
 
     protected void setDirty( GlimpseTargetStack stack, boolean dirty )
     {
-        layoutClean.setValue( stack, !dirty );
+        layoutClean.setValue( stack, dirty ? null : layoutGeneration );
     }
 
     protected void cacheBounds( GlimpseContext context, GlimpseBounds bounds )
@@ -891,6 +915,7 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
     public void setEventConsumer( boolean consume )
     {
         this.isEventConsumer = consume;
+        hitTestGeneration.incrementAndGet( );
     }
 
     /**
@@ -907,11 +932,31 @@ public class GlimpseLayout implements GlimpsePainter, GlimpseTarget, Mouseable,
     public void setEventGenerator( boolean generate )
     {
         this.isEventGenerator = generate;
+        hitTestGeneration.incrementAndGet( );
     }
 
     public void setVisible( boolean visible )
     {
         this.isVisible = visible;
+        hitTestGeneration.incrementAndGet( );
+    }
+
+    /**
+     * Changes whenever any GlimpseLayout changes in a way that could affect which layouts
+     * contain a given mouse position.
+     */
+    public static int getHitTestGeneration( )
+    {
+        return hitTestGeneration.get( );
+    }
+
+    /**
+     * Marks cached hit-test results stale, for changes that don't go through a GlimpseLayout
+     * method -- e.g. adding, removing, or reordering the top-level layouts of a canvas.
+     */
+    public static void invalidateHitTests( )
+    {
+        hitTestGeneration.incrementAndGet( );
     }
 
     public boolean isVisible( )
@@ -40,7 +40,6 @@ import com.metsci.glimpse.core.context.GlimpseContext;
 import com.metsci.glimpse.core.context.GlimpseTarget;
 import com.metsci.glimpse.core.context.GlimpseTargetStack;
 import com.metsci.glimpse.core.layout.matcher.TargetStackMatcher;
-import com.metsci.glimpse.util.Pair;
 
 /**
  * Stores the bounds of a GlimpseLayout keyed off of the sequence of nested
@@ -48,32 +47,56 @@ import com.metsci.glimpse.util.Pair;
  * is rendered to the same sequence of parent GlimpseLayouts and none of the parent
  * GlimpseLayouts have changed shape, then the layout algorithm does not need to be
  * run, the cached LayoutBounds can be used.
+ * <p>
+ * Lookups happen for every layout on every frame, so entries are bucketed by the top
+ * target of the stack (a single identity-hashed object), and matched by walking the
+ * stack, instead of hashing the whole target list per lookup. The most recently matched
+ * entry is checked first, since a layout is usually painted into a single stack.
  *
  * @author ulman
  */
 public class GlimpseLayoutCache<D>
 {
-    protected Map<List<GlimpseTarget>, Pair<List<GlimpseBounds>, D>> map;
+    protected static class Entry<D>
+    {
+        public final List<GlimpseTarget> targets;
+        public List<GlimpseBounds> bounds;
+        public D value;
+
+        public Entry( List<GlimpseTarget> targets, List<GlimpseBounds> bounds, D value )
+        {
+            this.targets = targets;
+            this.bounds = bounds;
+            this.value = value;
+        }
+    }
+
+    protected Map<GlimpseTarget, List<Entry<D>>> map;
+    protected Entry<D> lastHit;
+    protected int size;
 
     public GlimpseLayoutCache( )
     {
-        this.map = new HashMap<List<GlimpseTarget>, Pair<List<GlimpseBounds>, D>>( );
+        this.map = new HashMap<GlimpseTarget, List<Entry<D>>>( );
+        this.lastHit = null;
+        this.size = 0;
     }
 
     public int size( )
     {
-        return map.size( );
+        return size;
     }
 
     public List<D> getValues( )
     {
-        Collection<Pair<List<GlimpseBounds>, D>> pairs = map.values( );
-
         List<D> values = Lists.newArrayList( );
 
-        for ( Pair<List<GlimpseBounds>, D> pair : pairs )
+        for ( List<Entry<D>> bucket : map.values( ) )
         {
-            values.add( pair.second( ) );
+            for ( Entry<D> entry : bucket )
+            {
+                values.add( entry.value );
+            }
         }
 
         return values;
@@ -86,16 +109,16 @@ public class GlimpseLayoutCache<D>
 
     public D getValue( GlimpseTargetStack layoutStack )
     {
-        Pair<List<GlimpseBounds>, D> entry = map.get( layoutStack.getTargetList( ) );
+        Entry<D> entry = find( layoutStack );
 
         if ( entry != null )
         {
-            List<GlimpseBounds> cachedBounds = entry.first( );
+            List<GlimpseBounds> cachedBounds = entry.bounds;
             List<GlimpseBounds> contextBounds = layoutStack.getBoundsList( );
 
             if ( compareBounds( cachedBounds, contextBounds ) )
             {
-                return entry.second( );
+                return entry.value;
             }
         }
 
@@ -109,11 +132,11 @@ public class GlimpseLayoutCache<D>
 
     public D getValueNoBoundsCheck( GlimpseTargetStack layoutStack )
     {
-        Pair<List<GlimpseBounds>, D> entry = map.get( layoutStack.getTargetList( ) );
+        Entry<D> entry = find( layoutStack );
 
         if ( entry != null )
         {
-            return entry.second( );
+            return entry.value;
         }
         else
         {
@@ -123,10 +146,27 @@ public class GlimpseLayoutCache<D>
 
     public void setValue( GlimpseTargetStack stack, D value )
     {
-        List<GlimpseTarget> targetList = Collections.unmodifiableList( new ArrayList<GlimpseTarget>( stack.getTargetList( ) ) );
-        List<GlimpseBounds> boundsList = Collections.unmodifiableList( new ArrayList<GlimpseBounds>( stack.getBoundsList( ) ) );
+        Entry<D> entry = find( stack );
+
+        if ( entry != null )
+        {
+            // Only copy the bounds if they have changed -- steady-state updates don't allocate
+            if ( !compareBounds( entry.bounds, stack.getBoundsList( ) ) )
+            {
+                entry.bounds = Collections.unmodifiableList( new ArrayList<GlimpseBounds>( stack.getBoundsList( ) ) );
+            }
+            entry.value = value;
+        }
+        else
+        {
+            List<GlimpseTarget> targetList = Collections.unmodifiableList( new ArrayList<GlimpseTarget>( stack.getTargetList( ) ) );
+            List<GlimpseBounds> boundsList = Collections.unmodifiableList( new ArrayList<GlimpseBounds>( stack.getBoundsList( ) ) );
 
-        map.put( targetList, new Pair<List<GlimpseBounds>, D>( boundsList, value ) );
+            entry = new Entry<D>( targetList, boundsList, value );
+            map.computeIfAbsent( stack.getTarget( ), k -> new ArrayList<Entry<D>>( 1 ) ).add( entry );
+            lastHit = entry;
+            size++;
+        }
     }
 
     public void setValue( GlimpseContext context, D value )
@@ -134,6 +174,33 @@ public class GlimpseLayoutCache<D>
         setValue( context.getTargetStack( ), value );
     }
 
+    protected Entry<D> find( GlimpseTargetStack stack )
+    {
+        List<GlimpseTarget> targets = stack.getTargetList( );
+
+        Entry<D> last = this.lastHit;
+        if ( last != null && compareTargets( last.targets, targets ) )
+        {
+            return last;
+        }
+
+        List<Entry<D>> bucket = map.get( stack.getTarget( ) );
+        if ( bucket != null )
+        {
+            for ( int i = 0; i < bucket.size( ); i++ )
+            {
+                Entry<D> entry = bucket.get( i );
+                if ( entry != last && compareTargets( entry.targets, targets ) )
+                {
+                    this.lastHit = entry;
+                    return entry;
+                }
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Removes all mappings from the cache, the component associated with this cache
      * will have to be laid out again for each of its RenderTargets.
@@ -141,6 +208,26 @@ public class GlimpseLayoutCache<D>
     public void clear( )
     {
         this.map.clear( );
+        this.lastHit = null;
+        this.size = 0;
+    }
+
+    protected static boolean compareTargets( List<GlimpseTarget> list1, List<GlimpseTarget> list2 )
+    {
+        if ( list1.size( ) != list2.size( ) ) return false;
+
+        Iterator<GlimpseTarget> iter1 = list1.iterator( );
+        Iterator<GlimpseTarget> iter2 = list2.iterator( );
+
+        while ( iter1.hasNext( ) )
+        {
+            GlimpseTarget target1 = iter1.next( );
+            GlimpseTarget target2 = iter2.next( );
+
+            if ( target1 != target2 && ( target1 == null || !target1.equals( target2 ) ) ) return false;
+        }
+
+        return true;
     }
 
     public static boolean compareBounds( List<GlimpseBounds> list1, List<GlimpseBounds> list2 )
@@ -156,7 +243,7 @@ public class GlimpseLayoutCache<D>
             GlimpseBounds bounds1 = iter1.next( );
             GlimpseBounds bounds2 = iter2.next( );
 
-            if ( !bounds1.equals( bounds2 ) ) return false;
+            if ( bounds1 != bounds2 && !bounds1.equals( bounds2 ) ) return false;
         }
 
         return true;
@@ -169,11 +256,14 @@ public class GlimpseLayoutCache<D>
     {
         ArrayList<D> acum = Lists.newArrayList( );
 
-        for ( List<GlimpseTarget> key : map.keySet( ) )
+        for ( List<Entry<D>> bucket : map.values( ) )
         {
-            if ( matcher.matches( key ) )
+            for ( Entry<D> entry : bucket )
             {
-                acum.add( map.get( key ).second( ) );
+                if ( matcher.matches( entry.targets ) )
+                {
+                    acum.add( entry.value );
+                }
             }
         }
 
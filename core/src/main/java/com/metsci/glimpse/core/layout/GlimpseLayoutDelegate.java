@@ -43,6 +43,7 @@ import com.metsci.glimpse.core.context.GlimpseTargetStack;
 import com.metsci.glimpse.core.gl.util.GLUtils;
 import com.metsci.glimpse.core.painter.base.GlimpsePainter;
 import com.metsci.glimpse.core.painter.base.GlimpsePainterCallback;
+import com.metsci.glimpse.core.support.PaintProfiler;
 import com.metsci.glimpse.core.support.settings.LookAndFeel;
 
 import net.miginfocom.layout.ComponentWrapper;
@@ -139,6 +140,9 @@ public class GlimpseLayoutDelegate implements ComponentWrapper, ContainerWrapper
 
         if ( !clippedBounds.isValid( ) ) return;
 
+        // layouts report themselves to the profiler, in GlimpseLayout.paintTo
+        PaintProfiler profiler = PaintProfiler.getActive( );
+
         for ( Member m : memberList )
         {
             try
@@ -155,8 +159,12 @@ public class GlimpseLayoutDelegate implements ComponentWrapper, ContainerWrapper
                 {
                     GLUtils.setViewportAndScissor( context );
                     
+                    boolean isProfiled = ( profiler != null && !isLayout );
+
                     if ( m.callback != null ) m.callback.prePaint( m.painter, context );
+                    if ( isProfiled ) profiler.prePaint( m.painter, context );
                     m.painter.paintTo( context );
+                    if ( isProfiled ) profiler.postPaint( m.painter, context );
                     if ( m.callback != null ) m.callback.postPaint( m.painter, context );
                 }
                 else if ( isLayout )
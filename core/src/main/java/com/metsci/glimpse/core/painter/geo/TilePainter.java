@@ -30,8 +30,11 @@ import static com.metsci.glimpse.core.painter.base.GlimpsePainterBase.getAxis2D;
 import static com.metsci.glimpse.core.support.PainterCache.SHARED_EXEC;
 import static com.metsci.glimpse.util.GeneralUtils.clamp;
 import static java.lang.Math.abs;
+import static java.lang.Math.exp;
 import static java.lang.Math.hypot;
+import static java.lang.Math.log;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import java.awt.geom.Area;
 import java.awt.geom.Path2D;
@@ -39,13 +42,17 @@ import java.awt.geom.Rectangle2D;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.google.common.cache.Weigher;
 import com.metsci.glimpse.core.axis.Axis2D;
 import com.metsci.glimpse.core.context.GlimpseContext;
 import com.metsci.glimpse.core.painter.group.DelegatePainter;
@@ -54,12 +61,18 @@ import com.metsci.glimpse.util.geo.LatLonGeo;
 import com.metsci.glimpse.util.geo.projection.GeoProjection;
 import com.metsci.glimpse.util.primitives.sorted.SortedDoubles;
 import com.metsci.glimpse.util.primitives.sorted.SortedDoublesArray;
+import com.metsci.glimpse.util.quadtree.QuadTreeBoxes;
 import com.metsci.glimpse.util.vector.Vector2d;
 
 /**
  * Paints a geo with tiled data. The subclass must implement the actual painting of the tiles themselves.
  * This class takes care of identifying the visible tiles (and tiles that are appropriate to paint in
  * the current projection) and providing those to the subclass to paint.
+ * <p>
+ * Tile footprints are indexed in a quadtree per length-scale level, so finding the visible tiles
+ * only requires exact {@link Area} tests for tiles near the viewport. While the axis is moving,
+ * tiles just outside the viewport (in the direction of travel) and at the neighboring length-scale
+ * level (in the direction of zoom) are requested ahead of time.
  *
  * @author borkholder
  */
@@ -67,19 +80,103 @@ public abstract class TilePainter<V> extends DelegatePainter
 {
     protected static final double PROJECTION_EPSILON = 1e-7;
 
+    protected static final int INDEX_BUCKET_SIZE = 16;
+
+    /**
+     * Motion samples further apart than this are treated as the start of a new motion.
+     */
+    protected static final double MOTION_TIMEOUT_SEC = 0.5;
+
+    /**
+     * Weight given to the newest sample when smoothing pan/zoom velocities.
+     */
+    protected static final double MOTION_SMOOTHING = 0.5;
+
+    /**
+     * Zoom rates (in e-folds of viewport width per second) below this are ignored for prefetching.
+     */
+    protected static final double MIN_PREFETCH_ZOOM_RATE = 0.05;
+
     protected GeoProjection projection;
     protected SortedDoubles lengthScale;
     protected Map<TileKey, Area> tileBounds;
+    protected Map<TileKey, TileFootprint> tileFootprints;
+    protected List<TileIndex> tileIndex;
 
     protected PainterCache<TileKey, V> cacheData;
     protected Rectangle2D.Double lastAxis;
 
+    /**
+     * Viewport and length-scale level used to prioritize pending tile loads. Read on loader threads.
+     */
+    protected volatile Rectangle2D.Double priorityBounds;
+    protected volatile int priorityLevelIdx;
+
+    protected boolean prefetchEnabled;
+    protected double prefetchLookahead_SEC;
+    protected double prefetchMarginFraction;
+    protected int maxPrefetchTiles;
+
+    protected Rectangle2D.Double motionBounds;
+    protected long motionTime_NS;
+    protected double panVelocityX;
+    protected double panVelocityY;
+    protected double zoomRate;
+
     public TilePainter( GeoProjection projection )
+    {
+        this( projection, null, 0 );
+    }
+
+    /**
+     * If {@code weigher} is non-null, the tile-data cache is bounded by total weight, rather
+     * than relying on soft references.
+     */
+    public TilePainter( GeoProjection projection, Weigher<TileKey, V> weigher, long maxWeight )
     {
         this.projection = projection;
         lastAxis = new Rectangle2D.Double( );
 
-        cacheData = new PainterCache<>( this::loadTileData, SHARED_EXEC );
+        if ( weigher == null )
+        {
+            cacheData = new PainterCache<>( this::loadTileData, SHARED_EXEC );
+        }
+        else
+        {
+            cacheData = new PainterCache<>( this::loadTileData, SHARED_EXEC, weigher, maxWeight );
+        }
+        cacheData.setPriority( this::loadPriority );
+
+        prefetchEnabled = true;
+        prefetchLookahead_SEC = 0.5;
+        prefetchMarginFraction = 0.1;
+        maxPrefetchTiles = 32;
+    }
+
+    /**
+     * Enables or disables requesting tiles that are not yet visible, but are likely to be soon
+     * given the recent pan and zoom velocity of the axis.
+     */
+    public void setPrefetchEnabled( boolean prefetchEnabled )
+    {
+        this.prefetchEnabled = prefetchEnabled;
+    }
+
+    public boolean isPrefetchEnabled( )
+    {
+        return prefetchEnabled;
+    }
+
+    /**
+     * @param lookahead_SEC how far ahead to extrapolate the current pan/zoom velocity
+     * @param marginFraction extra margin around the viewport, as a fraction of its width/height
+     * @param maxTiles maximum number of tiles requested per axis change
+     */
+    public void setPrefetchParameters( double lookahead_SEC, double marginFraction, int maxTiles )
+    {
+        this.prefetchLookahead_SEC = lookahead_SEC;
+        this.prefetchMarginFraction = marginFraction;
+        this.maxPrefetchTiles = maxTiles;
     }
 
     @Override
@@ -97,6 +194,8 @@ public abstract class TilePainter<V> extends DelegatePainter
         {
             tileBounds = createTileAreas( );
             lengthScale = populateLengthScale( tileBounds.keySet( ) );
+            tileFootprints = createTileFootprints( tileBounds );
+            tileIndex = createTileIndex( tileFootprints.values( ), lengthScale );
         }
 
         if ( abs( lastAxis.getMinX( ) - axis.getMinX( ) ) > 1e-9 ||
@@ -106,7 +205,9 @@ public abstract class TilePainter<V> extends DelegatePainter
         {
             lastAxis = new Rectangle2D.Double( axis.getMinX( ), axis.getMinY( ), axis.getMaxX( ) - axis.getMinX( ), axis.getMaxY( ) - axis.getMinY( ) );
 
-            Collection<TileKey> tiles = getVisibleTiles( lastAxis, axis, tileBounds.entrySet( ).stream( ) );
+            boolean moved = updateMotion( lastAxis );
+
+            Collection<TileKey> tiles = getVisibleTiles( lastAxis, axis );
             List<Entry<TileKey, V>> newTileData = new ArrayList<>( tiles.size( ) );
             boolean anyMissed = false;
             for ( TileKey key : tiles )
@@ -124,6 +225,21 @@ public abstract class TilePainter<V> extends DelegatePainter
 
             replaceTileData( newTileData );
 
+            if ( moved )
+            {
+                priorityBounds = lastAxis;
+                priorityLevelIdx = lengthScale.indexOf( getLengthScale( lastAxis, axis ) );
+
+                Set<TileKey> wanted = new HashSet<>( tiles );
+                if ( prefetchEnabled )
+                {
+                    wanted.addAll( prefetchTiles( lastAxis, axis, tiles ) );
+                }
+
+                // Drop queued loads for tiles that have scrolled out of view
+                cacheData.retainPending( wanted );
+            }
+
             if ( anyMissed )
             {
                 lastAxis = new Rectangle2D.Double( );
@@ -215,6 +331,34 @@ public abstract class TilePainter<V> extends DelegatePainter
         return keys;
     }
 
+    protected Map<TileKey, TileFootprint> createTileFootprints( Map<TileKey, Area> tileBounds )
+    {
+        Map<TileKey, TileFootprint> footprints = new HashMap<>( );
+        for ( Entry<TileKey, Area> e : tileBounds.entrySet( ) )
+        {
+            footprints.put( e.getKey( ), new TileFootprint( e.getKey( ), e.getValue( ) ) );
+        }
+
+        return footprints;
+    }
+
+    protected List<TileIndex> createTileIndex( Collection<TileFootprint> footprints, SortedDoubles lengthScale )
+    {
+        List<TileIndex> index = new ArrayList<>( lengthScale.n( ) );
+        for ( int i = 0; i < lengthScale.n( ); i++ )
+        {
+            index.add( new TileIndex( ) );
+        }
+
+        for ( TileFootprint f : footprints )
+        {
+            int levelIdx = lengthScale.indexOf( f.key.lengthScale );
+            index.get( levelIdx ).add( f );
+        }
+
+        return index;
+    }
+
     protected SortedDoubles populateLengthScale( Collection<TileKey> allKeys )
     {
         double[] array = allKeys.stream( )
@@ -225,12 +369,23 @@ public abstract class TilePainter<V> extends DelegatePainter
         return new SortedDoublesArray( array );
     }
 
+    protected Collection<TileKey> getVisibleTiles( Rectangle2D bounds, Axis2D axis )
+    {
+        Rectangle2D b = padBounds( bounds );
+        int levelIdx = lengthScale.indexOf( getLengthScale( bounds, axis ) );
+
+        List<TileKey> keys = new ArrayList<>( );
+        searchLevel( levelIdx, b, null, keys, Integer.MAX_VALUE );
+        return keys;
+    }
+
+    /**
+     * Equivalent to {@link #getVisibleTiles(Rectangle2D, Axis2D)}, but tests every tile in the given stream
+     * instead of using the tile index.
+     */
     protected Collection<TileKey> getVisibleTiles( Rectangle2D bounds, Axis2D axis, Stream<Entry<TileKey, Area>> keys )
     {
-        // Pad for irregular projections
-        double padX = bounds.getWidth( ) * 0.02;
-        double padY = bounds.getHeight( ) * 0.02;
-        Rectangle2D b = new Rectangle2D.Double( bounds.getMinX( ) - padX, bounds.getMinY( ) - padY, bounds.getWidth( ) + 2 * padX, bounds.getHeight( ) + 2 * padY );
+        Rectangle2D b = padBounds( bounds );
         double scale = getLengthScale( bounds, axis );
 
         return keys.filter( e -> e.getKey( ).lengthScale == scale )
@@ -239,6 +394,163 @@ public abstract class TilePainter<V> extends DelegatePainter
                 .collect( Collectors.toList( ) );
     }
 
+    protected static Rectangle2D padBounds( Rectangle2D bounds )
+    {
+        // Pad for irregular projections
+        double padX = bounds.getWidth( ) * 0.02;
+        double padY = bounds.getHeight( ) * 0.02;
+        return new Rectangle2D.Double( bounds.getMinX( ) - padX, bounds.getMinY( ) - padY, bounds.getWidth( ) + 2 * padX, bounds.getHeight( ) + 2 * padY );
+    }
+
+    /**
+     * Appends to {@code results} the keys at the given level whose footprint intersects {@code b}, skipping
+     * any keys in {@code exclude}, and stopping after {@code maxResults} keys.
+     */
+    protected void searchLevel( int levelIdx, Rectangle2D b, Set<TileKey> exclude, Collection<TileKey> results, int maxResults )
+    {
+        if ( levelIdx < 0 || levelIdx >= tileIndex.size( ) )
+        {
+            return;
+        }
+
+        TileIndex index = tileIndex.get( levelIdx );
+        Collection<TileFootprint> candidates = index.searchOverlapping( ( float ) b.getMinX( ), ( float ) b.getMaxX( ), ( float ) b.getMinY( ), ( float ) b.getMaxY( ) );
+
+        int count = 0;
+        for ( TileFootprint f : candidates )
+        {
+            if ( count >= maxResults )
+            {
+                return;
+            }
+
+            if ( exclude != null && exclude.contains( f.key ) )
+            {
+                continue;
+            }
+
+            if ( f.area.intersects( b ) )
+            {
+                results.add( f.key );
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Updates the smoothed pan/zoom velocity estimate.
+     *
+     * @return false if the bounds have not changed since the last call
+     */
+    protected boolean updateMotion( Rectangle2D.Double bounds )
+    {
+        long time_NS = System.nanoTime( );
+        if ( bounds.equals( motionBounds ) )
+        {
+            return false;
+        }
+
+        double dt_SEC = ( time_NS - motionTime_NS ) * 1e-9;
+        if ( motionBounds == null || motionBounds.isEmpty( ) || dt_SEC <= 0 || dt_SEC > MOTION_TIMEOUT_SEC )
+        {
+            panVelocityX = 0;
+            panVelocityY = 0;
+            zoomRate = 0;
+        }
+        else
+        {
+            double vx = ( bounds.getCenterX( ) - motionBounds.getCenterX( ) ) / dt_SEC;
+            double vy = ( bounds.getCenterY( ) - motionBounds.getCenterY( ) ) / dt_SEC;
+            double vz = log( bounds.getWidth( ) / motionBounds.getWidth( ) ) / dt_SEC;
+
+            panVelocityX = MOTION_SMOOTHING * vx + ( 1 - MOTION_SMOOTHING ) * panVelocityX;
+            panVelocityY = MOTION_SMOOTHING * vy + ( 1 - MOTION_SMOOTHING ) * panVelocityY;
+            zoomRate = MOTION_SMOOTHING * vz + ( 1 - MOTION_SMOOTHING ) * zoomRate;
+        }
+
+        motionBounds = bounds;
+        motionTime_NS = time_NS;
+        return true;
+    }
+
+    /**
+     * Requests tiles that are likely to become visible soon: tiles in a margin around the viewport
+     * (stretched in the direction of travel), and tiles at the neighboring length-scale level if the
+     * axis is zooming. Loaded values are not used immediately; this only warms the cache.
+     *
+     * @return the keys requested
+     */
+    protected Collection<TileKey> prefetchTiles( Rectangle2D bounds, Axis2D axis, Collection<TileKey> visible )
+    {
+        if ( maxPrefetchTiles <= 0 )
+        {
+            return Collections.emptyList( );
+        }
+
+        double dx = panVelocityX * prefetchLookahead_SEC;
+        double dy = panVelocityY * prefetchLookahead_SEC;
+        double zoom = exp( zoomRate * prefetchLookahead_SEC );
+
+        double marginX = bounds.getWidth( ) * prefetchMarginFraction;
+        double marginY = bounds.getHeight( ) * prefetchMarginFraction;
+
+        double minX = bounds.getMinX( ) - marginX + min( 0, dx );
+        double maxX = bounds.getMaxX( ) + marginX + max( 0, dx );
+        double minY = bounds.getMinY( ) - marginY + min( 0, dy );
+        double maxY = bounds.getMaxY( ) + marginY + max( 0, dy );
+        Rectangle2D ahead = new Rectangle2D.Double( minX, minY, maxX - minX, maxY - minY );
+
+        Set<TileKey> exclude = new HashSet<>( visible );
+        List<TileKey> prefetch = new ArrayList<>( );
+
+        int levelIdx = lengthScale.indexOf( getLengthScale( bounds, axis ) );
+        searchLevel( levelIdx, ahead, exclude, prefetch, maxPrefetchTiles );
+
+        if ( abs( zoomRate ) > MIN_PREFETCH_ZOOM_RATE )
+        {
+            // Zooming out moves to larger length scales, zooming in to smaller ones
+            int nextLevelIdx = zoomRate > 0 ? levelIdx + 1 : levelIdx - 1;
+
+            double w = bounds.getWidth( ) * zoom;
+            double h = bounds.getHeight( ) * zoom;
+            double cx = bounds.getCenterX( ) + dx;
+            double cy = bounds.getCenterY( ) + dy;
+            Rectangle2D zoomed = padBounds( new Rectangle2D.Double( cx - 0.5 * w, cy - 0.5 * h, w, h ) );
+
+            searchLevel( nextLevelIdx, zoomed, exclude, prefetch, maxPrefetchTiles - prefetch.size( ) );
+        }
+
+        for ( TileKey key : prefetch )
+        {
+            cacheData.get( key );
+        }
+
+        return prefetch;
+    }
+
+    /**
+     * Priority for loading a tile: lower values load first. Tiles at the current length-scale level are
+     * preferred, and within a level, tiles nearer the center of the viewport are preferred. Called on
+     * loader threads.
+     */
+    protected double loadPriority( TileKey key )
+    {
+        Rectangle2D.Double view = priorityBounds;
+        TileFootprint footprint = tileFootprints == null ? null : tileFootprints.get( key );
+        if ( view == null || footprint == null )
+        {
+            return 0;
+        }
+
+        double cx = 0.5 * ( footprint.xMin + footprint.xMax );
+        double cy = 0.5 * ( footprint.yMin + footprint.yMax );
+        double dist = hypot( cx - view.getCenterX( ), cy - view.getCenterY( ) );
+        double viewRadius = max( 0.5 * hypot( view.getWidth( ), view.getHeight( ) ), Double.MIN_NORMAL );
+
+        int levelIdx = lengthScale.indexOf( key.lengthScale );
+        return abs( levelIdx - priorityLevelIdx ) + dist / viewRadius;
+    }
+
     protected double getLengthScale( Rectangle2D bounds, Axis2D axis )
     {
         if ( lengthScale.n( ) == 1 )
@@ -276,4 +588,60 @@ public abstract class TilePainter<V> extends DelegatePainter
      * multiple times successively as new tiles are loaded into the view.
      */
     protected abstract void replaceTileData( Collection<Entry<TileKey, V>> tileData );
+
+    protected static class TileFootprint
+    {
+        public final TileKey key;
+        public final Area area;
+
+        public final float xMin;
+        public final float xMax;
+        public final float yMin;
+        public final float yMax;
+
+        public TileFootprint( TileKey key, Area area )
+        {
+            this.key = key;
+            this.area = area;
+
+            // Round outward, so the float bounds always contain the area
+            Rectangle2D b = area.getBounds2D( );
+            this.xMin = Math.nextDown( ( float ) b.getMinX( ) );
+            this.xMax = Math.nextUp( ( float ) b.getMaxX( ) );
+            this.yMin = Math.nextDown( ( float ) b.getMinY( ) );
+            this.yMax = Math.nextUp( ( float ) b.getMaxY( ) );
+        }
+    }
+
+    protected static class TileIndex extends QuadTreeBoxes<TileFootprint>
+    {
+        public TileIndex( )
+        {
+            super( INDEX_BUCKET_SIZE );
+        }
+
+        @Override
+        public float xMin( TileFootprint v )
+        {
+            return v.xMin;
+        }
+
+        @Override
+        public float xMax( TileFootprint v )
+        {
+            return v.xMax;
+        }
+
+        @Override
+        public float yMin( TileFootprint v )
+        {
+            return v.yMin;
+        }
+
+        @Override
+        public float yMax( TileFootprint v )
+        {
+            return v.yMax;
+        }
+    }
 }
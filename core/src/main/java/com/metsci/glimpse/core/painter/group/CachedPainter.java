@@ -0,0 +1,610 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.group;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.round;
+import static java.util.Collections.sort;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import com.jogamp.opengl.FBObject;
+import com.jogamp.opengl.FBObject.TextureAttachment;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.metsci.glimpse.core.axis.Axis1D;
+import com.metsci.glimpse.core.axis.Axis2D;
+import com.metsci.glimpse.core.context.GlimpseBounds;
+import com.metsci.glimpse.core.context.GlimpseContext;
+import com.metsci.glimpse.core.context.GlimpseContextImpl;
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
+import com.metsci.glimpse.core.gl.util.GLUtils;
+import com.metsci.glimpse.core.layout.GlimpseAxisLayout2D;
+import com.metsci.glimpse.core.layout.GlimpseLayout;
+import com.metsci.glimpse.core.painter.base.GlimpsePainter;
+import com.metsci.glimpse.core.painter.base.GlimpsePainterBase;
+import com.metsci.glimpse.core.support.color.GlimpseColor;
+import com.metsci.glimpse.core.support.settings.LookAndFeel;
+import com.metsci.glimpse.core.support.shader.triangle.ColorTexture2DProgram;
+
+/**
+ * Paints a group of slowly-changing painters (map backgrounds, grids, shorelines, etc.)
+ * into an offscreen texture, and composites that texture on subsequent frames instead
+ * of repainting the group.
+ * <p>
+ * The cached texture is repainted when the axis bounds or the size of the layout change,
+ * when painters are added, removed or reordered, when {@link #invalidate()} is called, or
+ * when any check registered with {@link #addDirtyCheck(BooleanSupplier)} reports a change.
+ * Child painters which change on their own should either be accompanied by a dirty check
+ * or call {@link #invalidate()} when their contents change.
+ * <p>
+ * If {@link #setIncrementalPan(boolean)} is enabled, a pure pan (axis span and layout
+ * size unchanged) shifts the existing texture by a whole number of pixels and repaints
+ * only the newly exposed strips. This is only appropriate when every child paints a
+ * function of axis coordinates -- painters which draw at fixed screen positions (legends,
+ * labels anchored to the layout border, etc.) will be smeared by the shift.
+ * <p>
+ * Child painters are painted with a private {@link Axis2D} which mirrors the bounds of the
+ * axis of the enclosing layout, so they must not depend on the identity of that axis.
+ * {@link com.metsci.glimpse.core.axis.WrappedAxis1D} is not supported; see {@link WrappedPainter}.
+ *
+ * @see WrappedPainter
+ */
+public class CachedPainter extends GlimpsePainterBase
+{
+    protected static class Entry
+    {
+        public final GlimpsePainter painter;
+        public int zOrder;
+
+        public Entry( GlimpsePainter painter, int zOrder )
+        {
+            this.painter = painter;
+            this.zOrder = zOrder;
+        }
+    }
+
+    protected static final Comparator<Entry> zOrderComparator = ( a, b ) -> {
+        return Integer.compare( a.zOrder, b.zOrder );
+    };
+
+    // relative tolerance used to decide whether the axis span is unchanged (i.e. a pure pan)
+    protected static final double SPAN_TOLERANCE = 1e-7;
+
+    protected final boolean attachStencilBuffer;
+
+    protected final List<Entry> entriesSorted;
+    protected final List<BooleanSupplier> dirtyChecks;
+
+    protected volatile boolean invalid;
+    protected volatile boolean incrementalPan;
+
+    protected FBObject fbo;
+    protected TextureAttachment fboTextureAttachment;
+
+    // only allocated when incremental pan is used
+    protected FBObject backFbo;
+    protected TextureAttachment backFboTextureAttachment;
+
+    protected int fboTextureUnit = 0;
+
+    protected GLEditableBuffer vertCoordBuffer;
+    protected GLEditableBuffer texCoordBuffer;
+    protected ColorTexture2DProgram prog;
+
+    protected Axis2D dummyAxis;
+    protected GlimpseAxisLayout2D dummyLayout;
+    protected GlimpseLayout clipLayout;
+
+    // the axis bounds and size (in layout units) which the cached texture currently shows
+    protected boolean cacheValid;
+    protected double cacheMinX;
+    protected double cacheMaxX;
+    protected double cacheMinY;
+    protected double cacheMaxY;
+    protected int cacheWidth;
+    protected int cacheHeight;
+    protected float cacheScaleX;
+    protected float cacheScaleY;
+
+    public CachedPainter( )
+    {
+        this( true );
+    }
+
+    public CachedPainter( boolean attachStencilBuffer )
+    {
+        this.attachStencilBuffer = attachStencilBuffer;
+
+        this.entriesSorted = new CopyOnWriteArrayList<>( );
+        this.dirtyChecks = new CopyOnWriteArrayList<>( );
+
+        this.invalid = true;
+        this.incrementalPan = false;
+
+        this.dummyAxis = new Axis2D( );
+        this.dummyLayout = new GlimpseAxisLayout2D( dummyAxis );
+        this.clipLayout = new GlimpseLayout( );
+    }
+
+    public void addPainter( GlimpsePainter painter )
+    {
+        this.addPainter( painter, 0 );
+    }
+
+    public void addPainter( GlimpsePainter painter, int zOrder )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            this.removeEntry( painter );
+            this.entriesSorted.add( new Entry( painter, zOrder ) );
+            sort( this.entriesSorted, zOrderComparator );
+            this.invalid = true;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    public void setZOrder( GlimpsePainter painter, int zOrder )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            for ( Entry en : this.entriesSorted )
+            {
+                if ( en.painter == painter && en.zOrder != zOrder )
+                {
+                    en.zOrder = zOrder;
+                    sort( this.entriesSorted, zOrderComparator );
+                    this.invalid = true;
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    public void removePainter( GlimpsePainter painter )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            if ( this.removeEntry( painter ) )
+            {
+                this.invalid = true;
+            }
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    public void removeAll( )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            this.entriesSorted.clear( );
+            this.invalid = true;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    protected boolean removeEntry( GlimpsePainter painter )
+    {
+        for ( Entry en : this.entriesSorted )
+        {
+            if ( en.painter == painter )
+            {
+                return this.entriesSorted.remove( en );
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers a check which is polled once per frame. If it returns true, the cached
+     * texture is repainted from scratch. Checks should be cheap, and should reset their own
+     * state after reporting a change.
+     */
+    public void addDirtyCheck( BooleanSupplier isDirty )
+    {
+        this.dirtyChecks.add( isDirty );
+    }
+
+    public void removeDirtyCheck( BooleanSupplier isDirty )
+    {
+        this.dirtyChecks.remove( isDirty );
+    }
+
+    /**
+     * Forces the child painters to be repainted on the next frame.
+     */
+    public void invalidate( )
+    {
+        this.invalid = true;
+    }
+
+    public void setIncrementalPan( boolean incrementalPan )
+    {
+        this.incrementalPan = incrementalPan;
+    }
+
+    public boolean isIncrementalPan( )
+    {
+        return this.incrementalPan;
+    }
+
+    @Override
+    public void doPaintTo( GlimpseContext context )
+    {
+        Axis2D axis = requireAxis2D( context );
+        GlimpseBounds bounds = getBounds( context );
+        GL3 gl = context.getGL( ).getGL3( );
+
+        Axis1D axisX = axis.getAxisX( );
+        Axis1D axisY = axis.getAxisY( );
+
+        if ( !axisX.isInitialized( ) || !axisY.isInitialized( ) || bounds.getHeight( ) == 0 || bounds.getWidth( ) == 0 ) return;
+
+        float[] scale = context.getSurfaceScale( );
+        int width = bounds.getWidth( );
+        int height = bounds.getHeight( );
+        double minX = axisX.getMin( );
+        double maxX = axisX.getMax( );
+        double minY = axisY.getMin( );
+        double maxY = axisY.getMax( );
+
+        // poll every check, so that each one sees (and resets) its own change
+        boolean dirty = this.invalid;
+        for ( BooleanSupplier check : this.dirtyChecks )
+        {
+            dirty |= check.getAsBoolean( );
+        }
+
+        boolean sameSize = this.cacheValid && width == this.cacheWidth && height == this.cacheHeight && scale[0] == this.cacheScaleX && scale[1] == this.cacheScaleY;
+        boolean sameSpan = sameSize && isSameSpan( minX, maxX, this.cacheMinX, this.cacheMaxX ) && isSameSpan( minY, maxY, this.cacheMinY, this.cacheMaxY );
+
+        int shiftX = 0;
+        int shiftY = 0;
+        if ( sameSpan )
+        {
+            shiftX = ( int ) round( ( minX - this.cacheMinX ) / ( this.cacheMaxX - this.cacheMinX ) * width );
+            shiftY = ( int ) round( ( minY - this.cacheMinY ) / ( this.cacheMaxY - this.cacheMinY ) * height );
+        }
+
+        if ( dirty || !sameSpan || ( ( shiftX != 0 || shiftY != 0 ) && ( !this.incrementalPan || abs( shiftX ) >= width || abs( shiftY ) >= height ) ) )
+        {
+            this.invalid = false;
+            this.repaintCache( context, axis, width, height, minX, maxX, minY, maxY );
+        }
+        else if ( shiftX != 0 || shiftY != 0 )
+        {
+            this.shiftCache( context, axis, shiftX, shiftY );
+        }
+
+        this.drawTexture( context, axis );
+    }
+
+    protected static boolean isSameSpan( double min, double max, double cacheMin, double cacheMax )
+    {
+        double span = max - min;
+        double cacheSpan = cacheMax - cacheMin;
+        return abs( span - cacheSpan ) <= SPAN_TOLERANCE * abs( cacheSpan );
+    }
+
+    protected void ensureAllocated( GL3 gl, int widthPixels, int heightPixels )
+    {
+        if ( this.fbo == null )
+        {
+            this.fbo = new FBObject( );
+            this.fboTextureAttachment = this.initFbo( gl, this.fbo );
+
+            this.texCoordBuffer = new GLEditableBuffer( GL.GL_STATIC_DRAW, 0 );
+            this.vertCoordBuffer = new GLEditableBuffer( GL.GL_STATIC_DRAW, 0 );
+
+            this.prog = new ColorTexture2DProgram( );
+        }
+
+        if ( this.incrementalPan && this.backFbo == null )
+        {
+            this.backFbo = new FBObject( );
+            this.backFboTextureAttachment = this.initFbo( gl, this.backFbo );
+        }
+
+        // grow (but never shrink) the offscreen buffers, so that resizing back and forth doesn't reallocate
+        if ( this.fbo.getWidth( ) < widthPixels || this.fbo.getHeight( ) < heightPixels )
+        {
+            this.fbo.reset( gl, max( widthPixels, this.fbo.getWidth( ) ), max( heightPixels, this.fbo.getHeight( ) ), 0 );
+        }
+
+        if ( this.backFbo != null && ( this.backFbo.getWidth( ) != this.fbo.getWidth( ) || this.backFbo.getHeight( ) != this.fbo.getHeight( ) ) )
+        {
+            this.backFbo.reset( gl, this.fbo.getWidth( ), this.fbo.getHeight( ), 0 );
+        }
+    }
+
+    protected TextureAttachment initFbo( GL3 gl, FBObject fbo )
+    {
+        fbo.init( gl, 0, 0, 0 );
+        if ( this.attachStencilBuffer )
+        {
+            fbo.attachRenderbuffer( gl, FBObject.Attachment.Type.STENCIL, FBObject.DEFAULT_BITS );
+        }
+        TextureAttachment attachment = fbo.attachTexture2D( gl, this.fboTextureUnit, true );
+        fbo.unbind( gl );
+        return attachment;
+    }
+
+    protected void repaintCache( GlimpseContext context, Axis2D axis, int width, int height, double minX, double maxX, double minY, double maxY )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+        float[] scale = context.getSurfaceScale( );
+
+        this.ensureAllocated( gl, pixels( width, scale[0] ), pixels( height, scale[1] ) );
+
+        this.cacheValid = true;
+        this.cacheMinX = minX;
+        this.cacheMaxX = maxX;
+        this.cacheMinY = minY;
+        this.cacheMaxY = maxY;
+        this.cacheWidth = width;
+        this.cacheHeight = height;
+        this.cacheScaleX = scale[0];
+        this.cacheScaleY = scale[1];
+
+        this.paintChildren( context, axis, this.fbo, new GlimpseBounds( 0, 0, width, height ) );
+    }
+
+    protected void shiftCache( GlimpseContext context, Axis2D axis, int shiftX, int shiftY )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+        float[] scale = context.getSurfaceScale( );
+        int width = this.cacheWidth;
+        int height = this.cacheHeight;
+
+        this.ensureAllocated( gl, pixels( width, scale[0] ), pixels( height, scale[1] ) );
+
+        // snap the cached bounds to a whole number of layout pixels, so the reused
+        // part of the texture lines up exactly with the newly painted strips
+        double dX = shiftX * ( this.cacheMaxX - this.cacheMinX ) / width;
+        double dY = shiftY * ( this.cacheMaxY - this.cacheMinY ) / height;
+        this.cacheMinX += dX;
+        this.cacheMaxX += dX;
+        this.cacheMinY += dY;
+        this.cacheMaxY += dY;
+
+        int[] prevFramebuffers = this.getFramebufferBindings( gl );
+        this.backFbo.bind( gl );
+        try
+        {
+            // the scissor test applies to blits as well
+            gl.glDisable( GL.GL_SCISSOR_TEST );
+            gl.glClearColor( 0, 0, 0, 0 );
+            gl.glClear( GL.GL_COLOR_BUFFER_BIT );
+
+            int srcX0 = pixels( max( 0, shiftX ), scale[0] );
+            int srcX1 = pixels( min( width, width + shiftX ), scale[0] );
+            int srcY0 = pixels( max( 0, shiftY ), scale[1] );
+            int srcY1 = pixels( min( height, height + shiftY ), scale[1] );
+            int dstX0 = pixels( max( 0, -shiftX ), scale[0] );
+            int dstY0 = pixels( max( 0, -shiftY ), scale[1] );
+
+            gl.glBindFramebuffer( GL3.GL_READ_FRAMEBUFFER, this.fbo.getReadFramebuffer( ) );
+            gl.glBlitFramebuffer( srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX0 + ( srcX1 - srcX0 ), dstY0 + ( srcY1 - srcY0 ), GL.GL_COLOR_BUFFER_BIT, GL.GL_NEAREST );
+        }
+        finally
+        {
+            this.backFbo.unbind( gl );
+            this.restoreFramebufferBindings( gl, prevFramebuffers );
+        }
+
+        // swap, so the front buffer holds the shifted image
+        FBObject fbo = this.fbo;
+        this.fbo = this.backFbo;
+        this.backFbo = fbo;
+        TextureAttachment attachment = this.fboTextureAttachment;
+        this.fboTextureAttachment = this.backFboTextureAttachment;
+        this.backFboTextureAttachment = attachment;
+
+        if ( shiftX != 0 )
+        {
+            int stripX = ( shiftX > 0 ? width - shiftX : 0 );
+            this.paintChildren( context, axis, this.fbo, new GlimpseBounds( stripX, 0, abs( shiftX ), height ) );
+        }
+
+        if ( shiftY != 0 )
+        {
+            int stripY = ( shiftY > 0 ? height - shiftY : 0 );
+            this.paintChildren( context, axis, this.fbo, new GlimpseBounds( 0, stripY, width, abs( shiftY ) ) );
+        }
+    }
+
+    /**
+     * Paints the child painters into {@code target}, covering the full cached bounds but
+     * clipped to {@code clip}. Pixels inside {@code clip} are cleared first.
+     */
+    protected void paintChildren( GlimpseContext context, Axis2D axis, FBObject target, GlimpseBounds clip )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        // copy axis settings, including locked status, mouse coords, etc.
+        this.dummyAxis.setParent( axis );
+        this.dummyAxis.setParent( null );
+        this.dummyAxis.set( this.cacheMinX, this.cacheMaxX, this.cacheMinY, this.cacheMaxY );
+        this.dummyAxis.validate( );
+
+        this.dummyLayout.removeAllLayouts( );
+        for ( Entry en : this.entriesSorted )
+        {
+            this.dummyLayout.addPainter( en.painter );
+        }
+
+        // the clip layout only restricts the scissor box; the painters still see the full cached bounds
+        GlimpseContext offscreenContext = new GlimpseContextImpl( context.getGLContext( ), context.getSurfaceScale( ), context.getDPI( ) );
+        offscreenContext.getTargetStack( ).push( this.clipLayout, clip );
+        offscreenContext.getTargetStack( ).push( this.dummyLayout, new GlimpseBounds( 0, 0, this.cacheWidth, this.cacheHeight ) );
+
+        int[] prevFramebuffers = this.getFramebufferBindings( gl );
+        target.bind( gl );
+        try
+        {
+            GLUtils.setViewportAndScissor( offscreenContext );
+            gl.glClearColor( 0, 0, 0, 0 );
+            gl.glClear( GL.GL_COLOR_BUFFER_BIT | ( this.attachStencilBuffer ? GL.GL_STENCIL_BUFFER_BIT : 0 ) );
+
+            this.dummyLayout.paintTo( offscreenContext );
+        }
+        finally
+        {
+            target.unbind( gl );
+            this.restoreFramebufferBindings( gl, prevFramebuffers );
+
+            // reset the viewport and scissor (which will be modified by dummyLayout.paintTo( )
+            GLUtils.setViewportAndScissor( context );
+        }
+    }
+
+    protected void drawTexture( GlimpseContext context, Axis2D axis )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+        float[] scale = context.getSurfaceScale( );
+
+        gl.glActiveTexture( GL.GL_TEXTURE0 );
+
+        // position the cached image at the bounds it was painted for -- after a pan these
+        // may differ from the current axis bounds by a fraction of a pixel
+        this.vertCoordBuffer.clear( );
+        this.vertCoordBuffer.growQuad2f( ( float ) this.cacheMinX, ( float ) this.cacheMinY, ( float ) this.cacheMaxX, ( float ) this.cacheMaxY );
+
+        // the offscreen buffer may be larger than the layout, so only use the part we drew onto
+        float sMax = ( float ) pixels( this.cacheWidth, scale[0] ) / ( float ) this.fbo.getWidth( );
+        float tMax = ( float ) pixels( this.cacheHeight, scale[1] ) / ( float ) this.fbo.getHeight( );
+        this.texCoordBuffer.clear( );
+        this.texCoordBuffer.growQuad2f( 0, 0, sMax, tMax );
+
+        // the offscreen image holds colors already multiplied by their (accumulated) alpha
+        GLUtils.enablePremultipliedAlphaBlending( gl );
+        this.fbo.use( gl, this.fboTextureAttachment );
+        this.prog.begin( context );
+        try
+        {
+            this.prog.setAxisOrtho( context, axis );
+            this.prog.setColor( context, GlimpseColor.getWhite( ) );
+            this.prog.setTexture( context, this.fboTextureUnit );
+
+            this.prog.draw( context, GL.GL_TRIANGLES, this.vertCoordBuffer, this.texCoordBuffer, 0, this.texCoordBuffer.sizeFloats( ) / 2 );
+        }
+        finally
+        {
+            this.prog.end( context );
+            this.fbo.unuse( gl );
+            GLUtils.disableBlending( gl );
+        }
+    }
+
+    protected static int pixels( int size, float scale )
+    {
+        return ( int ) ( size * scale );
+    }
+
+    protected int[] getFramebufferBindings( GL3 gl )
+    {
+        int[] bindings = new int[2];
+        gl.glGetIntegerv( GL3.GL_DRAW_FRAMEBUFFER_BINDING, bindings, 0 );
+        gl.glGetIntegerv( GL3.GL_READ_FRAMEBUFFER_BINDING, bindings, 1 );
+        return bindings;
+    }
+
+    protected void restoreFramebufferBindings( GL3 gl, int[] bindings )
+    {
+        // FBObject.unbind( ) returns to the drawable's default framebuffer, which is
+        // not necessarily what was bound when this painter was invoked
+        gl.glBindFramebuffer( GL3.GL_DRAW_FRAMEBUFFER, bindings[0] );
+        gl.glBindFramebuffer( GL3.GL_READ_FRAMEBUFFER, bindings[1] );
+    }
+
+    @Override
+    public void setLookAndFeel( LookAndFeel laf )
+    {
+        for ( Entry en : this.entriesSorted )
+        {
+            en.painter.setLookAndFeel( laf );
+        }
+        this.invalid = true;
+    }
+
+    @Override
+    public void setVisible( boolean visible )
+    {
+        super.setVisible( visible );
+
+        // children may have changed while we weren't painting
+        this.invalid = true;
+    }
+
+    @Override
+    public void doDispose( GlimpseContext context )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        for ( Entry en : this.entriesSorted )
+        {
+            en.painter.dispose( context );
+        }
+        this.entriesSorted.clear( );
+        this.dirtyChecks.clear( );
+
+        if ( this.fbo != null )
+        {
+            this.fbo.destroy( gl );
+            this.vertCoordBuffer.dispose( gl );
+            this.texCoordBuffer.dispose( gl );
+            this.prog.dispose( context );
+        }
+
+        if ( this.backFbo != null )
+        {
+            this.backFbo.destroy( gl );
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.info;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.Font;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
+import com.metsci.glimpse.com.jogamp.opengl.util.awt.TextRenderer;
+import com.metsci.glimpse.core.context.GlimpseBounds;
+import com.metsci.glimpse.core.context.GlimpseContext;
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
+import com.metsci.glimpse.core.gl.util.GLUtils;
+import com.metsci.glimpse.core.painter.base.GlimpsePainterBase;
+import com.metsci.glimpse.core.support.PaintProfiler;
+import com.metsci.glimpse.core.support.PaintProfiler.Profile;
+import com.metsci.glimpse.core.support.color.GlimpseColor;
+import com.metsci.glimpse.core.support.font.FontUtils;
+import com.metsci.glimpse.core.support.shader.triangle.FlatColorProgram;
+
+/**
+ * Displays the most expensive painters and layouts recorded by a {@link PaintProfiler},
+ * as a table in the upper-left corner of the layout it is added to.
+ *
+ * @see PaintProfiler
+ */
+public class PaintProfilerPainter extends GlimpsePainterBase
+{
+    protected static final String[] headers = { "Painter", "cpu p50", "cpu p90", "gpu p50", "gpu p90" };
+
+    protected final PaintProfiler profiler;
+
+    protected int maxRows = 12;
+    protected long refreshInterval_MS = 500;
+    protected int padding = 6;
+    protected int columnGap = 12;
+
+    protected float[] fontColor = new float[] { 0.85f, 0.85f, 0.85f, 1.0f };
+    protected float[] warnColor = new float[] { 1.0f, 0.5f, 0.5f, 1.0f };
+    protected float[] textBackgroundColor = new float[] { 0.2f, 0.2f, 0.2f, 0.8f };
+
+    /**
+     * Rows whose 90th-percentile CPU or GPU time exceeds this are drawn in the warning color.
+     */
+    protected double warnThreshold_MS = 4.0;
+
+    protected TextRenderer textRenderer;
+    protected FlatColorProgram prog;
+    protected GLEditableBuffer buffer;
+
+    protected List<String[]> rows;
+    protected List<Boolean> rowWarnings;
+    protected long lastRefresh_MS;
+
+    public PaintProfilerPainter( PaintProfiler profiler, Font font )
+    {
+        this.profiler = profiler;
+        this.textRenderer = new TextRenderer( font );
+        this.prog = new FlatColorProgram( );
+        this.buffer = new GLEditableBuffer( GL.GL_STATIC_DRAW, 0 );
+
+        this.rows = new ArrayList<>( );
+        this.rowWarnings = new ArrayList<>( );
+        this.lastRefresh_MS = Long.MIN_VALUE;
+    }
+
+    public PaintProfilerPainter( PaintProfiler profiler )
+    {
+        this( profiler, FontUtils.getDefaultPlain( 11 ) );
+    }
+
+    public void setMaxRows( int maxRows )
+    {
+        this.maxRows = maxRows;
+    }
+
+    public void setRefreshInterval( long refreshInterval_MS )
+    {
+        this.refreshInterval_MS = refreshInterval_MS;
+    }
+
+    public void setWarnThreshold( double warnThreshold_MS )
+    {
+        this.warnThreshold_MS = warnThreshold_MS;
+    }
+
+    public void setTextColor( float[] color )
+    {
+        this.fontColor = color;
+    }
+
+    public void setWarnColor( float[] color )
+    {
+        this.warnColor = color;
+    }
+
+    public void setTextBackgroundColor( float[] color )
+    {
+        this.textBackgroundColor = color;
+    }
+
+    protected void refreshRows( )
+    {
+        this.rows.clear( );
+        this.rowWarnings.clear( );
+
+        List<Profile> profiles = this.profiler.getProfiles( );
+        for ( Profile p : profiles.subList( 0, min( this.maxRows, profiles.size( ) ) ) )
+        {
+            this.rows.add( new String[] { p.name, formatTime( p.cpu.p50_MS ), formatTime( p.cpu.p90_MS ), formatTime( p.gpu.p50_MS ), formatTime( p.gpu.p90_MS ) } );
+            this.rowWarnings.add( p.cpu.p90_MS > this.warnThreshold_MS || p.gpu.p90_MS > this.warnThreshold_MS );
+        }
+    }
+
+    protected static String formatTime( double time_MS )
+    {
+        return ( Double.isNaN( time_MS ) ? "-" : String.format( "%.2f", time_MS ) );
+    }
+
+    @Override
+    protected void doPaintTo( GlimpseContext context )
+    {
+        long now_MS = System.currentTimeMillis( );
+        if ( now_MS - this.lastRefresh_MS >= this.refreshInterval_MS )
+        {
+            this.refreshRows( );
+            this.lastRefresh_MS = now_MS;
+        }
+
+        GlimpseBounds bounds = getBounds( context );
+        GL3 gl = context.getGL( ).getGL3( );
+
+        int width = bounds.getWidth( );
+        int height = bounds.getHeight( );
+
+        // Column widths, and a uniform row height
+        int[] columnWidths = new int[headers.length];
+        int rowHeight = 0;
+        for ( int c = 0; c < headers.length; c++ )
+        {
+            Rectangle2D textBounds = this.textRenderer.getBounds( headers[c] );
+            columnWidths[c] = ( int ) Math.ceil( textBounds.getWidth( ) );
+            rowHeight = max( rowHeight, ( int ) Math.ceil( textBounds.getHeight( ) ) );
+        }
+        for ( String[] row : this.rows )
+        {
+            for ( int c = 0; c < row.length; c++ )
+            {
+                columnWidths[c] = max( columnWidths[c], ( int ) Math.ceil( this.textRenderer.getBounds( row[c] ).getWidth( ) ) );
+            }
+        }
+        rowHeight += 2;
+
+        int tableWidth = 2 * this.padding + ( headers.length - 1 ) * this.columnGap;
+        for ( int columnWidth : columnWidths )
+        {
+            tableWidth += columnWidth;
+        }
+        int tableHeight = 2 * this.padding + ( this.rows.size( ) + 1 ) * rowHeight;
+
+        GLUtils.enableStandardBlending( gl );
+        try
+        {
+            this.buffer.clear( );
+            this.buffer.growQuad2f( 0, height - tableHeight, tableWidth, height );
+
+            this.prog.begin( gl );
+            try
+            {
+                this.prog.setPixelOrtho( gl, bounds );
+                this.prog.draw( gl, this.buffer, this.textBackgroundColor );
+            }
+            finally
+            {
+                this.prog.end( gl );
+            }
+        }
+        finally
+        {
+            GLUtils.disableBlending( gl );
+        }
+
+        this.textRenderer.beginRendering( width, height );
+        try
+        {
+            int y = height - this.padding - rowHeight + 2;
+            GlimpseColor.setColor( this.textRenderer, this.fontColor );
+            this.drawRow( headers, columnWidths, y );
+
+            for ( int r = 0; r < this.rows.size( ); r++ )
+            {
+                y -= rowHeight;
+                GlimpseColor.setColor( this.textRenderer, this.rowWarnings.get( r ) ? this.warnColor : this.fontColor );
+                this.drawRow( this.rows.get( r ), columnWidths, y );
+            }
+        }
+        finally
+        {
+            this.textRenderer.endRendering( );
+        }
+    }
+
+    protected void drawRow( String[] row, int[] columnWidths, int y )
+    {
+        int x = this.padding;
+        for ( int c = 0; c < row.length; c++ )
+        {
+            if ( c == 0 )
+            {
+                // left-align names
+                this.textRenderer.draw( row[c], x, y );
+            }
+            else
+            {
+                // right-align numbers
+                int textWidth = ( int ) Math.ceil( this.textRenderer.getBounds( row[c] ).getWidth( ) );
+                this.textRenderer.draw( row[c], x + columnWidths[c] - textWidth, y );
+            }
+            x += columnWidths[c] + this.columnGap;
+        }
+    }
+
+    @Override
+    protected void doDispose( GlimpseContext context )
+    {
+        this.textRenderer.dispose( );
+
+        this.prog.dispose( context.getGL( ).getGL3( ) );
+        this.buffer.dispose( context.getGL( ) );
+    }
+}
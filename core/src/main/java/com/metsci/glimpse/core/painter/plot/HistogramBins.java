@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.plot;
+
+import static java.lang.Math.floorDiv;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.stream.IntStream;
+
+import it.unimi.dsi.fastutil.floats.Float2IntMap;
+import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
+
+/**
+ * Dense, fixed-width histogram counts. Bin {@code i} covers
+ * {@code [binStart + i*binSize, binStart + (i+1)*binSize)}, and counts are
+ * held in a primitive array spanning the lowest to the highest occupied bin.
+ * <p>
+ * Large inputs are binned in parallel: each worker counts a contiguous chunk
+ * of the values into its own array, and the per-chunk arrays are summed
+ * afterwards, so no synchronization happens per value. Values may be added
+ * incrementally; the count array grows as needed to cover new bins.
+ * <p>
+ * A fine histogram can be cheaply {@link #coarsen(int) coarsened} into wider
+ * bins that stay aligned to {@code binStart}, which lets painters adapt the
+ * displayed bin width without revisiting the source values.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class HistogramBins
+{
+    /**
+     * Largest number of bins (from lowest to highest occupied) a histogram may span.
+     */
+    public static final int MAX_BINS = 1 << 24;
+
+    /**
+     * Inputs smaller than this are binned on the calling thread.
+     */
+    protected static final int MIN_VALUES_PER_CHUNK = 1 << 16;
+
+    /**
+     * Upper bound on the total size of the per-chunk count arrays used during parallel binning.
+     */
+    protected static final int MAX_SCRATCH_BINS = 1 << 24;
+
+    protected final double binSize;
+    protected final double binStart;
+
+    protected long firstIndex;
+    protected int[] counts;
+    protected long total;
+
+    public HistogramBins( double binSize, double binStart )
+    {
+        if ( !( binSize > 0 ) || Double.isInfinite( binSize ) )
+        {
+            throw new IllegalArgumentException( "binSize must be positive and finite: " + binSize );
+        }
+
+        this.binSize = binSize;
+        this.binStart = binStart;
+        this.firstIndex = 0;
+        this.counts = new int[0];
+        this.total = 0;
+    }
+
+    public double getBinSize( )
+    {
+        return this.binSize;
+    }
+
+    public double getBinStart( )
+    {
+        return this.binStart;
+    }
+
+    /**
+     * @return the total number of values counted (non-finite values are not counted)
+     */
+    public long getTotal( )
+    {
+        return this.total;
+    }
+
+    /**
+     * @return the number of bins between the lowest and highest occupied bin, inclusive
+     */
+    public int getNumBins( )
+    {
+        return this.counts.length;
+    }
+
+    /**
+     * @return the absolute index of the lowest occupied bin
+     */
+    public long getFirstIndex( )
+    {
+        return this.firstIndex;
+    }
+
+    /**
+     * @param i a bin position, from 0 to {@link #getNumBins()} (exclusive)
+     */
+    public int getCount( int i )
+    {
+        return this.counts[i];
+    }
+
+    /**
+     * @param i a bin position, from 0 to {@link #getNumBins()} (exclusive)
+     * @return the left edge of the bin, computed the same way as by {@code HistogramPainter.getBin}
+     */
+    public float getBinLeft( int i )
+    {
+        return ( float ) ( ( this.firstIndex + i ) * this.binSize + this.binStart );
+    }
+
+    public int getNumNonEmptyBins( )
+    {
+        int n = 0;
+        for ( int c : this.counts )
+        {
+            if ( c != 0 ) n++;
+        }
+        return n;
+    }
+
+    public void clear( )
+    {
+        this.firstIndex = 0;
+        this.counts = new int[0];
+        this.total = 0;
+    }
+
+    /**
+     * Counts the first {@code size} values of {@code data}, in parallel if there are enough of them.
+     *
+     * @return false, without counting anything, if the counts would then span more than {@link #MAX_BINS} bins
+     */
+    public boolean add( float[] data, int size )
+    {
+        long[] range = indexRange( data, size );
+        if ( range == null ) return true;
+        if ( !ensureRange( range[0], range[1] ) ) return false;
+
+        long lo = range[0];
+        int span = ( int ) ( range[1] - lo + 1 );
+        int numChunks = numChunks( size, span );
+
+        if ( numChunks == 1 )
+        {
+            this.total += countChunk( data, 0, size, lo, this.counts, ( int ) ( lo - this.firstIndex ) );
+        }
+        else
+        {
+            long[] chunkTotals = new long[numChunks];
+            int[][] partials = IntStream.range( 0, numChunks ).parallel( ).mapToObj( c ->
+            {
+                int[] partial = new int[span];
+                chunkTotals[c] = countChunk( data, chunkStart( c, numChunks, size ), chunkStart( c + 1, numChunks, size ), lo, partial, 0 );
+                return partial;
+            } ).toArray( int[][]::new );
+
+            merge( partials, ( int ) ( lo - this.firstIndex ) );
+            for ( long t : chunkTotals ) this.total += t;
+        }
+
+        return true;
+    }
+
+    /**
+     * Counts the first {@code size} values of {@code data}, in parallel if there are enough of them.
+     *
+     * @return false, without counting anything, if the counts would then span more than {@link #MAX_BINS} bins
+     */
+    public boolean add( double[] data, int size )
+    {
+        long[] range = indexRange( data, size );
+        if ( range == null ) return true;
+        if ( !ensureRange( range[0], range[1] ) ) return false;
+
+        long lo = range[0];
+        int span = ( int ) ( range[1] - lo + 1 );
+        int numChunks = numChunks( size, span );
+
+        if ( numChunks == 1 )
+        {
+            this.total += countChunk( data, 0, size, lo, this.counts, ( int ) ( lo - this.firstIndex ) );
+        }
+        else
+        {
+            long[] chunkTotals = new long[numChunks];
+            int[][] partials = IntStream.range( 0, numChunks ).parallel( ).mapToObj( c ->
+            {
+                int[] partial = new int[span];
+                chunkTotals[c] = countChunk( data, chunkStart( c, numChunks, size ), chunkStart( c + 1, numChunks, size ), lo, partial, 0 );
+                return partial;
+            } ).toArray( int[][]::new );
+
+            merge( partials, ( int ) ( lo - this.firstIndex ) );
+            for ( long t : chunkTotals ) this.total += t;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds the counts from another histogram on the same bin grid.
+     *
+     * @return false, without counting anything, if the counts would then span more than {@link #MAX_BINS} bins
+     */
+    public boolean addAll( HistogramBins other )
+    {
+        if ( other.binSize != this.binSize || other.binStart != this.binStart )
+        {
+            throw new IllegalArgumentException( "Histograms have different bins" );
+        }
+
+        if ( other.counts.length == 0 ) return true;
+        if ( !ensureRange( other.firstIndex, other.firstIndex + other.counts.length - 1 ) ) return false;
+
+        merge( new int[][] { other.counts }, ( int ) ( other.firstIndex - this.firstIndex ) );
+        this.total += other.total;
+        return true;
+    }
+
+    /**
+     * Merges each group of {@code factor} adjacent bins into one. Group boundaries are
+     * aligned to {@code binStart}, so a given coarse bin always covers the same values
+     * regardless of which fine bins happen to be occupied.
+     */
+    public HistogramBins coarsen( int factor )
+    {
+        if ( factor < 1 ) throw new IllegalArgumentException( "factor must be positive: " + factor );
+
+        HistogramBins coarse = new HistogramBins( this.binSize * factor, this.binStart );
+        coarse.total = this.total;
+
+        if ( this.counts.length == 0 ) return coarse;
+        if ( factor == 1 )
+        {
+            coarse.firstIndex = this.firstIndex;
+            coarse.counts = this.counts.clone( );
+            return coarse;
+        }
+
+        long coarseFirst = floorDiv( this.firstIndex, factor );
+        long coarseLast = floorDiv( this.firstIndex + this.counts.length - 1, factor );
+
+        int[] coarseCounts = new int[( int ) ( coarseLast - coarseFirst + 1 )];
+        for ( int i = 0; i < this.counts.length; i++ )
+        {
+            coarseCounts[( int ) ( floorDiv( this.firstIndex + i, factor ) - coarseFirst )] += this.counts[i];
+        }
+
+        coarse.firstIndex = coarseFirst;
+        coarse.counts = coarseCounts;
+        return coarse;
+    }
+
+    /**
+     * @return a map from left bin edge to count, containing only the non-empty bins
+     */
+    public Float2IntMap toMap( )
+    {
+        Float2IntMap map = new Float2IntOpenHashMap( getNumNonEmptyBins( ) );
+        for ( int i = 0; i < this.counts.length; i++ )
+        {
+            if ( this.counts[i] != 0 )
+            {
+                map.put( getBinLeft( i ), this.counts[i] );
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Grows the count array, if necessary, to cover absolute bin indices {@code lo} through {@code hi}.
+     */
+    protected boolean ensureRange( long lo, long hi )
+    {
+        if ( this.counts.length == 0 )
+        {
+            if ( hi - lo + 1 > MAX_BINS ) return false;
+
+            this.firstIndex = lo;
+            this.counts = new int[( int ) ( hi - lo + 1 )];
+            return true;
+        }
+
+        long newFirst = min( lo, this.firstIndex );
+        long newLast = max( hi, this.firstIndex + this.counts.length - 1 );
+        if ( newLast - newFirst + 1 > MAX_BINS ) return false;
+
+        if ( newFirst != this.firstIndex || newLast - newFirst + 1 != this.counts.length )
+        {
+            int[] newCounts = new int[( int ) ( newLast - newFirst + 1 )];
+            System.arraycopy( this.counts, 0, newCounts, ( int ) ( this.firstIndex - newFirst ), this.counts.length );
+            this.firstIndex = newFirst;
+            this.counts = newCounts;
+        }
+
+        return true;
+    }
+
+    protected void merge( int[][] partials, int offset )
+    {
+        int[] counts = this.counts;
+        for ( int[] partial : partials )
+        {
+            for ( int i = 0; i < partial.length; i++ )
+            {
+                counts[offset + i] += partial[i];
+            }
+        }
+    }
+
+    protected long[] indexRange( float[] data, int size )
+    {
+        int numChunks = numChunks( size, 1 );
+        long[][] ranges = IntStream.range( 0, numChunks ).parallel( ).mapToObj( c ->
+        {
+            long lo = Long.MAX_VALUE;
+            long hi = Long.MIN_VALUE;
+            for ( int i = chunkStart( c, numChunks, size ), end = chunkStart( c + 1, numChunks, size ); i < end; i++ )
+            {
+                double bin = Math.floor( ( data[i] - this.binStart ) / this.binSize );
+                if ( Double.isNaN( bin ) || Double.isInfinite( bin ) ) continue;
+
+                long index = ( long ) bin;
+                if ( index < lo ) lo = index;
+                if ( index > hi ) hi = index;
+            }
+            return new long[] { lo, hi };
+        } ).toArray( long[][]::new );
+
+        return reduceRanges( ranges );
+    }
+
+    protected long[] indexRange( double[] data, int size )
+    {
+        int numChunks = numChunks( size, 1 );
+        long[][] ranges = IntStream.range( 0, numChunks ).parallel( ).mapToObj( c ->
+        {
+            long lo = Long.MAX_VALUE;
+            long hi = Long.MIN_VALUE;
+            for ( int i = chunkStart( c, numChunks, size ), end = chunkStart( c + 1, numChunks, size ); i < end; i++ )
+            {
+                double bin = Math.floor( ( data[i] - this.binStart ) / this.binSize );
+                if ( Double.isNaN( bin ) || Double.isInfinite( bin ) ) continue;
+
+                long index = ( long ) bin;
+                if ( index < lo ) lo = index;
+                if ( index > hi ) hi = index;
+            }
+            return new long[] { lo, hi };
+        } ).toArray( long[][]::new );
+
+        return reduceRanges( ranges );
+    }
+
+    protected long countChunk( float[] data, int start, int end, long lo, int[] dest, int offset )
+    {
+        long n = 0;
+        for ( int i = start; i < end; i++ )
+        {
+            double bin = Math.floor( ( data[i] - this.binStart ) / this.binSize );
+            if ( Double.isNaN( bin ) || Double.isInfinite( bin ) ) continue;
+
+            dest[offset + ( int ) ( ( long ) bin - lo )]++;
+            n++;
+        }
+        return n;
+    }
+
+    protected long countChunk( double[] data, int start, int end, long lo, int[] dest, int offset )
+    {
+        long n = 0;
+        for ( int i = start; i < end; i++ )
+        {
+            double bin = Math.floor( ( data[i] - this.binStart ) / this.binSize );
+            if ( Double.isNaN( bin ) || Double.isInfinite( bin ) ) continue;
+
+            dest[offset + ( int ) ( ( long ) bin - lo )]++;
+            n++;
+        }
+        return n;
+    }
+
+    protected static long[] reduceRanges( long[][] ranges )
+    {
+        long lo = Long.MAX_VALUE;
+        long hi = Long.MIN_VALUE;
+        for ( long[] range : ranges )
+        {
+            lo = min( lo, range[0] );
+            hi = max( hi, range[1] );
+        }
+        return lo > hi ? null : new long[] { lo, hi };
+    }
+
+    protected static int numChunks( int numValues, int binsPerChunk )
+    {
+        int byValues = numValues / MIN_VALUES_PER_CHUNK;
+        int byScratch = MAX_SCRATCH_BINS / binsPerChunk;
+        int byThreads = Runtime.getRuntime( ).availableProcessors( );
+        return max( 1, min( byThreads, min( byValues, byScratch ) ) );
+    }
+
+    protected static int chunkStart( int chunk, int numChunks, int numValues )
+    {
+        return ( int ) ( ( long ) chunk * numValues / numChunks );
+    }
+}
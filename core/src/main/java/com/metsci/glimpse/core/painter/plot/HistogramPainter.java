@@ -50,6 +50,13 @@ import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
  * Construct with asDensity = true to scale as a density
  * estimate instead of as a frequency histogram.
  *
+ * Values are binned in parallel into a dense {@link HistogramBins}, which is
+ * retained so that more values can be {@link #add(float[]) added} later without
+ * rebinning the earlier ones. With {@link #setAdaptiveBinning(boolean)} enabled,
+ * the retained bins are finer than the displayed bars, and adjacent bins are
+ * merged at paint time so that bars stay at least {@link #setMinBarWidth(float)}
+ * pixels wide at the current zoom level of the x axis.
+ *
  * @author ulman
  */
 public class HistogramPainter extends GlimpsePainterBase
@@ -78,6 +85,20 @@ public class HistogramPainter extends GlimpsePainterBase
 
     protected final boolean asDensity;
 
+    /**
+     * Counts at the finest bin size, or null if the data was supplied as pre-binned counts.
+     */
+    protected HistogramBins baseBins = null;
+
+    /**
+     * Number of base bins merged into each displayed bar.
+     */
+    protected int binFactor = 1;
+
+    protected volatile boolean adaptiveBinning = false;
+    protected volatile float minBarWidth_PX = 4;
+    protected volatile int baseBinRefinement = 32;
+
     protected FlatColorProgram fillProg;
 
     public HistogramPainter( boolean asDensity )
@@ -106,6 +127,65 @@ public class HistogramPainter extends GlimpsePainterBase
         this.barColor[3] = a;
     }
 
+    /**
+     * When enabled, automatically chosen bin sizes are divided by {@link #setBaseBinRefinement(int)},
+     * and at paint time adjacent bins are merged (in power-of-two groups) until each bar is at least
+     * {@link #setMinBarWidth(float)} pixels wide. Bin sizes passed explicitly to {@code setData}
+     * are used as the finest bin size.
+     *
+     * Takes effect for data set after this call.
+     */
+    public void setAdaptiveBinning( boolean adaptiveBinning )
+    {
+        this.adaptiveBinning = adaptiveBinning;
+
+        if ( !adaptiveBinning )
+        {
+            this.dataBufferLock.lock( );
+            try
+            {
+                if ( this.binFactor != 1 && this.baseBins != null )
+                {
+                    this.binFactor = 1;
+                    updateBars( );
+                }
+            }
+            finally
+            {
+                this.dataBufferLock.unlock( );
+            }
+        }
+    }
+
+    public boolean isAdaptiveBinning( )
+    {
+        return this.adaptiveBinning;
+    }
+
+    public void setMinBarWidth( float minBarWidth_PX )
+    {
+        this.minBarWidth_PX = minBarWidth_PX;
+    }
+
+    public float getMinBarWidth( )
+    {
+        return this.minBarWidth_PX;
+    }
+
+    /**
+     * Sets how many times finer than the automatically chosen bin size the retained bins
+     * are, when adaptive binning is enabled.
+     */
+    public void setBaseBinRefinement( int baseBinRefinement )
+    {
+        this.baseBinRefinement = Math.max( 1, baseBinRefinement );
+    }
+
+    public int getBaseBinRefinement( )
+    {
+        return this.baseBinRefinement;
+    }
+
     public void autoAdjustAxisBounds( Axis2D axis )
     {
         axis.getAxisX( ).setMin( minX );
@@ -134,7 +214,7 @@ public class HistogramPainter extends GlimpsePainterBase
             if ( value < min ) min = value;
         }
 
-        double binSize = ( max - min ) / Math.sqrt( size );
+        double binSize = autoBinSize( max - min, size );
 
         setData( data, size, binSize, min );
     }
@@ -159,7 +239,7 @@ public class HistogramPainter extends GlimpsePainterBase
             if ( value < min ) min = value;
         }
 
-        float binSize = ( max - min ) / ( float ) Math.sqrt( size );
+        float binSize = ( float ) autoBinSize( max - min, size );
 
         setData( data, size, binSize, min );
     }
@@ -173,25 +253,23 @@ public class HistogramPainter extends GlimpsePainterBase
     {
         this.binStart = ( float ) binStart;
 
-        Float2IntMap counts = new Float2IntOpenHashMap( );
-
-        for ( int i = 0; i < size; i++ )
+        HistogramBins bins = new HistogramBins( binSize, binStart );
+        if ( bins.add( data, size ) )
         {
-            double value = data[i];
-
-            float bin = getBin( value, binSize, binStart );
+            setBaseBins( bins );
+        }
+        else
+        {
+            // values are too spread out for dense bins
+            Float2IntOpenHashMap counts = new Float2IntOpenHashMap( );
 
-            if ( !counts.containsKey( bin ) )
+            for ( int i = 0; i < size; i++ )
             {
-                counts.put( bin, 1 );
+                counts.addTo( getBin( data[i], binSize, binStart ), 1 );
             }
-            else
-            {
-                counts.put( bin, counts.get( bin ) + 1 );
-            }
-        }
 
-        setData( counts, size, ( float ) binSize );
+            setData( counts, size, ( float ) binSize );
+        }
     }
 
     /**
@@ -222,46 +300,91 @@ public class HistogramPainter extends GlimpsePainterBase
         dataBufferLock.lock( );
         try
         {
-            newData = true;
-
-            this.binSize = binSize;
-
-            minY = 0;
-            maxY = 0;
+            this.baseBins = null;
+            this.binFactor = 1;
 
-            minX = Float.POSITIVE_INFINITY;
-            maxX = Float.NEGATIVE_INFINITY;
+            beginBars( counts.size( ), binSize );
 
-            dataSize = counts.size( );
+            final float denom = ( asDensity ) ? ( binSize * totalCount ) : totalCount;
 
-            if ( dataBuffer == null || dataBuffer.rewind( ).capacity( ) < dataSize * FLOATS_PER_BAR )
+            for ( Float2IntMap.Entry entry : counts.float2IntEntrySet( ) )
             {
-                dataBuffer = Buffers.newDirectFloatBuffer( dataSize * FLOATS_PER_BAR );
+                putBar( entry.getFloatKey( ), entry.getIntValue( ) / denom );
             }
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
+    }
 
-            final float denom = ( asDensity ) ? ( binSize * totalCount ) : totalCount;
+    public void setData( double[] data, float binSize, float binStart )
+    {
+        setData( data, data.length, binSize, binStart );
+    }
 
-            for ( Float2IntMap.Entry entry : counts.float2IntEntrySet( ) )
+    public void setData( float[] data, int size, float binSize, float binStart )
+    {
+        this.binStart = binStart;
+
+        HistogramBins bins = new HistogramBins( binSize, binStart );
+        if ( bins.add( data, size ) )
+        {
+            setBaseBins( bins );
+        }
+        else
+        {
+            // values are too spread out for dense bins
+            Float2IntOpenHashMap counts = new Float2IntOpenHashMap( );
+
+            for ( int i = 0; i < size; i++ )
             {
-                float bin = entry.getFloatKey( );
-                int count = entry.getIntValue( );
+                counts.addTo( getBin( data[i], binSize, binStart ), 1 );
+            }
 
-                float freq = count / denom;
+            setData( counts, size, binSize );
+        }
+    }
 
-                if ( freq > maxY ) maxY = freq;
+    /**
+     * Adds values to the histogram, keeping the current bins. If the current data
+     * was supplied as pre-binned counts, or there is no current data, this is
+     * equivalent to {@link #setData(float[])}.
+     *
+     * @throws IllegalArgumentException if the bins would span more than {@link HistogramBins#MAX_BINS}
+     */
+    public void add( float[] data )
+    {
+        add( data, data.length );
+    }
 
-                if ( bin < minX ) minX = bin;
+    public void add( float[] data, int size )
+    {
+        HistogramBins base = this.baseBins;
+        if ( base == null )
+        {
+            setData( data, size );
+            return;
+        }
 
-                if ( bin > maxX ) maxX = bin;
+        // bin outside the lock, so painting is not held up
+        HistogramBins added = new HistogramBins( base.getBinSize( ), base.getBinStart( ) );
+        boolean fits = added.add( data, size );
 
-                dataBuffer.put( bin ).put( 0 );
-                dataBuffer.put( bin ).put( freq );
-                dataBuffer.put( bin + this.binSize ).put( freq );
+        dataBufferLock.lock( );
+        try
+        {
+            if ( base != this.baseBins )
+            {
+                throw new IllegalStateException( "Histogram data was replaced during add" );
+            }
 
-                dataBuffer.put( bin + this.binSize ).put( freq );
-                dataBuffer.put( bin + this.binSize ).put( 0 );
-                dataBuffer.put( bin ).put( 0 );
+            if ( !fits || !base.addAll( added ) )
+            {
+                throw new IllegalArgumentException( "Values span more than " + HistogramBins.MAX_BINS + " bins" );
             }
+
+            updateBars( );
         }
         finally
         {
@@ -269,34 +392,46 @@ public class HistogramPainter extends GlimpsePainterBase
         }
     }
 
-    public void setData( double[] data, float binSize, float binStart )
+    /**
+     * @see #add(float[])
+     */
+    public void add( double[] data )
     {
-        setData( data, data.length, binSize, binStart );
+        add( data, data.length );
     }
 
-    public void setData( float[] data, int size, float binSize, float binStart )
+    public void add( double[] data, int size )
     {
-        this.binStart = binStart;
-
-        Float2IntMap counts = new Float2IntOpenHashMap( );
-
-        for ( int i = 0; i < size; i++ )
+        HistogramBins base = this.baseBins;
+        if ( base == null )
         {
-            float value = data[i];
+            setData( data, size );
+            return;
+        }
 
-            float bin = getBin( value, binSize, binStart );
+        // bin outside the lock, so painting is not held up
+        HistogramBins added = new HistogramBins( base.getBinSize( ), base.getBinStart( ) );
+        boolean fits = added.add( data, size );
 
-            if ( !counts.containsKey( bin ) )
+        dataBufferLock.lock( );
+        try
+        {
+            if ( base != this.baseBins )
             {
-                counts.put( bin, 1 );
+                throw new IllegalStateException( "Histogram data was replaced during add" );
             }
-            else
+
+            if ( !fits || !base.addAll( added ) )
             {
-                counts.put( bin, counts.get( bin ) + 1 );
+                throw new IllegalArgumentException( "Values span more than " + HistogramBins.MAX_BINS + " bins" );
             }
-        }
 
-        setData( counts, size, binSize );
+            updateBars( );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
     }
 
     public float getBinSize( )
@@ -334,6 +469,104 @@ public class HistogramPainter extends GlimpsePainterBase
         return ( float ) ( Math.floor( ( data - binStart ) / binSize ) * binSize + binStart );
     }
 
+    protected double autoBinSize( double range, int size )
+    {
+        double binSize = range / Math.sqrt( size );
+        if ( !( binSize > 0 ) ) binSize = 1;
+
+        return this.adaptiveBinning ? binSize / this.baseBinRefinement : binSize;
+    }
+
+    protected void setBaseBins( HistogramBins bins )
+    {
+        dataBufferLock.lock( );
+        try
+        {
+            this.baseBins = bins;
+            updateBars( );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
+    }
+
+    /**
+     * Rebuilds the bars from {@link #baseBins} at the current {@link #binFactor}. Must be called
+     * while holding {@link #dataBufferLock}.
+     */
+    protected void updateBars( )
+    {
+        HistogramBins bins = ( this.binFactor == 1 ) ? this.baseBins : this.baseBins.coarsen( this.binFactor );
+        float binSize = ( float ) bins.getBinSize( );
+
+        beginBars( bins.getNumNonEmptyBins( ), binSize );
+
+        final float denom = ( asDensity ) ? ( binSize * bins.getTotal( ) ) : bins.getTotal( );
+
+        for ( int i = 0; i < bins.getNumBins( ); i++ )
+        {
+            int count = bins.getCount( i );
+            if ( count != 0 )
+            {
+                putBar( bins.getBinLeft( i ), count / denom );
+            }
+        }
+    }
+
+    /**
+     * Smallest power of two such that merging that many base bins gives bars at least
+     * {@link #minBarWidth_PX} wide.
+     */
+    protected int chooseBinFactor( double pixelsPerValue )
+    {
+        double baseWidth_PX = this.baseBins.getBinSize( ) * pixelsPerValue;
+
+        int factor = 1;
+        while ( factor < ( 1 << 24 ) && baseWidth_PX * factor < this.minBarWidth_PX )
+        {
+            factor <<= 1;
+        }
+        return factor;
+    }
+
+    protected void beginBars( int numBars, float binSize )
+    {
+        newData = true;
+
+        this.binSize = binSize;
+
+        minY = 0;
+        maxY = 0;
+
+        minX = Float.POSITIVE_INFINITY;
+        maxX = Float.NEGATIVE_INFINITY;
+
+        dataSize = numBars;
+
+        if ( dataBuffer == null || dataBuffer.rewind( ).capacity( ) < dataSize * FLOATS_PER_BAR )
+        {
+            dataBuffer = Buffers.newDirectFloatBuffer( dataSize * FLOATS_PER_BAR );
+        }
+    }
+
+    protected void putBar( float bin, float freq )
+    {
+        if ( freq > maxY ) maxY = freq;
+
+        if ( bin < minX ) minX = bin;
+
+        if ( bin > maxX ) maxX = bin;
+
+        dataBuffer.put( bin ).put( 0 );
+        dataBuffer.put( bin ).put( freq );
+        dataBuffer.put( bin + this.binSize ).put( freq );
+
+        dataBuffer.put( bin + this.binSize ).put( freq );
+        dataBuffer.put( bin + this.binSize ).put( 0 );
+        dataBuffer.put( bin ).put( 0 );
+    }
+
     @Override
     public void doDispose( GlimpseContext context )
     {
@@ -351,6 +584,27 @@ public class HistogramPainter extends GlimpsePainterBase
         Axis2D axis = requireAxis2D( context );
         GL3 gl = context.getGL( ).getGL3( );
 
+        if ( this.adaptiveBinning && this.baseBins != null )
+        {
+            this.dataBufferLock.lock( );
+            try
+            {
+                if ( this.baseBins != null )
+                {
+                    int factor = chooseBinFactor( axis.getAxisX( ).getPixelsPerValue( ) );
+                    if ( factor != this.binFactor )
+                    {
+                        this.binFactor = factor;
+                        updateBars( );
+                    }
+                }
+            }
+            finally
+            {
+                this.dataBufferLock.unlock( );
+            }
+        }
+
         if ( this.dataSize == 0 ) return;
 
         if ( !this.bufferInitialized )
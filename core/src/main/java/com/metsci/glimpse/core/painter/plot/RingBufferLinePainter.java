@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.plot;
+
+import static com.jogamp.common.nio.Buffers.SIZEOF_FLOAT;
+import static com.jogamp.opengl.GL.GL_ARRAY_BUFFER;
+import static com.jogamp.opengl.GL.GL_DYNAMIC_DRAW;
+import static com.jogamp.opengl.GL.GL_FLOAT;
+import static com.jogamp.opengl.GL.GL_LINE_STRIP;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.opengl.GL3;
+import com.metsci.glimpse.core.axis.Axis2D;
+import com.metsci.glimpse.core.context.GlimpseContext;
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
+import com.metsci.glimpse.core.gl.util.GLUtils;
+import com.metsci.glimpse.core.painter.base.GlimpsePainterBase;
+import com.metsci.glimpse.core.support.shader.triangle.FlatColorProgram;
+import com.metsci.glimpse.util.primitives.IntsArray;
+
+/**
+ * Plots many live x-y series, each held in a fixed-capacity ring ({@link RingBufferSeries}).
+ * <p>
+ * All series share one vertex buffer, so each frame uploads only the samples appended since
+ * the previous frame (nearby dirty ranges are coalesced into a single upload). Each series is
+ * drawn as at most two line strips, and consecutive series which share the same color array
+ * are drawn with a single {@code glMultiDrawArrays} call -- so thousands of channels can be
+ * updated and drawn at interactive rates.
+ * <p>
+ * Lines are drawn with {@code GL_LINE_STRIP}, i.e. one pixel wide. For thick or stippled lines
+ * on a small number of series, see {@link XYLinePainter}.
+ */
+public class RingBufferLinePainter extends GlimpsePainterBase
+{
+    protected final GLEditableBuffer xyBuffer;
+    protected final List<RingBufferSeries> series;
+
+    // regions of removed series, as (firstVertex, numVertices) pairs, available for reuse
+    protected final IntsArray freeRegions;
+
+    protected final FlatColorProgram prog;
+
+    // scratch space for glMultiDrawArrays
+    protected final IntsArray drawFirsts;
+    protected final IntsArray drawCounts;
+    protected final int[] ranges;
+
+    public RingBufferLinePainter( )
+    {
+        this.xyBuffer = new GLEditableBuffer( GL_DYNAMIC_DRAW, 0 );
+        this.series = new ArrayList<>( );
+        this.freeRegions = new IntsArray( );
+        this.prog = new FlatColorProgram( );
+        this.drawFirsts = new IntsArray( );
+        this.drawCounts = new IntsArray( );
+        this.ranges = new int[4];
+    }
+
+    /**
+     * Adds a series which holds at most {@code capacity} samples. Series which will always be
+     * drawn in the same color should share one {@code rgba} array, so they can be drawn together.
+     */
+    public RingBufferSeries addSeries( int capacity, float[] rgba )
+    {
+        if ( capacity < 1 ) throw new IllegalArgumentException( "Capacity must be positive: " + capacity );
+
+        this.painterLock.lock( );
+        try
+        {
+            // the extra vertex mirrors ring slot 0
+            int numVertices = capacity + 1;
+            int firstVertex = this.allocateRegion( numVertices );
+
+            RingBufferSeries s = new RingBufferSeries( this.painterLock, this.xyBuffer, firstVertex, capacity, rgba );
+            this.series.add( s );
+            return s;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    public void removeSeries( RingBufferSeries s )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            if ( !s.removed && this.series.remove( s ) )
+            {
+                s.removed = true;
+                this.freeRegions.append( s.firstVertex );
+                this.freeRegions.append( s.capacity + 1 );
+            }
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    public void removeAllSeries( )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            for ( RingBufferSeries s : this.series )
+            {
+                s.removed = true;
+            }
+            this.series.clear( );
+            this.freeRegions.clear( );
+            this.xyBuffer.clear( );
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    protected int allocateRegion( int numVertices )
+    {
+        // first fit among the regions of removed series
+        for ( int i = 0; i < this.freeRegions.n; i += 2 )
+        {
+            int first = this.freeRegions.a[i];
+            int count = this.freeRegions.a[i + 1];
+            if ( count >= numVertices )
+            {
+                if ( count == numVertices )
+                {
+                    this.freeRegions.removeRange( i, i + 2 );
+                }
+                else
+                {
+                    this.freeRegions.a[i] = first + numVertices;
+                    this.freeRegions.a[i + 1] = count - numVertices;
+                }
+                return first;
+            }
+        }
+
+        int first = this.xyBuffer.sizeFloats( ) / 2;
+        this.xyBuffer.growFloats( 2 * numVertices );
+        return first;
+    }
+
+    @Override
+    protected void doPaintTo( GlimpseContext context )
+    {
+        if ( this.series.isEmpty( ) ) return;
+
+        GL3 gl = context.getGL( ).getGL3( );
+        Axis2D axis = requireAxis2D( context );
+
+        // uploads only the ranges touched since the last frame
+        int vbo = this.xyBuffer.deviceBuffer( gl );
+
+        GLUtils.enableStandardBlending( gl );
+        this.prog.begin( gl );
+        try
+        {
+            this.prog.setAxisOrtho( gl, axis );
+
+            gl.glBindBuffer( GL_ARRAY_BUFFER, vbo );
+            gl.glVertexAttribPointer( this.prog.handles( gl ).inXy, 2, GL_FLOAT, false, 2 * SIZEOF_FLOAT, 0 );
+
+            float[] batchColor = null;
+            for ( RingBufferSeries s : this.series )
+            {
+                if ( !s.visible ) continue;
+
+                float[] rgba = s.rgba;
+                if ( rgba != batchColor )
+                {
+                    this.flush( gl, batchColor );
+                    batchColor = rgba;
+                }
+
+                int numRanges = s.drawRanges( this.ranges );
+                for ( int r = 0; r < numRanges; r++ )
+                {
+                    this.drawFirsts.append( this.ranges[2 * r] );
+                    this.drawCounts.append( this.ranges[2 * r + 1] );
+                }
+            }
+            this.flush( gl, batchColor );
+        }
+        finally
+        {
+            this.prog.end( gl );
+            GLUtils.disableBlending( gl );
+        }
+    }
+
+    protected void flush( GL3 gl, float[] rgba )
+    {
+        int n = this.drawFirsts.n;
+        if ( n > 0 )
+        {
+            this.prog.setColor( gl, rgba );
+            gl.glMultiDrawArrays( GL_LINE_STRIP, this.drawFirsts.a, 0, this.drawCounts.a, 0, n );
+        }
+
+        this.drawFirsts.clear( );
+        this.drawCounts.clear( );
+    }
+
+    @Override
+    protected void doDispose( GlimpseContext context )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+        this.xyBuffer.dispose( gl );
+        this.prog.dispose( gl );
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.plot;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
+
+/**
+ * A fixed-capacity, append-only x-y series, stored as a ring in a region of a shared
+ * {@link GLEditableBuffer}. Once the ring is full, each new sample replaces the oldest one.
+ * Appending only marks the new samples dirty, so only they are uploaded on the next frame.
+ * <p>
+ * The region holds {@code capacity + 1} vertices: the extra vertex mirrors ring slot 0, so the
+ * wrapped ring can be drawn as two line strips that join seamlessly (see {@link #drawRanges(int[])}).
+ * <p>
+ * Instances are created by {@link RingBufferLinePainter#addSeries(int, float[])}, and are guarded
+ * by that painter's lock.
+ */
+public class RingBufferSeries
+{
+    protected final ReentrantLock lock;
+    protected final GLEditableBuffer xyBuffer;
+
+    protected final int capacity;
+    protected final int firstVertex;
+
+    // ring index of the next sample to be written
+    protected int head;
+    protected int size;
+
+    protected volatile float[] rgba;
+    protected volatile boolean visible;
+    protected boolean removed;
+
+    RingBufferSeries( ReentrantLock lock, GLEditableBuffer xyBuffer, int firstVertex, int capacity, float[] rgba )
+    {
+        this.lock = lock;
+        this.xyBuffer = xyBuffer;
+        this.firstVertex = firstVertex;
+        this.capacity = capacity;
+        this.rgba = rgba;
+        this.visible = true;
+        this.removed = false;
+        this.head = 0;
+        this.size = 0;
+    }
+
+    public void append( float x, float y )
+    {
+        this.lock.lock( );
+        try
+        {
+            this.checkNotRemoved( );
+            this.put( this.head, x, y );
+            this.advance( 1 );
+        }
+        finally
+        {
+            this.lock.unlock( );
+        }
+    }
+
+    public void append( float[] xs, float[] ys, int count )
+    {
+        this.append( xs, ys, 0, count );
+    }
+
+    public void append( float[] xs, float[] ys, int offset, int count )
+    {
+        this.lock.lock( );
+        try
+        {
+            this.checkNotRemoved( );
+
+            // only the newest capacity samples can survive
+            int skip = Math.max( 0, count - this.capacity );
+            if ( skip > 0 )
+            {
+                this.advance( skip );
+                offset += skip;
+                count -= skip;
+            }
+
+            while ( count > 0 )
+            {
+                // write the contiguous run up to the end of the ring with a single edit
+                int run = Math.min( count, this.capacity - this.head );
+                FloatBuffer edit = this.xyBuffer.editFloats( 2 * ( this.firstVertex + this.head ), 2 * run );
+                for ( int i = 0; i < run; i++ )
+                {
+                    edit.put( xs[offset + i] ).put( ys[offset + i] );
+                }
+
+                if ( this.head == 0 )
+                {
+                    this.putMirror( xs[offset], ys[offset] );
+                }
+
+                this.advance( run );
+                offset += run;
+                count -= run;
+            }
+        }
+        finally
+        {
+            this.lock.unlock( );
+        }
+    }
+
+    public void clear( )
+    {
+        this.lock.lock( );
+        try
+        {
+            this.head = 0;
+            this.size = 0;
+        }
+        finally
+        {
+            this.lock.unlock( );
+        }
+    }
+
+    protected void put( int ringIndex, float x, float y )
+    {
+        this.xyBuffer.editFloats( 2 * ( this.firstVertex + ringIndex ), 2 ).put( x ).put( y );
+        if ( ringIndex == 0 )
+        {
+            this.putMirror( x, y );
+        }
+    }
+
+    protected void putMirror( float x, float y )
+    {
+        this.xyBuffer.editFloats( 2 * ( this.firstVertex + this.capacity ), 2 ).put( x ).put( y );
+    }
+
+    protected void advance( int count )
+    {
+        this.head = ( this.head + count ) % this.capacity;
+        this.size = Math.min( this.capacity, this.size + count );
+    }
+
+    protected void checkNotRemoved( )
+    {
+        if ( this.removed ) throw new IllegalStateException( "Series has been removed from its painter" );
+    }
+
+    /**
+     * Writes the vertex ranges to draw as line strips, oldest first, into {@code result} as
+     * (first, count) pairs -- first indices are absolute vertex indices in the shared buffer.
+     *
+     * @return the number of ranges (0, 1, or 2)
+     */
+    public int drawRanges( int[] result )
+    {
+        if ( this.size < 2 )
+        {
+            return 0;
+        }
+        else if ( this.size < this.capacity || this.head == 0 )
+        {
+            // not yet wrapped, or wrapped exactly to the end of the ring
+            int first = ( this.size < this.capacity ? 0 : this.head );
+            result[0] = this.firstVertex + first;
+            result[1] = this.size;
+            return 1;
+        }
+        else
+        {
+            // oldest part runs to the end of the ring, plus the mirror of slot 0 to join the newest part
+            result[0] = this.firstVertex + this.head;
+            result[1] = this.capacity + 1 - this.head;
+            result[2] = this.firstVertex;
+            result[3] = this.head;
+            return ( this.head >= 2 ? 2 : 1 );
+        }
+    }
+
+    public int capacity( )
+    {
+        return this.capacity;
+    }
+
+    public int size( )
+    {
+        return this.size;
+    }
+
+    public float[] getColor( )
+    {
+        return this.rgba;
+    }
+
+    public void setColor( float[] rgba )
+    {
+        this.rgba = rgba;
+    }
+
+    public boolean isVisible( )
+    {
+        return this.visible;
+    }
+
+    public void setVisible( boolean visible )
+    {
+        this.visible = visible;
+    }
+}
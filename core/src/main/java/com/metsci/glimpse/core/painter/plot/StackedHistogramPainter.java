@@ -31,6 +31,7 @@ import static java.lang.Math.min;
 
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
@@ -57,6 +58,12 @@ import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
  * Construct with asDensity = true to scale as a density estimate instead
  * of as a frequency histogram.
  *
+ * As in {@link HistogramPainter}, values are binned in parallel into dense
+ * {@link HistogramBins} (one per series, all on the same bin grid), which are
+ * retained so that more values can be {@link #add(int, float[]) added} to a
+ * series later, and so that with {@link #setAdaptiveBinning(boolean)} enabled
+ * the displayed bin width can follow the zoom level of the x axis.
+ *
  * @author borkholder
  */
 public class StackedHistogramPainter extends GlimpsePainterBase
@@ -82,6 +89,21 @@ public class StackedHistogramPainter extends GlimpsePainterBase
     protected float minX;
     protected float maxX;
 
+    /**
+     * Counts per series at the finest bin size, or null if the data was supplied as pre-binned counts.
+     */
+    protected HistogramBins[] baseBins = null;
+    protected int totalNumValues;
+
+    /**
+     * Number of base bins merged into each displayed bar.
+     */
+    protected int binFactor = 1;
+
+    protected volatile boolean adaptiveBinning = false;
+    protected volatile float minBarWidth_PX = 4;
+    protected volatile int baseBinRefinement = 32;
+
     protected FlatColorProgram fillProg;
 
     public StackedHistogramPainter( )
@@ -116,6 +138,59 @@ public class StackedHistogramPainter extends GlimpsePainterBase
         }
     }
 
+    /**
+     * @see HistogramPainter#setAdaptiveBinning(boolean)
+     */
+    public void setAdaptiveBinning( boolean adaptiveBinning )
+    {
+        this.adaptiveBinning = adaptiveBinning;
+
+        if ( !adaptiveBinning )
+        {
+            this.dataBufferLock.lock( );
+            try
+            {
+                if ( this.binFactor != 1 && this.baseBins != null )
+                {
+                    this.binFactor = 1;
+                    updateBars( );
+                }
+            }
+            finally
+            {
+                this.dataBufferLock.unlock( );
+            }
+        }
+    }
+
+    public boolean isAdaptiveBinning( )
+    {
+        return this.adaptiveBinning;
+    }
+
+    public void setMinBarWidth( float minBarWidth_PX )
+    {
+        this.minBarWidth_PX = minBarWidth_PX;
+    }
+
+    public float getMinBarWidth( )
+    {
+        return this.minBarWidth_PX;
+    }
+
+    /**
+     * @see HistogramPainter#setBaseBinRefinement(int)
+     */
+    public void setBaseBinRefinement( int baseBinRefinement )
+    {
+        this.baseBinRefinement = Math.max( 1, baseBinRefinement );
+    }
+
+    public int getBaseBinRefinement( )
+    {
+        return this.baseBinRefinement;
+    }
+
     public void autoAdjustAxisBounds( Axis2D axis )
     {
         axis.getAxisX( ).setMin( minX );
@@ -163,6 +238,8 @@ public class StackedHistogramPainter extends GlimpsePainterBase
         }
 
         float binSize = ( max - min ) / ( float ) Math.sqrt( totalNumValues );
+        if ( !( binSize > 0 ) ) binSize = 1;
+        if ( this.adaptiveBinning ) binSize /= this.baseBinRefinement;
 
         setData( totalNumValues, binSize, min, data );
     }
@@ -171,35 +248,167 @@ public class StackedHistogramPainter extends GlimpsePainterBase
     {
         this.binStart = binStart;
 
-        Float2IntMap[] counts = new Float2IntMap[data.length];
+        HistogramBins[] bins = new HistogramBins[data.length];
 
         for ( int i = 0; i < data.length; i++ )
         {
-            counts[i] = new Float2IntOpenHashMap( data[i].length );
+            bins[i] = new HistogramBins( binSize, binStart );
 
-            for ( int j = 0; j < data[i].length; j++ )
+            if ( !bins[i].add( data[i], data[i].length ) )
             {
-                float value = data[i][j];
-                float bin = getBin( value, binSize, binStart );
-
-                if ( !counts[i].containsKey( bin ) )
-                {
-                    counts[i].put( bin, 1 );
-                }
-                else
-                {
-                    counts[i].put( bin, counts[i].get( bin ) + 1 );
-                }
+                // values are too spread out for dense bins
+                setData( totalNumValues, binSize, sparseCounts( binSize, binStart, data ) );
+                return;
             }
         }
 
-        setData( totalNumValues, binSize, counts );
+        dataBufferLock.lock( );
+        try
+        {
+            this.baseBins = bins;
+            this.totalNumValues = totalNumValues;
+            updateBars( );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
+    }
+
+    /**
+     * Adds values to one series, keeping the current bins. If the current data was supplied
+     * as pre-binned counts, or there is no current data, this replaces the data of every
+     * series, as in {@link HistogramPainter#add(float[])}: the given series gets the given
+     * values, and the series before it are left empty.
+     *
+     * @throws IllegalArgumentException if the bins would span more than {@link HistogramBins#MAX_BINS}
+     */
+    public void add( int series, float[] data )
+    {
+        HistogramBins[] bases = this.baseBins;
+        if ( bases == null )
+        {
+            float[][] seriesData = new float[series + 1][];
+            Arrays.fill( seriesData, new float[0] );
+            seriesData[series] = data;
+            setData( seriesData );
+            return;
+        }
+
+        // bin outside the lock, so painting is not held up
+        HistogramBins base = bases[series];
+        HistogramBins added = new HistogramBins( base.getBinSize( ), base.getBinStart( ) );
+        boolean fits = added.add( data, data.length );
+
+        dataBufferLock.lock( );
+        try
+        {
+            if ( bases != this.baseBins )
+            {
+                throw new IllegalStateException( "Histogram data was replaced during add" );
+            }
+
+            if ( !fits || !base.addAll( added ) )
+            {
+                throw new IllegalArgumentException( "Values span more than " + HistogramBins.MAX_BINS + " bins" );
+            }
+
+            this.totalNumValues += data.length;
+            updateBars( );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
     }
 
     /**
      * Sets the histogram data without automatically binning.
      */
     public void setData( int totalNumValues, float binSize, Float2IntMap... counts )
+    {
+        dataBufferLock.lock( );
+        try
+        {
+            this.baseBins = null;
+            this.binFactor = 1;
+            buildBars( totalNumValues, binSize, counts );
+        }
+        finally
+        {
+            dataBufferLock.unlock( );
+        }
+    }
+
+    /**
+     * Rebuilds the bars from {@link #baseBins} at the current {@link #binFactor}, keeping
+     * the series colors. Must be called while holding {@link #dataBufferLock}.
+     */
+    protected void updateBars( )
+    {
+        Float2IntMap[] counts = new Float2IntMap[this.baseBins.length];
+        float binSize = this.binSize;
+
+        for ( int i = 0; i < counts.length; i++ )
+        {
+            HistogramBins bins = ( this.binFactor == 1 ) ? this.baseBins[i] : this.baseBins[i].coarsen( this.binFactor );
+            counts[i] = bins.toMap( );
+            binSize = ( float ) bins.getBinSize( );
+        }
+
+        List<HistogramEntry> oldSeries = this.dataSeries;
+
+        buildBars( this.totalNumValues, binSize, counts );
+
+        if ( oldSeries != null )
+        {
+            for ( int i = 0; i < min( oldSeries.size( ), this.dataSeries.size( ) ); i++ )
+            {
+                this.dataSeries.get( i ).color = oldSeries.get( i ).color;
+            }
+        }
+    }
+
+    /**
+     * Smallest power of two such that merging that many base bins gives bars at least
+     * {@link #minBarWidth_PX} wide.
+     */
+    protected int chooseBinFactor( double pixelsPerValue )
+    {
+        double baseWidth_PX = this.baseBins[0].getBinSize( ) * pixelsPerValue;
+
+        int factor = 1;
+        while ( factor < ( 1 << 24 ) && baseWidth_PX * factor < this.minBarWidth_PX )
+        {
+            factor <<= 1;
+        }
+        return factor;
+    }
+
+    protected static Float2IntMap[] sparseCounts( float binSize, float binStart, float[]... data )
+    {
+        Float2IntMap[] counts = new Float2IntMap[data.length];
+
+        for ( int i = 0; i < data.length; i++ )
+        {
+            Float2IntOpenHashMap seriesCounts = new Float2IntOpenHashMap( );
+
+            for ( int j = 0; j < data[i].length; j++ )
+            {
+                seriesCounts.addTo( getBin( data[i][j], binSize, binStart ), 1 );
+            }
+
+            counts[i] = seriesCounts;
+        }
+
+        return counts;
+    }
+
+    /**
+     * Builds the stacked bars from per-series counts. Subclasses that need to see the counts
+     * before {@link #getBarHeight(float, int, int)} is called should override this method.
+     */
+    protected void buildBars( int totalNumValues, float binSize, Float2IntMap... counts )
     {
         this.binSize = binSize;
 
@@ -331,6 +540,27 @@ public class StackedHistogramPainter extends GlimpsePainterBase
         Axis2D axis = requireAxis2D( context );
         GL3 gl = context.getGL( ).getGL3( );
 
+        if ( this.adaptiveBinning && this.baseBins != null )
+        {
+            this.dataBufferLock.lock( );
+            try
+            {
+                if ( this.baseBins != null && this.baseBins.length > 0 )
+                {
+                    int factor = chooseBinFactor( axis.getAxisX( ).getPixelsPerValue( ) );
+                    if ( factor != this.binFactor )
+                    {
+                        this.binFactor = factor;
+                        updateBars( );
+                    }
+                }
+            }
+            finally
+            {
+                this.dataBufferLock.unlock( );
+            }
+        }
+
         if ( this.dataSeries == null || this.dataSeries.isEmpty( ) )
         {
             return;
@@ -40,9 +40,12 @@ import com.metsci.glimpse.core.support.shader.line.LineJoinType;
 import com.metsci.glimpse.core.support.shader.line.LineStyle;
 import com.metsci.glimpse.core.support.shader.line.LineUtils;
 import com.metsci.glimpse.core.support.shader.point.PointArrayColorProgram;
+import com.metsci.glimpse.util.primitives.FloatsArray;
 
 /**
  * Plots a simple x-y lineplot. Provides options for modifying line thickness and color.
+ * <p>
+ * For very long series, see {@link #setLevelOfDetail(boolean)}.
  *
  * @author ulman
  */
@@ -62,6 +65,18 @@ public class XYLinePainter extends GlimpsePainterBase
     protected boolean showPoints = true;
     protected boolean showLines = true;
 
+    protected boolean lodEnabled = false;
+
+    // true if the path is built (per frame) from the pyramid, rather than holding the data directly
+    protected boolean lodSeries = false;
+    protected boolean lodDirty = false;
+    protected XYMinMaxPyramid lod;
+    protected FloatsArray lodVertices;
+    protected float[] dataColor = defaultColor;
+    protected double lodMinX = Double.NaN;
+    protected double lodMaxX = Double.NaN;
+    protected double lodXPerPixel = Double.NaN;
+
     public XYLinePainter( )
     {
         this.path = new ColorLinePath( );
@@ -80,6 +95,7 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             int dataSize = Math.min( dataX.length, dataY.length );
 
+            this.clearLodSeries( );
             this.path.clear( );
 
             float[] rgba = new float[4];
@@ -107,6 +123,7 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             int dataSize = Math.min( dataX.length, dataY.length );
 
+            this.clearLodSeries( );
             this.path.clear( );
 
             float[] rgba = new float[4];
@@ -134,6 +151,7 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             int dataSize = Math.min( dataX.length, dataY.length );
 
+            this.clearLodSeries( );
             this.path.clear( );
 
             for ( int i = 0; i < dataSize; i++ )
@@ -162,6 +180,18 @@ public class XYLinePainter extends GlimpsePainterBase
         {
             int dataSize = Math.min( dataX.length, dataY.length );
 
+            this.dataColor = color;
+
+            if ( this.lodEnabled )
+            {
+                this.path.clear( );
+                this.lod.setData( dataX, dataY );
+                this.lodSeries = true;
+                this.lodDirty = true;
+                return;
+            }
+
+            this.clearLodSeries( );
             this.path.clear( );
 
             for ( int i = 0; i < dataSize; i++ )
@@ -178,6 +208,109 @@ public class XYLinePainter extends GlimpsePainterBase
         }
     }
 
+    /**
+     * Appends samples to the series set by {@link #setData(float[], float[], float[])}, using the
+     * same color. In level-of-detail mode the x values must be sorted, and no smaller than the
+     * last x value already in the series.
+     */
+    public void appendData( float[] dataX, float[] dataY )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            int dataSize = Math.min( dataX.length, dataY.length );
+
+            if ( this.lodSeries )
+            {
+                this.lod.append( dataX, dataY, dataSize );
+                this.lodDirty = true;
+                return;
+            }
+
+            for ( int i = 0; i < dataSize; i++ )
+            {
+                if ( this.path.numVertices( ) == 0 )
+                    this.path.moveTo( dataX[i], dataY[i], this.dataColor );
+                else
+                    this.path.lineTo( dataX[i], dataY[i], this.dataColor );
+            }
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    /**
+     * Enables level-of-detail rendering for data passed to {@link #setData(float[], float[], float[])}
+     * and {@link #appendData(float[], float[])} after this call. The data must be sorted by x.
+     * <p>
+     * In this mode the series is held in a min/max pyramid ({@link XYMinMaxPyramid}), and each frame
+     * only the first, last, min, and max samples of each pixel column in view are drawn --
+     * at most 4 vertices per pixel column, with the same rendered result as drawing every sample.
+     * When points are shown, only the retained samples are drawn as points.
+     * <p>
+     * Per-vertex colors are not supported in this mode; {@code setDataAndColor} always draws every sample.
+     */
+    public void setLevelOfDetail( boolean enable )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            this.lodEnabled = enable;
+            if ( enable && this.lod == null )
+            {
+                this.lod = new XYMinMaxPyramid( );
+                this.lodVertices = new FloatsArray( );
+            }
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
+    }
+
+    public boolean isLevelOfDetail( )
+    {
+        return this.lodEnabled;
+    }
+
+    protected void clearLodSeries( )
+    {
+        if ( this.lodSeries )
+        {
+            this.lod.clear( );
+            this.lodSeries = false;
+        }
+    }
+
+    protected void updateLodPath( Axis2D axis, double width_PX )
+    {
+        double minX = axis.getMinX( );
+        double maxX = axis.getMaxX( );
+        double xPerPixel = ( maxX - minX ) / Math.max( 1, width_PX );
+
+        if ( !this.lodDirty && minX == this.lodMinX && maxX == this.lodMaxX && xPerPixel == this.lodXPerPixel ) return;
+
+        this.lodDirty = false;
+        this.lodMinX = minX;
+        this.lodMaxX = maxX;
+        this.lodXPerPixel = xPerPixel;
+
+        this.lodVertices.clear( );
+        int numVertices = this.lod.select( minX, maxX, xPerPixel, this.lodVertices );
+
+        float[] xy = this.lodVertices.a;
+        this.path.clear( );
+        for ( int i = 0; i < numVertices; i++ )
+        {
+            if ( i == 0 )
+                this.path.moveTo( xy[2 * i], xy[2 * i + 1], this.dataColor );
+            else
+                this.path.lineTo( xy[2 * i], xy[2 * i + 1], this.dataColor );
+        }
+    }
+
     public void setLineStipple( boolean activate )
     {
         this.style.stippleEnable = activate;
@@ -235,6 +368,12 @@ public class XYLinePainter extends GlimpsePainterBase
         Axis2D axis = requireAxis2D( context );
         double ppvAspectRatio = LineUtils.ppvAspectRatio( axis );
 
+        if ( this.lodSeries )
+        {
+            // use device pixels, so that decimation stays invisible on hi-dpi displays
+            this.updateLodPath( axis, bounds.getWidth( ) * context.getSurfaceScale( )[0] );
+        }
+
         GLUtils.enableStandardBlending( gl );
         try
         {
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.plot;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.metsci.glimpse.util.primitives.FloatsArray;
+import com.metsci.glimpse.util.primitives.IntsArray;
+import com.metsci.glimpse.util.primitives.sorted.SortedFloatsArray;
+
+/**
+ * A min/max pyramid over an x-sorted series, for per-pixel min/max/first/last ("M4") decimation.
+ * <p>
+ * Level k holds the index of the min-y and max-y sample in each block of {@code 2^(k+BASE_SHIFT)}
+ * consecutive samples. The extrema of any index range can then be found by combining O(log n)
+ * whole blocks, plus at most a few raw samples at the ends of the range.
+ * <p>
+ * {@link #select(double, double, double, FloatsArray)} splits the visible x range into pixel
+ * columns, and emits the first, min, max, and last sample of each column, in order. Drawing
+ * these gives the same pixels as drawing the whole series.
+ * <p>
+ * Samples may be appended (in x order); only the last block of each level is recomputed.
+ *
+ * @see XYLinePainter#setLevelOfDetail(boolean)
+ */
+public class XYMinMaxPyramid
+{
+    // blocks smaller than this are cheaper to scan than to store
+    protected static final int BASE_SHIFT = 3;
+
+    protected static class Level
+    {
+        public final int shift;
+        public final IntsArray minIndices;
+        public final IntsArray maxIndices;
+
+        public Level( int shift )
+        {
+            this.shift = shift;
+            this.minIndices = new IntsArray( );
+            this.maxIndices = new IntsArray( );
+        }
+
+        public int size( )
+        {
+            return this.minIndices.n;
+        }
+
+        public void truncate( int size )
+        {
+            this.minIndices.n = size;
+            this.maxIndices.n = size;
+        }
+    }
+
+    protected final SortedFloatsArray xs;
+    protected final FloatsArray ys;
+    protected final List<Level> levels;
+
+    public XYMinMaxPyramid( )
+    {
+        this.xs = new SortedFloatsArray( );
+        this.ys = new FloatsArray( );
+        this.levels = new ArrayList<>( );
+    }
+
+    public void clear( )
+    {
+        this.xs.clear( );
+        this.ys.clear( );
+        this.levels.clear( );
+    }
+
+    public void setData( float[] dataX, float[] dataY )
+    {
+        this.clear( );
+        this.append( dataX, dataY, min( dataX.length, dataY.length ) );
+    }
+
+    /**
+     * Appends samples to the series. The x values must be non-decreasing, and no smaller than
+     * the last x value already in the series.
+     */
+    public void append( float[] dataX, float[] dataY, int count )
+    {
+        float prevX = ( this.xs.n > 0 ? this.xs.last( ) : Float.NEGATIVE_INFINITY );
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( !( dataX[i] >= prevX ) ) throw new IllegalArgumentException( "X values must be sorted in ascending order: index " + i + " has x = " + dataX[i] + ", after " + prevX );
+            prevX = dataX[i];
+        }
+
+        this.xs.append( dataX, 0, count );
+        this.ys.append( dataY, 0, count );
+        this.update( );
+    }
+
+    public int size( )
+    {
+        return this.xs.n;
+    }
+
+    public int numLevels( )
+    {
+        return this.levels.size( );
+    }
+
+    protected void update( )
+    {
+        int n = this.xs.n;
+        float[] y = this.ys.a;
+
+        for ( int k = 0; ( n >> ( k + BASE_SHIFT ) ) > 0; k++ )
+        {
+            if ( k == this.levels.size( ) )
+            {
+                this.levels.add( new Level( k + BASE_SHIFT ) );
+            }
+
+            Level level = this.levels.get( k );
+            Level lower = ( k == 0 ? null : this.levels.get( k - 1 ) );
+
+            // only complete blocks are stored, so the first block to compute is the first missing one
+            int numBlocks = n >> level.shift;
+            for ( int b = level.size( ); b < numBlocks; b++ )
+            {
+                int iMin;
+                int iMax;
+                if ( lower == null )
+                {
+                    int i0 = b << level.shift;
+                    int i1 = i0 + ( 1 << level.shift );
+                    iMin = i0;
+                    iMax = i0;
+                    for ( int i = i0 + 1; i < i1; i++ )
+                    {
+                        if ( y[i] < y[iMin] ) iMin = i;
+                        if ( y[i] > y[iMax] ) iMax = i;
+                    }
+                }
+                else
+                {
+                    int a = lower.minIndices.a[2 * b];
+                    int c = lower.minIndices.a[2 * b + 1];
+                    iMin = ( y[c] < y[a] ? c : a );
+
+                    a = lower.maxIndices.a[2 * b];
+                    c = lower.maxIndices.a[2 * b + 1];
+                    iMax = ( y[c] > y[a] ? c : a );
+                }
+                level.minIndices.append( iMin );
+                level.maxIndices.append( iMax );
+            }
+        }
+    }
+
+    /**
+     * Finds the indices of the min-y and max-y samples in {@code [i0, i1)}, which must be non-empty.
+     * On ties, the earliest index is returned.
+     */
+    public void extrema( int i0, int i1, int[] result )
+    {
+        float[] y = this.ys.a;
+        int iMin = i0;
+        int iMax = i0;
+
+        int i = i0;
+        while ( i < i1 )
+        {
+            // use the largest stored block which starts at i and fits in the range
+            Level block = null;
+            for ( Level level : this.levels )
+            {
+                int size = 1 << level.shift;
+                if ( ( i & ( size - 1 ) ) != 0 || i + size > i1 ) break;
+                block = level;
+            }
+
+            if ( block == null )
+            {
+                if ( y[i] < y[iMin] ) iMin = i;
+                if ( y[i] > y[iMax] ) iMax = i;
+                i++;
+            }
+            else
+            {
+                int b = i >> block.shift;
+                int a = block.minIndices.a[b];
+                int c = block.maxIndices.a[b];
+                if ( y[a] < y[iMin] ) iMin = a;
+                if ( y[c] > y[iMax] ) iMax = c;
+                i += 1 << block.shift;
+            }
+        }
+
+        result[0] = iMin;
+        result[1] = iMax;
+    }
+
+    /**
+     * Appends interleaved (x,y) vertices covering {@code [minX, maxX]} to {@code result}: the first,
+     * min, max, and last sample of each pixel column (columns are {@code xPerPixel} wide, starting
+     * at {@code minX}), in index order. One extra sample is included on each side, so that the line
+     * continues off the edges of the view.
+     *
+     * @return the number of vertices appended
+     */
+    public int select( double minX, double maxX, double xPerPixel, FloatsArray result )
+    {
+        int before = result.n;
+        int n = this.xs.n;
+        if ( n == 0 || !( maxX >= minX ) || !( xPerPixel > 0 ) ) return 0;
+
+        int iStart = max( 0, this.xs.indexAtOrAfter( ( float ) minX ) - 1 );
+        int iEnd = min( n, this.xs.indexAfter( ( float ) maxX ) + 1 );
+
+        int[] extrema = new int[2];
+        int i = iStart;
+        while ( i < iEnd )
+        {
+            // the column containing sample i -- columns with no samples are skipped entirely
+            double column = Math.floor( ( this.xs.a[i] - minX ) / xPerPixel );
+            int j = min( iEnd, this.xs.indexAtOrAfter( ( float ) ( minX + ( column + 1 ) * xPerPixel ) ) );
+            if ( j <= i ) j = i + 1;
+
+            if ( j - i <= 4 )
+            {
+                for ( int k = i; k < j; k++ )
+                {
+                    this.appendVertex( result, k );
+                }
+            }
+            else
+            {
+                this.extrema( i, j, extrema );
+                int a = min( extrema[0], extrema[1] );
+                int b = max( extrema[0], extrema[1] );
+
+                this.appendVertex( result, i );
+                if ( a != i ) this.appendVertex( result, a );
+                if ( b != a && b != j - 1 ) this.appendVertex( result, b );
+                if ( j - 1 != a ) this.appendVertex( result, j - 1 );
+            }
+
+            i = j;
+        }
+
+        return ( result.n - before ) / 2;
+    }
+
+    protected void appendVertex( FloatsArray result, int i )
+    {
+        result.append( this.xs.a[i] );
+        result.append( this.ys.a[i] );
+    }
+}
@@ -28,30 +28,31 @@ package com.metsci.glimpse.core.painter.shape;
 
 import static com.jogamp.opengl.GL.GL_ARRAY_BUFFER;
 import static com.jogamp.opengl.GL.GL_BLEND;
+import static com.jogamp.opengl.GL.GL_DYNAMIC_DRAW;
 import static com.jogamp.opengl.GL.GL_FLOAT;
 import static com.jogamp.opengl.GL.GL_LINES;
 import static com.jogamp.opengl.GL.GL_LINE_STRIP;
-import static com.jogamp.opengl.GL2ES2.GL_STREAM_DRAW;
 import static com.metsci.glimpse.core.gl.shader.GLShaderUtils.createProgram;
 import static com.metsci.glimpse.core.gl.util.GLUtils.enableStandardBlending;
+import static com.metsci.glimpse.core.painter.shape.DynamicPointSetPainter.endOfRun;
+import static com.metsci.glimpse.core.painter.shape.DynamicPointSetPainter.sortByIndex;
 import static com.metsci.glimpse.core.support.wrapped.WrappedGlimpseContext.getWrapper2D;
 import static com.metsci.glimpse.util.GeneralUtils.floats;
 import static com.metsci.glimpse.util.io.IoUtils.requireText;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
-import com.google.common.collect.Sets;
 import com.jogamp.opengl.GL2ES2;
 import com.jogamp.opengl.GL3;
 import com.metsci.glimpse.core.axis.Axis2D;
 import com.metsci.glimpse.core.context.GlimpseBounds;
 import com.metsci.glimpse.core.context.GlimpseContext;
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
 import com.metsci.glimpse.core.gl.GLStreamingBuffer;
 import com.metsci.glimpse.core.gl.util.GLUtils;
 import com.metsci.glimpse.core.painter.base.GlimpsePainterBase;
@@ -65,6 +66,11 @@ import com.metsci.glimpse.util.primitives.FloatsArray;
  * Efficiently paints dynamically changing groups of colored lines. Support is provided
  * for very efficiently changing the color of existing lines, as well as for adding
  * to existing sets of lines.
+ * <p>
+ * Line data lives in {@link GLEditableBuffer}s, so only the ranges touched since the
+ * last frame are uploaded. When lines are not connected, removing a line moves the last
+ * line into its slot; when they are connected, later lines are shifted down instead, to
+ * preserve the order of the strip.
  *
  * @author ulman
  * @see com.metsci.glimpse.examples.misc.DynamicLinePainterExample
@@ -77,20 +83,13 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
     protected static final int DEFAULT_INITIAL_SIZE = 2000;
     protected static final float[] DEFAULT_COLOR = GlimpseColor.getBlack( );
 
-    protected boolean rgbaBufferDirty = false;
-    protected boolean xyBufferDirty = false;
+    // host and device copies of line vertices and colors, with dirty-range tracking
+    protected GLEditableBuffer xyEditable;
+    protected GLEditableBuffer rgbaEditable;
+    protected int capacity;
 
-    protected FloatBuffer rgbaBuffer;
-    protected FloatBuffer xyBuffer;
-
-    protected GLStreamingBuffer rgbaStreamingBuffer;
-    protected GLStreamingBuffer xyStreamingBuffer;
-    protected FloatBuffer tempBuffer;
-
-    // point id (which can be any object) -> index into pointBuffer
-    // good place for Guava BiMap here...
-    protected Map<Object, Integer> idMap;
-    protected Map<Integer, Object> indexMap;
+    // line id (which can be any object) <-> index into line buffers
+    protected IdIndexMap idMap;
 
     protected int initialSize;
 
@@ -109,14 +108,11 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         this.initialSize = initialSize;
         this.drawConnectedLines = true;
 
-        this.idMap = new LinkedHashMap<Object, Integer>( );
-        this.indexMap = new LinkedHashMap<Integer, Object>( );
-
-        this.xyBuffer = FloatBuffer.allocate( initialSize * 2 * 2 );
-        this.rgbaBuffer = FloatBuffer.allocate( initialSize * 2 * 4 );
+        this.idMap = new IdIndexMap( initialSize );
 
-        this.xyStreamingBuffer = new GLStreamingBuffer( GL_STREAM_DRAW, 20 );
-        this.rgbaStreamingBuffer = new GLStreamingBuffer( GL_STREAM_DRAW, 20 );
+        this.capacity = initialSize;
+        this.xyEditable = new GLEditableBuffer( GL_DYNAMIC_DRAW, initialSize * 2 * 2 * Float.BYTES );
+        this.rgbaEditable = new GLEditableBuffer( GL_DYNAMIC_DRAW, initialSize * 2 * 4 * Float.BYTES );
 
         this.style = new LineStyle( );
 
@@ -198,9 +194,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             deletePositions( accumulator );
 
             mutatePositions( accumulator );
-
-            this.xyBufferDirty = true;
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -214,8 +207,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         try
         {
             mutateColors( accumulator );
-
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -242,9 +233,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             int index = getIndex( id, true );
             mutatePosition( index, posX1, posY1, posX2, posY2 );
             mutateColor( index, color );
-
-            this.xyBufferDirty = true;
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -258,9 +246,8 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         try
         {
             int index = getIndex( id, false );
+            if ( index == -1 ) return; // nothing to color, the line does not exist
             mutateColor( index, color );
-
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -274,9 +261,8 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         try
         {
             this.idMap.clear( );
-            this.indexMap.clear( );
-            this.xyBuffer = FloatBuffer.allocate( initialSize * 2 * 2 );
-            this.rgbaBuffer = FloatBuffer.allocate( initialSize * 2 * 4 );
+            this.xyEditable.clear( );
+            this.rgbaEditable.clear( );
         }
         finally
         {
@@ -292,9 +278,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             int index = getIndex( id, false );
             if ( index == -1 ) return; // nothing to remove, the point does not exist
             deletePosition( index );
-
-            this.xyBufferDirty = true;
-            this.rgbaBufferDirty = true;
         }
         finally
         {
@@ -317,22 +300,6 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
 
             if ( lineCount == 0 ) return;
 
-            if ( this.rgbaBufferDirty )
-            {
-                this.rgbaBuffer.position( 0 );
-                this.rgbaBuffer.limit( lineCount * 2 * 4 );
-                this.rgbaStreamingBuffer.setFloats( gl, rgbaBuffer );
-                this.rgbaBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
-            }
-
-            if ( this.xyBufferDirty )
-            {
-                this.xyBuffer.position( 0 );
-                this.xyBuffer.limit( lineCount * 2 * 2 );
-                this.xyStreamingBuffer.setFloats( gl, xyBuffer );
-                this.xyBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
-            }
-
             this.prog.begin( gl );
             try
             {
@@ -341,7 +308,8 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
                 this.prog.setWrapper( gl, wrapper );
                 this.prog.setStyle( gl, style );
 
-                this.prog.draw( gl, drawConnectedLines ? GL_LINE_STRIP : GL_LINES, xyStreamingBuffer, rgbaStreamingBuffer, 0, lineCount * 2 );
+                // uploads only the ranges edited since the last frame
+                this.prog.draw( gl, drawConnectedLines ? GL_LINE_STRIP : GL_LINES, xyEditable, rgbaEditable, 0, lineCount * 2 );
             }
             finally
             {
@@ -359,8 +327,8 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
     {
         this.prog.dispose( context.getGL( ).getGL3( ) );
 
-        this.rgbaStreamingBuffer.dispose( context.getGL( ) );
-        this.xyStreamingBuffer.dispose( context.getGL( ) );
+        this.rgbaEditable.dispose( context.getGL( ) );
+        this.xyEditable.dispose( context.getGL( ) );
     }
 
     protected int getSize( )
@@ -370,171 +338,175 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
 
     protected int getCapacity( )
     {
-        // divide by ( 2 * 2 ) in order to count lines, not vertices
-        // ( 2 vertices per line and 2 floats per vertex )
-        return this.xyBuffer.capacity( ) / ( 2 * 2 );
+        return this.capacity;
     }
 
-    protected static void shiftMaps( Map<Object, Integer> idMap, Map<Integer, Object> indexMap, Set<Integer> indices, int size )
+    protected void deletePositions( BulkLineAccumulator accum )
     {
-        for ( Integer index : indices )
+        List<Object> ids = accum.getRemovedIds( );
+        int[] indices = new int[ids.size( )];
+        int count = 0;
+        for ( Object id : ids )
         {
-            Object id = indexMap.remove( index );
-            idMap.remove( id );
+            int index = this.idMap.indexOf( id );
+            if ( index != -1 )
+            {
+                indices[count++] = index;
+            }
         }
 
-        // TODO: this is inefficient for low index values
-        // shift everything down in the index map
-        int lastDelete = -1;
-        int nextDelete = -1;
-        int deleteCount = 0;
-        for ( Integer index : indices )
-        {
-            lastDelete = nextDelete;
-            nextDelete = index;
-            deleteCount += 1;
-
-            if ( lastDelete == -1 ) continue;
+        Arrays.sort( indices, 0, count );
 
-            shiftMaps( idMap, indexMap, lastDelete, nextDelete, deleteCount - 1 );
+        // drop duplicates
+        int distinct = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( distinct == 0 || indices[i] != indices[distinct - 1] )
+            {
+                indices[distinct++] = indices[i];
+            }
         }
 
-        shiftMaps( idMap, indexMap, nextDelete, size, deleteCount );
+        deletePositions( indices, distinct );
     }
 
-    protected static void shiftMaps( Map<Object, Integer> idMap, Map<Integer, Object> indexMap, int lastDelete, int nextDelete, int deleteCount )
+    /**
+     * @param sortedIndices distinct indices, in ascending order
+     */
+    protected void deletePositions( int[] sortedIndices, int count )
     {
-        for ( int i = lastDelete + 1; i < nextDelete; i++ )
+        if ( count == 0 ) return;
+
+        if ( this.drawConnectedLines )
         {
-            Object id = indexMap.remove( i );
-            indexMap.put( i - deleteCount, id );
-            idMap.put( id, i - deleteCount );
+            deletePositionsShifting( sortedIndices, count );
         }
-    }
-
-    protected static void shift( FloatBuffer data, FloatBuffer tempBuffer, int length, int size, Set<Integer> indices )
-    {
-        int lastDelete = -1;
-        int nextDelete = -1;
-        int deleteCount = 0;
-        for ( Integer index : indices )
+        else
         {
-            lastDelete = nextDelete;
-            nextDelete = index;
-
-            if ( lastDelete != -1 )
+            // Remove from the highest index down, so that a line moved into a vacated
+            // slot is never one that is still waiting to be removed
+            for ( int i = count - 1; i >= 0; i-- )
             {
-                shift( data, tempBuffer, nextDelete - lastDelete - 1, lastDelete - deleteCount + 1, lastDelete + 1, length );
+                deletePositionSwapping( sortedIndices[i] );
             }
-
-            deleteCount += 1;
         }
+    }
 
-        nextDelete += 1;
-
-        shift( data, tempBuffer, size - nextDelete, nextDelete - deleteCount, nextDelete, length );
+    protected void deletePosition( int index )
+    {
+        deletePositions( new int[] { index }, 1 );
     }
 
     /**
-     * @param data buffer to shift
-     * @param shiftCount number of logical indices to shift (each index represents 'length' buffer entries)
-     * @param toIndex the logical index to start copying data to
-     * @param fromIndex the logical index to start copying data from
-     * @param length the number of buffer entries per logical index
+     * Removes the line at {@code index} by moving the last line into its slot.
      */
-    protected static void shift( FloatBuffer data, FloatBuffer tempBuffer, int shiftCount, int toIndex, int fromIndex, int length )
+    protected void deletePositionSwapping( int index )
     {
-        if ( shiftCount == 0 || toIndex == fromIndex ) return;
-
-        // lazy load tempBuffer (only needed if removePoint is called)
-        if ( tempBuffer == null || tempBuffer.capacity( ) < shiftCount * length )
+        int moved = this.idMap.swapRemove( index );
+        if ( moved != -1 )
         {
-            tempBuffer = FloatBuffer.allocate( shiftCount * length );
+            copyFloats( this.xyEditable, moved * 2 * 2, index * 2 * 2, 2 * 2 );
+            copyFloats( this.rgbaEditable, moved * 2 * 4, index * 2 * 4, 2 * 4 );
         }
 
-        // copy the data to shift into tempBuffer
-        tempBuffer.limit( shiftCount * length );
-        tempBuffer.position( 0 );
-        data.limit( ( fromIndex + shiftCount ) * length );
-        data.position( fromIndex * length );
-        tempBuffer.put( data );
-
-        // copy the data back, shifted left by one, to data buffer
-        tempBuffer.rewind( );
-        data.limit( ( toIndex + shiftCount ) * length );
-        data.position( toIndex * length );
-        data.put( tempBuffer );
+        truncateBuffers( );
     }
 
-    protected void deletePositions( final Set<Integer> indices )
+    /**
+     * Removes lines at the given indices, shifting later lines down so that the
+     * order of the line strip is preserved.
+     */
+    protected void deletePositionsShifting( int[] sortedIndices, int count )
     {
-        if ( indices.isEmpty( ) ) return;
-
-        final int size = this.getSize( );
+        int oldSize = this.getSize( );
+        int first = sortedIndices[0];
 
-        shiftMaps( idMap, indexMap, indices, size );
+        this.idMap.removeShifting( sortedIndices, count );
 
-        shift( this.rgbaBuffer, tempBuffer, 4 * 2, size, indices );
-        shift( this.xyBuffer, tempBuffer, 2 * 2, size, indices );
-
-    }
-
-    protected void deletePositions( BulkLineAccumulator accum )
-    {
-        Set<Integer> indices = Sets.newTreeSet( );
-
-        for ( Object id : accum.getRemovedIds( ) )
+        int to = first;
+        int k = 0;
+        for ( int from = first; from < oldSize; from++ )
         {
-            Integer index = this.idMap.get( id );
-            if ( index != null )
+            if ( k < count && from == sortedIndices[k] )
             {
-                indices.add( index );
+                k++;
+                continue;
             }
+
+            if ( from != to )
+            {
+                copyFloats( this.xyEditable, from * 2 * 2, to * 2 * 2, 2 * 2 );
+                copyFloats( this.rgbaEditable, from * 2 * 4, to * 2 * 4, 2 * 4 );
+            }
+            to++;
         }
 
-        deletePositions( indices );
+        truncateBuffers( );
     }
 
-    protected void deletePosition( int index )
+    protected void truncateBuffers( )
     {
-        deletePositions( Collections.singleton( index ) );
+        int size = this.getSize( );
+        this.xyEditable.truncateFloats( size * 2 * 2 );
+        this.rgbaEditable.truncateFloats( size * 2 * 4 );
+    }
+
+    /**
+     * Copies floats within a buffer, marking the destination range dirty.
+     * Ranges may overlap only if {@code toFloat <= fromFloat}.
+     */
+    static void copyFloats( GLEditableBuffer buffer, int fromFloat, int toFloat, int countFloats )
+    {
+        FloatBuffer host = buffer.hostFloats( );
+        FloatBuffer dest = buffer.editFloats( toFloat, countFloats );
+        for ( int j = 0; j < countFloats; j++ )
+        {
+            dest.put( j, host.get( fromFloat + j ) );
+        }
     }
 
     protected void mutateColor( final int index, final float[] color )
     {
-        this.rgbaBuffer.position( index * 2 * 4 );
+        FloatBuffer rgba = this.rgbaEditable.editFloats( index * 2 * 4, 2 * 4 );
 
         for ( int i = 0; i < 2; i++ )
         {
-            this.rgbaBuffer.put( color[0] );
-            this.rgbaBuffer.put( color[1] );
-            this.rgbaBuffer.put( color[2] );
-            this.rgbaBuffer.put( color.length == 4 ? color[3] : 1.0f );
+            rgba.put( color[0] );
+            rgba.put( color[1] );
+            rgba.put( color[2] );
+            rgba.put( color.length == 4 ? color[3] : 1.0f );
         }
     }
 
     protected void mutatePosition( final int index, final float posX1, final float posY1, final float posX2, final float posY2 )
     {
-        this.xyBuffer.position( index * 2 * 2 );
-        this.xyBuffer.put( posX1 );
-        this.xyBuffer.put( posY1 );
-        this.xyBuffer.put( posX2 );
-        this.xyBuffer.put( posY2 );
+        FloatBuffer xy = this.xyEditable.editFloats( index * 2 * 2, 2 * 2 );
+        xy.put( posX1 );
+        xy.put( posY1 );
+        xy.put( posX2 );
+        xy.put( posY2 );
     }
 
-    protected int getIndexArray( List<Object> ids, int[] listIndex )
+    /**
+     * @return the smallest and largest valid ( != -1 ) index, or null if there are none
+     */
+    protected int[] getIndexArray( List<Object> ids, boolean grow, int[] listIndex )
     {
         int size = ids.size( );
-        int minIndex = size;
+        int minIndex = Integer.MAX_VALUE;
+        int maxIndex = -1;
 
         for ( int i = 0; i < size; i++ )
         {
-            int index = getIndex( ids.get( i ), true );
+            int index = getIndex( ids.get( i ), grow );
             listIndex[i] = index;
-            if ( minIndex > index ) minIndex = index;
+            if ( index == -1 ) continue;
+
+            minIndex = min( minIndex, index );
+            maxIndex = max( maxIndex, index );
         }
 
-        return minIndex;
+        return ( maxIndex == -1 ? null : new int[] { minIndex, maxIndex } );
     }
 
     protected void mutatePositions( BulkLineAccumulator accumulator )
@@ -545,22 +517,36 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         final int size = accumulator.getAddedSize( );
 
         final int[] indexList = new int[size];
-        getIndexArray( ids, indexList );
+        if ( getIndexArray( ids, true, indexList ) == null ) return;
 
-        for ( int i = 0; i < size; i++ )
+        // Mark one dirty range per contiguous run of indices, so sparse updates don't
+        // re-upload everything between them
+        long[] keys = sortByIndex( indexList );
+        for ( int start = 0; start < keys.length; )
         {
-            this.xyBuffer.position( indexList[i] * 2 * 2 );
-            this.xyBuffer.put( v, i * stride, 2 * 2 );
-        }
+            int end = endOfRun( keys, start );
+            int firstIndex = ( int ) ( keys[start] >>> 32 );
+            int count = ( int ) ( keys[end - 1] >>> 32 ) - firstIndex + 1;
 
-        for ( int i = 0; i < size; i++ )
-        {
-            this.rgbaBuffer.position( indexList[i] * 2 * 4 );
+            FloatBuffer xy = this.xyEditable.editFloats( firstIndex * 2 * 2, count * 2 * 2 );
+            FloatBuffer rgba = this.rgbaEditable.editFloats( firstIndex * 2 * 4, count * 2 * 4 );
 
-            for ( int j = 0; j < 2; j++ )
+            for ( int k = start; k < end; k++ )
             {
-                this.rgbaBuffer.put( v, i * stride + 4, 4 );
+                int index = ( int ) ( keys[k] >>> 32 );
+                int i = ( int ) keys[k];
+
+                xy.position( ( index - firstIndex ) * 2 * 2 );
+                xy.put( v, i * stride, 2 * 2 );
+
+                rgba.position( ( index - firstIndex ) * 2 * 4 );
+                for ( int j = 0; j < 2; j++ )
+                {
+                    rgba.put( v, i * stride + 4, 4 );
+                }
             }
+
+            start = end;
         }
     }
 
@@ -572,45 +558,44 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
         final int size = accumulator.getSize( );
 
         final int[] indexList = new int[size];
-        getIndexArray( ids, indexList );
+        if ( getIndexArray( ids, false, indexList ) == null ) return;
 
-        for ( int i = 0; i < size; i++ )
+        long[] keys = sortByIndex( indexList );
+        for ( int start = 0; start < keys.length; )
         {
-            this.rgbaBuffer.position( indexList[i] * 2 * 4 );
+            int end = endOfRun( keys, start );
+            int firstIndex = ( int ) ( keys[start] >>> 32 );
+            int count = ( int ) ( keys[end - 1] >>> 32 ) - firstIndex + 1;
 
-            for ( int j = 0; j < 2; j++ )
+            FloatBuffer rgba = this.rgbaEditable.editFloats( firstIndex * 2 * 4, count * 2 * 4 );
+            for ( int k = start; k < end; k++ )
             {
-                this.rgbaBuffer.put( v, i * stride, 4 );
+                int index = ( int ) ( keys[k] >>> 32 );
+                int i = ( int ) keys[k];
+
+                rgba.position( ( index - firstIndex ) * 2 * 4 );
+                for ( int j = 0; j < 2; j++ )
+                {
+                    rgba.put( v, i * stride, 4 );
+                }
             }
+
+            start = end;
         }
     }
 
     protected int getIndex( Object id, boolean grow )
     {
-        Integer index = this.idMap.get( id );
-        if ( index == null )
-        {
-            if ( grow )
-            {
-                index = idMap.size( );
-                idMap.put( id, index );
-                indexMap.put( index, id );
-            }
-            else
-            {
-                return -1;
-            }
-        }
-
-        return index;
+        return ( grow ? this.idMap.indexOfOrAdd( id ) : this.idMap.indexOf( id ) );
     }
 
     protected void growBuffers( int minSize )
     {
         minSize = Math.max( ( int ) ( getCapacity( ) * GROWTH_FACTOR ), minSize );
 
-        this.xyBuffer = growBuffer( this.xyBuffer, minSize * 2 * 2 );
-        this.rgbaBuffer = growBuffer( this.rgbaBuffer, minSize * 4 * 2 );
+        this.xyEditable.ensureCapacityFloats( minSize * 2 * 2 );
+        this.rgbaEditable.ensureCapacityFloats( minSize * 2 * 4 );
+        this.capacity = minSize;
     }
 
     static FloatBuffer growBuffer( FloatBuffer buffer, int size )
@@ -835,6 +820,17 @@ public class DynamicLineSetPainter extends GlimpsePainterBase
             gl.glUniform1f( this.handles.FEATHER_THICKNESS_PX, style.feather_PX );
         }
 
+        public void draw( GL2ES2 gl, int mode, GLEditableBuffer xyVbo, GLEditableBuffer rgbaVbo, int first, int count )
+        {
+            gl.glBindBuffer( GL_ARRAY_BUFFER, xyVbo.deviceBuffer( gl ) );
+            gl.glVertexAttribPointer( this.handles.inXy, 2, GL_FLOAT, false, 0, 0 );
+
+            gl.glBindBuffer( GL_ARRAY_BUFFER, rgbaVbo.deviceBuffer( gl ) );
+            gl.glVertexAttribPointer( this.handles.inRgba, 4, GL_FLOAT, false, 0, 0 );
+
+            gl.glDrawArrays( mode, first, count );
+        }
+
         public void draw( GL2ES2 gl, int mode, GLStreamingBuffer xyVbo, GLStreamingBuffer rgbaVbo, int first, int count )
         {
             gl.glBindBuffer( GL_ARRAY_BUFFER, xyVbo.buffer( gl ) );
@@ -27,27 +27,23 @@
 package com.metsci.glimpse.core.painter.shape;
 
 import static com.jogamp.opengl.GL.GL_DYNAMIC_DRAW;
-import static com.metsci.glimpse.core.painter.shape.DynamicLineSetPainter.shift;
-import static com.metsci.glimpse.core.painter.shape.DynamicLineSetPainter.shiftMaps;
 import static com.metsci.glimpse.core.support.wrapped.WrappedGlimpseContext.getWrapper2D;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
-import com.google.common.collect.Sets;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 import com.metsci.glimpse.core.axis.Axis2D;
 import com.metsci.glimpse.core.context.GlimpseBounds;
 import com.metsci.glimpse.core.context.GlimpseContext;
-import com.metsci.glimpse.core.gl.GLStreamingBuffer;
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
 import com.metsci.glimpse.core.gl.util.GLUtils;
 import com.metsci.glimpse.core.painter.base.GlimpsePainterBase;
 import com.metsci.glimpse.core.support.color.GlimpseColor;
@@ -61,6 +57,10 @@ import com.metsci.glimpse.util.primitives.IntsArray;
  * Efficiently paints dynamically changing groups of colored points. Support is provided
  * for very efficiently changing the color of existing points, as well as for adding
  * to existing sets of points.
+ * <p>
+ * Point data lives in {@link GLEditableBuffer}s, so only the ranges touched since the
+ * last frame are uploaded. Removing a point moves the last point into its slot, so the
+ * order in which points are drawn is not preserved across removals.
  *
  * @author ulman
  * @see com.metsci.glimpse.examples.misc.DynamicPointPainterExample
@@ -79,18 +79,15 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
 
     protected QuadTreeFloatBuffer quadTree;
 
-    protected FloatBuffer rgbaBuffer;
+    // host-only copy of point positions, backing the quadTree
     protected FloatBuffer xyBuffer;
-    protected FloatBuffer tempBuffer;
 
-    protected GLStreamingBuffer rgbaStreamingBuffer;
-    protected GLStreamingBuffer xyStreamingBuffer;
-    protected boolean bufferDirty = false;
+    // host and device copies of point positions and colors, with dirty-range tracking
+    protected GLEditableBuffer xyEditable;
+    protected GLEditableBuffer rgbaEditable;
 
-    // point id (which can be any object) -> index into pointBuffer
-    // good place for Guava BiMap here...
-    protected Map<Object, Integer> idMap;
-    protected Map<Integer, Object> indexMap;
+    // point id (which can be any object) <-> index into point buffers
+    protected IdIndexMap idMap;
 
     protected IntsArray searchResults;
 
@@ -109,18 +106,17 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         this.pointSize = DEFAULT_POINT_SIZE;
         this.featherSize = DEFAULT_FEATHER_SIZE;
 
-        this.idMap = new LinkedHashMap<Object, Integer>( );
-        this.indexMap = new LinkedHashMap<Integer, Object>( );
+        this.idMap = new IdIndexMap( initialSize );
 
         this.xyBuffer = FloatBuffer.allocate( initialSize * 2 );
-        this.rgbaBuffer = FloatBuffer.allocate( initialSize * 4 );
         this.quadTree = new QuadTreeFloatBuffer( this.xyBuffer );
 
+        this.xyEditable = new GLEditableBuffer( GL_DYNAMIC_DRAW, initialSize * 2 * Float.BYTES );
+        this.rgbaEditable = new GLEditableBuffer( GL_DYNAMIC_DRAW, initialSize * 4 * Float.BYTES );
+
         this.searchResults = new IntsArray( );
 
         this.prog = new PointArrayColorProgram( );
-        this.rgbaStreamingBuffer = new GLStreamingBuffer( GL_DYNAMIC_DRAW, 5 );
-        this.xyStreamingBuffer = new GLStreamingBuffer( GL_DYNAMIC_DRAW, 5 );
     }
 
     public Collection<Object> getGeoRange( double minX, double maxX, double minY, double maxY )
@@ -131,14 +127,16 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             this.searchResults.n = 0; // clear the search results
             this.quadTree.getIndex( ).search( ( float ) minX, ( float ) maxX, ( float ) minY, ( float ) maxY, searchResults );
 
+            // the quadTree also holds unused slots beyond the current size
+            int size = getSize( );
+
             final List<Object> resultList = new LinkedList<Object>( );
             for ( int i = 0; i < this.searchResults.n; i++ )
             {
                 int index = this.searchResults.a[i];
-                Object id = this.indexMap.get( index );
-                if ( id != null )
+                if ( index < size )
                 {
-                    resultList.add( id );
+                    resultList.add( this.idMap.idAt( index ) );
                 }
             }
 
@@ -191,8 +189,6 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             deletePositions( accumulator );
 
             mutatePositions( accumulator );
-
-            bufferDirty = true;
         }
         finally
         {
@@ -206,8 +202,6 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         try
         {
             mutateColors( accumulator );
-
-            bufferDirty = true;
         }
         finally
         {
@@ -234,8 +228,6 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             int index = getIndex( id, true );
             mutatePosition( index, posX, posY );
             mutateColor( index, color );
-
-            bufferDirty = true;
         }
         finally
         {
@@ -249,9 +241,8 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         try
         {
             int index = getIndex( id, false );
+            if ( index == -1 ) return; // nothing to color, the point does not exist
             mutateColor( index, color );
-
-            bufferDirty = true;
         }
         finally
         {
@@ -265,12 +256,10 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         try
         {
             this.idMap.clear( );
-            this.indexMap.clear( );
             this.xyBuffer = FloatBuffer.allocate( initialSize * 2 );
-            this.rgbaBuffer = FloatBuffer.allocate( initialSize * 4 );
             this.quadTree.setBuffer( this.xyBuffer );
-
-            this.bufferDirty = true;
+            this.xyEditable.clear( );
+            this.rgbaEditable.clear( );
         }
         finally
         {
@@ -286,8 +275,6 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             int index = getIndex( id, false );
             if ( index == -1 ) return; // nothing to remove, the point does not exist
             deletePosition( index );
-
-            bufferDirty = true;
         }
         finally
         {
@@ -307,111 +294,178 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         return this.xyBuffer.limit( ) / 2;
     }
 
-    protected void deletePositions( final Set<Integer> indices )
-    {
-        if ( indices.isEmpty( ) ) return;
-
-        final int size = this.getSize( );
-        final int first = indices.iterator( ).next( );
-
-        shiftMaps( idMap, indexMap, indices, size );
-
-        shift( this.rgbaBuffer, tempBuffer, 4, size, indices );
-
-        this.quadTree.removeIndex( first );
-        shift( this.xyBuffer, tempBuffer, 2, size, indices );
-        this.quadTree.addIndex( first );
-    }
-
     protected void deletePositions( BulkPointAccumulator accum )
     {
-        Set<Integer> indices = Sets.newTreeSet( );
-
-        for ( Object id : accum.getRemovedIds( ) )
+        List<Object> ids = accum.getRemovedIds( );
+        int[] indices = new int[ids.size( )];
+        int count = 0;
+        for ( Object id : ids )
         {
-            Integer index = this.idMap.get( id );
-            if ( index != null )
+            int index = this.idMap.indexOf( id );
+            if ( index != -1 )
             {
-                indices.add( index );
+                indices[count++] = index;
             }
         }
 
-        deletePositions( indices );
+        // Remove from the highest index down, so that a point moved into a vacated
+        // slot is never one that is still waiting to be removed
+        Arrays.sort( indices, 0, count );
+        for ( int i = count - 1; i >= 0; i-- )
+        {
+            if ( i + 1 < count && indices[i] == indices[i + 1] ) continue;
+            deletePosition( indices[i] );
+        }
     }
 
+    /**
+     * Removes the point at {@code index} by moving the last point into its slot.
+     */
     protected void deletePosition( int index )
     {
-        deletePositions( Collections.singleton( index ) );
+        int moved = this.idMap.swapRemove( index );
+        if ( moved != -1 )
+        {
+            // the moved point's old slot stays in the quadTree as an unused slot
+            mutatePosition( index, this.xyBuffer.get( moved * 2 ), this.xyBuffer.get( moved * 2 + 1 ) );
+
+            FloatBuffer rgbaHost = this.rgbaEditable.hostFloats( );
+            FloatBuffer rgba = this.rgbaEditable.editFloats( index * 4, 4 );
+            for ( int j = 0; j < 4; j++ )
+            {
+                rgba.put( j, rgbaHost.get( moved * 4 + j ) );
+            }
+        }
+
+        int size = getSize( );
+        this.xyEditable.truncateFloats( size * 2 );
+        this.rgbaEditable.truncateFloats( size * 4 );
     }
 
     protected void mutateColor( final int index, final float[] color )
     {
-        this.rgbaBuffer.position( index * 4 );
-        this.rgbaBuffer.put( color[0] );
-        this.rgbaBuffer.put( color[1] );
-        this.rgbaBuffer.put( color[2] );
-        this.rgbaBuffer.put( color.length == 4 ? color[3] : 1.0f );
+        FloatBuffer rgba = this.rgbaEditable.editFloats( index * 4, 4 );
+        rgba.put( color[0] );
+        rgba.put( color[1] );
+        rgba.put( color[2] );
+        rgba.put( color.length == 4 ? color[3] : 1.0f );
     }
 
     protected void mutatePosition( final int index, final float posX, final float posY )
     {
         this.quadTree.removeIndex( index, index + 1 );
-        this.xyBuffer.position( index * 2 );
-        this.xyBuffer.put( posX );
-        this.xyBuffer.put( posY );
+        this.xyBuffer.put( index * 2, posX );
+        this.xyBuffer.put( index * 2 + 1, posY );
         this.quadTree.addIndex( index, index + 1 );
+
+        this.xyEditable.editFloats( index * 2, 2 ).put( posX ).put( posY );
     }
 
-    protected int getIndexArray( List<Object> ids, boolean grow, int[] listIndex )
+    /**
+     * Returns the {min, max} of the indices found, or null if none were found.
+     */
+    protected int[] getIndexArray( List<Object> ids, boolean grow, int[] listIndex )
     {
         int size = ids.size( );
-        int minIndex = size;
+        int minIndex = Integer.MAX_VALUE;
+        int maxIndex = -1;
 
         for ( int i = 0; i < size; i++ )
         {
             int index = getIndex( ids.get( i ), grow );
             listIndex[i] = index;
-            if ( minIndex > index ) minIndex = index;
+            if ( index == -1 ) continue;
+            minIndex = min( minIndex, index );
+            maxIndex = max( maxIndex, index );
+        }
+
+        return ( maxIndex == -1 ? null : new int[] { minIndex, maxIndex } );
+    }
+
+    /**
+     * Returns the positions in listIndex of the valid indices, ordered by index (and by position
+     * for equal indices, so later updates to the same point still win). Each entry packs the
+     * index into the high 32 bits and the position into the low 32 bits.
+     */
+    protected static long[] sortByIndex( int[] listIndex )
+    {
+        long[] keys = new long[listIndex.length];
+        int count = 0;
+        for ( int i = 0; i < listIndex.length; i++ )
+        {
+            if ( listIndex[i] == -1 ) continue;
+            keys[count++] = ( ( ( long ) listIndex[i] ) << 32 ) | i;
         }
 
-        return minIndex;
+        keys = Arrays.copyOf( keys, count );
+        Arrays.sort( keys );
+        return keys;
+    }
+
+    /**
+     * Returns the end (exclusive) of the run of contiguous indices starting at keys[start].
+     */
+    protected static int endOfRun( long[] keys, int start )
+    {
+        int end = start + 1;
+        while ( end < keys.length && ( int ) ( keys[end] >>> 32 ) - ( int ) ( keys[end - 1] >>> 32 ) <= 1 )
+        {
+            end++;
+        }
+        return end;
     }
 
     protected void mutatePositions( BulkPointAccumulator accumulator )
     {
-        final int currentSize = getSize( );
         final List<Object> ids = accumulator.getAddedIds( );
         final float[] v = accumulator.getAddedVertices( );
         final int stride = accumulator.getStride( );
         final int size = accumulator.getAddedSize( );
 
+        if ( size == 0 ) return;
+
         final int[] indexList = new int[size];
-        getIndexArray( ids, true, indexList );
+        if ( getIndexArray( ids, true, indexList ) == null ) return;
 
-        for ( int i = 0; i < size; i++ )
+        // Unused slots are in the quadTree too, so every index must be removed
+        // before its position changes, and re-added afterwards
+        for ( int index : indexList )
         {
-            int index = indexList[i];
+            this.quadTree.removeIndex( index, index + 1 );
+        }
 
-            // If index < currentSize, then the point already existed (was not assiged a new index).
-            // In this case its position is being changed.
-            // Remove it from the quadTree before mutating the position.
-            // It will be re-added after the for loop.
-            // If it is a new point, do nothing here.
-            if ( index < currentSize )
+        // Mark one dirty range per contiguous run of indices, so sparse updates don't
+        // re-upload everything between them
+        long[] keys = sortByIndex( indexList );
+        for ( int start = 0; start < keys.length; )
+        {
+            int end = endOfRun( keys, start );
+            int firstIndex = ( int ) ( keys[start] >>> 32 );
+            int count = ( int ) ( keys[end - 1] >>> 32 ) - firstIndex + 1;
+
+            FloatBuffer xy = this.xyEditable.editFloats( firstIndex * 2, count * 2 );
+            FloatBuffer rgba = this.rgbaEditable.editFloats( firstIndex * 4, count * 4 );
+
+            for ( int k = start; k < end; k++ )
             {
-                this.quadTree.removeIndex( index, index + 1 );
+                int index = ( int ) ( keys[k] >>> 32 );
+                int i = ( int ) keys[k];
+
+                this.xyBuffer.position( index * 2 );
+                this.xyBuffer.put( v, i * stride, 2 );
+
+                xy.position( ( index - firstIndex ) * 2 );
+                xy.put( v, i * stride, 2 );
+
+                rgba.position( ( index - firstIndex ) * 4 );
+                rgba.put( v, i * stride + 2, 4 );
             }
 
-            this.xyBuffer.position( index * 2 );
-            this.xyBuffer.put( v, i * stride, 2 );
+            start = end;
         }
-        this.quadTree.addIndices( indexList );
+        this.xyBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
 
-        for ( int i = 0; i < size; i++ )
-        {
-            this.rgbaBuffer.position( indexList[i] * 4 );
-            this.rgbaBuffer.put( v, i * stride + 2, 4 );
-        }
+        this.quadTree.addIndices( indexList );
     }
 
     protected void mutateColors( BulkColorAccumulator accumulator )
@@ -422,33 +476,32 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         final int size = accumulator.getSize( );
 
         final int[] indexList = new int[size];
-        getIndexArray( ids, false, indexList );
+        if ( getIndexArray( ids, false, indexList ) == null ) return;
 
-        for ( int i = 0; i < size; i++ )
+        long[] keys = sortByIndex( indexList );
+        for ( int start = 0; start < keys.length; )
         {
-            this.rgbaBuffer.position( indexList[i] * 4 );
-            this.rgbaBuffer.put( v, i * stride, 4 );
-        }
-    }
+            int end = endOfRun( keys, start );
+            int firstIndex = ( int ) ( keys[start] >>> 32 );
+            int count = ( int ) ( keys[end - 1] >>> 32 ) - firstIndex + 1;
 
-    protected int getIndex( Object id, boolean grow )
-    {
-        Integer index = this.idMap.get( id );
-        if ( index == null )
-        {
-            if ( grow )
+            FloatBuffer rgba = this.rgbaEditable.editFloats( firstIndex * 4, count * 4 );
+            for ( int k = start; k < end; k++ )
             {
-                index = idMap.size( );
-                idMap.put( id, index );
-                indexMap.put( index, id );
-            }
-            else
-            {
-                return -1;
+                int index = ( int ) ( keys[k] >>> 32 );
+                int i = ( int ) keys[k];
+
+                rgba.position( ( index - firstIndex ) * 4 );
+                rgba.put( v, i * stride, 4 );
             }
+
+            start = end;
         }
+    }
 
-        return index;
+    protected int getIndex( Object id, boolean grow )
+    {
+        return ( grow ? this.idMap.indexOfOrAdd( id ) : this.idMap.indexOf( id ) );
     }
 
     protected void growBuffers( int minSize )
@@ -456,9 +509,10 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
         minSize = Math.max( ( int ) ( getCapacity( ) * GROWTH_FACTOR ), minSize );
 
         this.xyBuffer = DynamicLineSetPainter.growBuffer( this.xyBuffer, minSize * 2 );
-        this.rgbaBuffer = DynamicLineSetPainter.growBuffer( this.rgbaBuffer, minSize * 4 );
-
         this.quadTree.setBuffer( this.xyBuffer );
+
+        this.xyEditable.ensureCapacityFloats( minSize * 2 );
+        this.rgbaEditable.ensureCapacityFloats( minSize * 4 );
     }
 
     public static class BulkColorAccumulator
@@ -585,8 +639,8 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
     {
         GL3 gl = getGL3( context );
 
-        this.rgbaStreamingBuffer.dispose( gl );
-        this.xyStreamingBuffer.dispose( gl );
+        this.rgbaEditable.dispose( gl );
+        this.xyEditable.dispose( gl );
         this.prog.dispose( gl );
     }
 
@@ -602,19 +656,6 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
 
         if ( size == 0 ) return;
 
-        if ( bufferDirty )
-        {
-            rgbaBuffer.position( 0 );
-            rgbaBuffer.limit( size * 4 );
-            rgbaStreamingBuffer.setFloats( gl, rgbaBuffer );
-            rgbaBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
-
-            xyBuffer.position( 0 );
-            xyBuffer.limit( size * 2 );
-            xyStreamingBuffer.setFloats( gl, xyBuffer );
-            xyBuffer.clear( ); // doesn't actually erase data, just resets position/limit/mark
-        }
-
         GLUtils.enableStandardBlending( gl );
         prog.begin( gl );
         try
@@ -625,7 +666,10 @@ public class DynamicPointSetPainter extends GlimpsePainterBase
             prog.setPointSize( gl, pointSize );
             prog.setFeatherThickness( gl, featherSize );
 
-            prog.draw( gl, GL.GL_POINTS, xyStreamingBuffer, rgbaStreamingBuffer, 0, size );
+            // uploads only the ranges edited since the last frame
+            int xyHandle = xyEditable.deviceBuffer( gl );
+            int rgbaHandle = rgbaEditable.deviceBuffer( gl );
+            prog.draw( gl, GL.GL_POINTS, xyHandle, rgbaHandle, 0, size );
         }
         finally
         {
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.shape;
+
+import static java.lang.Math.max;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Two-way mapping between arbitrary ids and dense indices {@code 0 ... size-1}.
+ *
+ * The id-to-index direction is an open-addressing hash map with unboxed int values,
+ * and the index-to-id direction is a plain array, so each entry costs one hash slot
+ * and one array slot.
+ */
+public class IdIndexMap
+{
+    protected static final double GROWTH_FACTOR = 1.3;
+
+    protected final Object2IntOpenHashMap<Object> indices;
+    protected Object[] ids;
+    protected int size;
+
+    public IdIndexMap( int initialCapacity )
+    {
+        this.indices = new Object2IntOpenHashMap<>( initialCapacity );
+        this.indices.defaultReturnValue( -1 );
+        this.ids = new Object[initialCapacity];
+        this.size = 0;
+    }
+
+    public int size( )
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the index of {@code id}, or -1 if it is not present
+     */
+    public int indexOf( Object id )
+    {
+        return this.indices.getInt( id );
+    }
+
+    public Object idAt( int index )
+    {
+        return this.ids[index];
+    }
+
+    /**
+     * Returns the index of {@code id}, appending it at index {@link #size()} if it is not already present.
+     */
+    public int indexOfOrAdd( Object id )
+    {
+        int index = this.indices.getInt( id );
+        if ( index < 0 )
+        {
+            index = this.size;
+            if ( index == this.ids.length )
+            {
+                this.ids = Arrays.copyOf( this.ids, max( index + 1, ( int ) ( index * GROWTH_FACTOR ) ) );
+            }
+
+            this.ids[index] = id;
+            this.indices.put( id, index );
+            this.size++;
+        }
+
+        return index;
+    }
+
+    /**
+     * Removes the entry at {@code index} by moving the last entry into its place.
+     * The caller is responsible for moving the associated data the same way.
+     *
+     * @return the former index of the entry that was moved into {@code index}, or -1 if
+     *         {@code index} was the last entry
+     */
+    public int swapRemove( int index )
+    {
+        int last = this.size - 1;
+
+        this.indices.removeInt( this.ids[index] );
+        if ( index != last )
+        {
+            Object moved = this.ids[last];
+            this.ids[index] = moved;
+            this.indices.put( moved, index );
+        }
+
+        this.ids[last] = null;
+        this.size = last;
+
+        return ( index == last ? -1 : last );
+    }
+
+    /**
+     * Removes the entries at the given indices, shifting later entries down to close the
+     * gaps, so that the relative order of the remaining entries is preserved. The caller is
+     * responsible for shifting the associated data the same way.
+     *
+     * @param sortedIndices distinct indices, in ascending order
+     */
+    public void removeShifting( int[] sortedIndices, int count )
+    {
+        if ( count == 0 )
+        {
+            return;
+        }
+
+        for ( int k = 0; k < count; k++ )
+        {
+            this.indices.removeInt( this.ids[sortedIndices[k]] );
+        }
+
+        int to = sortedIndices[0];
+        int k = 0;
+        for ( int from = to; from < this.size; from++ )
+        {
+            if ( k < count && from == sortedIndices[k] )
+            {
+                k++;
+                continue;
+            }
+
+            Object id = this.ids[from];
+            this.ids[to] = id;
+            this.indices.put( id, to );
+            to++;
+        }
+
+        Arrays.fill( this.ids, to, this.size, null );
+        this.size = to;
+    }
+
+    public void clear( )
+    {
+        this.indices.clear( );
+        Arrays.fill( this.ids, 0, this.size, null );
+        this.size = 0;
+    }
+}
@@ -29,6 +29,8 @@ package com.metsci.glimpse.core.painter.track;
 import static com.metsci.glimpse.core.support.shader.line.LinePathData.FLAGS_CONNECT;
 import static com.metsci.glimpse.core.support.shader.line.LinePathData.FLAGS_JOIN;
 import static com.metsci.glimpse.core.support.wrapped.WrappedGlimpseContext.getWrapper2D;
+import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.awt.Color;
 import java.awt.Font;
@@ -46,7 +48,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
@@ -63,6 +69,7 @@ import com.metsci.glimpse.core.gl.GLEditableBuffer;
 import com.metsci.glimpse.core.gl.util.GLErrorUtils;
 import com.metsci.glimpse.core.gl.util.GLUtils;
 import com.metsci.glimpse.core.painter.base.GlimpsePainterBase;
+import com.metsci.glimpse.core.support.PainterCache;
 import com.metsci.glimpse.core.support.font.FontUtils;
 import com.metsci.glimpse.core.support.selection.SpatialSelectionListener;
 import com.metsci.glimpse.core.support.selection.TemporalSelectionListener;
@@ -148,6 +155,12 @@ public class TrackPainter extends GlimpsePainterBase
 
     protected double ppvAspectRatio = Double.NaN;
 
+    // mileage recomputations for stippled tracks, running on worker threads or waiting
+    // to be uploaded, keyed by track id (accessed only on the gl display() thread)
+    protected Map<Object, MileageUpdate> mileageUpdates;
+    // how long doPaintTo() waits for pending mileage before drawing with the previous values
+    protected long mileageWait_MILLIS = 4;
+
     public TrackPainter( )
     {
         this( false );
@@ -162,6 +175,7 @@ public class TrackPainter extends GlimpsePainterBase
         this.tracks = new HashMap<>( );
         this.updatedTracks = new HashSet<>( );
         this.loadedTracks = new HashMap<>( );
+        this.mileageUpdates = new HashMap<>( );
         this.trackUpdateLock = new ReentrantLock( );
 
         this.fontRenderer = new TextRenderer( textFont );
@@ -199,6 +213,17 @@ public class TrackPainter extends GlimpsePainterBase
         axis.addAxisListener( new SpatialSelectionAxisListener( this, listener ) );
     }
 
+    /**
+     * When the ppv aspect ratio changes (or the selected time range moves), stipple mileage for
+     * the selected portion of each stippled track is recomputed on worker threads. Each frame waits
+     * at most this long for those results; tracks whose results are not yet ready are drawn with
+     * their previous mileage, and updated on a later frame.
+     */
+    public void setMileageWaitMillis( long millis )
+    {
+        this.mileageWait_MILLIS = millis;
+    }
+
     public Collection<Point> getTrackHeads( )
     {
         this.trackUpdateLock.lock( );
@@ -1110,6 +1135,7 @@ public class TrackPainter extends GlimpsePainterBase
                         LoadedTrack loaded = getOrCreateLoadedTrack( id, track );
                         loaded.dispose( gl );
                         loadedTracks.remove( id );
+                        cancelMileageUpdate( id );
 
                         // If the track was deleted then recreated in between calls to display0(),
                         // (both isDataInserted() and isDeletePending() are true) then don't remove the track
@@ -1124,30 +1150,40 @@ public class TrackPainter extends GlimpsePainterBase
                     loaded.loadSettings( track );
 
                     // determine if the ppvAspectRatioChanged
-                    boolean keepPpvAspectRatioLoaded = !loaded.style.stippleEnable || ( newPpvAspectRatio / ppvAspectRatioThreshold <= loaded.ppvAspectRatio && loaded.ppvAspectRatio <= newPpvAspectRatio * ppvAspectRatioThreshold );
+                    boolean keepPpvAspectRatioLoaded = !loaded.style.stippleEnable || isSamePpvAspectRatio( newPpvAspectRatio, loaded.ppvAspectRatio );
 
-                    if ( !keepPpvAspectRatioLoaded )
+                    if ( !keepPpvAspectRatioLoaded && !track.isDataInserted( ) && loaded.glBufferInitialized )
+                    {
+                        // only the mileage is stale, so keep the device buffers and recompute
+                        // mileage for the selected range in the background
+                        updateVerticesTrack( gl, track, loaded, true );
+                    }
+                    else
                     {
-                        loaded.ppvAspectRatio = newPpvAspectRatio;
+                        if ( !keepPpvAspectRatioLoaded )
+                        {
+                            loaded.ppvAspectRatio = newPpvAspectRatio;
+                        }
+
+                        updateVerticesTrack( gl, track, loaded, keepPpvAspectRatioLoaded );
                     }
 
-                    updateVerticesTrack( gl, track, loaded, keepPpvAspectRatioLoaded );
+                    // the selected range may have moved outside the range with valid mileage
+                    requestMileageUpdate( track, loaded, newPpvAspectRatio );
                 }
 
-                // if the ppv aspect ratio changed, we need to recreate the mileage array for all tracks
+                // if the ppv aspect ratio changed, we need to recompute mileage for all tracks
                 // (but we only need to do so for tracks with stippling enabled which weren't already updated
                 //  because they were in the updatedTracks list)
                 if ( !keepPpvAspectRatio )
                 {
-                    for ( Object id : loadedTracks.keySet( ) )
+                    for ( LoadedTrack loaded : loadedTracks.values( ) )
                     {
-                        Track track = tracks.get( id );
-                        LoadedTrack loaded = loadedTracks.get( id );
+                        Track track = tracks.get( loaded.trackId );
 
                         if ( loaded.style.stippleEnable && !updatedTracks.contains( track ) )
                         {
-                            loaded.ppvAspectRatio = newPpvAspectRatio;
-                            updateVerticesTrack( gl, track, loaded, false );
+                            requestMileageUpdate( track, loaded, newPpvAspectRatio );
                         }
                     }
                 }
@@ -1163,6 +1199,11 @@ public class TrackPainter extends GlimpsePainterBase
             GLErrorUtils.logGLErrors( logger, gl, "TrackPainter Error" );
         }
 
+        if ( !this.mileageUpdates.isEmpty( ) )
+        {
+            this.applyMileageUpdates( gl );
+        }
+
         if ( loadedTracks.isEmpty( ) ) return;
 
         boolean labelOn = false;
@@ -1355,6 +1396,13 @@ public class TrackPainter extends GlimpsePainterBase
                 ensureDataBufferSize( loaded.glBufferMaxSize + 2 );
                 track.loadIntoBuffer( xyTempBuffer, flagTempBuffer, mileageTempBuffer, true, ppvAspectRatio, 0, trackSize );
 
+                // mileage for the whole track is now current, so background results are obsolete
+                cancelMileageUpdate( track.trackId );
+                loaded.mileageFirst = 0;
+                loaded.mileageEnd = trackSize;
+                loaded.mileageAtFirst = 0;
+                loaded.mileageAtLast = ( float ) track.endMileage;
+
                 // copy data from the host buffer into the device buffer
                 gl.glBindBuffer( GL.GL_ARRAY_BUFFER, loaded.xyHandle );
                 gl.glBufferData( GL.GL_ARRAY_BUFFER, ( loaded.glBufferMaxSize + 2 ) * FLOATS_PER_VERTEX * GLUtils.BYTES_PER_FLOAT, xyTempBuffer.rewind( ), GL.GL_DYNAMIC_DRAW );
@@ -1378,6 +1426,15 @@ public class TrackPainter extends GlimpsePainterBase
                 ensureDataBufferSize( insertCount + 1 );
                 track.loadIntoBuffer( xyTempBuffer, flagTempBuffer, mileageTempBuffer, false, ppvAspectRatio, insertOffset, trackSize );
 
+                // new mileage values continue from the end mileage of the previous load, which
+                // may not match the current valid range, so leave them outside the valid range
+                // for requestMileageUpdate() to recompute (if the insert landed inside the valid
+                // range, the mileage at its end is stale, so drop the range entirely)
+                if ( loaded.mileageEnd > insertOffset )
+                {
+                    loaded.mileageEnd = loaded.mileageFirst;
+                }
+
                 // update the device buffer with the new data
                 // add 1 to insertOffset to skip leading phantom vertex
                 // add 1 to insertCount to account for trailing phantom vertex
@@ -1395,6 +1452,162 @@ public class TrackPainter extends GlimpsePainterBase
         track.reset( );
     }
 
+    protected static boolean isSamePpvAspectRatio( double a, double b )
+    {
+        // If either value is NaN, all inequalities will return false
+        return ( a / ppvAspectRatioThreshold <= b && b <= a * ppvAspectRatioThreshold );
+    }
+
+    // must be called while holding trackUpdateLock
+    protected void requestMileageUpdate( Track track, LoadedTrack loaded, double ppvAspectRatio )
+    {
+        if ( track == null || !loaded.style.stippleEnable || !loaded.glBufferInitialized || loaded.glSelectedSize <= 0 ) return;
+
+        // include the vertices on either side of the selection, whose segments may be drawn
+        int trackSize = track.getSize( );
+        int needFirst = Math.max( 0, loaded.glSelectedOffset - 1 );
+        int needEnd = Math.min( trackSize, loaded.glSelectedOffset + loaded.glSelectedSize + 1 );
+
+        boolean sameRatio = isSamePpvAspectRatio( ppvAspectRatio, loaded.ppvAspectRatio );
+        if ( sameRatio && loaded.mileageFirst <= needFirst && needEnd <= loaded.mileageEnd )
+        {
+            cancelMileageUpdate( track.trackId );
+            return;
+        }
+
+        MileageUpdate pending = this.mileageUpdates.get( track.trackId );
+        if ( pending != null && isSamePpvAspectRatio( ppvAspectRatio, pending.ppvAspectRatio ) && pending.first <= needFirst && needEnd <= pending.end )
+        {
+            return;
+        }
+        cancelMileageUpdate( track.trackId );
+
+        MileageUpdate update;
+        boolean extendValid = sameRatio && loaded.mileageFirst < loaded.mileageEnd && needFirst <= loaded.mileageEnd && loaded.mileageFirst <= needEnd;
+        if ( extendValid )
+        {
+            // only compute the parts outside the valid range, continuing from its ends, so that
+            // the stipple pattern doesn't shift as the selection moves
+            update = new MileageUpdate( track.trackId, ppvAspectRatio, Math.min( needFirst, loaded.mileageFirst ), Math.max( needEnd, loaded.mileageEnd ) );
+            update.extendsValid = true;
+            update.validFirst = loaded.mileageFirst;
+            update.validEnd = loaded.mileageEnd;
+
+            if ( needFirst < loaded.mileageFirst )
+            {
+                update.segments.add( new MileageSegment( track, needFirst, loaded.mileageFirst + 1, false, loaded.mileageAtFirst ) );
+            }
+            if ( needEnd > loaded.mileageEnd )
+            {
+                update.segments.add( new MileageSegment( track, loaded.mileageEnd - 1, needEnd, true, loaded.mileageAtLast ) );
+            }
+        }
+        else
+        {
+            update = new MileageUpdate( track.trackId, ppvAspectRatio, needFirst, needEnd );
+            update.segments.add( new MileageSegment( track, needFirst, needEnd, true, 0 ) );
+        }
+
+        update.result = CompletableFuture.runAsync( update::compute, PainterCache.SHARED_EXEC );
+        this.mileageUpdates.put( track.trackId, update );
+    }
+
+    protected void cancelMileageUpdate( Object trackId )
+    {
+        MileageUpdate update = this.mileageUpdates.remove( trackId );
+        if ( update != null )
+        {
+            update.cancel( );
+        }
+    }
+
+    /**
+     * Waits (briefly) for background mileage computations, then uploads the completed ones. Until
+     * a track's results are uploaded, it continues to be drawn with its previous mileage values.
+     */
+    protected void applyMileageUpdates( GL gl )
+    {
+        if ( this.mileageWait_MILLIS > 0 )
+        {
+            CompletableFuture<?>[] results = this.mileageUpdates.values( ).stream( ).map( u -> u.result ).toArray( CompletableFuture<?>[]::new );
+            try
+            {
+                CompletableFuture.allOf( results ).get( this.mileageWait_MILLIS, MILLISECONDS );
+            }
+            catch ( TimeoutException | ExecutionException e )
+            {
+                // Use whatever has finished, and check the rest next frame
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+        }
+
+        this.trackUpdateLock.lock( );
+        try
+        {
+            List<LoadedTrack> retry = new ArrayList<>( );
+            Iterator<MileageUpdate> it = this.mileageUpdates.values( ).iterator( );
+            while ( it.hasNext( ) )
+            {
+                MileageUpdate update = it.next( );
+                if ( !update.result.isDone( ) ) continue;
+                it.remove( );
+
+                LoadedTrack loaded = this.loadedTracks.get( update.trackId );
+                Track track = this.tracks.get( update.trackId );
+                if ( loaded == null || track == null || !loaded.glBufferInitialized ) continue;
+
+                try
+                {
+                    update.result.join( );
+                }
+                catch ( CompletionException e )
+                {
+                    logWarning( logger, "Failed to compute track mileage: track = %s", e, update.trackId );
+                    continue;
+                }
+
+                // an extension is only usable if the range it extends hasn't changed in the meantime
+                if ( update.extendsValid && !( isSamePpvAspectRatio( update.ppvAspectRatio, loaded.ppvAspectRatio ) && loaded.mileageFirst == update.validFirst && loaded.mileageEnd == update.validEnd ) )
+                {
+                    retry.add( loaded );
+                    continue;
+                }
+
+                gl.glBindBuffer( GL.GL_ARRAY_BUFFER, loaded.mileageHandle );
+                for ( MileageSegment segment : update.segments )
+                {
+                    // add 1 to skip leading phantom vertex
+                    int count = segment.end - segment.first;
+                    gl.glBufferSubData( GL.GL_ARRAY_BUFFER, ( segment.first + 1 ) * GLUtils.BYTES_PER_FLOAT, count * GLUtils.BYTES_PER_FLOAT, FloatBuffer.wrap( segment.mileage ) );
+
+                    if ( segment.first == update.first ) loaded.mileageAtFirst = segment.mileage[0];
+                    if ( segment.end == update.end ) loaded.mileageAtLast = segment.mileage[count - 1];
+                }
+                loaded.ppvAspectRatio = update.ppvAspectRatio;
+                loaded.mileageFirst = update.first;
+                loaded.mileageEnd = update.end;
+
+                // keep appended data continuous with the recomputed mileage
+                if ( loaded.mileageEnd == track.getSize( ) )
+                {
+                    track.endMileage = loaded.mileageAtLast;
+                }
+            }
+
+            for ( LoadedTrack loaded : retry )
+            {
+                requestMileageUpdate( this.tracks.get( loaded.trackId ), loaded, this.ppvAspectRatio );
+            }
+        }
+        finally
+        {
+            this.trackUpdateLock.unlock( );
+        }
+    }
+
     @Override
     public void doDispose( GlimpseContext context )
     {
@@ -1407,6 +1620,12 @@ public class TrackPainter extends GlimpsePainterBase
             {
                 track.dispose( gl );
             }
+
+            for ( MileageUpdate update : this.mileageUpdates.values( ) )
+            {
+                update.cancel( );
+            }
+            this.mileageUpdates.clear( );
         }
         finally
         {
@@ -1484,6 +1703,13 @@ public class TrackPainter extends GlimpsePainterBase
 
         double ppvAspectRatio = Double.NaN;
 
+        // the range of points whose device mileage values are valid for ppvAspectRatio,
+        // and the mileage values at either end of that range
+        public int mileageFirst;
+        public int mileageEnd;
+        public float mileageAtFirst;
+        public float mileageAtLast;
+
         // LoadedTrack isn't intended to be used outside of TrackPainter
         protected LoadedTrack( Track track )
         {
@@ -1563,6 +1789,114 @@ public class TrackPainter extends GlimpsePainterBase
         }
     }
 
+    // A contiguous range of points whose mileage is computed on a worker
+    // thread, continuing from a known mileage at one end of the range
+    protected static class MileageSegment
+    {
+        // the range of points [first, end)
+        public final int first;
+        public final int end;
+        // if true, the anchor is the first point and mileage increases toward the end,
+        // otherwise the anchor is the last point and mileage decreases toward the start
+        public final boolean forward;
+        public final float anchorMileage;
+
+        // point positions, copied while holding trackUpdateLock
+        public final float[] xy;
+        // computed mileage for each point in the range
+        public final float[] mileage;
+
+        // must be called while holding trackUpdateLock
+        protected MileageSegment( Track track, int first, int end, boolean forward, float anchorMileage )
+        {
+            this.first = first;
+            this.end = end;
+            this.forward = forward;
+            this.anchorMileage = anchorMileage;
+
+            int count = end - first;
+            this.xy = new float[2 * count];
+            this.mileage = new float[count];
+            for ( int i = 0; i < count; i++ )
+            {
+                Point point = track.points.get( first + i );
+                this.xy[2 * i + 0] = point.getX( );
+                this.xy[2 * i + 1] = point.getY( );
+            }
+        }
+
+        public void compute( double ppvAspectRatio )
+        {
+            int count = this.end - this.first;
+            if ( count <= 0 ) return;
+
+            if ( this.forward )
+            {
+                double m = this.anchorMileage;
+                this.mileage[0] = ( float ) m;
+                for ( int i = 1; i < count; i++ )
+                {
+                    m += LineUtils.distance( xy[2 * i - 2], xy[2 * i - 1], xy[2 * i], xy[2 * i + 1], ppvAspectRatio );
+                    this.mileage[i] = ( float ) m;
+                }
+            }
+            else
+            {
+                double m = this.anchorMileage;
+                this.mileage[count - 1] = ( float ) m;
+                for ( int i = count - 2; i >= 0; i-- )
+                {
+                    m -= LineUtils.distance( xy[2 * i], xy[2 * i + 1], xy[2 * i + 2], xy[2 * i + 3], ppvAspectRatio );
+                    this.mileage[i] = ( float ) m;
+                }
+            }
+        }
+    }
+
+    // Background mileage recomputation for one track, covering the range of
+    // points [first, end) once its segments have been uploaded
+    protected static class MileageUpdate
+    {
+        public final Object trackId;
+        public final double ppvAspectRatio;
+        public final int first;
+        public final int end;
+        public final List<MileageSegment> segments;
+
+        // if true, the segments extend the valid range [validFirst, validEnd) out to [first, end)
+        public boolean extendsValid;
+        public int validFirst;
+        public int validEnd;
+
+        public CompletableFuture<Void> result;
+        protected volatile boolean cancelled;
+
+        protected MileageUpdate( Object trackId, double ppvAspectRatio, int first, int end )
+        {
+            this.trackId = trackId;
+            this.ppvAspectRatio = ppvAspectRatio;
+            this.first = first;
+            this.end = end;
+            this.segments = new ArrayList<>( 2 );
+            this.cancelled = false;
+        }
+
+        protected void compute( )
+        {
+            for ( MileageSegment segment : this.segments )
+            {
+                if ( this.cancelled ) return;
+                segment.compute( this.ppvAspectRatio );
+            }
+        }
+
+        public void cancel( )
+        {
+            this.cancelled = true;
+            if ( this.result != null ) this.result.cancel( false );
+        }
+    }
+
     // A Track modified in the gl display() thread as well as
     // by the user, all methods should be called while holding
     // trackUpdateLock
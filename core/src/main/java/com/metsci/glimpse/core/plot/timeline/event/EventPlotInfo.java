@@ -66,9 +66,9 @@ import com.metsci.glimpse.core.plot.timeline.event.listener.DragListener;
 import com.metsci.glimpse.core.plot.timeline.event.listener.EventPlotListener;
 import com.metsci.glimpse.core.plot.timeline.event.listener.EventSelectionHandler;
 import com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPainter;
+import com.metsci.glimpse.core.plot.timeline.event.paint.DefaultGroupedEventPainter;
 import com.metsci.glimpse.core.plot.timeline.event.paint.EventPainterManager;
 import com.metsci.glimpse.core.plot.timeline.event.paint.GroupedEventPainter;
-import com.metsci.glimpse.core.plot.timeline.event.paint.GroupedEventPainterAdapter;
 import com.metsci.glimpse.core.plot.timeline.layout.TimePlotInfo;
 import com.metsci.glimpse.core.plot.timeline.layout.TimePlotInfoWrapper;
 import com.metsci.glimpse.core.support.atlas.TextureAtlas;
@@ -155,7 +155,7 @@ public class EventPlotInfo extends TimePlotInfoWrapper implements TimePlotInfo
         this.layout1D.setEventConsumer( false );
         this.eventManager = new EventManager( this );
         this.eventPainterManager = new EventPainterManager( this, eventManager, epoch, atlas );
-        this.eventPainterManager.setEventPainter( new GroupedEventPainterAdapter( new DefaultEventPainter( ) ) );
+        this.eventPainterManager.setEventPainter( new DefaultGroupedEventPainter( ) );
         this.layout1D.addPainter( this.eventPainterManager );
 
         this.eventListeners = new CopyOnWriteArrayList<EventPlotListener>( );
@@ -656,16 +656,12 @@ public class DefaultEventPainter implements EventPainter
         }
     }
 
+    /**
+     * Returns the longest prefix of fullText which, followed by an ellipsis, is narrower than availableSpace.
+     */
     public static String calculateDisplayText( TextRenderer textRenderer, String fullText, double availableSpace )
     {
-        for ( int endIndex = fullText.length( ); endIndex >= 0; endIndex-- )
-        {
-            String subText = fullText.substring( 0, endIndex ) + "...";
-            Rectangle2D bounds = textRenderer.getBounds( subText );
-            if ( bounds.getWidth( ) < availableSpace ) return subText;
-        }
-
-        return "";
+        return textRenderer.truncateToWidth( fullText, "...", availableSpace );
     }
 
     public static float[] getBackgroundColor( Event event, EventPlotInfo info, boolean isSelected )
@@ -32,6 +32,7 @@ import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPain
 import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPainter.calculateDisplayText;
 import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPainter.getBackgroundColor;
 import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPainter.getBorderColor;
+import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPainter.getBorderThickness;
 import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPainter.getIconSizePerpPixels;
 import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPainter.getTextAvailableSpace;
 import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPainter.isIconOverlapping;
@@ -40,8 +41,11 @@ import static com.metsci.glimpse.core.plot.timeline.event.paint.DefaultEventPain
 
 import java.awt.geom.Rectangle2D;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Lists;
 import com.jogamp.opengl.GL;
@@ -57,6 +61,7 @@ import com.metsci.glimpse.core.plot.stacked.StackedPlot2D.Orientation;
 import com.metsci.glimpse.core.plot.timeline.StackedTimePlot2D;
 import com.metsci.glimpse.core.plot.timeline.data.Epoch;
 import com.metsci.glimpse.core.plot.timeline.event.Event;
+import com.metsci.glimpse.core.plot.timeline.event.Event.OverlapRenderingMode;
 import com.metsci.glimpse.core.plot.timeline.event.Event.TextRenderingMode;
 import com.metsci.glimpse.core.plot.timeline.event.EventBounds;
 import com.metsci.glimpse.core.plot.timeline.event.EventPlotInfo;
@@ -70,7 +75,18 @@ import com.metsci.glimpse.core.support.shader.line.LineJoinType;
 import com.metsci.glimpse.core.support.shader.line.LineStyle;
 import com.metsci.glimpse.core.support.shader.triangle.ArrayColorProgram;
 
-public class DefaultGroupedEventPainter implements GroupedEventPainter
+/**
+ * Paints the same visualization as {@link DefaultEventPainter}, but for all events at once:
+ * backgrounds, borders, icons and labels are each accumulated into shared buffers and drawn
+ * with a single program bind, using per-vertex colors. Borders are batched separately for
+ * each distinct border thickness.
+ *
+ * It is also an {@link EventPainter}, so it can be set on individual events; the
+ * {@link EventPainterManager} still draws all events sharing the painter in one batch.
+ *
+ * @see EventPlotInfo#setEventPainter(GroupedEventPainter)
+ */
+public class DefaultGroupedEventPainter implements GroupedEventPainter, EventPainter
 {
     private static final float PI_2 = ( float ) ( Math.PI / 2.0f );
 
@@ -78,7 +94,7 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
     protected int minimumTextDisplayWidth = 20;
 
     protected ColorLineProgram lineProg;
-    protected ColorLinePath linePath;
+    protected Map<Float, ColorLinePath> linePaths;
     protected LineStyle lineStyle;
 
     protected ArrayColorProgram fillProg;
@@ -90,7 +106,7 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
     public DefaultGroupedEventPainter( )
     {
         this.lineProg = new ColorLineProgram( );
-        this.linePath = new ColorLinePath( );
+        this.linePaths = new LinkedHashMap<>( );
         this.lineStyle = new LineStyle( );
         this.lineStyle.joinType = LineJoinType.JOIN_MITER;
         this.lineStyle.stippleEnable = false;
@@ -118,7 +134,8 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
     }
 
     /**
-     * If the width of an event is less than this value, text is never displayed.
+     * If the width of an event is less than this value, and its text must fit inside
+     * the event ({@link OverlapRenderingMode#Overfull}), text is never displayed.
      * This provides an optimization when lots of events are on screen since it
      * is expensive to calculate the width of a text string.
      */
@@ -132,6 +149,12 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
         return this.minimumTextDisplayWidth;
     }
 
+    @Override
+    public void paint( GlimpseContext context, Event event, Event nextEvent, EventPlotInfo info, int posMin, int posMax )
+    {
+        paint( context, info, Collections.singletonList( new EventDrawInfo( event, nextEvent, posMin, posMax ) ) );
+    }
+
     @Override
     public void paint( GlimpseContext context, final EventPlotInfo info, final Collection<EventDrawInfo> events )
     {
@@ -152,7 +175,10 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
         List<IconDrawInfo> iconDrawList = Lists.newArrayList( );
         List<TextDrawInfo> textDrawList = Lists.newArrayList( );
 
-        this.linePath.clear( );
+        for ( ColorLinePath linePath : this.linePaths.values( ) )
+        {
+            linePath.clear( );
+        }
         this.fillPath.clear( );
         this.fillColor.clear( );
 
@@ -217,33 +243,17 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
 
                 EventBounds eventBounds = info.getEventBounds( event.getId( ) );
 
+                float[] fillColor = event.isShowBackground( ) ? getBackgroundColor( event, info, isSelected ) : null;
+                float[] borderColor = event.isShowBorder( ) ? getBorderColor( event, info, isSelected ) : null;
+                float borderThickness = event.isShowBorder( ) ? getBorderThickness( event, info, isSelected ) : 0;
+
                 if ( !offEdgeMin && !offEdgeMax )
                 {
-                    if ( event.isShowBackground( ) )
-                    {
-                        float[] color = getBackgroundColor( event, info, isSelected );
-                        addVerticesBox( horiz, color, ( float ) timeMin, ( float ) timeMax, posMin, posMax );
-                    }
-
-                    if ( event.isShowBorder( ) )
-                    {
-                        float[] color = getBorderColor( event, info, isSelected );
-                        addVerticesBox( horiz, color, ( float ) timeMin, ( float ) timeMax, posMin, posMax );
-                    }
+                    addVerticesBox( horiz, fillColor, borderColor, borderThickness, ( float ) timeMin, ( float ) timeMax, posMin, posMax );
                 }
                 else
                 {
-                    if ( event.isShowBackground( ) )
-                    {
-                        float[] color = getBackgroundColor( event, info, isSelected );
-                        addVerticesArrow( horiz, color, ( float ) timeMin, ( float ) timeMax, posMin, posMax, ( float ) arrowBaseMin, ( float ) arrowBaseMax, ( float ) sizePerpCenter );
-                    }
-
-                    if ( event.isShowBorder( ) )
-                    {
-                        float[] color = getBorderColor( event, info, isSelected );
-                        addVerticesArrow( horiz, color, ( float ) timeMin, ( float ) timeMax, posMin, posMax, ( float ) arrowBaseMin, ( float ) arrowBaseMax, ( float ) sizePerpCenter );
-                    }
+                    addVerticesArrow( horiz, fillColor, borderColor, borderThickness, ( float ) timeMin, ( float ) timeMax, posMin, posMax, ( float ) arrowBaseMin, ( float ) arrowBaseMax, ( float ) sizePerpCenter );
                 }
 
                 int totalIconSizePerpPixels = getIconSizePerpPixels( event, info, sizePerpPixels );
@@ -283,7 +293,7 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
                                     float[] color;
                                     if ( icon == null || !atlas.isImageLoaded( icon ) )
                                     {
-                                        color = getBackgroundColor( child, info, isSelected );
+                                        color = getBackgroundColor( child, info, isSelected ).clone( );
                                         color[3] = 0.5f;
                                         icon = defaultIconId;
                                     }
@@ -311,7 +321,7 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
                                         }
                                         else
                                         {
-                                            iconDrawList.add( new IconDrawInfo( icon, x, y, iconScale, iconScale, 0, iconSizePerp, false, color ) );
+                                            iconDrawList.add( new IconDrawInfo( icon, y, x, iconScale, iconScale, 0, iconSizePerp, false, color ) );
                                         }
                                     }
                                 }
@@ -382,7 +392,7 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
                     }
                 }
 
-                boolean isBoxTooSmallForText = remainingSpace < this.minimumTextDisplayWidth;
+                boolean isBoxTooSmallForText = remainingSpace < this.minimumTextDisplayWidth && event.getOverlapRenderingMode( ) == OverlapRenderingMode.Overfull;
 
                 if ( event.isShowLabel( ) && event.getLabel( ) != null && !isBoxTooSmallForText )
                 {
@@ -495,7 +505,15 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
                 lineProg.setOrtho( gl, xMin, xMax, yMin, yMax );
                 lineProg.setViewport( gl, bounds );
 
-                lineProg.draw( gl, lineStyle, linePath );
+                for ( Map.Entry<Float, ColorLinePath> entry : linePaths.entrySet( ) )
+                {
+                    ColorLinePath linePath = entry.getValue( );
+                    if ( linePath.numVertices( ) > 0 )
+                    {
+                        lineStyle.thickness_PX = entry.getKey( );
+                        lineProg.draw( gl, lineStyle, linePath );
+                    }
+                }
             }
             finally
             {
@@ -530,9 +548,15 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
                 textRenderer.begin3DRendering( );
                 try
                 {
-                    for ( TextDrawInfo textInfo : textDrawList )
+                    if ( horiz )
                     {
+                        transformMatrix.loadIdentity( );
+                        transformMatrix.makeOrtho( 0, width, 0, height, -1, 1 );
+                        textRenderer.setTransform( transformMatrix.getMatrix( ) );
+                    }
 
+                    for ( TextDrawInfo textInfo : textDrawList )
+                    {
                         if ( !horiz )
                         {
                             transformMatrix.loadIdentity( );
@@ -560,74 +584,113 @@ public class DefaultGroupedEventPainter implements GroupedEventPainter
         }
     }
 
-    protected void addVerticesBox( boolean horiz, float[] color, float timeMin, float timeMax, float posMin, float posMax )
+    protected ColorLinePath linePath( float thickness_PX )
+    {
+        return this.linePaths.computeIfAbsent( thickness_PX, ( k ) -> new ColorLinePath( ) );
+    }
+
+    /**
+     * @param fillColor background color, or null to skip the background
+     * @param borderColor border color, or null to skip the border
+     */
+    protected void addVerticesBox( boolean horiz, float[] fillColor, float[] borderColor, float borderThickness, float timeMin, float timeMax, float posMin, float posMax )
     {
-        if ( horiz )
+        if ( fillColor != null )
         {
-            this.fillPath.growQuad2f( timeMin, posMin, timeMax, posMax );
-            this.linePath.addRectangle( timeMin, posMin, timeMax, posMax, color );
+            if ( horiz )
+            {
+                this.fillPath.growQuad2f( timeMin, posMin, timeMax, posMax );
+            }
+            else
+            {
+                this.fillPath.growQuad2f( posMin, timeMin, posMax, timeMax );
+            }
+
+            this.fillColor.growQuadSolidColor( fillColor );
         }
-        else
+
+        if ( borderColor != null )
         {
-            this.fillPath.growQuad2f( posMin, timeMin, posMax, timeMax );
-            this.linePath.addRectangle( posMin, timeMin, posMax, timeMax, color );
+            if ( horiz )
+            {
+                linePath( borderThickness ).addRectangle( timeMin, posMin, timeMax, posMax, borderColor );
+            }
+            else
+            {
+                linePath( borderThickness ).addRectangle( posMin, timeMin, posMax, timeMax, borderColor );
+            }
         }
-
-        this.fillColor.growQuadSolidColor( color );
     }
 
-    protected void addVerticesArrow( boolean horiz, float[] color, float timeMin, float timeMax, float posMin, float posMax, float arrowBaseMin, float arrowBaseMax, float sizePerpCenter )
+    /**
+     * @param fillColor background color, or null to skip the background
+     * @param borderColor border color, or null to skip the border
+     */
+    protected void addVerticesArrow( boolean horiz, float[] fillColor, float[] borderColor, float borderThickness, float timeMin, float timeMax, float posMin, float posMax, float arrowBaseMin, float arrowBaseMax, float sizePerpCenter )
     {
-        if ( horiz )
-        {
-            // center rectangle
-            fillPath.growQuad2f( arrowBaseMin, posMin, arrowBaseMax, posMax );
-
-            // left arrow
-            fillPath.grow2f( timeMin, sizePerpCenter );
-            fillPath.grow2f( arrowBaseMin, posMax );
-            fillPath.grow2f( arrowBaseMin, posMin );
-
-            // right arrow
-            fillPath.grow2f( timeMax, sizePerpCenter );
-            fillPath.grow2f( arrowBaseMax, posMin );
-            fillPath.grow2f( arrowBaseMax, posMax );
-
-            linePath.moveTo( arrowBaseMin, posMax, color );
-            linePath.lineTo( arrowBaseMax, posMax, color );
-            linePath.lineTo( timeMax, sizePerpCenter, color );
-            linePath.lineTo( arrowBaseMax, posMin, color );
-            linePath.lineTo( arrowBaseMin, posMin, color );
-            linePath.lineTo( timeMin, sizePerpCenter, color );
-            linePath.closeLoop( );
-        }
-        else
+        if ( fillColor != null )
         {
-            // center rectangle
-            fillPath.growQuad2f( posMin, arrowBaseMin, posMax, arrowBaseMax );
-
-            // left arrow
-            fillPath.grow2f( sizePerpCenter, timeMin );
-            fillPath.grow2f( posMax, arrowBaseMin );
-            fillPath.grow2f( posMin, arrowBaseMin );
-
-            // right arrow
-            fillPath.grow2f( sizePerpCenter, timeMax );
-            fillPath.grow2f( posMin, arrowBaseMax );
-            fillPath.grow2f( posMax, arrowBaseMax );
-
-            linePath.moveTo( posMax, arrowBaseMin, color );
-            linePath.lineTo( posMax, arrowBaseMax, color );
-            linePath.lineTo( sizePerpCenter, timeMax, color );
-            linePath.lineTo( posMin, arrowBaseMax, color );
-            linePath.lineTo( posMin, arrowBaseMin, color );
-            linePath.lineTo( sizePerpCenter, timeMin, color );
-            linePath.closeLoop( );
+            if ( horiz )
+            {
+                // center rectangle
+                fillPath.growQuad2f( arrowBaseMin, posMin, arrowBaseMax, posMax );
+
+                // left arrow
+                fillPath.grow2f( timeMin, sizePerpCenter );
+                fillPath.grow2f( arrowBaseMin, posMax );
+                fillPath.grow2f( arrowBaseMin, posMin );
+
+                // right arrow
+                fillPath.grow2f( timeMax, sizePerpCenter );
+                fillPath.grow2f( arrowBaseMax, posMin );
+                fillPath.grow2f( arrowBaseMax, posMax );
+            }
+            else
+            {
+                // center rectangle
+                fillPath.growQuad2f( posMin, arrowBaseMin, posMax, arrowBaseMax );
+
+                // left arrow
+                fillPath.grow2f( sizePerpCenter, timeMin );
+                fillPath.grow2f( posMax, arrowBaseMin );
+                fillPath.grow2f( posMin, arrowBaseMin );
+
+                // right arrow
+                fillPath.grow2f( sizePerpCenter, timeMax );
+                fillPath.grow2f( posMin, arrowBaseMax );
+                fillPath.grow2f( posMax, arrowBaseMax );
+            }
+
+            for ( int i = 0; i < 12; i++ )
+            {
+                this.fillColor.growNfv( fillColor, 0, 4 );
+            }
         }
 
-        for ( int i = 0; i < 12; i++ )
+        if ( borderColor != null )
         {
-            this.fillColor.growNfv( color, 0, 4 );
+            ColorLinePath linePath = linePath( borderThickness );
+
+            if ( horiz )
+            {
+                linePath.moveTo( arrowBaseMin, posMax, borderColor );
+                linePath.lineTo( arrowBaseMax, posMax, borderColor );
+                linePath.lineTo( timeMax, sizePerpCenter, borderColor );
+                linePath.lineTo( arrowBaseMax, posMin, borderColor );
+                linePath.lineTo( arrowBaseMin, posMin, borderColor );
+                linePath.lineTo( timeMin, sizePerpCenter, borderColor );
+                linePath.closeLoop( );
+            }
+            else
+            {
+                linePath.moveTo( posMax, arrowBaseMin, borderColor );
+                linePath.lineTo( posMax, arrowBaseMax, borderColor );
+                linePath.lineTo( sizePerpCenter, timeMax, borderColor );
+                linePath.lineTo( posMin, arrowBaseMax, borderColor );
+                linePath.lineTo( posMin, arrowBaseMin, borderColor );
+                linePath.lineTo( sizePerpCenter, timeMin, borderColor );
+                linePath.closeLoop( );
+            }
         }
     }
 }
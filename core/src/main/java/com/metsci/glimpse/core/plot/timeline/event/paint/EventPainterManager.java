@@ -28,7 +28,9 @@ package com.metsci.glimpse.core.plot.timeline.event.paint;
 
 import java.awt.Font;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Lists;
 import com.jogamp.opengl.GL;
@@ -52,6 +54,11 @@ import com.metsci.glimpse.core.support.settings.LookAndFeel;
 /**
  * Paints 1D events with associated color, time span, icon, and label information.
  *
+ * Events without their own {@link EventPainter} are drawn together by the {@link GroupedEventPainter}
+ * set with {@link #setEventPainter(GroupedEventPainter)}. Events whose own painter also implements
+ * {@link GroupedEventPainter} are collected and drawn with one call per painter; other painters
+ * are called once per event.
+ *
  * @author ulman
  */
 public class EventPainterManager extends GlimpsePainterBase
@@ -236,7 +243,9 @@ public class EventPainterManager extends GlimpsePainterBase
 
             List<Row> rows = manager.getRows( );
 
-            Collection<EventDrawInfo> events = Lists.newLinkedList( );
+            Collection<EventDrawInfo> events = Lists.newArrayList( );
+            // Insertion-ordered, so that painter groups draw in the order their first events are encountered
+            Map<GroupedEventPainter, Collection<EventDrawInfo>> groupedEvents = new LinkedHashMap<>( );
 
             int count = rows.size( );
             for ( int i = 0; i < count; i++ )
@@ -248,14 +257,7 @@ public class EventPainterManager extends GlimpsePainterBase
                 {
                     if ( prev != null )
                     {
-                        if ( prev.getEventPainter( ) == null )
-                        {
-                            events.add( new EventDrawInfo( prev, next, ( int ) posMin, ( int ) posMax ) );
-                        }
-                        else
-                        {
-                            prev.getEventPainter( ).paint( context, prev, next, plot, ( int ) posMin, ( int ) posMax );
-                        }
+                        paintOrCollect( context, prev, next, ( int ) posMin, ( int ) posMax, events, groupedEvents );
                     }
 
                     prev = next;
@@ -264,20 +266,19 @@ public class EventPainterManager extends GlimpsePainterBase
                 // paint last event
                 if ( prev != null )
                 {
-                    if ( prev.getEventPainter( ) == null )
-                    {
-                        events.add( new EventDrawInfo( prev, null, ( int ) posMin, ( int ) posMax ) );
-                    }
-                    else
-                    {
-                        prev.getEventPainter( ).paint( context, prev, null, plot, ( int ) posMin, ( int ) posMax );
-                    }
+                    paintOrCollect( context, prev, null, ( int ) posMin, ( int ) posMax, events, groupedEvents );
                 }
 
                 posMin = posMax + buffer;
                 posMax = posMax + buffer + rowSize;
             }
 
+            // paint the events whose custom painter can draw them all at once
+            for ( Map.Entry<GroupedEventPainter, Collection<EventDrawInfo>> entry : groupedEvents.entrySet( ) )
+            {
+                entry.getKey( ).paint( context, plot, entry.getValue( ) );
+            }
+
             // paint all the events which did not have a custom painter
             defaultPainter.paint( context, plot, events );
         }
@@ -288,6 +289,24 @@ public class EventPainterManager extends GlimpsePainterBase
         }
     }
 
+    protected void paintOrCollect( GlimpseContext context, Event event, Event nextEvent, int posMin, int posMax, Collection<EventDrawInfo> events, Map<GroupedEventPainter, Collection<EventDrawInfo>> groupedEvents )
+    {
+        EventPainter painter = event.getEventPainter( );
+
+        if ( painter == null )
+        {
+            events.add( new EventDrawInfo( event, nextEvent, posMin, posMax ) );
+        }
+        else if ( painter instanceof GroupedEventPainter )
+        {
+            groupedEvents.computeIfAbsent( ( GroupedEventPainter ) painter, ( k ) -> Lists.newArrayList( ) ).add( new EventDrawInfo( event, nextEvent, posMin, posMax ) );
+        }
+        else
+        {
+            painter.paint( context, event, nextEvent, plot, posMin, posMax );
+        }
+    }
+
     @Override
     public void setLookAndFeel( LookAndFeel laf )
     {
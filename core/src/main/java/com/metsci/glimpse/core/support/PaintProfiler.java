@@ -0,0 +1,631 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.support;
+
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.newDaemonThreadFactory;
+import static com.metsci.glimpse.util.logging.LoggerUtils.getLogger;
+import static com.metsci.glimpse.util.logging.LoggerUtils.logInfo;
+import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
+import static java.lang.Math.min;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2ES2;
+import com.jogamp.opengl.GLContext;
+import com.metsci.glimpse.core.context.GlimpseContext;
+import com.metsci.glimpse.core.layout.GlimpseLayout;
+import com.metsci.glimpse.core.painter.base.GlimpsePainter;
+import com.metsci.glimpse.core.painter.base.GlimpsePainterCallback;
+import com.metsci.glimpse.util.var.Disposable;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Records CPU and GPU time spent in each painter and each layout, over a sliding window
+ * of recent paints, and summarizes them as percentiles.
+ * <p>
+ * Profiling is opt-in: it is off until a profiler is installed with {@link #setActive(PaintProfiler)}.
+ * While a profiler is active, {@link GlimpseLayout} reports each layout it paints, and
+ * {@link com.metsci.glimpse.core.layout.GlimpseLayoutDelegate} reports each non-layout
+ * painter. A layout's times include its children's.
+ * <p>
+ * GPU times come from {@code GL_TIMESTAMP} queries, which are read back a few frames later
+ * without stalling the pipeline. They are only collected on contexts that support timer
+ * queries (GL 3.3 or {@code ARB_timer_query}).
+ * <p>
+ * Results are available from {@link #getProfiles()}, as text or JSON via {@link #toSummaryString(int)}
+ * and {@link #toJson()}, on a schedule via {@link #startPeriodicDump(long, Consumer)}, and
+ * on screen via {@link com.metsci.glimpse.core.painter.info.PaintProfilerPainter}.
+ */
+public class PaintProfiler implements GlimpsePainterCallback
+{
+    private static final Logger logger = getLogger( PaintProfiler.class );
+
+    protected static final ScheduledExecutorService dumpExec = newSingleThreadScheduledExecutor( newDaemonThreadFactory( "PaintProfiler-dump-%d" ) );
+
+    protected static final int DEFAULT_WINDOW_SIZE = 300;
+
+    /**
+     * Cap on outstanding GPU queries per context, in case results never become available.
+     */
+    protected static final int MAX_PENDING_GPU_SPANS = 4096;
+
+    protected static volatile PaintProfiler active = null;
+
+    /**
+     * Installs a profiler for all layouts and painters, or removes the current one if
+     * {@code profiler} is null.
+     */
+    public static void setActive( PaintProfiler profiler )
+    {
+        active = profiler;
+    }
+
+    public static PaintProfiler getActive( )
+    {
+        return active;
+    }
+
+    protected final int windowSize;
+    protected volatile boolean gpuTimingEnabled;
+
+    // Guarded by this. Weak keys, so painters that are no longer referenced elsewhere
+    // can be collected without an explicit call to remove()
+    protected final Map<GlimpsePainter, Entry> entries;
+    protected final Map<GLContext, GpuTimer> gpuTimers;
+
+    protected final ThreadLocal<ThreadState> threadStates;
+
+    public PaintProfiler( )
+    {
+        this( DEFAULT_WINDOW_SIZE );
+    }
+
+    /**
+     * @param windowSize number of most recent paints of each painter to compute percentiles over
+     */
+    public PaintProfiler( int windowSize )
+    {
+        this.windowSize = windowSize;
+        this.gpuTimingEnabled = true;
+
+        this.entries = new WeakHashMap<>( );
+        this.gpuTimers = new WeakHashMap<>( );
+
+        this.threadStates = ThreadLocal.withInitial( ThreadState::new );
+    }
+
+    public void setGpuTimingEnabled( boolean gpuTimingEnabled )
+    {
+        this.gpuTimingEnabled = gpuTimingEnabled;
+    }
+
+    public boolean isGpuTimingEnabled( )
+    {
+        return this.gpuTimingEnabled;
+    }
+
+    @Override
+    public void prePaint( GlimpsePainter painter, GlimpseContext context )
+    {
+        ThreadState state = this.threadStates.get( );
+
+        GpuTimer gpuTimer = null;
+        if ( this.gpuTimingEnabled )
+        {
+            gpuTimer = this.gpuTimer( state, context.getGLContext( ), context.getGL( ) );
+            if ( gpuTimer != null && state.stack.isEmpty( ) )
+            {
+                // Collect finished spans once per top-level paint, rather than for every painter
+                this.collectGpuSpans( gpuTimer, context.getGL( ).getGL2ES2( ) );
+            }
+        }
+
+        Span span = new Span( painter, this.entry( painter ) );
+        if ( gpuTimer != null && gpuTimer.pending.size( ) < MAX_PENDING_GPU_SPANS )
+        {
+            GL2ES2 gl = context.getGL( ).getGL2ES2( );
+            span.gpuTimer = gpuTimer;
+            span.startQuery = gpuTimer.acquire( gl );
+            gl.glQueryCounter( span.startQuery, GL2ES2.GL_TIMESTAMP );
+        }
+        state.stack.push( span );
+        span.cpuStart_NS = System.nanoTime( );
+    }
+
+    @Override
+    public void postPaint( GlimpsePainter painter, GlimpseContext context )
+    {
+        long cpuEnd_NS = System.nanoTime( );
+
+        ThreadState state = this.threadStates.get( );
+        // Normally the top span matches, but if a nested painter threw, or the profiler was
+        // installed mid-paint, discard unmatched spans until finding the one for this painter
+        Span span;
+        while ( ( span = state.stack.poll( ) ) != null && span.painter != painter )
+        {
+            if ( span.gpuTimer != null ) span.gpuTimer.release( span.startQuery );
+        }
+        if ( span == null )
+        {
+            return;
+        }
+
+        if ( span.gpuTimer != null )
+        {
+            GL2ES2 gl = context.getGL( ).getGL2ES2( );
+            span.endQuery = span.gpuTimer.acquire( gl );
+            gl.glQueryCounter( span.endQuery, GL2ES2.GL_TIMESTAMP );
+            span.gpuTimer.pending.add( span );
+        }
+
+        synchronized ( this )
+        {
+            span.entry.cpu_NS.add( cpuEnd_NS - span.cpuStart_NS );
+        }
+    }
+
+    protected synchronized Entry entry( GlimpsePainter painter )
+    {
+        return this.entries.computeIfAbsent( painter, p -> new Entry( p, this.windowSize ) );
+    }
+
+    /**
+     * Discards the samples collected for {@code painter}, and stops tracking it until its
+     * next paint.
+     */
+    public synchronized void remove( GlimpsePainter painter )
+    {
+        this.entries.remove( painter );
+    }
+
+    protected GpuTimer gpuTimer( ThreadState state, GLContext glContext, GL gl )
+    {
+        if ( state.glContext != glContext )
+        {
+            synchronized ( this )
+            {
+                state.glContext = glContext;
+                state.gpuTimer = this.gpuTimers.computeIfAbsent( glContext, c -> new GpuTimer( supportsTimerQueries( gl ) ) );
+            }
+        }
+        return ( state.gpuTimer.supported ? state.gpuTimer : null );
+    }
+
+    protected static boolean supportsTimerQueries( GL gl )
+    {
+        try
+        {
+            int major = gl.getContext( ).getGLVersionNumber( ).getMajor( );
+            int minor = gl.getContext( ).getGLVersionNumber( ).getMinor( );
+            boolean core33 = ( major > 3 || ( major == 3 && minor >= 3 ) );
+            return gl.isGL2ES2( ) && ( core33 || gl.isExtensionAvailable( "GL_ARB_timer_query" ) );
+        }
+        catch ( Exception e )
+        {
+            logWarning( logger, "Failed to check for timer query support -- GPU times will not be recorded", e );
+            return false;
+        }
+    }
+
+    protected void collectGpuSpans( GpuTimer gpuTimer, GL2ES2 gl )
+    {
+        // Spans finish in submission order, so stop at the first one that is still in flight
+        int[] available = new int[1];
+        long[] timestamp_NS = new long[1];
+        while ( !gpuTimer.pending.isEmpty( ) )
+        {
+            Span span = gpuTimer.pending.peek( );
+            gl.glGetQueryObjectuiv( span.endQuery, GL2ES2.GL_QUERY_RESULT_AVAILABLE, available, 0 );
+            if ( available[0] == 0 )
+            {
+                break;
+            }
+            gpuTimer.pending.poll( );
+
+            gl.glGetQueryObjecti64v( span.startQuery, GL2ES2.GL_QUERY_RESULT, timestamp_NS, 0 );
+            long start_NS = timestamp_NS[0];
+            gl.glGetQueryObjecti64v( span.endQuery, GL2ES2.GL_QUERY_RESULT, timestamp_NS, 0 );
+            long end_NS = timestamp_NS[0];
+
+            gpuTimer.release( span.startQuery );
+            gpuTimer.release( span.endQuery );
+
+            synchronized ( this )
+            {
+                span.entry.gpu_NS.add( end_NS - start_NS );
+            }
+        }
+    }
+
+    /**
+     * Deletes the timer queries this profiler has created on the current context. Must be
+     * called with the context current, after the profiler has been deactivated.
+     */
+    public void dispose( GL gl )
+    {
+        GpuTimer gpuTimer;
+        synchronized ( this )
+        {
+            gpuTimer = this.gpuTimers.remove( gl.getContext( ) );
+        }
+
+        if ( gpuTimer != null && gpuTimer.supported )
+        {
+            for ( Span span : gpuTimer.pending )
+            {
+                gpuTimer.release( span.startQuery );
+                gpuTimer.release( span.endQuery );
+            }
+            gpuTimer.pending.clear( );
+
+            int[] queries = gpuTimer.free.toIntArray( );
+            gl.getGL2ES2( ).glDeleteQueries( queries.length, queries, 0 );
+            gpuTimer.free.clear( );
+        }
+    }
+
+    /**
+     * Discards all recorded times.
+     */
+    public synchronized void reset( )
+    {
+        for ( Entry entry : this.entries.values( ) )
+        {
+            entry.cpu_NS.clear( );
+            entry.gpu_NS.clear( );
+        }
+    }
+
+    /**
+     * Returns one profile per painter and layout that has been painted since the last
+     * {@link #reset()}, sorted by descending 90th-percentile CPU time.
+     */
+    public List<Profile> getProfiles( )
+    {
+        List<Profile> profiles = new ArrayList<>( );
+        synchronized ( this )
+        {
+            for ( Entry entry : this.entries.values( ) )
+            {
+                if ( entry.cpu_NS.count > 0 )
+                {
+                    profiles.add( new Profile( entry.name, entry.isLayout, entry.cpu_NS.count, entry.cpu_NS.percentiles( ), entry.gpu_NS.percentiles( ) ) );
+                }
+            }
+        }
+        profiles.sort( Comparator.comparingDouble( ( Profile p ) -> p.cpu.p90_MS ).reversed( ) );
+        return profiles;
+    }
+
+    /**
+     * Returns a plain-text table of the {@code maxRows} most expensive painters and layouts.
+     */
+    public String toSummaryString( int maxRows )
+    {
+        List<Profile> profiles = this.getProfiles( );
+
+        StringBuilder s = new StringBuilder( );
+        s.append( String.format( Locale.ROOT, "%-40s %8s %8s %8s %8s %8s %8s%n", "Painter", "cpu p50", "cpu p90", "cpu max", "gpu p50", "gpu p90", "gpu max" ) );
+        for ( Profile p : profiles.subList( 0, min( maxRows, profiles.size( ) ) ) )
+        {
+            s.append( String.format( Locale.ROOT, "%-40s %8.3f %8.3f %8.3f %8.3f %8.3f %8.3f%n", p.name, p.cpu.p50_MS, p.cpu.p90_MS, p.cpu.max_MS, p.gpu.p50_MS, p.gpu.p90_MS, p.gpu.max_MS ) );
+        }
+        return s.toString( );
+    }
+
+    public String toJson( )
+    {
+        List<Profile> profiles = this.getProfiles( );
+
+        StringBuilder s = new StringBuilder( );
+        s.append( "{\"time_PMILLIS\":" ).append( System.currentTimeMillis( ) ).append( ",\"profiles\":[" );
+        for ( int i = 0; i < profiles.size( ); i++ )
+        {
+            Profile p = profiles.get( i );
+            if ( i > 0 ) s.append( ',' );
+            s.append( "{\"name\":" );
+            appendJsonString( s, p.name );
+            s.append( ",\"layout\":" ).append( p.isLayout );
+            s.append( ",\"count\":" ).append( p.count );
+            s.append( ",\"cpu\":" );
+            appendJson( s, p.cpu );
+            s.append( ",\"gpu\":" );
+            appendJson( s, p.gpu );
+            s.append( '}' );
+        }
+        s.append( "]}" );
+        return s.toString( );
+    }
+
+    protected static void appendJson( StringBuilder s, Percentiles p )
+    {
+        if ( p.n == 0 )
+        {
+            s.append( "null" );
+        }
+        else
+        {
+            s.append( String.format( Locale.ROOT, "{\"n\":%d,\"mean_MS\":%.4f,\"p50_MS\":%.4f,\"p90_MS\":%.4f,\"p99_MS\":%.4f,\"max_MS\":%.4f}", p.n, p.mean_MS, p.p50_MS, p.p90_MS, p.p99_MS, p.max_MS ) );
+        }
+    }
+
+    protected static void appendJsonString( StringBuilder s, String string )
+    {
+        s.append( '"' );
+        for ( int i = 0; i < string.length( ); i++ )
+        {
+            char c = string.charAt( i );
+            if ( c == '"' || c == '\\' )
+            {
+                s.append( '\\' ).append( c );
+            }
+            else if ( c < 0x20 )
+            {
+                s.append( String.format( Locale.ROOT, "\\u%04x", ( int ) c ) );
+            }
+            else
+            {
+                s.append( c );
+            }
+        }
+        s.append( '"' );
+    }
+
+    /**
+     * Passes {@link #toJson()} to {@code sink} every {@code period_MS}, on a daemon thread,
+     * until the returned {@link Disposable} is disposed.
+     */
+    public Disposable startPeriodicDump( long period_MS, Consumer<String> sink )
+    {
+        ScheduledFuture<?> future = dumpExec.scheduleAtFixedRate( ( ) ->
+        {
+            try
+            {
+                sink.accept( this.toJson( ) );
+            }
+            catch ( Exception e )
+            {
+                logWarning( logger, "Failed to dump paint profile", e );
+            }
+        }, period_MS, period_MS, MILLISECONDS );
+
+        return ( ) -> future.cancel( false );
+    }
+
+    /**
+     * Logs {@link #toSummaryString(int)} every {@code period_MS}, until the returned
+     * {@link Disposable} is disposed.
+     */
+    public Disposable startPeriodicLog( long period_MS, int maxRows )
+    {
+        return this.startPeriodicDump( period_MS, json -> logInfo( logger, "Paint profile:%n%s", this.toSummaryString( maxRows ) ) );
+    }
+
+    protected static class ThreadState
+    {
+        public final ArrayDeque<Span> stack = new ArrayDeque<>( );
+        public GLContext glContext = null;
+        public GpuTimer gpuTimer = null;
+    }
+
+    protected static class Span
+    {
+        public final GlimpsePainter painter;
+        public final Entry entry;
+        public long cpuStart_NS;
+        public GpuTimer gpuTimer;
+        public int startQuery;
+        public int endQuery;
+
+        public Span( GlimpsePainter painter, Entry entry )
+        {
+            this.painter = painter;
+            this.entry = entry;
+        }
+    }
+
+    protected static class GpuTimer
+    {
+        public final boolean supported;
+        public final IntArrayList free;
+        public final ArrayDeque<Span> pending;
+
+        public GpuTimer( boolean supported )
+        {
+            this.supported = supported;
+            this.free = new IntArrayList( );
+            this.pending = new ArrayDeque<>( );
+        }
+
+        public int acquire( GL2ES2 gl )
+        {
+            if ( this.free.isEmpty( ) )
+            {
+                int[] queries = new int[32];
+                gl.glGenQueries( queries.length, queries, 0 );
+                this.free.addElements( 0, queries );
+            }
+            return this.free.popInt( );
+        }
+
+        public void release( int query )
+        {
+            this.free.add( query );
+        }
+    }
+
+    protected static class Entry
+    {
+        // No reference to the painter itself, which would keep it from being collected
+        public final String name;
+        public final boolean isLayout;
+        public final Samples cpu_NS;
+        public final Samples gpu_NS;
+
+        public Entry( GlimpsePainter painter, int windowSize )
+        {
+            this.isLayout = ( painter instanceof GlimpseLayout );
+            this.name = nameOf( painter );
+            this.cpu_NS = new Samples( windowSize );
+            this.gpu_NS = new Samples( windowSize );
+        }
+    }
+
+    protected static String nameOf( GlimpsePainter painter )
+    {
+        String className = painter.getClass( ).getSimpleName( );
+        if ( className.isEmpty( ) )
+        {
+            className = painter.getClass( ).getName( );
+        }
+
+        if ( painter instanceof GlimpseLayout )
+        {
+            String layoutName = ( ( GlimpseLayout ) painter ).getName( );
+            if ( layoutName != null && !layoutName.isEmpty( ) )
+            {
+                return layoutName + " (" + className + ")";
+            }
+        }
+
+        return className + "@" + Integer.toHexString( System.identityHashCode( painter ) );
+    }
+
+    /**
+     * Ring buffer of the most recent samples.
+     */
+    protected static class Samples
+    {
+        public final long[] ring;
+        public long count;
+
+        public Samples( int windowSize )
+        {
+            this.ring = new long[windowSize];
+            this.count = 0;
+        }
+
+        public void add( long sample )
+        {
+            this.ring[( int ) ( this.count % this.ring.length )] = sample;
+            this.count++;
+        }
+
+        public void clear( )
+        {
+            this.count = 0;
+        }
+
+        public Percentiles percentiles( )
+        {
+            int n = ( int ) min( this.count, this.ring.length );
+            long[] sorted = Arrays.copyOf( this.ring, n );
+            Arrays.sort( sorted );
+            return new Percentiles( sorted );
+        }
+    }
+
+    /**
+     * Summary of a window of samples, in milliseconds. Fields are NaN if there are no samples.
+     */
+    public static class Percentiles
+    {
+        public final int n;
+        public final double mean_MS;
+        public final double p50_MS;
+        public final double p90_MS;
+        public final double p99_MS;
+        public final double max_MS;
+
+        protected Percentiles( long[] sorted_NS )
+        {
+            this.n = sorted_NS.length;
+
+            double sum_NS = 0;
+            for ( long v : sorted_NS )
+            {
+                sum_NS += v;
+            }
+
+            this.mean_MS = ( this.n == 0 ? Double.NaN : 1e-6 * sum_NS / this.n );
+            this.p50_MS = percentile_MS( sorted_NS, 0.50 );
+            this.p90_MS = percentile_MS( sorted_NS, 0.90 );
+            this.p99_MS = percentile_MS( sorted_NS, 0.99 );
+            this.max_MS = percentile_MS( sorted_NS, 1.00 );
+        }
+
+        protected static double percentile_MS( long[] sorted_NS, double fraction )
+        {
+            if ( sorted_NS.length == 0 )
+            {
+                return Double.NaN;
+            }
+
+            int i = ( int ) Math.ceil( fraction * sorted_NS.length ) - 1;
+            return 1e-6 * sorted_NS[Math.max( 0, i )];
+        }
+    }
+
+    public static class Profile
+    {
+        public final String name;
+        public final boolean isLayout;
+
+        /**
+         * Total number of paints recorded since the last {@link PaintProfiler#reset()}.
+         * Percentiles cover only the most recent ones.
+         */
+        public final long count;
+
+        public final Percentiles cpu;
+        public final Percentiles gpu;
+
+        public Profile( String name, boolean isLayout, long count, Percentiles cpu, Percentiles gpu )
+        {
+            this.name = name;
+            this.isLayout = isLayout;
+            this.count = count;
+            this.cpu = cpu;
+            this.gpu = gpu;
+        }
+    }
+}
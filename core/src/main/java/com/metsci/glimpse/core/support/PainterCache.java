@@ -32,15 +32,21 @@ import static java.lang.Math.max;
 import static java.lang.Runtime.getRuntime;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 import java.util.logging.Logger;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 
 /**
  * Provides one way of asynchronously computing a long-running task for painting.
@@ -87,6 +93,14 @@ import com.google.common.cache.CacheBuilder;
  * </code>
  * </pre>
  *
+ * Only one computation is ever pending or running for a given key; repeated calls to {@link #get(Object)}
+ * while a key is in flight do not queue more work. Pending keys are handed to the executor in order of
+ * their current priority (see {@link #setPriority(ToDoubleFunction)}), and keys that are no longer wanted
+ * can be dropped before they start with {@link #cancelPending(Predicate)} or {@link #retainPending(Collection)}.
+ *
+ * By default values are soft-referenced. Alternatively, a {@link Weigher} and a maximum total weight can be
+ * given to bound the cache explicitly.
+ *
  * @author borkholder
  */
 public class PainterCache<K, V>
@@ -103,20 +117,74 @@ public class PainterCache<K, V>
 
     protected final Function<K, V> computeF;
     protected final Cache<K, V> cache;
-    protected final Map<K, Object> locks;
     protected final Executor executor;
 
+    /**
+     * Requests that have been submitted but not yet completed, including those still waiting for a thread.
+     * Guarded by itself.
+     */
+    protected final Map<K, Request<K>> inFlight;
+
+    /**
+     * Requests that have not yet started computing. Guarded by {@link #inFlight}.
+     */
+    protected final Map<K, Request<K>> pending;
+
+    protected volatile ToDoubleFunction<? super K> priorityF;
+
+    protected final AtomicLong hitCount;
+    protected final AtomicLong missCount;
+    protected final AtomicLong loadSuccessCount;
+    protected final AtomicLong loadFailureCount;
+    protected final AtomicLong cancelCount;
+    protected final AtomicLong totalLoadTime_NS;
+
     public PainterCache( Function<K, V> computeF )
     {
         this( computeF, SHARED_EXEC );
     }
 
     public PainterCache( Function<K, V> computeF, Executor executor )
+    {
+        this( computeF, executor, CacheBuilder.newBuilder( ).softValues( ).build( ) );
+    }
+
+    /**
+     * Creates a cache that holds strong references to its values, evicting the least recently
+     * used values once their total weight exceeds {@code maxWeight}.
+     */
+    public PainterCache( Function<K, V> computeF, Executor executor, Weigher<? super K, ? super V> weigher, long maxWeight )
+    {
+        this( computeF, executor, CacheBuilder.newBuilder( ).weigher( weigher ).maximumWeight( maxWeight ).build( ) );
+    }
+
+    protected PainterCache( Function<K, V> computeF, Executor executor, Cache<K, V> cache )
     {
         this.computeF = computeF;
         this.executor = executor;
-        cache = CacheBuilder.newBuilder( ).softValues( ).build( );
-        locks = new WeakHashMap<>( );
+        this.cache = cache;
+
+        this.inFlight = new LinkedHashMap<>( );
+        this.pending = new LinkedHashMap<>( );
+        this.priorityF = null;
+
+        this.hitCount = new AtomicLong( );
+        this.missCount = new AtomicLong( );
+        this.loadSuccessCount = new AtomicLong( );
+        this.loadFailureCount = new AtomicLong( );
+        this.cancelCount = new AtomicLong( );
+        this.totalLoadTime_NS = new AtomicLong( );
+    }
+
+    /**
+     * Sets the function used to order pending computations: keys with lower values are computed first.
+     * The function is evaluated on executor threads each time a computation is dispatched, so it should
+     * read current state (e.g. the latest viewport) and be cheap and thread-safe. If {@code null}, keys
+     * are computed in the order they were first requested.
+     */
+    public void setPriority( ToDoubleFunction<? super K> priorityF )
+    {
+        this.priorityF = priorityF;
     }
 
     public V get( K key )
@@ -124,74 +192,280 @@ public class PainterCache<K, V>
         V value = cache.getIfPresent( key );
         if ( value != null )
         {
+            hitCount.incrementAndGet( );
             return value;
         }
 
-        Object lock = getLock( key );
-        executor.execute( ( ) -> wrapForException( lock, key ) );
-        return cache.getIfPresent( key );
+        missCount.incrementAndGet( );
+
+        synchronized ( inFlight )
+        {
+            if ( inFlight.containsKey( key ) )
+            {
+                return null;
+            }
+
+            // Check again, in case a computation finished since the check above
+            value = cache.getIfPresent( key );
+            if ( value != null )
+            {
+                return value;
+            }
+
+            Request<K> request = new Request<>( key );
+            inFlight.put( key, request );
+            pending.put( key, request );
+        }
+
+        executor.execute( this::computeNextPending );
+        return null;
+    }
+
+    /**
+     * Returns true if a computation for the key is waiting or running.
+     */
+    public boolean isInFlight( K key )
+    {
+        synchronized ( inFlight )
+        {
+            return inFlight.containsKey( key );
+        }
     }
 
     /**
-     * Allow any number of keys to be computed at once, but only one compute per key.
+     * Drops pending (not yet started) computations whose keys match the predicate. Computations
+     * that have already started are allowed to finish.
+     *
+     * @return the number of computations dropped
      */
-    protected Object getLock( K key )
+    public int cancelPending( Predicate<? super K> cancel )
     {
-        synchronized ( locks )
+        int count = 0;
+        synchronized ( inFlight )
         {
-            Object lock = locks.get( key );
-            if ( lock == null )
+            Iterator<Request<K>> it = pending.values( ).iterator( );
+            while ( it.hasNext( ) )
             {
-                lock = new Object( );
-                locks.put( key, lock );
+                Request<K> request = it.next( );
+                if ( cancel.test( request.key ) )
+                {
+                    it.remove( );
+                    inFlight.remove( request.key );
+                    count++;
+                }
             }
+        }
+
+        cancelCount.addAndGet( count );
+        return count;
+    }
+
+    /**
+     * Drops pending (not yet started) computations for all keys not in {@code keep}.
+     *
+     * @return the number of computations dropped
+     */
+    public int retainPending( Collection<? super K> keep )
+    {
+        return cancelPending( k -> !keep.contains( k ) );
+    }
 
-            return lock;
+    /**
+     * Each call computes at most one value: the highest-priority pending request at the time this
+     * runs, which is not necessarily the request that caused this call to be submitted. There is one
+     * call per submitted request, so every request that is not cancelled is eventually computed.
+     */
+    protected void computeNextPending( )
+    {
+        Request<K> request;
+        synchronized ( inFlight )
+        {
+            request = pollPending( );
         }
+
+        if ( request != null )
+        {
+            wrapForException( request );
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on {@link #inFlight}.
+     */
+    protected Request<K> pollPending( )
+    {
+        Request<K> best = null;
+        ToDoubleFunction<? super K> priorityF = this.priorityF;
+        if ( priorityF == null )
+        {
+            Iterator<Request<K>> it = pending.values( ).iterator( );
+            best = it.hasNext( ) ? it.next( ) : null;
+        }
+        else
+        {
+            double bestPriority = Double.POSITIVE_INFINITY;
+            for ( Request<K> request : pending.values( ) )
+            {
+                double priority = priorityF.applyAsDouble( request.key );
+                if ( best == null || priority < bestPriority )
+                {
+                    best = request;
+                    bestPriority = priority;
+                }
+            }
+        }
+
+        if ( best != null )
+        {
+            pending.remove( best.key );
+        }
+
+        return best;
     }
 
-    protected void wrapForException( Object lock, K key )
+    protected void wrapForException( Request<K> request )
     {
         try
         {
-            compute( lock, key );
+            compute( request );
         }
         catch ( Exception ex )
         {
-            logWarning( LOGGER, "Error in background compute for %s", ex, key );
+            loadFailureCount.incrementAndGet( );
+            logWarning( LOGGER, "Error in background compute for %s", ex, request.key );
+        }
+        finally
+        {
+            synchronized ( inFlight )
+            {
+                inFlight.remove( request.key, request );
+            }
         }
     }
 
-    protected void compute( Object lock, K key )
+    protected void compute( Request<K> request )
     {
-        synchronized ( lock )
+        long start_NS = System.nanoTime( );
+        V value = computeF.apply( request.key );
+        totalLoadTime_NS.addAndGet( System.nanoTime( ) - start_NS );
+        loadSuccessCount.incrementAndGet( );
+
+        synchronized ( inFlight )
         {
-            V value = cache.getIfPresent( key );
-            if ( value != null )
+            // Don't resurrect a value that was invalidated while it was being computed
+            if ( inFlight.get( request.key ) == request && value != null )
             {
-                return;
+                cache.put( request.key, value );
             }
-
-            value = computeF.apply( key );
-            cache.put( key, value );
         }
     }
 
     public void invalidate( K key )
     {
-        synchronized ( locks )
+        synchronized ( inFlight )
         {
-            locks.remove( key );
+            inFlight.remove( key );
+            pending.remove( key );
             cache.invalidate( key );
         }
     }
 
     public void clear( )
     {
-        synchronized ( locks )
+        synchronized ( inFlight )
         {
-            locks.clear( );
+            inFlight.clear( );
+            pending.clear( );
             cache.invalidateAll( );
         }
     }
+
+    public Stats getStats( )
+    {
+        int nPending;
+        int nInFlight;
+        synchronized ( inFlight )
+        {
+            nPending = pending.size( );
+            nInFlight = inFlight.size( );
+        }
+
+        return new Stats( hitCount.get( ),
+                missCount.get( ),
+                loadSuccessCount.get( ),
+                loadFailureCount.get( ),
+                cancelCount.get( ),
+                totalLoadTime_NS.get( ),
+                cache.size( ),
+                nPending,
+                nInFlight - nPending );
+    }
+
+    public void resetStats( )
+    {
+        hitCount.set( 0 );
+        missCount.set( 0 );
+        loadSuccessCount.set( 0 );
+        loadFailureCount.set( 0 );
+        cancelCount.set( 0 );
+        totalLoadTime_NS.set( 0 );
+    }
+
+    protected static class Request<K>
+    {
+        public final K key;
+
+        public Request( K key )
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Snapshot of cache activity since creation or the last {@link PainterCache#resetStats()}.
+     */
+    public static class Stats
+    {
+        public final long hitCount;
+        public final long missCount;
+        public final long loadSuccessCount;
+        public final long loadFailureCount;
+        public final long cancelCount;
+        public final long totalLoadTime_NS;
+
+        public final long cachedCount;
+        public final int pendingCount;
+        public final int runningCount;
+
+        public Stats( long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long cancelCount, long totalLoadTime_NS, long cachedCount, int pendingCount, int runningCount )
+        {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadSuccessCount = loadSuccessCount;
+            this.loadFailureCount = loadFailureCount;
+            this.cancelCount = cancelCount;
+            this.totalLoadTime_NS = totalLoadTime_NS;
+            this.cachedCount = cachedCount;
+            this.pendingCount = pendingCount;
+            this.runningCount = runningCount;
+        }
+
+        public double hitRate( )
+        {
+            long requestCount = hitCount + missCount;
+            return ( requestCount == 0 ? 1.0 : ( ( double ) hitCount ) / requestCount );
+        }
+
+        public double meanLoadTime_MS( )
+        {
+            return ( loadSuccessCount == 0 ? 0.0 : totalLoadTime_NS * 1e-6 / loadSuccessCount );
+        }
+
+        @Override
+        public String toString( )
+        {
+            return String.format( "PainterCache.Stats[hits=%,d; misses=%,d; hitRate=%.3f; loads=%,d; failures=%,d; cancelled=%,d; meanLoad=%.1fms; cached=%,d; pending=%,d; running=%,d]",
+                    hitCount, missCount, hitRate( ), loadSuccessCount, loadFailureCount, cancelCount, meanLoadTime_MS( ), cachedCount, pendingCount, runningCount );
+        }
+    }
 }
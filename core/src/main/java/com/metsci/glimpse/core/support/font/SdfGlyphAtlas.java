@@ -0,0 +1,778 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.support.font;
+
+import static com.jogamp.opengl.GL.GL_CLAMP_TO_EDGE;
+import static com.jogamp.opengl.GL.GL_LINEAR;
+import static com.jogamp.opengl.GL.GL_LINEAR_MIPMAP_LINEAR;
+import static com.jogamp.opengl.GL.GL_TEXTURE_2D;
+import static com.jogamp.opengl.GL.GL_TEXTURE_MAG_FILTER;
+import static com.jogamp.opengl.GL.GL_TEXTURE_MIN_FILTER;
+import static com.jogamp.opengl.GL.GL_TEXTURE_WRAP_S;
+import static com.jogamp.opengl.GL.GL_TEXTURE_WRAP_T;
+import static com.jogamp.opengl.GL.GL_UNPACK_ALIGNMENT;
+import static com.jogamp.opengl.GL.GL_UNSIGNED_BYTE;
+import static com.metsci.glimpse.core.gl.util.GLUtils.deleteTextures;
+import static com.metsci.glimpse.core.gl.util.GLUtils.genTexture;
+import static com.metsci.glimpse.core.gl.util.GLUtils.getGLTextureUnit;
+import static com.metsci.glimpse.util.logging.LoggerUtils.getLogger;
+import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2ES2;
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * A single-channel glyph atlas which stores a signed distance field for each glyph, rather
+ * than a coverage bitmap. Glyphs are rasterized once, from their AWT outlines, at a base size;
+ * the distance field can then be sampled to draw sharp text at any size, with optional outline
+ * and halo, using {@link com.metsci.glimpse.core.support.shader.triangle.SdfTextProgram}.
+ * <p>
+ * Field values are stored as unsigned bytes: 0.5 lies on the glyph outline, values above 0.5
+ * are inside the glyph, and the full [0,1] range spans {@code 2 * spread} base-size pixels.
+ * <p>
+ * Generating an atlas takes some CPU time (though glyphs are processed in parallel), so atlases
+ * can be written to and read from a stream; see {@link #loadOrCreate(File, Font, String)}.
+ * <p>
+ * Glyph metrics and quad bounds are expressed in ems (units of the base size), with y up and
+ * the origin at the left end of the baseline. Text is laid out by {@link #appendText}, which
+ * appends triangles to caller-owned buffers so that many labels, of different sizes and colors,
+ * can be drawn from one atlas in a single draw call.
+ */
+public class SdfGlyphAtlas
+{
+    private static final Logger logger = getLogger( SdfGlyphAtlas.class );
+
+    public static final float DEFAULT_BASE_SIZE_PX = 48;
+    public static final float DEFAULT_SPREAD_PX = 6;
+
+    public static final String PRINTABLE_ASCII;
+    static
+    {
+        StringBuilder s = new StringBuilder( );
+        for ( char c = 32; c < 127; c++ )
+        {
+            s.append( c );
+        }
+        PRINTABLE_ASCII = s.toString( );
+    }
+
+    /**
+     * Outlines are rasterized at this multiple of the base size before the distance transform,
+     * and the field is point-sampled at the center of each base-size pixel. Must be odd, so that
+     * each base-size pixel center lands on a supersampled pixel center.
+     */
+    protected static final int SUPERSAMPLE = 5;
+
+    protected static final int MAGIC = 0x53444641;
+    protected static final int FORMAT_VERSION = 1;
+
+    public static class Glyph
+    {
+        public final int codePoint;
+
+        /**
+         * Horizontal advance, in ems
+         */
+        public final float advance;
+
+        /**
+         * Quad bounds, in ems, relative to the pen position on the baseline, including the
+         * distance-field padding. All zero for glyphs with no outline (e.g. space).
+         */
+        public final float xMin;
+        public final float yMin;
+        public final float xMax;
+        public final float yMax;
+
+        /**
+         * Quad texture coordinates. {@code tTop} corresponds to {@code yMax}.
+         */
+        public final float sLeft;
+        public final float tTop;
+        public final float sRight;
+        public final float tBottom;
+
+        public Glyph( int codePoint, float advance, float xMin, float yMin, float xMax, float yMax, float sLeft, float tTop, float sRight, float tBottom )
+        {
+            this.codePoint = codePoint;
+            this.advance = advance;
+            this.xMin = xMin;
+            this.yMin = yMin;
+            this.xMax = xMax;
+            this.yMax = yMax;
+            this.sLeft = sLeft;
+            this.tTop = tTop;
+            this.sRight = sRight;
+            this.tBottom = tBottom;
+        }
+
+        public boolean hasQuad( )
+        {
+            return ( this.xMax > this.xMin && this.yMax > this.yMin );
+        }
+    }
+
+    protected final String fontName;
+    protected final int fontStyle;
+    protected final float baseSize_PX;
+    protected final float spread_PX;
+
+    /**
+     * Font line metrics, in ems
+     */
+    protected final float ascent;
+    protected final float descent;
+    protected final float leading;
+
+    protected final int width;
+    protected final int height;
+    protected final byte[] field;
+
+    protected final Glyph[] glyphs;
+    protected final Glyph[] latinGlyphs;
+    protected final Int2ObjectOpenHashMap<Glyph> otherGlyphs;
+    protected final Glyph fallbackGlyph;
+
+    protected int textureHandle;
+
+    protected SdfGlyphAtlas( String fontName, int fontStyle, float baseSize_PX, float spread_PX, float ascent, float descent, float leading, int width, int height, byte[] field, Glyph[] glyphs )
+    {
+        this.fontName = fontName;
+        this.fontStyle = fontStyle;
+        this.baseSize_PX = baseSize_PX;
+        this.spread_PX = spread_PX;
+        this.ascent = ascent;
+        this.descent = descent;
+        this.leading = leading;
+        this.width = width;
+        this.height = height;
+        this.field = field;
+        this.glyphs = glyphs;
+
+        this.latinGlyphs = new Glyph[256];
+        this.otherGlyphs = new Int2ObjectOpenHashMap<>( );
+        for ( Glyph glyph : glyphs )
+        {
+            if ( glyph.codePoint < this.latinGlyphs.length )
+            {
+                this.latinGlyphs[glyph.codePoint] = glyph;
+            }
+            else
+            {
+                this.otherGlyphs.put( glyph.codePoint, glyph );
+            }
+        }
+        this.fallbackGlyph = this.latinGlyphs['?'];
+
+        this.textureHandle = 0;
+    }
+
+    /**
+     * Builds an atlas for the given characters, using {@link #DEFAULT_BASE_SIZE_PX} and
+     * {@link #DEFAULT_SPREAD_PX}.
+     */
+    public static SdfGlyphAtlas create( Font font, String chars )
+    {
+        return create( font, chars, DEFAULT_BASE_SIZE_PX, DEFAULT_SPREAD_PX );
+    }
+
+    /**
+     * Builds an atlas for the given characters. The size of {@code font} is ignored: glyphs are
+     * rasterized at {@code baseSize_PX}, with a distance field extending {@code spread_PX} beyond
+     * each outline (which also bounds the widest outline or halo that can be drawn, relative to
+     * the base size).
+     */
+    public static SdfGlyphAtlas create( Font font, String chars, float baseSize_PX, float spread_PX )
+    {
+        Font baseFont = font.deriveFont( baseSize_PX );
+        FontRenderContext frc = new FontRenderContext( null, true, true );
+
+        int[] codePoints = chars.codePoints( ).distinct( ).filter( baseFont::canDisplay ).toArray( );
+
+        // Rasterize and distance-transform each glyph independently
+        GlyphField[] fields = IntStream.range( 0, codePoints.length ).parallel( ).mapToObj( i -> createGlyphField( baseFont, frc, codePoints[i], spread_PX ) ).toArray( GlyphField[]::new );
+
+        // Shelf-pack the glyph fields, tallest first
+        int gutter = 1;
+        long area = 0;
+        int maxGlyphWidth = 0;
+        for ( GlyphField g : fields )
+        {
+            area += ( long ) ( g.width + gutter ) * ( g.height + gutter );
+            maxGlyphWidth = Math.max( maxGlyphWidth, g.width );
+        }
+
+        // Every glyph has to fit on a shelf by itself, then the atlas grows to fit the total area
+        int atlasWidth = 64;
+        while ( atlasWidth < maxGlyphWidth + gutter )
+        {
+            atlasWidth *= 2;
+        }
+        while ( ( long ) atlasWidth * atlasWidth < area )
+        {
+            atlasWidth *= 2;
+        }
+
+        Integer[] order = new Integer[fields.length];
+        for ( int i = 0; i < order.length; i++ )
+        {
+            order[i] = i;
+        }
+        Arrays.sort( order, Comparator.comparingInt( ( Integer i ) -> fields[i].height ).reversed( ) );
+
+        int[] xs = new int[fields.length];
+        int[] ys = new int[fields.length];
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for ( int i : order )
+        {
+            GlyphField g = fields[i];
+            if ( x + g.width > atlasWidth )
+            {
+                x = 0;
+                y += shelfHeight + gutter;
+                shelfHeight = 0;
+            }
+            xs[i] = x;
+            ys[i] = y;
+            x += g.width + gutter;
+            shelfHeight = Math.max( shelfHeight, g.height );
+        }
+        int atlasHeight = Math.max( 1, y + shelfHeight );
+
+        byte[] atlasField = new byte[atlasWidth * atlasHeight];
+        Glyph[] glyphs = new Glyph[fields.length];
+        for ( int i = 0; i < fields.length; i++ )
+        {
+            GlyphField g = fields[i];
+            for ( int r = 0; r < g.height; r++ )
+            {
+                System.arraycopy( g.values, r * g.width, atlasField, ( ys[i] + r ) * atlasWidth + xs[i], g.width );
+            }
+
+            float sLeft = xs[i] / ( float ) atlasWidth;
+            float sRight = ( xs[i] + g.width ) / ( float ) atlasWidth;
+            float tTop = ys[i] / ( float ) atlasHeight;
+            float tBottom = ( ys[i] + g.height ) / ( float ) atlasHeight;
+
+            // AWT y points down; glyph quads use y up
+            float xMin = g.x0 / baseSize_PX;
+            float xMax = ( g.x0 + g.width ) / baseSize_PX;
+            float yMax = -g.y0 / baseSize_PX;
+            float yMin = -( g.y0 + g.height ) / baseSize_PX;
+
+            glyphs[i] = new Glyph( g.codePoint, g.advance / baseSize_PX, xMin, yMin, xMax, yMax, sLeft, tTop, sRight, tBottom );
+        }
+
+        LineMetrics lineMetrics = baseFont.getLineMetrics( "Hg", frc );
+        float ascent = lineMetrics.getAscent( ) / baseSize_PX;
+        float descent = lineMetrics.getDescent( ) / baseSize_PX;
+        float leading = lineMetrics.getLeading( ) / baseSize_PX;
+
+        return new SdfGlyphAtlas( font.getFontName( ), font.getStyle( ), baseSize_PX, spread_PX, ascent, descent, leading, atlasWidth, atlasHeight, atlasField, glyphs );
+    }
+
+    /**
+     * Reads the atlas cached in {@code cacheFile}, if it exists and was built from the same font
+     * and covers all of {@code chars}. Otherwise builds a new atlas, and attempts to write it to
+     * {@code cacheFile} for next time.
+     */
+    public static SdfGlyphAtlas loadOrCreate( File cacheFile, Font font, String chars )
+    {
+        if ( cacheFile.isFile( ) )
+        {
+            try ( InputStream in = new FileInputStream( cacheFile ) )
+            {
+                SdfGlyphAtlas atlas = read( in );
+                if ( atlas.fontName.equals( font.getFontName( ) ) && atlas.fontStyle == font.getStyle( ) && atlas.covers( font, chars ) )
+                {
+                    return atlas;
+                }
+            }
+            catch ( IOException e )
+            {
+                logWarning( logger, "Failed to read SDF glyph atlas: file = %s", e, cacheFile );
+            }
+        }
+
+        SdfGlyphAtlas atlas = create( font, chars );
+        try ( OutputStream out = new FileOutputStream( cacheFile ) )
+        {
+            atlas.write( out );
+        }
+        catch ( IOException e )
+        {
+            logWarning( logger, "Failed to write SDF glyph atlas: file = %s", e, cacheFile );
+        }
+        return atlas;
+    }
+
+    protected boolean covers( Font font, String chars )
+    {
+        return chars.codePoints( ).allMatch( c -> this.getGlyph( c ) != null || !font.canDisplay( c ) );
+    }
+
+    public void write( OutputStream out ) throws IOException
+    {
+        DeflaterOutputStream deflater = new DeflaterOutputStream( new BufferedOutputStream( out ) );
+        DataOutputStream data = new DataOutputStream( deflater );
+
+        data.writeInt( MAGIC );
+        data.writeInt( FORMAT_VERSION );
+        data.writeUTF( this.fontName );
+        data.writeInt( this.fontStyle );
+        data.writeFloat( this.baseSize_PX );
+        data.writeFloat( this.spread_PX );
+        data.writeFloat( this.ascent );
+        data.writeFloat( this.descent );
+        data.writeFloat( this.leading );
+
+        data.writeInt( this.glyphs.length );
+        for ( Glyph g : this.glyphs )
+        {
+            data.writeInt( g.codePoint );
+            data.writeFloat( g.advance );
+            data.writeFloat( g.xMin );
+            data.writeFloat( g.yMin );
+            data.writeFloat( g.xMax );
+            data.writeFloat( g.yMax );
+            data.writeFloat( g.sLeft );
+            data.writeFloat( g.tTop );
+            data.writeFloat( g.sRight );
+            data.writeFloat( g.tBottom );
+        }
+
+        data.writeInt( this.width );
+        data.writeInt( this.height );
+        data.write( this.field );
+
+        // Finish the deflater without closing the caller's stream
+        data.flush( );
+        deflater.finish( );
+        deflater.flush( );
+    }
+
+    public static SdfGlyphAtlas read( InputStream in ) throws IOException
+    {
+        DataInputStream data = new DataInputStream( new InflaterInputStream( new BufferedInputStream( in ) ) );
+
+        if ( data.readInt( ) != MAGIC ) throw new IOException( "Not an SDF glyph atlas" );
+        int version = data.readInt( );
+        if ( version != FORMAT_VERSION ) throw new IOException( "Unsupported SDF glyph atlas version: " + version );
+
+        String fontName = data.readUTF( );
+        int fontStyle = data.readInt( );
+        float baseSize_PX = data.readFloat( );
+        float spread_PX = data.readFloat( );
+        float ascent = data.readFloat( );
+        float descent = data.readFloat( );
+        float leading = data.readFloat( );
+
+        Glyph[] glyphs = new Glyph[data.readInt( )];
+        for ( int i = 0; i < glyphs.length; i++ )
+        {
+            glyphs[i] = new Glyph( data.readInt( ), data.readFloat( ), data.readFloat( ), data.readFloat( ), data.readFloat( ), data.readFloat( ), data.readFloat( ), data.readFloat( ), data.readFloat( ), data.readFloat( ) );
+        }
+
+        int width = data.readInt( );
+        int height = data.readInt( );
+        byte[] field = new byte[width * height];
+        data.readFully( field );
+
+        return new SdfGlyphAtlas( fontName, fontStyle, baseSize_PX, spread_PX, ascent, descent, leading, width, height, field, glyphs );
+    }
+
+    //
+    // Metrics and layout
+    //
+
+    public String getFontName( )
+    {
+        return this.fontName;
+    }
+
+    public int getFontStyle( )
+    {
+        return this.fontStyle;
+    }
+
+    public float getBaseSize( )
+    {
+        return this.baseSize_PX;
+    }
+
+    public float getSpread( )
+    {
+        return this.spread_PX;
+    }
+
+    public float getAscent( )
+    {
+        return this.ascent;
+    }
+
+    public float getDescent( )
+    {
+        return this.descent;
+    }
+
+    public float getLeading( )
+    {
+        return this.leading;
+    }
+
+    public int getWidth( )
+    {
+        return this.width;
+    }
+
+    public int getHeight( )
+    {
+        return this.height;
+    }
+
+    /**
+     * Returns the field value (0-255) at the given atlas texel, where row 0 corresponds to t = 0.
+     */
+    public int getFieldValue( int x, int y )
+    {
+        return this.field[y * this.width + x] & 0xFF;
+    }
+
+    /**
+     * Returns the glyph for the given code point, or null if the atlas does not contain it.
+     */
+    public Glyph getGlyph( int codePoint )
+    {
+        if ( codePoint >= 0 && codePoint < this.latinGlyphs.length )
+        {
+            return this.latinGlyphs[codePoint];
+        }
+        else
+        {
+            return this.otherGlyphs.get( codePoint );
+        }
+    }
+
+    protected Glyph glyphOrFallback( int codePoint )
+    {
+        Glyph glyph = this.getGlyph( codePoint );
+        return ( glyph != null ? glyph : this.fallbackGlyph );
+    }
+
+    /**
+     * Returns the advance width of {@code text} drawn at {@code size_PX}.
+     */
+    public float getTextWidth( String text, float size_PX )
+    {
+        float width = 0;
+        for ( int i = 0; i < text.length( ); )
+        {
+            int c = text.codePointAt( i );
+            i += Character.charCount( c );
+
+            Glyph glyph = this.glyphOrFallback( c );
+            if ( glyph != null ) width += glyph.advance;
+        }
+        return width * size_PX;
+    }
+
+    /**
+     * Appends two triangles per visible glyph of {@code text} to the given buffers, which are
+     * suitable for {@link com.metsci.glimpse.core.support.shader.triangle.SdfTextProgram}.
+     * The left end of the baseline is placed at ({@code x}, {@code y}), and {@code size_PX}
+     * is the font size in the same units as {@code x} and {@code y} (usually pixels).
+     * Characters missing from the atlas are drawn as '?', if the atlas contains it.
+     *
+     * @return the pen position after the last glyph
+     */
+    public float appendText( String text, float x, float y, float size_PX, float[] rgba, GLEditableBuffer xyOut, GLEditableBuffer stOut, GLEditableBuffer rgbaOut )
+    {
+        float penX = x;
+        for ( int i = 0; i < text.length( ); )
+        {
+            int c = text.codePointAt( i );
+            i += Character.charCount( c );
+
+            Glyph glyph = this.glyphOrFallback( c );
+            if ( glyph == null ) continue;
+
+            if ( glyph.hasQuad( ) )
+            {
+                xyOut.growQuad2f( penX + glyph.xMin * size_PX, y + glyph.yMin * size_PX, penX + glyph.xMax * size_PX, y + glyph.yMax * size_PX );
+                stOut.growQuad2f( glyph.sLeft, glyph.tBottom, glyph.sRight, glyph.tTop );
+                rgbaOut.growQuadSolidColor( rgba );
+            }
+
+            penX += glyph.advance * size_PX;
+        }
+        return penX;
+    }
+
+    //
+    // GL resources
+    //
+
+    /**
+     * Binds the atlas texture to the given texture unit, uploading it first if necessary.
+     */
+    public void prepare( GL gl, int textureUnit )
+    {
+        gl.glActiveTexture( getGLTextureUnit( textureUnit ) );
+
+        if ( this.textureHandle == 0 )
+        {
+            this.textureHandle = genTexture( gl );
+            gl.glBindTexture( GL_TEXTURE_2D, this.textureHandle );
+            gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR );
+            gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR );
+            gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE );
+            gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE );
+
+            gl.glPixelStorei( GL_UNPACK_ALIGNMENT, 1 );
+            gl.glTexImage2D( GL_TEXTURE_2D, 0, GL.GL_R8, this.width, this.height, 0, GL2ES2.GL_RED, GL_UNSIGNED_BYTE, ByteBuffer.wrap( this.field ) );
+            gl.glPixelStorei( GL_UNPACK_ALIGNMENT, 4 );
+
+            gl.glGenerateMipmap( GL_TEXTURE_2D );
+        }
+        else
+        {
+            gl.glBindTexture( GL_TEXTURE_2D, this.textureHandle );
+        }
+    }
+
+    public void dispose( GL gl )
+    {
+        if ( this.textureHandle != 0 )
+        {
+            deleteTextures( gl, this.textureHandle );
+            this.textureHandle = 0;
+        }
+    }
+
+    //
+    // Distance field generation
+    //
+
+    protected static class GlyphField
+    {
+        public final int codePoint;
+        public final float advance;
+
+        /**
+         * Position of the field's top-left corner relative to the pen, in base-size pixels (AWT y-down)
+         */
+        public final int x0;
+        public final int y0;
+
+        public final int width;
+        public final int height;
+        public final byte[] values;
+
+        public GlyphField( int codePoint, float advance, int x0, int y0, int width, int height, byte[] values )
+        {
+            this.codePoint = codePoint;
+            this.advance = advance;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.width = width;
+            this.height = height;
+            this.values = values;
+        }
+    }
+
+    protected static GlyphField createGlyphField( Font baseFont, FontRenderContext frc, int codePoint, float spread_PX )
+    {
+        GlyphVector glyphVector = baseFont.createGlyphVector( frc, new String( Character.toChars( codePoint ) ) );
+        float advance = glyphVector.getGlyphMetrics( 0 ).getAdvance( );
+        Shape outline = glyphVector.getOutline( );
+        Rectangle2D bounds = outline.getBounds2D( );
+        if ( bounds.isEmpty( ) )
+        {
+            return new GlyphField( codePoint, advance, 0, 0, 0, 0, new byte[0] );
+        }
+
+        int pad = ( int ) Math.ceil( spread_PX ) + 1;
+        int x0 = ( int ) Math.floor( bounds.getMinX( ) ) - pad;
+        int y0 = ( int ) Math.floor( bounds.getMinY( ) ) - pad;
+        int w = ( int ) Math.ceil( bounds.getMaxX( ) ) + pad - x0;
+        int h = ( int ) Math.ceil( bounds.getMaxY( ) ) + pad - y0;
+
+        // Rasterize a binary inside/outside mask at high resolution
+        int ss = SUPERSAMPLE;
+        int wHi = w * ss;
+        int hHi = h * ss;
+        BufferedImage mask = new BufferedImage( wHi, hHi, BufferedImage.TYPE_BYTE_GRAY );
+        Graphics2D g = mask.createGraphics( );
+        try
+        {
+            g.setRenderingHint( RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF );
+            g.scale( ss, ss );
+            g.translate( -x0, -y0 );
+            g.fill( outline );
+        }
+        finally
+        {
+            g.dispose( );
+        }
+        byte[] maskBytes = ( ( DataBufferByte ) mask.getRaster( ).getDataBuffer( ) ).getData( );
+
+        // Squared distances to the nearest inside pixel, and to the nearest outside pixel
+        float[] toInside = new float[wHi * hHi];
+        float[] toOutside = new float[wHi * hHi];
+        for ( int i = 0; i < maskBytes.length; i++ )
+        {
+            boolean inside = ( maskBytes[i] & 0xFF ) >= 128;
+            toInside[i] = ( inside ? 0 : EDT_INF );
+            toOutside[i] = ( inside ? EDT_INF : 0 );
+        }
+        distanceTransform( toInside, wHi, hHi );
+        distanceTransform( toOutside, wHi, hHi );
+
+        // Point-sample the signed distance at the center of each base-size pixel
+        byte[] values = new byte[w * h];
+        float scale = 1f / ( 2 * spread_PX * ss );
+        for ( int r = 0; r < h; r++ )
+        {
+            int rHi = r * ss + ss / 2;
+            for ( int c = 0; c < w; c++ )
+            {
+                int iHi = rHi * wHi + c * ss + ss / 2;
+
+                // Distances are between pixel centers, so shift by half a pixel to reach the boundary
+                float dInside = toOutside[iHi] > 0 ? ( float ) Math.sqrt( toOutside[iHi] ) - 0.5f : 0;
+                float dOutside = toInside[iHi] > 0 ? ( float ) Math.sqrt( toInside[iHi] ) - 0.5f : 0;
+                float signed = dInside - dOutside;
+
+                float v = 0.5f + signed * scale;
+                values[r * w + c] = ( byte ) Math.round( 255 * Math.max( 0, Math.min( 1, v ) ) );
+            }
+        }
+
+        return new GlyphField( codePoint, advance, x0, y0, w, h, values );
+    }
+
+    protected static final float EDT_INF = 1e20f;
+
+    /**
+     * Exact squared Euclidean distance transform (Felzenszwalb & Huttenlocher), in place.
+     * Input values are 0 for feature pixels and {@link #EDT_INF} elsewhere.
+     */
+    protected static void distanceTransform( float[] grid, int width, int height )
+    {
+        int n = Math.max( width, height );
+        float[] f = new float[n];
+        float[] d = new float[n];
+        int[] v = new int[n];
+        float[] z = new float[n + 1];
+
+        for ( int x = 0; x < width; x++ )
+        {
+            for ( int y = 0; y < height; y++ )
+            {
+                f[y] = grid[y * width + x];
+            }
+            distanceTransform1D( f, height, d, v, z );
+            for ( int y = 0; y < height; y++ )
+            {
+                grid[y * width + x] = d[y];
+            }
+        }
+
+        for ( int y = 0; y < height; y++ )
+        {
+            int row = y * width;
+            System.arraycopy( grid, row, f, 0, width );
+            distanceTransform1D( f, width, d, v, z );
+            System.arraycopy( d, 0, grid, row, width );
+        }
+    }
+
+    protected static void distanceTransform1D( float[] f, int n, float[] d, int[] v, float[] z )
+    {
+        int k = 0;
+        v[0] = 0;
+        z[0] = Float.NEGATIVE_INFINITY;
+        z[1] = Float.POSITIVE_INFINITY;
+        for ( int q = 1; q < n; q++ )
+        {
+            float s = ( ( f[q] + q * q ) - ( f[v[k]] + v[k] * v[k] ) ) / ( 2 * q - 2 * v[k] );
+            while ( s <= z[k] )
+            {
+                k--;
+                s = ( ( f[q] + q * q ) - ( f[v[k]] + v[k] * v[k] ) ) / ( 2 * q - 2 * v[k] );
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Float.POSITIVE_INFINITY;
+        }
+
+        k = 0;
+        for ( int q = 0; q < n; q++ )
+        {
+            while ( z[k + 1] < q )
+            {
+                k++;
+            }
+            float dq = q - v[k];
+            d[q] = dq * dq + f[v[k]];
+        }
+    }
+}
@@ -37,6 +37,7 @@ import static com.metsci.glimpse.util.buffer.DirectBufferUtils.grow2f;
 
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.stream.IntStream;
 
 public class LinePathData
 {
@@ -59,6 +60,14 @@ public class LinePathData
      */
     public static final int FLAGS_JOIN = 1 << 1;
 
+    /**
+     * Mileage updates covering at least this many vertices are split into chunks
+     * and computed in parallel. Smaller updates aren't worth the scheduling overhead.
+     */
+    public static final int PARALLEL_MILEAGE_MIN_VERTICES = 1 << 16;
+
+    protected static final int PARALLEL_MILEAGE_CHUNK_VERTICES = 1 << 14;
+
     /**
      * The index of the first vertex in the current line-strip. Assigned a new
      * value when {@link #moveTo(float, float, float)} is called. Set to -1 when
@@ -292,19 +301,108 @@ public class LinePathData
             this.mileagePpvAspectRatio = ppvAspectRatio;
         }
 
-        this.mileageBuffer.position( this.mileageValidCount );
+        int oldValidCount = this.mileageValidCount;
+        int numVertices = this.numVertices( );
+        if ( numVertices - oldValidCount >= PARALLEL_MILEAGE_MIN_VERTICES )
+        {
+            updateMileageParallel( this.xyBuffer, this.flagsBuffer, this.mileageBuffer, oldValidCount, numVertices, this.mileagePpvAspectRatio );
+            this.mileageBuffer.position( numVertices );
+        }
+        else
+        {
+            this.mileageBuffer.position( oldValidCount );
 
-        updateMileageBuffer( flipped( this.xyBuffer ),
-                             flipped( this.flagsBuffer ),
-                             this.mileageBuffer,
-                             true,
-                             this.mileagePpvAspectRatio );
+            updateMileageBuffer( flipped( this.xyBuffer ),
+                                 flipped( this.flagsBuffer ),
+                                 this.mileageBuffer,
+                                 true,
+                                 this.mileagePpvAspectRatio );
+        }
 
-        int oldValidCount = this.mileageValidCount;
         this.mileageValidCount = this.mileageBuffer.position( );
         return ( this.mileageValidCount - oldValidCount );
     }
 
+    /**
+     * Equivalent to {@link #updateMileageBuffer(FloatBuffer, ByteBuffer, FloatBuffer, boolean, double)}
+     * with initial mileages, but splits the vertices into chunks that are processed in parallel.
+     * <p>
+     * Mileage is a running sum that restarts at each strip's initial mileage, so each chunk first
+     * sums its own segments starting from zero. A sequential pass over the chunks then finds the
+     * mileage carried into each chunk, and a final parallel pass adds that carry to the values
+     * before the chunk's first strip start. Uses only absolute buffer accesses, so buffer positions
+     * are not modified.
+     */
+    public static void updateMileageParallel( FloatBuffer xyBuffer, ByteBuffer flagsBuffer, FloatBuffer mileageBuffer, int firstVertex, int endVertex, double ppvAspectRatio )
+    {
+        int numChunks = ( endVertex - firstVertex + PARALLEL_MILEAGE_CHUNK_VERTICES - 1 ) / PARALLEL_MILEAGE_CHUNK_VERTICES;
+        if ( numChunks <= 0 ) return;
+
+        // Chunk-relative mileage at the end of each chunk, and the index of each chunk's first
+        // strip start (or the chunk end, if it has none)
+        float[] chunkEndMileages = new float[numChunks];
+        int[] chunkResetIndices = new int[numChunks];
+
+        IntStream.range( 0, numChunks ).parallel( ).forEach( c ->
+        {
+            int first = firstVertex + c * PARALLEL_MILEAGE_CHUNK_VERTICES;
+            int end = Math.min( endVertex, first + PARALLEL_MILEAGE_CHUNK_VERTICES );
+
+            float x = ( first > 0 ? xyBuffer.get( 2 * ( first - 1 ) + 0 ) : 0 );
+            float y = ( first > 0 ? xyBuffer.get( 2 * ( first - 1 ) + 1 ) : 0 );
+            float mileage = 0;
+            int resetIndex = end;
+
+            for ( int i = first; i < end; i++ )
+            {
+                float xNew = xyBuffer.get( 2 * i + 0 );
+                float yNew = xyBuffer.get( 2 * i + 1 );
+                boolean connect = ( ( flagsBuffer.get( i ) & FLAGS_CONNECT ) != 0 );
+                if ( connect )
+                {
+                    mileage += distance( x, y, xNew, yNew, ppvAspectRatio );
+                    mileageBuffer.put( i, mileage );
+                }
+                else
+                {
+                    // See updateMileageBuffer() regarding trailing phantom vertices
+                    mileage = mileageBuffer.get( i );
+                    resetIndex = Math.min( resetIndex, i );
+                }
+
+                x = xNew;
+                y = yNew;
+            }
+
+            chunkEndMileages[c] = mileage;
+            chunkResetIndices[c] = resetIndex;
+        } );
+
+        float carry = ( firstVertex > 0 ? mileageBuffer.get( firstVertex - 1 ) : 0 );
+        float[] chunkCarries = new float[numChunks];
+        for ( int c = 0; c < numChunks; c++ )
+        {
+            int chunkEnd = Math.min( endVertex, firstVertex + ( c + 1 ) * PARALLEL_MILEAGE_CHUNK_VERTICES );
+            boolean hasReset = ( chunkResetIndices[c] < chunkEnd );
+
+            chunkCarries[c] = carry;
+            carry = ( hasReset ? chunkEndMileages[c] : carry + chunkEndMileages[c] );
+        }
+
+        IntStream.range( 0, numChunks ).parallel( ).forEach( c ->
+        {
+            float chunkCarry = chunkCarries[c];
+            if ( chunkCarry != 0 )
+            {
+                int first = firstVertex + c * PARALLEL_MILEAGE_CHUNK_VERTICES;
+                for ( int i = first; i < chunkResetIndices[c]; i++ )
+                {
+                    mileageBuffer.put( i, mileageBuffer.get( i ) + chunkCarry );
+                }
+            }
+        } );
+    }
+
     public static void updateMileageBuffer( FloatBuffer xyBuffer,
                                             ByteBuffer flagsBuffer,
                                             FloatBuffer mileageBuffer,
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.support.shader.triangle;
+
+import static com.jogamp.opengl.GL.GL_ARRAY_BUFFER;
+import static com.jogamp.opengl.GL.GL_FLOAT;
+import static com.jogamp.opengl.GL.GL_TRIANGLES;
+import static com.metsci.glimpse.core.gl.shader.GLShaderUtils.createProgram;
+import static com.metsci.glimpse.util.io.IoUtils.requireText;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2ES2;
+import com.jogamp.opengl.GL3;
+import com.metsci.glimpse.core.axis.Axis2D;
+import com.metsci.glimpse.core.context.GlimpseBounds;
+import com.metsci.glimpse.core.context.GlimpseContext;
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
+import com.metsci.glimpse.core.gl.util.GLUtils;
+import com.metsci.glimpse.core.support.font.SdfGlyphAtlas;
+
+/**
+ * Draws text from an {@link SdfGlyphAtlas}. Triangles are usually built by
+ * {@link SdfGlyphAtlas#appendText}, with per-vertex fill colors, so any number of labels
+ * can be drawn in one call. Outline and halo widths are in screen pixels, independent of
+ * text size, but are limited by the atlas spread (scaled by text size over base size).
+ */
+public class SdfTextProgram
+{
+    public static final String vertShader_GLSL = requireText( SdfTextProgram.class.getResource( "sdf_text/sdf_text.vs" ) );
+    public static final String fragShader_GLSL = requireText( SdfTextProgram.class.getResource( "sdf_text/sdf_text.fs" ) );
+
+    public static class ProgramHandles
+    {
+        public final int program;
+
+        // Uniforms
+
+        public final int AXIS_RECT;
+        public final int ATLAS;
+        public final int FIELD_PER_TEXEL;
+
+        public final int OUTLINE_RGBA;
+        public final int OUTLINE_WIDTH_PX;
+
+        public final int HALO_RGBA;
+        public final int HALO_WIDTH_PX;
+
+        // Vertex attributes
+
+        public final int inXy;
+        public final int inSt;
+        public final int inRgba;
+
+        public ProgramHandles( GL2ES2 gl )
+        {
+            this.program = createProgram( gl, vertShader_GLSL, null, fragShader_GLSL );
+
+            this.AXIS_RECT = gl.glGetUniformLocation( this.program, "AXIS_RECT" );
+            this.ATLAS = gl.glGetUniformLocation( this.program, "ATLAS" );
+            this.FIELD_PER_TEXEL = gl.glGetUniformLocation( this.program, "FIELD_PER_TEXEL" );
+
+            this.OUTLINE_RGBA = gl.glGetUniformLocation( this.program, "OUTLINE_RGBA" );
+            this.OUTLINE_WIDTH_PX = gl.glGetUniformLocation( this.program, "OUTLINE_WIDTH_PX" );
+
+            this.HALO_RGBA = gl.glGetUniformLocation( this.program, "HALO_RGBA" );
+            this.HALO_WIDTH_PX = gl.glGetUniformLocation( this.program, "HALO_WIDTH_PX" );
+
+            this.inXy = gl.glGetAttribLocation( this.program, "inXy" );
+            this.inSt = gl.glGetAttribLocation( this.program, "inSt" );
+            this.inRgba = gl.glGetAttribLocation( this.program, "inRgba" );
+        }
+    }
+
+    // Local state
+
+    protected int textureUnit;
+
+    protected ProgramHandles handles;
+
+    public SdfTextProgram( )
+    {
+        this.textureUnit = 0;
+        this.handles = null;
+    }
+
+    public ProgramHandles handles( GlimpseContext context )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        if ( this.handles == null )
+        {
+            this.handles = new ProgramHandles( gl );
+        }
+
+        return this.handles;
+    }
+
+    /**
+     * Activates the program. Outline and halo are disabled until set, and remain set for
+     * subsequent calls to {@link #begin(GlimpseContext)}.
+     */
+    public void begin( GlimpseContext context )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        this.handles( context );
+
+        gl.glBindVertexArray( GLUtils.defaultVertexAttributeArray( gl ) );
+        gl.glUseProgram( this.handles.program );
+        gl.glEnableVertexAttribArray( this.handles.inXy );
+        gl.glEnableVertexAttribArray( this.handles.inSt );
+        gl.glEnableVertexAttribArray( this.handles.inRgba );
+
+        gl.glUniform1i( this.handles.ATLAS, this.textureUnit );
+    }
+
+    public void setAxisOrtho( GlimpseContext context, Axis2D axis )
+    {
+        setOrtho( context, ( float ) axis.getMinX( ), ( float ) axis.getMaxX( ), ( float ) axis.getMinY( ), ( float ) axis.getMaxY( ) );
+    }
+
+    public void setPixelOrtho( GlimpseContext context, GlimpseBounds bounds )
+    {
+        setOrtho( context, 0, bounds.getWidth( ), 0, bounds.getHeight( ) );
+    }
+
+    public void setOrtho( GlimpseContext context, float xMin, float xMax, float yMin, float yMax )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        gl.glUniform4f( this.handles.AXIS_RECT, xMin, xMax, yMin, yMax );
+    }
+
+    /**
+     * Draws an outline of the given width, in pixels, just outside each glyph. A width of zero
+     * disables the outline.
+     */
+    public void setOutline( GlimpseContext context, float[] rgba, float width_PX )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        gl.glUniform4fv( this.handles.OUTLINE_RGBA, 1, rgba, 0 );
+        gl.glUniform1f( this.handles.OUTLINE_WIDTH_PX, width_PX );
+    }
+
+    /**
+     * Draws a halo, fading out over the given width in pixels, outside the outline (or outside
+     * each glyph, if there is no outline). A width of zero disables the halo.
+     */
+    public void setHalo( GlimpseContext context, float[] rgba, float width_PX )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        gl.glUniform4fv( this.handles.HALO_RGBA, 1, rgba, 0 );
+        gl.glUniform1f( this.handles.HALO_WIDTH_PX, width_PX );
+    }
+
+    public void setTextureUnit( GlimpseContext context, int textureUnit )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        this.textureUnit = textureUnit;
+        gl.glUniform1i( this.handles.ATLAS, textureUnit );
+    }
+
+    public void draw( GlimpseContext context, SdfGlyphAtlas atlas, GLEditableBuffer xyVbo, GLEditableBuffer stVbo, GLEditableBuffer rgbaVbo )
+    {
+        draw( context, atlas, xyVbo, stVbo, rgbaVbo, 0, xyVbo.sizeFloats( ) / 2 );
+    }
+
+    public void draw( GlimpseContext context, SdfGlyphAtlas atlas, GLEditableBuffer xyVbo, GLEditableBuffer stVbo, GLEditableBuffer rgbaVbo, int first, int count )
+    {
+        GL gl = context.getGL( );
+        draw( context, atlas, xyVbo.deviceBuffer( gl ), stVbo.deviceBuffer( gl ), rgbaVbo.deviceBuffer( gl ), first, count );
+    }
+
+    public void draw( GlimpseContext context, SdfGlyphAtlas atlas, int xyVbo, int stVbo, int rgbaVbo, int first, int count )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        atlas.prepare( gl, this.textureUnit );
+        gl.glUniform1f( this.handles.FIELD_PER_TEXEL, 1f / ( 2 * atlas.getSpread( ) ) );
+
+        gl.glBindBuffer( GL_ARRAY_BUFFER, xyVbo );
+        gl.glVertexAttribPointer( this.handles.inXy, 2, GL_FLOAT, false, 0, 0 );
+
+        gl.glBindBuffer( GL_ARRAY_BUFFER, stVbo );
+        gl.glVertexAttribPointer( this.handles.inSt, 2, GL_FLOAT, false, 0, 0 );
+
+        gl.glBindBuffer( GL_ARRAY_BUFFER, rgbaVbo );
+        gl.glVertexAttribPointer( this.handles.inRgba, 4, GL_FLOAT, false, 0, 0 );
+
+        gl.glDrawArrays( GL_TRIANGLES, first, count );
+    }
+
+    public void end( GlimpseContext context )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        if ( this.handles != null )
+        {
+            gl.glDisableVertexAttribArray( this.handles.inXy );
+            gl.glDisableVertexAttribArray( this.handles.inSt );
+            gl.glDisableVertexAttribArray( this.handles.inRgba );
+        }
+
+        gl.glUseProgram( 0 );
+        gl.glBindVertexArray( 0 );
+    }
+
+    /**
+     * Deletes the program, and resets this object to the way it was before {@link #begin(GlimpseContext)}
+     * was first called. Does not dispose any {@link SdfGlyphAtlas}.
+     */
+    public void dispose( GlimpseContext context )
+    {
+        GL3 gl = context.getGL( ).getGL3( );
+
+        if ( this.handles != null )
+        {
+            gl.glDeleteProgram( this.handles.program );
+            this.handles = null;
+        }
+    }
+}
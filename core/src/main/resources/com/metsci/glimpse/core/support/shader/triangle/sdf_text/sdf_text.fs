@@ -0,0 +1,82 @@
+//
+// Copyright (c) 2020, Metron, Inc.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+//     * Redistributions of source code must retain the above copyright
+//       notice, this list of conditions and the following disclaimer.
+//     * Redistributions in binary form must reproduce the above copyright
+//       notice, this list of conditions and the following disclaimer in the
+//       documentation and/or other materials provided with the distribution.
+//     * Neither the name of Metron, Inc. nor the
+//       names of its contributors may be used to endorse or promote products
+//       derived from this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+// WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+// DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+// DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+// ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+// SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+
+#version 150
+
+in vec2 vSt;
+in vec4 vRgba;
+
+out vec4 outRgba;
+
+uniform sampler2D ATLAS;
+
+// Change in field value per atlas texel: 1 / ( 2 * spread )
+uniform float FIELD_PER_TEXEL;
+
+uniform vec4 OUTLINE_RGBA;
+uniform float OUTLINE_WIDTH_PX;
+
+uniform vec4 HALO_RGBA;
+uniform float HALO_WIDTH_PX;
+
+vec4 premultiply( vec4 rgba, float coverage )
+{
+    float a = rgba.a * coverage;
+    return vec4( rgba.rgb * a, a );
+}
+
+void main( )
+{
+    float d = texture( ATLAS, vSt ).r;
+
+    // Field change per screen pixel, derived from the texcoord footprint so that
+    // edges stay one pixel soft at any text size (including where the field saturates)
+    vec2 texels = vSt * vec2( textureSize( ATLAS, 0 ) );
+    float texelsPerPx = 0.5 * ( length( dFdx( texels ) ) + length( dFdy( texels ) ) );
+    float fieldPerPx = max( texelsPerPx * FIELD_PER_TEXEL, 1e-6 );
+    float aa = 0.5 * fieldPerPx;
+
+    float fillEdge = 0.5;
+    float outlineEdge = fillEdge - OUTLINE_WIDTH_PX * fieldPerPx;
+    float haloEdge = outlineEdge - HALO_WIDTH_PX * fieldPerPx;
+
+    float fillA = smoothstep( fillEdge - aa, fillEdge + aa, d );
+    float outlineA = ( OUTLINE_WIDTH_PX > 0.0 ? smoothstep( outlineEdge - aa, outlineEdge + aa, d ) : 0.0 );
+    float haloA = ( HALO_WIDTH_PX > 0.0 ? smoothstep( haloEdge - aa, outlineEdge, d ) : 0.0 );
+
+    // Composite fill over outline over halo
+    vec4 c = premultiply( vRgba, fillA );
+    c += premultiply( OUTLINE_RGBA, outlineA ) * ( 1.0 - c.a );
+    c += premultiply( HALO_RGBA, haloA ) * ( 1.0 - c.a );
+
+    if ( c.a <= 0.0 )
+    {
+        discard;
+    }
+
+    outRgba = vec4( c.rgb / c.a, c.a );
+}
@@ -0,0 +1,67 @@
+//
+// Copyright (c) 2020, Metron, Inc.
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are met:
+//     * Redistributions of source code must retain the above copyright
+//       notice, this list of conditions and the following disclaimer.
+//     * Redistributions in binary form must reproduce the above copyright
+//       notice, this list of conditions and the following disclaimer in the
+//       documentation and/or other materials provided with the distribution.
+//     * Neither the name of Metron, Inc. nor the
+//       names of its contributors may be used to endorse or promote products
+//       derived from this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+// ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+// WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+// DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+// DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+// (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+// ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+// SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+//
+
+#version 150
+
+vec2 axisMin( vec4 axisRect )
+{
+    // Swizzle (xMin, yMin) out of (xMin, xMax, yMin, yMax)
+    return axisRect.xz;
+}
+
+vec2 axisMax( vec4 axisRect )
+{
+    // Swizzle (xMax, yMax) out of (xMin, xMax, yMin, yMax)
+    return axisRect.yw;
+}
+
+vec2 axisSize( vec4 axisRect )
+{
+    return ( axisMax( axisRect ) - axisMin( axisRect ) );
+}
+
+vec4 axisXyToNdc( vec2 xy_AXIS, vec4 axisRect )
+{
+    vec2 xy_FRAC = ( xy_AXIS - axisMin( axisRect ) ) / axisSize( axisRect );
+    return vec4( 2 * xy_FRAC - 1, 0.0, 1.0 );
+}
+
+uniform vec4 AXIS_RECT;
+
+in vec2 inXy;
+in vec2 inSt;
+in vec4 inRgba;
+
+out vec2 vSt;
+out vec4 vRgba;
+
+void main( )
+{
+    gl_Position = axisXyToNdc( inXy, AXIS_RECT );
+    vSt = inSt;
+    vRgba = inRgba;
+}
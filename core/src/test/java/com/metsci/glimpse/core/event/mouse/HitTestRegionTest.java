@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.event.mouse;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.metsci.glimpse.core.context.GlimpseBounds;
+import com.metsci.glimpse.core.event.mouse.MouseWrapperImpl.HitTestRegion;
+
+public class HitTestRegionTest
+{
+
+    @Test
+    public void regionShouldStayWithinContainingBoundsAndOutsideOthers( )
+    {
+        HitTestRegion region = new HitTestRegion( 30, 40 );
+
+        // Canvas, and a plot the point is inside
+        region.constrain( new GlimpseBounds( 0, 0, 200, 100 ), true );
+        region.constrain( new GlimpseBounds( 20, 20, 100, 60 ), true );
+
+        // Overlay to the right of the point, and a legend above it
+        region.constrain( new GlimpseBounds( 50, 30, 20, 20 ), false );
+        region.constrain( new GlimpseBounds( 25, 70, 10, 5 ), false );
+
+        assertTrue( region.contains( 30, 40 ) );
+        assertTrue( region.contains( 20, 20 ) );
+        assertTrue( region.contains( 49, 69 ) );
+
+        assertFalse( region.contains( 19, 40 ) );
+        assertFalse( region.contains( 50, 40 ) );
+        assertFalse( region.contains( 30, 70 ) );
+    }
+
+    @Test
+    public void regionShouldBeEmptyWhenInteriorDisagreesWithPosition( )
+    {
+        HitTestRegion region = new HitTestRegion( 30, 40 );
+
+        // Point is inside, but something else made the bounds check fail
+        region.constrain( new GlimpseBounds( 0, 0, 200, 100 ), false );
+
+        assertFalse( region.contains( 30, 40 ) );
+    }
+
+    @Test
+    public void emptyBoundsShouldNotConstrainRegion( )
+    {
+        HitTestRegion region = new HitTestRegion( 30, 40 );
+
+        region.constrain( new GlimpseBounds( 30, 40, 0, 10 ), false );
+
+        assertTrue( region.contains( 30, 40 ) );
+        assertTrue( region.contains( 1000, -1000 ) );
+    }
+}
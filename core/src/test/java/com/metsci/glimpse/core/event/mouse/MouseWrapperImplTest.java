@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.event.mouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.metsci.glimpse.core.canvas.GlimpseCanvas;
+import com.metsci.glimpse.core.canvas.LayoutManager;
+import com.metsci.glimpse.core.context.GlimpseBounds;
+import com.metsci.glimpse.core.context.GlimpseTarget;
+import com.metsci.glimpse.core.context.GlimpseTargetStack;
+import com.metsci.glimpse.core.layout.GlimpseLayout;
+
+public class MouseWrapperImplTest
+{
+
+    protected static final GlimpseBounds CANVAS_BOUNDS = new GlimpseBounds( 0, 0, 200, 100 );
+
+    /**
+     * Minimal headless canvas, which lays out its top-level layouts to fill its bounds.
+     */
+    protected static GlimpseCanvas newCanvas( LayoutManager layoutManager )
+    {
+        return ( GlimpseCanvas ) Proxy.newProxyInstance( GlimpseCanvas.class.getClassLoader( ), new Class<?>[] { GlimpseCanvas.class }, ( proxy, method, args ) ->
+        {
+            switch ( method.getName( ) )
+            {
+                case "getTargetBounds":
+                    return CANVAS_BOUNDS;
+                case "getTargetChildren":
+                    return new ArrayList<GlimpseTarget>( layoutManager.getLayoutList( ) );
+                case "getSurfaceScale":
+                    return new float[] { 1, 1 };
+                case "getDpi":
+                    return 96;
+                case "isVisible":
+                    return true;
+                case "isEventConsumer":
+                case "isEventGenerator":
+                case "isDestroyed":
+                    return false;
+                case "hashCode":
+                    return System.identityHashCode( proxy );
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        } );
+    }
+
+    /**
+     * Events are { x, y } arrays, with no buttons down.
+     */
+    protected static class TestMouseWrapper extends MouseWrapperImpl<int[]>
+    {
+        public TestMouseWrapper( GlimpseCanvas canvas )
+        {
+            super( canvas, FocusBehavior.HOVER_FOCUS );
+        }
+
+        @Override
+        protected int[] hitTestPoint( int[] e )
+        {
+            return e;
+        }
+
+        @Override
+        protected boolean isButtonDown( int[] e )
+        {
+            return false;
+        }
+
+        @Override
+        protected boolean isInterior( int[] e, GlimpseBounds bounds )
+        {
+            return bounds.contains( e[0], e[1] );
+        }
+
+        @Override
+        protected boolean isValid( int[] e, GlimpseBounds bounds )
+        {
+            return true;
+        }
+
+        @Override
+        protected GlimpseMouseEvent toGlimpseEvent( int[] e, GlimpseTargetStack stack )
+        {
+            return new GlimpseMouseEvent( stack, e, e );
+        }
+
+        @Override
+        protected GlimpseMouseEvent toGlimpseEventWheel( int[] e, GlimpseTargetStack stack )
+        {
+            return new GlimpseMouseEvent( stack, e, e );
+        }
+
+        public GlimpseTarget hoveredTarget( )
+        {
+            List<GlimpseTargetStack> hovered = this.getHovered( );
+            return ( hovered.isEmpty( ) ? null : hovered.get( 0 ).getTarget( ) );
+        }
+    }
+
+    @Test
+    public void coalescedHitTestShouldSeeCanvasLayoutChanges( )
+    {
+        LayoutManager layoutManager = new LayoutManager( );
+        GlimpseLayout bottom = new GlimpseLayout( );
+        layoutManager.addLayout( bottom, 0 );
+
+        TestMouseWrapper wrapper = new TestMouseWrapper( newCanvas( layoutManager ) );
+        wrapper.setCoalesceMotion( true );
+
+        wrapper.mouseMoved0( new int[] { 50, 50 } );
+        assertEquals( bottom, wrapper.hoveredTarget( ) );
+
+        // Added on top, between two moves within the same region
+        GlimpseLayout top = new GlimpseLayout( );
+        layoutManager.addLayout( top, 1 );
+        wrapper.mouseMoved0( new int[] { 51, 50 } );
+        assertEquals( top, wrapper.hoveredTarget( ) );
+
+        // Moved underneath
+        layoutManager.setZOrder( top, -1 );
+        wrapper.mouseMoved0( new int[] { 52, 50 } );
+        assertEquals( bottom, wrapper.hoveredTarget( ) );
+
+        // Removed
+        layoutManager.removeLayout( bottom );
+        wrapper.mouseMoved0( new int[] { 53, 50 } );
+        assertEquals( top, wrapper.hoveredTarget( ) );
+
+        layoutManager.removeAllLayouts( );
+        wrapper.mouseMoved0( new int[] { 54, 50 } );
+        assertEquals( null, wrapper.hoveredTarget( ) );
+    }
+
+}
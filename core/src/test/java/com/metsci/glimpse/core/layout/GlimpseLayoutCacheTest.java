@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.layout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.metsci.glimpse.core.context.GlimpseBounds;
+import com.metsci.glimpse.core.context.GlimpseTargetStack;
+import com.metsci.glimpse.core.context.GlimpseTargetStackImpl;
+
+public class GlimpseLayoutCacheTest
+{
+
+    protected static GlimpseTargetStack stack( GlimpseLayout a, GlimpseBounds aBounds, GlimpseLayout b, GlimpseBounds bBounds )
+    {
+        GlimpseTargetStack stack = new GlimpseTargetStackImpl( );
+        stack.push( a, aBounds );
+        stack.push( b, bBounds );
+        return stack;
+    }
+
+    @Test
+    public void valuesShouldBeKeyedByTargetsAndCheckedAgainstBounds( )
+    {
+        GlimpseLayout root = new GlimpseLayout( );
+        GlimpseLayout left = new GlimpseLayout( );
+        GlimpseLayout right = new GlimpseLayout( );
+
+        GlimpseBounds rootBounds = new GlimpseBounds( 0, 0, 100, 100 );
+        GlimpseBounds childBounds = new GlimpseBounds( 0, 0, 50, 100 );
+
+        GlimpseLayoutCache<String> cache = new GlimpseLayoutCache<>( );
+        cache.setValue( stack( root, rootBounds, left, childBounds ), "left" );
+        cache.setValue( stack( root, rootBounds, right, childBounds ), "right" );
+        assertEquals( 2, cache.size( ) );
+
+        assertEquals( "left", cache.getValue( stack( root, rootBounds, left, childBounds ) ) );
+        assertEquals( "right", cache.getValue( stack( root, rootBounds, right, childBounds ) ) );
+        assertNull( cache.getValue( stack( left, rootBounds, right, childBounds ) ) );
+
+        // Same targets, different bounds
+        GlimpseBounds resized = new GlimpseBounds( 0, 0, 60, 100 );
+        assertNull( cache.getValue( stack( root, rootBounds, left, resized ) ) );
+        assertEquals( "left", cache.getValueNoBoundsCheck( stack( root, rootBounds, left, resized ) ) );
+
+        // Updating an existing key replaces the entry in place
+        cache.setValue( stack( root, rootBounds, left, resized ), "left2" );
+        assertEquals( 2, cache.size( ) );
+        assertEquals( "left2", cache.getValue( stack( root, rootBounds, left, resized ) ) );
+        assertEquals( 2, cache.getMatching( targets -> targets.contains( root ) ).size( ) );
+
+        cache.clear( );
+        assertEquals( 0, cache.size( ) );
+        assertNull( cache.getValueNoBoundsCheck( stack( root, rootBounds, left, childBounds ) ) );
+    }
+
+    @Test
+    public void invalidateLayoutShouldMarkEveryStackDirty( )
+    {
+        GlimpseLayout root = new GlimpseLayout( );
+        GlimpseLayout child = new GlimpseLayout( );
+        GlimpseBounds bounds = new GlimpseBounds( 0, 0, 100, 100 );
+
+        GlimpseTargetStack stack = stack( root, bounds, child, bounds );
+        assertEquals( true, child.isDirty( stack ) );
+
+        child.setDirty( stack, false );
+        assertEquals( false, child.isDirty( stack ) );
+
+        child.invalidateLayout( );
+        assertEquals( true, child.isDirty( stack ) );
+
+        child.setDirty( stack, false );
+        assertEquals( false, child.isDirty( stack ) );
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.plot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.floats.Float2IntMap;
+import it.unimi.dsi.fastutil.floats.Float2IntOpenHashMap;
+
+public class HistogramBinsTest
+{
+
+    protected static Float2IntMap sparseCounts( double[] data, double binSize, double binStart )
+    {
+        Float2IntOpenHashMap counts = new Float2IntOpenHashMap( );
+        for ( double value : data )
+        {
+            counts.addTo( HistogramPainter.getBin( value, binSize, binStart ), 1 );
+        }
+        return counts;
+    }
+
+    @Test
+    public void parallelAndIncrementalBinningShouldMatchSequentialCounts( )
+    {
+        Random r = new Random( 42 );
+        double[] data = new double[1000000];
+        for ( int i = 0; i < data.length; i++ )
+        {
+            data[i] = r.nextGaussian( ) * 10;
+        }
+
+        double binSize = 0.37;
+        double binStart = -3.1;
+
+        HistogramBins all = new HistogramBins( binSize, binStart );
+        assertTrue( all.add( data, data.length ) );
+        assertEquals( sparseCounts( data, binSize, binStart ), all.toMap( ) );
+        assertEquals( data.length, all.getTotal( ) );
+
+        // add the same values in two batches that cover different bin ranges
+        double[] lower = new double[data.length];
+        double[] upper = new double[data.length];
+        int numLower = 0;
+        int numUpper = 0;
+        for ( double value : data )
+        {
+            if ( value < 0 ) lower[numLower++] = value;
+            else upper[numUpper++] = value;
+        }
+
+        HistogramBins incremental = new HistogramBins( binSize, binStart );
+        assertTrue( incremental.add( upper, numUpper ) );
+        HistogramBins batch = new HistogramBins( binSize, binStart );
+        assertTrue( batch.add( lower, numLower ) );
+        assertTrue( incremental.addAll( batch ) );
+
+        assertEquals( all.getFirstIndex( ), incremental.getFirstIndex( ) );
+        assertEquals( all.getNumBins( ), incremental.getNumBins( ) );
+        assertEquals( all.toMap( ), incremental.toMap( ) );
+        assertEquals( all.getTotal( ), incremental.getTotal( ) );
+    }
+
+    @Test
+    public void coarsenShouldMergeAlignedBins( )
+    {
+        HistogramBins fine = new HistogramBins( 0.5, 1.0 );
+        assertTrue( fine.add( new float[] { -0.1f, 0.2f, 1.2f, 1.7f, 2.4f, 3.9f, Float.NaN }, 7 ) );
+        assertEquals( 6, fine.getTotal( ) );
+
+        HistogramBins coarse = fine.coarsen( 4 );
+        assertEquals( 2.0, coarse.getBinSize( ) );
+
+        Float2IntMap expected = new Float2IntOpenHashMap( );
+        expected.put( -1.0f, 2 );
+        expected.put( 1.0f, 3 );
+        expected.put( 3.0f, 1 );
+        assertEquals( expected, coarse.toMap( ) );
+        assertEquals( 6, coarse.getTotal( ) );
+    }
+
+    @Test
+    public void addShouldRefuseTooManyBins( )
+    {
+        HistogramBins bins = new HistogramBins( 1.0, 0.0 );
+        assertFalse( bins.add( new double[] { 0, HistogramBins.MAX_BINS + 1.0 }, 2 ) );
+        assertEquals( 0, bins.getTotal( ) );
+        assertEquals( 0, bins.getNumBins( ) );
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.plot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.FloatBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.metsci.glimpse.core.support.color.GlimpseColor;
+
+public class RingBufferSeriesTest
+{
+
+    /**
+     * Reads back the x values that would be drawn, concatenating the ranges and dropping the
+     * vertex where two ranges join.
+     */
+    protected static float[] drawnXs( RingBufferLinePainter painter, RingBufferSeries s )
+    {
+        FloatBuffer xy = painter.xyBuffer.hostFloats( );
+        int[] ranges = new int[4];
+        int numRanges = s.drawRanges( ranges );
+
+        float[] result = new float[s.size( ) + 1];
+        int n = 0;
+        for ( int r = 0; r < numRanges; r++ )
+        {
+            int first = ranges[2 * r];
+            int count = ranges[2 * r + 1];
+            for ( int i = ( r == 0 ? 0 : 1 ); i < count; i++ )
+            {
+                result[n++] = xy.get( 2 * ( first + i ) );
+            }
+        }
+        float[] trimmed = new float[n];
+        System.arraycopy( result, 0, trimmed, 0, n );
+        return trimmed;
+    }
+
+    protected static float[] range( int from, int to )
+    {
+        float[] xs = new float[to - from];
+        for ( int i = from; i < to; i++ )
+        {
+            xs[i - from] = i;
+        }
+        return xs;
+    }
+
+    @Test
+    public void drawnVerticesShouldBeTheNewestSamplesInOrder( )
+    {
+        RingBufferLinePainter painter = new RingBufferLinePainter( );
+        RingBufferSeries other = painter.addSeries( 3, GlimpseColor.getBlack( ) );
+        RingBufferSeries s = painter.addSeries( 5, GlimpseColor.getBlack( ) );
+        other.append( 100, 100 );
+
+        s.append( 0, 0 );
+        s.append( 1, 1 );
+        s.append( 2, 2 );
+        assertArrayEquals( range( 0, 3 ), drawnXs( painter, s ) );
+
+        for ( int i = 3; i < 13; i++ )
+        {
+            s.append( i, i );
+            int from = Math.max( 0, i + 1 - 5 );
+            assertArrayEquals( range( from, i + 1 ), drawnXs( painter, s ), "after appending " + i );
+        }
+
+        float[] bulk = range( 13, 20 );
+        s.append( bulk, bulk, bulk.length );
+        assertArrayEquals( range( 15, 20 ), drawnXs( painter, s ) );
+
+        bulk = range( 20, 23 );
+        s.append( bulk, bulk, bulk.length );
+        assertArrayEquals( range( 18, 23 ), drawnXs( painter, s ) );
+
+        // the neighbouring series must be untouched
+        assertArrayEquals( new float[] { }, drawnXs( painter, other ) );
+        assertEquals( 100f, painter.xyBuffer.hostFloats( ).get( 2 * other.firstVertex ) );
+    }
+
+    @Test
+    public void removedRegionsShouldBeReused( )
+    {
+        RingBufferLinePainter painter = new RingBufferLinePainter( );
+        RingBufferSeries a = painter.addSeries( 10, GlimpseColor.getBlack( ) );
+        painter.addSeries( 10, GlimpseColor.getBlack( ) );
+        int sizeBefore = painter.xyBuffer.sizeFloats( );
+
+        painter.removeSeries( a );
+        RingBufferSeries c = painter.addSeries( 4, GlimpseColor.getBlack( ) );
+
+        assertEquals( a.firstVertex, c.firstVertex );
+        assertEquals( sizeBefore, painter.xyBuffer.sizeFloats( ) );
+    }
+}
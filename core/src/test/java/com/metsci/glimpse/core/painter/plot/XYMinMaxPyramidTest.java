@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.plot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.metsci.glimpse.util.primitives.FloatsArray;
+
+public class XYMinMaxPyramidTest
+{
+
+    protected static float[][] randomWalk( int n, long seed )
+    {
+        Random r = new Random( seed );
+        float[] x = new float[n];
+        float[] y = new float[n];
+        float xi = 0;
+        float yi = 0;
+        for ( int i = 0; i < n; i++ )
+        {
+            xi += 0.5f + r.nextFloat( );
+            yi += ( float ) r.nextGaussian( );
+            x[i] = xi;
+            y[i] = yi;
+        }
+        return new float[][] { x, y };
+    }
+
+    @Test
+    public void selectionShouldKeepExtremaOfEveryPixelColumn( )
+    {
+        float[][] data = randomWalk( 100000, 1234 );
+        float[] x = data[0];
+        float[] y = data[1];
+
+        XYMinMaxPyramid pyramid = new XYMinMaxPyramid( );
+        pyramid.setData( x, y );
+
+        double minX = x[0];
+        double maxX = x[x.length - 1];
+        int numPixels = 500;
+        double xPerPixel = ( maxX - minX ) / numPixels;
+
+        FloatsArray result = new FloatsArray( );
+        int numVertices = pyramid.select( minX, maxX, xPerPixel, result );
+        assertTrue( numVertices < 8 * numPixels, "too many vertices: " + numVertices );
+
+        // each column's extrema must be present among the selected vertices in that column
+        float[] colMin = new float[numPixels];
+        float[] colMax = new float[numPixels];
+        Arrays.fill( colMin, Float.POSITIVE_INFINITY );
+        Arrays.fill( colMax, Float.NEGATIVE_INFINITY );
+        for ( int i = 0; i < x.length; i++ )
+        {
+            int col = Math.min( numPixels - 1, ( int ) ( ( x[i] - minX ) / xPerPixel ) );
+            colMin[col] = Math.min( colMin[col], y[i] );
+            colMax[col] = Math.max( colMax[col], y[i] );
+        }
+
+        float[] selMin = new float[numPixels];
+        float[] selMax = new float[numPixels];
+        Arrays.fill( selMin, Float.POSITIVE_INFINITY );
+        Arrays.fill( selMax, Float.NEGATIVE_INFINITY );
+        for ( int v = 0; v < numVertices; v++ )
+        {
+            int col = Math.min( numPixels - 1, ( int ) ( ( result.a[2 * v] - minX ) / xPerPixel ) );
+            selMin[col] = Math.min( selMin[col], result.a[2 * v + 1] );
+            selMax[col] = Math.max( selMax[col], result.a[2 * v + 1] );
+        }
+
+        assertArrayEquals( colMin, selMin );
+        assertArrayEquals( colMax, selMax );
+
+        // vertices must be in x order
+        for ( int v = 1; v < numVertices; v++ )
+        {
+            assertTrue( result.a[2 * v] >= result.a[2 * ( v - 1 )] );
+        }
+    }
+
+    @Test
+    public void appendingShouldMatchBuildingAtOnce( )
+    {
+        float[][] data = randomWalk( 20000, 5678 );
+        float[] x = data[0];
+        float[] y = data[1];
+
+        XYMinMaxPyramid whole = new XYMinMaxPyramid( );
+        whole.setData( x, y );
+
+        XYMinMaxPyramid appended = new XYMinMaxPyramid( );
+        int chunk = 777;
+        for ( int i = 0; i < x.length; i += chunk )
+        {
+            int c = Math.min( chunk, x.length - i );
+            appended.append( Arrays.copyOfRange( x, i, i + c ), Arrays.copyOfRange( y, i, i + c ), c );
+        }
+
+        assertEquals( whole.size( ), appended.size( ) );
+        assertEquals( whole.numLevels( ), appended.numLevels( ) );
+
+        for ( double xPerPixel : new double[] { 0.1, 10, 100, 1000 } )
+        {
+            FloatsArray a = new FloatsArray( );
+            FloatsArray b = new FloatsArray( );
+            whole.select( x[100], x[x.length - 100], xPerPixel, a );
+            appended.select( x[100], x[x.length - 100], xPerPixel, b );
+            assertArrayEquals( a.copyOf( ), b.copyOf( ) );
+        }
+    }
+}
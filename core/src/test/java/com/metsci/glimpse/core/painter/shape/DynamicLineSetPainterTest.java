@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.painter.shape;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.FloatBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.metsci.glimpse.core.gl.GLEditableBuffer;
+import com.metsci.glimpse.core.painter.shape.DynamicLineSetPainter.BulkLineAccumulator;
+import com.metsci.glimpse.core.painter.shape.DynamicPointSetPainter.BulkColorAccumulator;
+import com.metsci.glimpse.util.primitives.sorted.SortedInts;
+import com.metsci.glimpse.util.primitives.rangeset.IntRangeSetModifiable;
+
+public class DynamicLineSetPainterTest
+{
+    protected static final int N = 1000;
+
+    protected static DynamicLineSetPainter newPainter( )
+    {
+        DynamicLineSetPainter painter = new DynamicLineSetPainter( N );
+
+        BulkLineAccumulator accumulator = new BulkLineAccumulator( );
+        for ( int i = 0; i < N; i++ )
+        {
+            accumulator.add( i, i, 0, i, 1 );
+        }
+        painter.putLines( accumulator );
+
+        // Pretend everything has been uploaded
+        clearDirty( painter.xyEditable );
+        clearDirty( painter.rgbaEditable );
+
+        return painter;
+    }
+
+    protected static void clearDirty( GLEditableBuffer buffer )
+    {
+        ( ( IntRangeSetModifiable ) buffer.dirtyByteRanges( ) ).clear( );
+    }
+
+    protected static int[] dirtyRanges( GLEditableBuffer buffer )
+    {
+        SortedInts ranges = buffer.dirtyByteRanges( ).ranges( );
+        int[] a = new int[ranges.n( )];
+        for ( int i = 0; i < a.length; i++ )
+        {
+            a[i] = ranges.v( i );
+        }
+        return a;
+    }
+
+    @Test
+    public void sparsePutLinesShouldOnlyDirtyTouchedRuns( )
+    {
+        DynamicLineSetPainter painter = newPainter( );
+
+        BulkLineAccumulator accumulator = new BulkLineAccumulator( );
+        accumulator.add( N - 1, 5, 6, 7, 8 );
+        accumulator.add( 0, 1, 2, 3, 4 );
+        accumulator.add( 1, 1, 2, 3, 4 );
+        painter.putLines( accumulator );
+
+        int xyBytes = 2 * 2 * Float.BYTES;
+        assertArrayEquals( new int[] { 0, 2 * xyBytes, ( N - 1 ) * xyBytes, N * xyBytes }, dirtyRanges( painter.xyEditable ) );
+
+        int rgbaBytes = 2 * 4 * Float.BYTES;
+        assertArrayEquals( new int[] { 0, 2 * rgbaBytes, ( N - 1 ) * rgbaBytes, N * rgbaBytes }, dirtyRanges( painter.rgbaEditable ) );
+
+        FloatBuffer xy = painter.xyEditable.hostFloats( );
+        assertEquals( 5f, xy.get( ( N - 1 ) * 4 + 0 ) );
+        assertEquals( 8f, xy.get( ( N - 1 ) * 4 + 3 ) );
+        assertEquals( 1f, xy.get( 4 + 0 ) );
+        assertEquals( 10f, xy.get( 10 * 4 + 0 ) );
+    }
+
+    @Test
+    public void sparsePutColorsShouldOnlyDirtyTouchedRuns( )
+    {
+        DynamicLineSetPainter painter = newPainter( );
+
+        float[] color = { 0.1f, 0.2f, 0.3f, 0.4f };
+        BulkColorAccumulator accumulator = new BulkColorAccumulator( );
+        accumulator.add( 500, color );
+        accumulator.add( 3, color );
+        accumulator.add( "missing", color );
+        painter.putColors( accumulator );
+
+        assertArrayEquals( new int[0], dirtyRanges( painter.xyEditable ) );
+
+        int rgbaBytes = 2 * 4 * Float.BYTES;
+        assertArrayEquals( new int[] { 3 * rgbaBytes, 4 * rgbaBytes, 500 * rgbaBytes, 501 * rgbaBytes }, dirtyRanges( painter.rgbaEditable ) );
+
+        FloatBuffer rgba = painter.rgbaEditable.hostFloats( );
+        for ( int v = 0; v < 2; v++ )
+        {
+            assertEquals( 0.3f, rgba.get( 500 * 8 + v * 4 + 2 ) );
+            assertEquals( 0.4f, rgba.get( 3 * 8 + v * 4 + 3 ) );
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.support.font;
+
+import static com.metsci.glimpse.core.support.font.FontUtils.getBitstreamVeraSansPlain;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import com.metsci.glimpse.core.support.font.SdfGlyphAtlas.Glyph;
+
+public class SdfGlyphAtlasTest
+{
+
+    protected static int fieldAt( SdfGlyphAtlas atlas, Glyph glyph, double xFrac, double yFrac )
+    {
+        double s = glyph.sLeft + xFrac * ( glyph.sRight - glyph.sLeft );
+        double t = glyph.tBottom + yFrac * ( glyph.tTop - glyph.tBottom );
+        return atlas.getFieldValue( ( int ) ( s * atlas.getWidth( ) ), ( int ) ( t * atlas.getHeight( ) ) );
+    }
+
+    @Test
+    public void fieldShouldBePositiveInsideGlyphsAndNegativeOutside( )
+    {
+        SdfGlyphAtlas atlas = SdfGlyphAtlas.create( getBitstreamVeraSansPlain( 12 ), "Io ?" );
+
+        Glyph i = atlas.getGlyph( 'I' );
+        assertTrue( fieldAt( atlas, i, 0.5, 0.5 ) > 128 );
+        assertEquals( 0, fieldAt( atlas, i, 0.0, 0.0 ) );
+        assertEquals( 0, fieldAt( atlas, i, 0.99, 0.99 ) );
+
+        // center of the counter is outside the glyph, the ring is inside
+        Glyph o = atlas.getGlyph( 'o' );
+        int maxOnLeftHalf = 0;
+        for ( double x = 0; x < 0.5; x += 0.01 )
+        {
+            maxOnLeftHalf = Math.max( maxOnLeftHalf, fieldAt( atlas, o, x, 0.5 ) );
+        }
+        assertTrue( maxOnLeftHalf > 128 );
+        assertTrue( fieldAt( atlas, o, 0.5, 0.5 ) < 128 );
+
+        Glyph space = atlas.getGlyph( ' ' );
+        assertFalse( space.hasQuad( ) );
+        assertTrue( space.advance > 0 );
+
+        assertNull( atlas.getGlyph( 'X' ) );
+        assertEquals( ( i.advance + o.advance + atlas.getGlyph( '?' ).advance ) * 20, atlas.getTextWidth( "IoX", 20 ), 1e-4 );
+    }
+
+    @Test
+    public void atlasShouldFitSingleGlyphWiderThanDefaultWidth( )
+    {
+        SdfGlyphAtlas atlas = SdfGlyphAtlas.create( getBitstreamVeraSansPlain( 12 ), "W", 128, 6 );
+
+        Glyph w = atlas.getGlyph( 'W' );
+        assertNotNull( w );
+        assertTrue( w.hasQuad( ) );
+        assertTrue( atlas.getWidth( ) > 64 );
+        assertTrue( w.sRight <= 1 );
+
+        int maxOnMiddleRow = 0;
+        for ( double x = 0; x < 1; x += 0.01 )
+        {
+            maxOnMiddleRow = Math.max( maxOnMiddleRow, fieldAt( atlas, w, x, 0.5 ) );
+        }
+        assertTrue( maxOnMiddleRow > 128 );
+
+        SdfGlyphAtlas dashAtlas = SdfGlyphAtlas.create( getBitstreamVeraSansPlain( 12 ), "\u2014", 128, 6 );
+        assertTrue( dashAtlas.getGlyph( '\u2014' ) == null || dashAtlas.getGlyph( '\u2014' ).sRight <= 1 );
+    }
+
+    @Test
+    public void atlasShouldRoundTripThroughStream( ) throws IOException
+    {
+        SdfGlyphAtlas atlas = SdfGlyphAtlas.create( getBitstreamVeraSansPlain( 12 ), SdfGlyphAtlas.PRINTABLE_ASCII );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( );
+        atlas.write( bytes );
+        SdfGlyphAtlas copy = SdfGlyphAtlas.read( new ByteArrayInputStream( bytes.toByteArray( ) ) );
+
+        assertEquals( atlas.getFontName( ), copy.getFontName( ) );
+        assertEquals( atlas.getBaseSize( ), copy.getBaseSize( ) );
+        assertEquals( atlas.getSpread( ), copy.getSpread( ) );
+        assertEquals( atlas.getAscent( ), copy.getAscent( ) );
+        assertArrayEquals( atlas.field, copy.field );
+
+        for ( char c : SdfGlyphAtlas.PRINTABLE_ASCII.toCharArray( ) )
+        {
+            Glyph a = atlas.getGlyph( c );
+            Glyph b = copy.getGlyph( c );
+            assertNotNull( b );
+            assertEquals( a.advance, b.advance );
+            assertEquals( a.xMin, b.xMin );
+            assertEquals( a.yMax, b.yMax );
+            assertEquals( a.sRight, b.sRight );
+            assertEquals( a.tBottom, b.tBottom );
+        }
+    }
+}
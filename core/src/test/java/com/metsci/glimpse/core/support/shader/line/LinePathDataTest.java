@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.core.support.shader.line;
+
+import static com.metsci.glimpse.core.support.shader.line.LinePathData.PARALLEL_MILEAGE_MIN_VERTICES;
+import static com.metsci.glimpse.core.support.shader.line.LinePathData.updateMileageBuffer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LinePathDataTest
+{
+
+    @Test
+    public void parallelMileageShouldMatchSequentialMileage( )
+    {
+        Random r = new Random( 7 );
+        LinePathData data = new LinePathData( 0 );
+        for ( int i = 0; i < 3 * PARALLEL_MILEAGE_MIN_VERTICES; i++ )
+        {
+            if ( i % 5000 == 0 )
+            {
+                data.moveTo( r.nextFloat( ), r.nextFloat( ), 10 * r.nextFloat( ) );
+            }
+            else if ( i % 7777 == 0 )
+            {
+                data.closeLoop( );
+                data.moveTo( r.nextFloat( ), r.nextFloat( ), 0 );
+            }
+            else
+            {
+                data.lineTo( r.nextFloat( ), r.nextFloat( ) );
+            }
+        }
+
+        // Sequential results, computed on a copy so the initial mileages are still in place
+        FloatBuffer expected = FloatBuffer.allocate( data.numVertices( ) );
+        expected.put( data.mileageBuffer( ) ).position( 0 );
+        updateMileageBuffer( data.xyBuffer( ), data.flagsBuffer( ), expected, true, 1.3 );
+
+        assertEquals( data.numVertices( ), data.updateMileage( 1.3, 1.0000000001 ) );
+
+        FloatBuffer actual = data.mileageBuffer( );
+        for ( int i = 0; i < data.numVertices( ); i++ )
+        {
+            float e = expected.get( i );
+            assertEquals( e, actual.get( i ), 1e-5 * Math.max( 1, Math.abs( e ) ), "vertex " + i );
+        }
+
+        data.dispose( );
+    }
+}
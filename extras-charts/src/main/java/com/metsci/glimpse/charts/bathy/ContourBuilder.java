@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.charts.bathy;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.metsci.glimpse.util.primitives.DoublesArray;
+import com.metsci.glimpse.util.primitives.IntsArray;
+import com.metsci.glimpse.util.primitives.LongsArray;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * Extracts iso-lines from a regular grid using marching squares, and stitches the
+ * resulting segments into polylines.
+ * <p>
+ * Grid value {@code data[i][j]} is located at {@code (xs[i], ys[j])}. The grid is
+ * divided into bands of rows, which are contoured in parallel; each band's segments
+ * are cached, so after part of the grid changes only the bands that overlap the
+ * changed window need to be contoured again (see {@link #invalidate(int, int, int, int)}).
+ * <p>
+ * Each segment endpoint lies on a grid edge, and the two cells that share an edge
+ * compute the same crossing point for a given level. Stitching therefore joins
+ * segment ends by edge index rather than by comparing coordinates, which is exact
+ * and works the same across band boundaries. Levels are stitched in parallel.
+ * <p>
+ * Grid cells with a NaN corner produce no segments.
+ */
+public class ContourBuilder
+{
+    protected final float[][] data;
+    protected final double[] xs;
+    protected final double[] ys;
+    protected final double[] levels;
+
+    protected final int nx;
+    protected final int ny;
+
+    protected final int rowsPerBand;
+    protected final Band[] bands;
+
+    /**
+     * @param levels contour levels, which need not be sorted
+     */
+    public ContourBuilder( float[][] data, double[] xs, double[] ys, double[] levels )
+    {
+        this( data, xs, ys, levels, defaultRowsPerBand( ys.length - 1 ) );
+    }
+
+    public ContourBuilder( float[][] data, double[] xs, double[] ys, double[] levels, int rowsPerBand )
+    {
+        if ( data.length != xs.length || data.length < 2 ) throw new IllegalArgumentException( "Grid x size does not match xs, or is less than 2" );
+        if ( data[0].length != ys.length || ys.length < 2 ) throw new IllegalArgumentException( "Grid y size does not match ys, or is less than 2" );
+
+        this.data = data;
+        this.xs = xs;
+        this.ys = ys;
+        this.levels = levels.clone( );
+        Arrays.sort( this.levels );
+
+        this.nx = xs.length;
+        this.ny = ys.length;
+
+        int numCellRows = this.ny - 1;
+        this.rowsPerBand = max( 1, rowsPerBand );
+        this.bands = new Band[( numCellRows + this.rowsPerBand - 1 ) / this.rowsPerBand];
+        for ( int b = 0; b < this.bands.length; b++ )
+        {
+            int j0 = b * this.rowsPerBand;
+            this.bands[b] = new Band( j0, min( j0 + this.rowsPerBand, numCellRows ), this.levels.length );
+        }
+    }
+
+    protected static int defaultRowsPerBand( int numCellRows )
+    {
+        int numBands = 4 * Runtime.getRuntime( ).availableProcessors( );
+        return max( 8, min( 64, ( numCellRows + numBands - 1 ) / numBands ) );
+    }
+
+    /**
+     * @return the contour levels, in ascending order
+     */
+    public double[] getLevels( )
+    {
+        return this.levels.clone( );
+    }
+
+    /**
+     * Marks the bands containing cells that touch grid nodes {@code [i0,i1] x [j0,j1]}
+     * (inclusive) for re-contouring by the next call to {@link #build()}. Call this after
+     * modifying those values in the grid array.
+     */
+    public void invalidate( int i0, int j0, int i1, int j1 )
+    {
+        int cellRow0 = max( 0, j0 - 1 );
+        int cellRow1 = min( this.ny - 2, j1 );
+        for ( int b = cellRow0 / this.rowsPerBand; b <= cellRow1 / this.rowsPerBand && b < this.bands.length; b++ )
+        {
+            this.bands[b].dirty = true;
+        }
+    }
+
+    public void invalidateAll( )
+    {
+        for ( Band band : this.bands )
+        {
+            band.dirty = true;
+        }
+    }
+
+    /**
+     * Contours any invalid bands, in parallel, then stitches all levels.
+     *
+     * @return polylines for each level, in ascending level order
+     */
+    public Polylines[] build( )
+    {
+        IntStream.range( 0, this.bands.length ).parallel( ).forEach( b ->
+        {
+            Band band = this.bands[b];
+            if ( band.dirty )
+            {
+                contourBand( band );
+                band.dirty = false;
+            }
+        } );
+
+        return IntStream.range( 0, this.levels.length ).parallel( ).mapToObj( this::stitch ).toArray( Polylines[]::new );
+    }
+
+    protected void contourBand( Band band )
+    {
+        for ( int k = 0; k < this.levels.length; k++ )
+        {
+            band.edges[k].clear( );
+            band.points[k].clear( );
+        }
+
+        float[][] data = this.data;
+        double[] levels = this.levels;
+
+        for ( int j = band.j0; j < band.j1; j++ )
+        {
+            for ( int i = 0; i < this.nx - 1; i++ )
+            {
+                float v00 = data[i][j];
+                float v10 = data[i + 1][j];
+                float v11 = data[i + 1][j + 1];
+                float v01 = data[i][j + 1];
+
+                float vMin = min( min( v00, v10 ), min( v11, v01 ) );
+                float vMax = max( max( v00, v10 ), max( v11, v01 ) );
+                if ( Float.isNaN( vMin ) || Float.isNaN( vMax ) ) continue;
+
+                // crossings need some corners >= level and some < level, i.e. vMin < level <= vMax
+                for ( int k = firstLevelAbove( vMin ); k < levels.length && levels[k] <= vMax; k++ )
+                {
+                    contourCell( band, k, i, j, levels[k], v00, v10, v11, v01 );
+                }
+            }
+        }
+    }
+
+    protected int firstLevelAbove( double v )
+    {
+        int k = Arrays.binarySearch( this.levels, v );
+        if ( k < 0 ) return -k - 1;
+
+        // skip all levels equal to v
+        while ( k < this.levels.length && this.levels[k] <= v )
+        {
+            k++;
+        }
+        return k;
+    }
+
+    // cell edges: 0 = bottom, 1 = right, 2 = top, 3 = left
+    protected void contourCell( Band band, int k, int i, int j, double level, float v00, float v10, float v11, float v01 )
+    {
+        int c = 0;
+        if ( v00 >= level ) c |= 1;
+        if ( v10 >= level ) c |= 2;
+        if ( v11 >= level ) c |= 4;
+        if ( v01 >= level ) c |= 8;
+
+        switch ( c )
+        {
+            case 1:
+            case 14:
+                segment( band, k, i, j, level, 3, 0 );
+                break;
+            case 2:
+            case 13:
+                segment( band, k, i, j, level, 0, 1 );
+                break;
+            case 3:
+            case 12:
+                segment( band, k, i, j, level, 3, 1 );
+                break;
+            case 4:
+            case 11:
+                segment( band, k, i, j, level, 1, 2 );
+                break;
+            case 6:
+            case 9:
+                segment( band, k, i, j, level, 0, 2 );
+                break;
+            case 7:
+            case 8:
+                segment( band, k, i, j, level, 2, 3 );
+                break;
+            case 5:
+            case 10:
+            {
+                // saddle: use the cell center to decide which diagonal is connected
+                boolean centerAbove = 0.25 * ( ( double ) v00 + v10 + v11 + v01 ) >= level;
+                if ( centerAbove == ( c == 5 ) )
+                {
+                    segment( band, k, i, j, level, 0, 1 );
+                    segment( band, k, i, j, level, 2, 3 );
+                }
+                else
+                {
+                    segment( band, k, i, j, level, 3, 0 );
+                    segment( band, k, i, j, level, 1, 2 );
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    protected void segment( Band band, int k, int i, int j, double level, int edgeA, int edgeB )
+    {
+        crossing( band, k, i, j, level, edgeA );
+        crossing( band, k, i, j, level, edgeB );
+    }
+
+    protected void crossing( Band band, int k, int i, int j, double level, int cellEdge )
+    {
+        // identify the grid edge by its lower-left node and direction
+        boolean vertical = ( cellEdge == 1 || cellEdge == 3 );
+        int ei = ( cellEdge == 1 ) ? i + 1 : i;
+        int ej = ( cellEdge == 2 ) ? j + 1 : j;
+
+        double va = this.data[ei][ej];
+        double vb = vertical ? this.data[ei][ej + 1] : this.data[ei + 1][ej];
+        double t = ( level - va ) / ( vb - va );
+
+        double x;
+        double y;
+        if ( vertical )
+        {
+            x = this.xs[ei];
+            y = this.ys[ej] + t * ( this.ys[ej + 1] - this.ys[ej] );
+        }
+        else
+        {
+            x = this.xs[ei] + t * ( this.xs[ei + 1] - this.xs[ei] );
+            y = this.ys[ej];
+        }
+
+        band.edges[k].append( 2 * ( ( long ) ej * this.nx + ei ) + ( vertical ? 1 : 0 ) );
+        band.points[k].append( x );
+        band.points[k].append( y );
+    }
+
+    protected Polylines stitch( int k )
+    {
+        int numEnds = 0;
+        for ( Band band : this.bands )
+        {
+            numEnds += band.edges[k].n;
+        }
+
+        long[] edges = new long[numEnds];
+        double[] points = new double[2 * numEnds];
+        int offset = 0;
+        for ( Band band : this.bands )
+        {
+            LongsArray bandEdges = band.edges[k];
+            System.arraycopy( bandEdges.a, 0, edges, offset, bandEdges.n );
+            System.arraycopy( band.points[k].a, 0, points, 2 * offset, 2 * bandEdges.n );
+            offset += bandEdges.n;
+        }
+
+        // each grid edge is shared by at most two segment ends
+        int[] partner = new int[numEnds];
+        Arrays.fill( partner, -1 );
+        Long2IntOpenHashMap firstEnd = new Long2IntOpenHashMap( numEnds );
+        firstEnd.defaultReturnValue( -1 );
+        for ( int e = 0; e < numEnds; e++ )
+        {
+            int other = firstEnd.putIfAbsent( edges[e], e );
+            if ( other >= 0 )
+            {
+                partner[other] = e;
+                partner[e] = other;
+            }
+        }
+
+        DoublesArray xy = new DoublesArray( 2 * numEnds );
+        IntsArray starts = new IntsArray( );
+        boolean[] visited = new boolean[numEnds / 2];
+
+        // open polylines start at an unshared end; what remains afterwards are closed loops
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            for ( int e = 0; e < numEnds; e++ )
+            {
+                if ( visited[e >> 1] || ( pass == 0 && partner[e] >= 0 ) ) continue;
+
+                starts.append( xy.n / 2 );
+                xy.append( points[2 * e] );
+                xy.append( points[2 * e + 1] );
+
+                int end = e;
+                while ( true )
+                {
+                    visited[end >> 1] = true;
+
+                    int far = end ^ 1;
+                    xy.append( points[2 * far] );
+                    xy.append( points[2 * far + 1] );
+
+                    int next = partner[far];
+                    if ( next < 0 || visited[next >> 1] ) break;
+                    end = next;
+                }
+            }
+        }
+        starts.append( xy.n / 2 );
+
+        return new Polylines( this.levels[k], xy.copyOf( ), starts.copyOf( ) );
+    }
+
+    protected static class Band
+    {
+        public final int j0;
+        public final int j1;
+
+        public final LongsArray[] edges;
+        public final DoublesArray[] points;
+
+        public volatile boolean dirty;
+
+        public Band( int j0, int j1, int numLevels )
+        {
+            this.j0 = j0;
+            this.j1 = j1;
+
+            this.edges = new LongsArray[numLevels];
+            this.points = new DoublesArray[numLevels];
+            for ( int k = 0; k < numLevels; k++ )
+            {
+                this.edges[k] = new LongsArray( );
+                this.points[k] = new DoublesArray( );
+            }
+
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Stitched contour lines for a single level, in grid coordinates.
+     */
+    public static class Polylines
+    {
+        public final double level;
+
+        /**
+         * Interleaved x,y vertex coordinates.
+         */
+        public final double[] xy;
+
+        /**
+         * Polyline {@code p} consists of vertices {@code starts[p]} (inclusive) through
+         * {@code starts[p+1]} (exclusive). Closed loops repeat their first vertex at the end.
+         */
+        public final int[] starts;
+
+        public Polylines( double level, double[] xy, int[] starts )
+        {
+            this.level = level;
+            this.xy = xy;
+            this.starts = starts;
+        }
+
+        public int numPolylines( )
+        {
+            return this.starts.length - 1;
+        }
+
+        public int numVertices( )
+        {
+            return this.xy.length / 2;
+        }
+    }
+}
@@ -27,45 +27,117 @@
 package com.metsci.glimpse.charts.bathy;
 
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
+import com.metsci.glimpse.charts.bathy.ContourBuilder.Polylines;
 import com.metsci.glimpse.util.geo.LatLonGeo;
 import com.metsci.glimpse.util.geo.projection.GeoProjection;
 import com.metsci.glimpse.util.vector.Vector2d;
 
-import it.unimi.dsi.fastutil.floats.FloatArrayList;
-import it.unimi.dsi.fastutil.floats.FloatList;
-
 /**
+ * Contour lines of a {@link TopographyData} grid, projected and packed into primitive
+ * arrays ready to upload for drawing as line strips (see {@link ContourPainter}).
+ * <p>
+ * Contours are extracted by a {@link ContourBuilder}, which works on bands of rows in
+ * parallel and stitches segments into polylines, so each vertex is projected once. If
+ * part of the grid changes, {@link #recontour(int, int, int, int)} re-contours only the
+ * affected bands.
+ *
  * @author ulman
  */
-public class ContourData implements Render
+public class ContourData
 {
-    protected FloatList coordsX;
-    protected FloatList coordsY;
     protected GeoProjection projection;
+    protected ContourBuilder builder;
+
+    protected double[] levels;
+
+    /**
+     * Interleaved projected x,y coordinates for all polylines.
+     */
+    protected float[] xy;
+
+    /**
+     * First vertex and vertex count of each polyline, as expected by {@code glMultiDrawArrays}.
+     */
+    protected int[] firsts;
+    protected int[] counts;
+
+    /**
+     * Polylines for level {@code k} are {@code levelStarts[k]} (inclusive) through {@code levelStarts[k+1]} (exclusive).
+     */
+    protected int[] levelStarts;
 
     public ContourData( TopographyData bathymetryData, GeoProjection tp, double[] levels )
     {
-        this.coordsX = new FloatArrayList();
-        this.coordsY = new FloatArrayList();
         this.projection = tp;
 
         // sort the levels array
         Arrays.sort( levels );
+        this.levels = levels.clone( );
+
+        float[][] bathyData = bathymetryData.getData( );
+        this.builder = new ContourBuilder( bathyData, getLongitudes( bathymetryData ), getLatitudes( bathymetryData ), levels );
+
+        update( this.builder.build( ) );
+    }
 
-        try
+    /**
+     * Re-contours after values in the grid array (from {@link TopographyData#getData()}) at
+     * indices {@code [i0,i1] x [j0,j1]} (inclusive) have been modified in place.
+     */
+    public void recontour( int i0, int j0, int i1, int j1 )
+    {
+        this.builder.invalidate( i0, j0, i1, j1 );
+        update( this.builder.build( ) );
+    }
+
+    protected void update( Polylines[] polylines )
+    {
+        int numPolylines = 0;
+        int numVertices = 0;
+        for ( Polylines p : polylines )
         {
-            Conrec contourCalculator = new Conrec( this );
-            float[][] bathyData = bathymetryData.getData( );
-            int sizeX = bathyData.length;
-            int sizeY = bathyData[0].length;
-            contourCalculator.contour( bathyData, 0, sizeX - 1, 0, sizeY - 1, getLongitudes( bathymetryData ), getLatitudes( bathymetryData ), levels.length, levels );
+            numPolylines += p.numPolylines( );
+            numVertices += p.numVertices( );
         }
-        catch ( Exception e1 )
+
+        double[] lonLat = new double[2 * numVertices];
+        int[] firsts = new int[numPolylines];
+        int[] counts = new int[numPolylines];
+        int[] levelStarts = new int[polylines.length + 1];
+
+        int polyline = 0;
+        int vertex = 0;
+        for ( int k = 0; k < polylines.length; k++ )
         {
-            // TODO: Maybe throw a RuntimeException instead?
-            e1.printStackTrace( );
+            Polylines p = polylines[k];
+            levelStarts[k] = polyline;
+
+            System.arraycopy( p.xy, 0, lonLat, 2 * vertex, p.xy.length );
+            for ( int i = 0; i < p.numPolylines( ); i++ )
+            {
+                firsts[polyline] = vertex + p.starts[i];
+                counts[polyline] = p.starts[i + 1] - p.starts[i];
+                polyline++;
+            }
+
+            vertex += p.numVertices( );
         }
+        levelStarts[polylines.length] = polyline;
+
+        float[] xy = new float[2 * numVertices];
+        IntStream.range( 0, numVertices ).parallel( ).forEach( v ->
+        {
+            Vector2d projected = this.projection.project( LatLonGeo.fromDeg( lonLat[2 * v + 1], lonLat[2 * v] ) );
+            xy[2 * v] = ( float ) projected.getX( );
+            xy[2 * v + 1] = ( float ) projected.getY( );
+        } );
+
+        this.xy = xy;
+        this.firsts = firsts;
+        this.counts = counts;
+        this.levelStarts = levelStarts;
     }
 
     protected double[] getLatitudes( TopographyData bathymetryDataSet )
@@ -100,26 +172,74 @@ public class ContourData implements Render
         return longitudes;
     }
 
-    @Override
-    public void drawContour( double startX, double startY, double endX, double endY, double contourLevel )
+    /**
+     * @return the contour levels, in ascending order
+     */
+    public double[] getLevels( )
     {
-        Vector2d startVertex = this.projection.project( LatLonGeo.fromDeg( startY, startX ) );
-        Vector2d endVertex = this.projection.project( LatLonGeo.fromDeg( endY, endX ) );
+        return this.levels;
+    }
 
-        coordsX.add( ( float ) startVertex.getX( ) );
-        coordsY.add( ( float ) startVertex.getY( ) );
+    /**
+     * @return interleaved projected x,y coordinates of all polyline vertices
+     */
+    public float[] getPolylineXy( )
+    {
+        return this.xy;
+    }
+
+    public int[] getPolylineFirsts( )
+    {
+        return this.firsts;
+    }
 
-        coordsX.add( ( float ) endVertex.getX( ) );
-        coordsY.add( ( float ) endVertex.getY( ) );
+    public int[] getPolylineCounts( )
+    {
+        return this.counts;
+    }
+
+    /**
+     * @return index of the first polyline for each level, followed by the total number of polylines
+     */
+    public int[] getLevelStarts( )
+    {
+        return this.levelStarts;
     }
 
+    /**
+     * @return x coordinates of the contours as disconnected two-point segments
+     */
     public float[] getCoordsX( )
     {
-        return coordsX.toFloatArray();
+        return getSegmentCoords( 0 );
     }
 
+    /**
+     * @return y coordinates of the contours as disconnected two-point segments
+     */
     public float[] getCoordsY( )
     {
-        return coordsY.toFloatArray();
+        return getSegmentCoords( 1 );
+    }
+
+    protected float[] getSegmentCoords( int dim )
+    {
+        int numSegments = 0;
+        for ( int count : this.counts )
+        {
+            numSegments += count - 1;
+        }
+
+        float[] coords = new float[2 * numSegments];
+        int n = 0;
+        for ( int p = 0; p < this.firsts.length; p++ )
+        {
+            for ( int v = this.firsts[p]; v < this.firsts[p] + this.counts[p] - 1; v++ )
+            {
+                coords[n++] = this.xy[2 * v + dim];
+                coords[n++] = this.xy[2 * ( v + 1 ) + dim];
+            }
+        }
+        return coords;
     }
 }
@@ -28,12 +28,13 @@ package com.metsci.glimpse.charts.bathy;
 
 import static com.jogamp.opengl.GL.GL_ARRAY_BUFFER;
 import static com.jogamp.opengl.GL.GL_FLOAT;
+import static com.jogamp.opengl.GL.GL_LINES;
+import static com.jogamp.opengl.GL.GL_LINE_STRIP;
 import static com.jogamp.opengl.GL.GL_STATIC_DRAW;
 import static com.metsci.glimpse.core.support.wrapped.WrappedGlimpseContext.getWrapper2D;
 
 import java.nio.FloatBuffer;
 
-import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 import com.metsci.glimpse.core.axis.Axis2D;
 import com.metsci.glimpse.core.context.GlimpseBounds;
@@ -46,35 +47,76 @@ import com.metsci.glimpse.core.support.shader.line.LineStyle;
 import com.metsci.glimpse.core.support.wrapped.Wrapper2D;
 
 /**
+ * Draws contour lines in a single color. Contours from a {@link ContourData} are drawn as
+ * line strips with one {@code glMultiDrawArrays} call; contours given as separate x and y
+ * coordinate arrays are drawn as disconnected two-point segments.
+ *
  * @author ulman
  */
 public class ContourPainter extends GlimpsePainterBase
 {
-    protected float[] coordsX;
-    protected float[] coordsY;
+    /**
+     * Interleaved x,y vertex coordinates.
+     */
+    protected float[] xy;
+
+    /**
+     * Line strip firsts and counts, or null to draw {@link #xy} as segments.
+     */
+    protected int[] firsts;
+    protected int[] counts;
+
     protected DynamicLineSetPainterProgram program;
     protected GLStreamingBuffer xyVbo;
-    protected GLStreamingBuffer rgbaVbo;
+    protected boolean dataDirty;
 
     protected LineStyle style;
-    protected boolean colorDirty;
 
     public ContourPainter( ContourData data )
     {
-        this( data.getCoordsX( ), data.getCoordsY( ) );
+        this.style = new LineStyle( );
+        this.program = new DynamicLineSetPainterProgram( );
+        this.xyVbo = new GLStreamingBuffer( GL_STATIC_DRAW, 1 );
+
+        setContours( data );
     }
 
     public ContourPainter( float[] coordsX, float[] coordsY )
     {
-        this.coordsX = coordsX;
-        this.coordsY = coordsY;
-
         this.style = new LineStyle( );
         this.program = new DynamicLineSetPainterProgram( );
         this.xyVbo = new GLStreamingBuffer( GL_STATIC_DRAW, 1 );
-        this.rgbaVbo = new GLStreamingBuffer( GL_STATIC_DRAW, 1 );
 
-        colorDirty = true;
+        float[] xy = new float[2 * coordsX.length];
+        for ( int i = 0; i < coordsX.length; i++ )
+        {
+            xy[2 * i] = coordsX[i];
+            xy[2 * i + 1] = coordsY[i];
+        }
+
+        this.xy = xy;
+        this.firsts = null;
+        this.counts = null;
+        this.dataDirty = true;
+    }
+
+    /**
+     * Replaces the displayed contours, for example after {@link ContourData#recontour(int, int, int, int)}.
+     */
+    public void setContours( ContourData data )
+    {
+        this.painterLock.lock( );
+        try
+        {
+            this.xy = data.getPolylineXy( );
+            this.firsts = data.getPolylineFirsts( );
+            this.counts = data.getPolylineCounts( );
+            this.dataDirty = true;
+        }
+        finally
+        {
+            this.painterLock.unlock( );
+        }
     }
 
     @Override
@@ -85,20 +127,14 @@ public class ContourPainter extends GlimpsePainterBase
         GlimpseBounds bounds = getBounds( context );
         Wrapper2D wrapper = getWrapper2D( context );
 
-        if ( xyVbo.sealedOffset( ) < 0 || rgbaVbo.sealedOffset( ) < 0 || colorDirty )
-        {
-            FloatBuffer xyBuf = xyVbo.mapFloats( gl, coordsX.length * 2 );
-            FloatBuffer rgbaBuf = rgbaVbo.mapFloats( gl, coordsX.length * 4 );
-            for ( int i = 0; i < coordsX.length; i++ )
-            {
-                xyBuf.put( coordsX[i] );
-                xyBuf.put( coordsY[i] );
-                rgbaBuf.put( style.rgba );
-            }
+        if ( xy.length == 0 ) return;
 
+        if ( xyVbo.sealedOffset( ) < 0 || dataDirty )
+        {
+            FloatBuffer xyBuf = xyVbo.mapFloats( gl, xy.length );
+            xyBuf.put( xy );
             xyVbo.seal( gl );
-            rgbaVbo.seal( gl );
-            colorDirty = false;
+            dataDirty = false;
         }
 
         program.begin( gl );
@@ -114,10 +150,18 @@ public class ContourPainter extends GlimpsePainterBase
             gl.glBindBuffer( GL_ARRAY_BUFFER, xyVbo.buffer( gl ) );
             gl.glVertexAttribPointer( handles.inXy, 2, GL_FLOAT, false, 0, xyVbo.sealedOffset( ) );
 
-            gl.glBindBuffer( GL_ARRAY_BUFFER, rgbaVbo.buffer( gl ) );
-            gl.glVertexAttribPointer( handles.inRgba, 4, GL_FLOAT, false, 0, rgbaVbo.sealedOffset( ) );
+            // every vertex has the same color, so use a constant attribute instead of a buffer
+            gl.glDisableVertexAttribArray( handles.inRgba );
+            gl.glVertexAttrib4fv( handles.inRgba, style.rgba, 0 );
 
-            gl.glDrawArrays( GL.GL_LINES, 0, coordsX.length );
+            if ( firsts == null )
+            {
+                gl.glDrawArrays( GL_LINES, 0, xy.length / 2 );
+            }
+            else
+            {
+                gl.glMultiDrawArrays( GL_LINE_STRIP, firsts, 0, counts, 0, firsts.length );
+            }
         }
         finally
         {
@@ -128,7 +172,6 @@ public class ContourPainter extends GlimpsePainterBase
     public void setLineColor( float r, float g, float b, float a )
     {
         this.style.rgba = new float[] { r, g, b, a };
-        colorDirty = true;
     }
 
     public void setLineWidth( float width )
@@ -148,6 +191,5 @@ public class ContourPainter extends GlimpsePainterBase
 
         this.program.dispose( gl );
         this.xyVbo.dispose( gl );
-        this.rgbaVbo.dispose( gl );
     }
 }
@@ -37,8 +37,6 @@ import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -85,7 +83,7 @@ public final class BsbRasterData
     private final int _width_PIXELS;
     private final int _height_PIXELS;
 
-    private BsbRasterData( String imageName, String header, int width_PIXELS, int height_PIXELS, byte[] imageData, IndexColorModel colorModel, Set<Pair<IntPoint2d, LatLonGeo>> registrationPoints )
+    BsbRasterData( String imageName, String header, int width_PIXELS, int height_PIXELS, byte[] imageData, IndexColorModel colorModel, Set<Pair<IntPoint2d, LatLonGeo>> registrationPoints )
     {
         this._imageName = imageName;
         this._header = header;
@@ -105,21 +103,13 @@ public final class BsbRasterData
         }
     }
 
+    /**
+     * Reads and decodes the whole image. Rows are decoded in parallel; to decode only part
+     * of a large chart, use {@link BsbRasterSource} directly.
+     */
     public static BsbRasterData readImage( InputStream in ) throws IOException
     {
-        BufferedInputStream bis = new BufferedInputStream( in );
-        DataInputStream dis = new DataInputStream( bis );
-
-        String header = extractAsciiHeader( dis );
-        int[] dim = extractDimension( header );
-        IndexColorModel icm = extractColorModel( header );
-
-        byte colorDepth = dis.readByte( );
-
-        byte[] ucData = new byte[dim[0] * dim[1]];
-        decodeImageData( dis, ucData, colorDepth, dim[1] );
-
-        return new BsbRasterData( extractImageName( header ), header, dim[0], dim[1], ucData, icm, extractRegistrationPoints( header ) );
+        return BsbRasterSource.read( in ).readImage( );
     }
 
     public IndexColorModel getColorModel( )
@@ -127,29 +117,6 @@ public final class BsbRasterData
         return _colorModel;
     }
 
-    private static String extractAsciiHeader( DataInputStream stream ) throws IOException
-    {
-        StringBuilder builder = new StringBuilder( );
-
-        byte thisByte = 0;
-        byte lastByte = 0;
-
-        while ( true )
-        {
-            if ( lastByte == 26 && thisByte == 0 )
-            {
-                break;
-            }
-            else
-            {
-                lastByte = thisByte;
-                thisByte = stream.readByte( );
-                builder.append( ( char ) thisByte );
-            }
-        }
-        return builder.toString( );
-    }
-
     private static Vector<Pair<String, String>> extractTokenData( String header, String tokenPattern )
     {
         Pattern pattern = Pattern.compile( "^\\w{3,}/", Pattern.MULTILINE );
@@ -169,7 +136,7 @@ public final class BsbRasterData
         return results;
     }
 
-    private static int[] extractDimension( String header )
+    static int[] extractDimension( String header )
     {
         Vector<Pair<String, String>> allTokenData = extractTokenData( header, "BSB" );
         String tokenData = allTokenData.get( 0 ).second( );
@@ -185,7 +152,7 @@ public final class BsbRasterData
         return new int[] { width_PIXELS, height_PIXELS };
     }
 
-    private static String extractImageName( String header )
+    static String extractImageName( String header )
     {
         Vector<Pair<String, String>> allTokenData = extractTokenData( header, "BSB" );
         String tokenData = allTokenData.get( 0 ).second( );
@@ -198,7 +165,7 @@ public final class BsbRasterData
         return imageName;
     }
 
-    private static Set<Pair<IntPoint2d, LatLonGeo>> extractRegistrationPoints( String header )
+    static Set<Pair<IntPoint2d, LatLonGeo>> extractRegistrationPoints( String header )
     {
         Set<Pair<IntPoint2d, LatLonGeo>> refPoints = new HashSet<Pair<IntPoint2d, LatLonGeo>>( );
 
@@ -222,7 +189,7 @@ public final class BsbRasterData
         return refPoints;
     }
 
-    private static IndexColorModel extractColorModel( String header )
+    static IndexColorModel extractColorModel( String header )
     {
         Vector<Pair<String, String>> allTokenData = extractTokenData( header, "DAY" );
 
@@ -261,50 +228,7 @@ public final class BsbRasterData
         return new Color( rd, gn, bl );
     }
 
-    private static void decodeImageData( DataInputStream stream, byte[] cData, int numColorBits, int numRows ) throws IOException
-    {
-        byte colorMask = ( byte ) ( ( ( ( 1 << numColorBits ) ) - 1 ) << 7 - numColorBits );
-        byte countMask = ( byte ) ( ( 1 << 7 - numColorBits ) - 1 );
-
-        int nextByte = 0;
-        int iPix = 0;
-        for ( int i = 0; i < numRows; i++ )
-        {
-            readRowNumber( stream );
-            while ( ( nextByte = stream.readUnsignedByte( ) ) != 0 )
-            {
-                byte colorValue = ( byte ) ( ( nextByte & colorMask ) >> ( 7 - numColorBits ) );
-                int runLength = ( nextByte & countMask );
-
-                while ( ( nextByte & 0x80 ) != 0 )
-                {
-                    nextByte = stream.readUnsignedByte( );
-                    runLength = runLength * 128 + ( nextByte & 0x7f );
-                }
-
-                for ( int j = 0; j < runLength + 1; j++ )
-                {
-                    cData[iPix++] = colorValue;
-                }
-            }
-        }
-    }
-
-    private static int readRowNumber( DataInputStream stream ) throws IOException
-    {
-        int nextByte;
-        int lineNumber = 0;
-        do
-        {
-            nextByte = stream.readUnsignedByte( );
-            lineNumber = lineNumber * 128 + ( nextByte & 0x7f );
-        }
-        while ( ( nextByte & 0x80 ) != 0 );
-
-        return lineNumber;
-    }
-
-    private double distance( double x1, double y1, double x2, double y2 )
+    private static double distance( double x1, double y1, double x2, double y2 )
     {
         double dx = x1 - x2;
         double dy = y1 - y2;
@@ -365,13 +289,18 @@ public final class BsbRasterData
 
     public FlatProjection getProjection( MercatorProjection projection )
     {
-        if ( _registrationPoints == null || _registrationPoints.isEmpty( ) ) return null;
+        return getProjection( _registrationPoints, _width_PIXELS, _height_PIXELS, projection );
+    }
+
+    static FlatProjection getProjection( Set<Pair<IntPoint2d, LatLonGeo>> registrationPoints, int width_PIXELS, int height_PIXELS, MercatorProjection projection )
+    {
+        if ( registrationPoints == null || registrationPoints.isEmpty( ) ) return null;
 
-        Pair<IntPoint2d, LatLonGeo> point1 = _registrationPoints.iterator( ).next( );
+        Pair<IntPoint2d, LatLonGeo> point1 = registrationPoints.iterator( ).next( );
         Pair<IntPoint2d, LatLonGeo> point2 = null;
         double maxDistance = Double.NEGATIVE_INFINITY;
 
-        for ( Pair<IntPoint2d, LatLonGeo> pair : _registrationPoints )
+        for ( Pair<IntPoint2d, LatLonGeo> pair : registrationPoints )
         {
             if ( pair.first( ).x != point1.first( ).x && pair.first( ).y != point1.first( ).y )
             {
@@ -408,9 +337,9 @@ public final class BsbRasterData
         double pixelToProjY = pixelDiffY / projDiffY;
 
         double minX = projected1.getX( ) - x1 / pixelToProjX;
-        double maxX = projected1.getX( ) + ( _width_PIXELS - x1 ) / pixelToProjX;
+        double maxX = projected1.getX( ) + ( width_PIXELS - x1 ) / pixelToProjX;
         double minY = projected1.getY( ) + y1 / pixelToProjY;
-        double maxY = projected1.getY( ) - ( _height_PIXELS - y1 ) / pixelToProjY;
+        double maxY = projected1.getY( ) - ( height_PIXELS - y1 ) / pixelToProjY;
 
         return new FlatProjection( minX, maxX, minY, maxY );
     }
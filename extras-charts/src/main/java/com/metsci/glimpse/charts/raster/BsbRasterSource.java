@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.charts.raster;
+
+import static com.google.common.io.ByteStreams.toByteArray;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import com.metsci.glimpse.core.support.projection.FlatProjection;
+import com.metsci.glimpse.core.support.texture.ByteTextureProjected2D;
+import com.metsci.glimpse.util.Pair;
+import com.metsci.glimpse.util.geo.LatLonGeo;
+import com.metsci.glimpse.util.geo.projection.MercatorProjection;
+
+/**
+ * Random access to the rows of a BSB raster chart, without decoding the whole image.<p>
+ *
+ * The encoded file is held in memory (or memory-mapped, see {@link #open(Path)}), and
+ * only the requested row/column window is run-length decoded. BSB files end with an index
+ * of row offsets, which allows rows to be decoded independently and in parallel. If the
+ * index is missing or inconsistent, row offsets are recovered with one sequential scan.
+ *
+ * @see BsbRasterData
+ * @see BsbTiledPainter
+ */
+public class BsbRasterSource
+{
+    // below this many pixels, decoding on the calling thread is cheaper than forking
+    protected static final int PARALLEL_THRESHOLD_PIXELS = 256 * 256;
+
+    protected final ByteBuffer data;
+    protected final String header;
+    protected final String imageName;
+    protected final IndexColorModel colorModel;
+    protected final Set<Pair<IntPoint2d, LatLonGeo>> registrationPoints;
+    protected final int width_PIXELS;
+    protected final int height_PIXELS;
+    protected final int colorDepth;
+    protected final int[] rowOffsets;
+
+    protected BsbRasterSource( ByteBuffer data ) throws IOException
+    {
+        this.data = data;
+
+        int headerEnd = findHeaderEnd( data );
+        StringBuilder builder = new StringBuilder( headerEnd + 1 );
+        for ( int i = 0; i <= headerEnd; i++ )
+        {
+            builder.append( ( char ) data.get( i ) );
+        }
+        this.header = builder.toString( );
+
+        int[] dim = BsbRasterData.extractDimension( this.header );
+        this.width_PIXELS = dim[0];
+        this.height_PIXELS = dim[1];
+        this.imageName = BsbRasterData.extractImageName( this.header );
+        this.colorModel = BsbRasterData.extractColorModel( this.header );
+        this.registrationPoints = BsbRasterData.extractRegistrationPoints( this.header );
+
+        if ( headerEnd + 1 >= data.limit( ) ) throw new IOException( "BSB file ends before image data" );
+        this.colorDepth = data.get( headerEnd + 1 );
+
+        int firstRow = headerEnd + 2;
+        int[] offsets = readRowIndex( data, firstRow, this.height_PIXELS );
+        this.rowOffsets = ( offsets != null ? offsets : scanRowOffsets( data, firstRow, this.height_PIXELS ) );
+    }
+
+    public static BsbRasterSource read( URL url ) throws IOException
+    {
+        try ( InputStream in = url.openStream( ) )
+        {
+            return read( in );
+        }
+    }
+
+    /**
+     * Reads the (still encoded) contents of the stream into memory. The stream is not closed.
+     */
+    public static BsbRasterSource read( InputStream in ) throws IOException
+    {
+        return new BsbRasterSource( ByteBuffer.wrap( toByteArray( in ) ) );
+    }
+
+    /**
+     * Memory-maps the file, so that neither encoded nor decoded pixels occupy heap space
+     * until they are requested.
+     */
+    public static BsbRasterSource open( Path path ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+        {
+            if ( channel.size( ) > Integer.MAX_VALUE ) throw new IOException( "BSB file is too large to map: " + path );
+            return new BsbRasterSource( channel.map( MapMode.READ_ONLY, 0, channel.size( ) ) );
+        }
+    }
+
+    protected static int findHeaderEnd( ByteBuffer data ) throws IOException
+    {
+        // the ascii header is terminated by <Ctrl-Z><NUL>
+        for ( int i = 1; i < data.limit( ); i++ )
+        {
+            if ( data.get( i - 1 ) == 26 && data.get( i ) == 0 )
+            {
+                return i;
+            }
+        }
+        throw new IOException( "BSB header terminator not found" );
+    }
+
+    /**
+     * Reads the table of row offsets at the end of the file. The last 4 bytes of the file hold
+     * the offset of the table, which holds one big-endian 4-byte offset per row. Returns null
+     * if the table doesn't look valid.
+     */
+    protected static int[] readRowIndex( ByteBuffer data, int firstRow, int numRows )
+    {
+        int length = data.limit( );
+        if ( length < 4 ) return null;
+
+        int indexStart = data.getInt( length - 4 );
+        if ( indexStart < firstRow || ( long ) indexStart + 4L * numRows > length - 4 ) return null;
+
+        int[] offsets = new int[numRows];
+        for ( int i = 0; i < numRows; i++ )
+        {
+            int offset = data.getInt( indexStart + 4 * i );
+            if ( offset < firstRow || offset >= indexStart ) return null;
+            offsets[i] = offset;
+        }
+        return offsets;
+    }
+
+    protected static int[] scanRowOffsets( ByteBuffer data, int firstRow, int numRows ) throws IOException
+    {
+        int[] offsets = new int[numRows];
+        int p = firstRow;
+        try
+        {
+            for ( int i = 0; i < numRows; i++ )
+            {
+                offsets[i] = p;
+
+                // row number
+                while ( ( data.get( p++ ) & 0x80 ) != 0 );
+
+                // runs, terminated by a zero byte
+                int nextByte;
+                while ( ( nextByte = data.get( p++ ) & 0xff ) != 0 )
+                {
+                    while ( ( nextByte & 0x80 ) != 0 )
+                    {
+                        nextByte = data.get( p++ ) & 0xff;
+                    }
+                }
+            }
+        }
+        catch ( IndexOutOfBoundsException e )
+        {
+            throw new IOException( "BSB image data ends before all rows were read" );
+        }
+        return offsets;
+    }
+
+    /**
+     * Decodes a window of the image into {@code dest}, which receives {@code numRows} rows of
+     * {@code numCols} color indices each, starting with row {@code row0}. Large windows are
+     * decoded in parallel, one task per row.
+     */
+    public void decode( int col0, int row0, int numCols, int numRows, byte[] dest )
+    {
+        if ( col0 < 0 || row0 < 0 || numCols < 0 || numRows < 0 || col0 + numCols > this.width_PIXELS || row0 + numRows > this.height_PIXELS )
+        {
+            throw new IllegalArgumentException( "Window [" + col0 + ", " + row0 + ", " + numCols + ", " + numRows + "] is outside the " + this.width_PIXELS + "x" + this.height_PIXELS + " image" );
+        }
+        if ( dest.length < numCols * numRows )
+        {
+            throw new IllegalArgumentException( "Destination array is too small: " + dest.length + " < " + numCols * numRows );
+        }
+
+        IntStream rows = IntStream.range( 0, numRows );
+        if ( ( long ) numCols * numRows >= PARALLEL_THRESHOLD_PIXELS )
+        {
+            rows = rows.parallel( );
+        }
+        rows.forEach( i -> this.decodeRow( row0 + i, col0, numCols, dest, i * numCols ) );
+    }
+
+    public byte[] decode( int col0, int row0, int numCols, int numRows )
+    {
+        byte[] dest = new byte[numCols * numRows];
+        this.decode( col0, row0, numCols, numRows, dest );
+        return dest;
+    }
+
+    /**
+     * Run-length decodes columns {@code [col0, col0+numCols)} of one row. The runs before
+     * {@code col0} still have to be walked, but nothing is written for them.
+     */
+    protected void decodeRow( int row, int col0, int numCols, byte[] dest, int destOffset )
+    {
+        int shift = 7 - this.colorDepth;
+        int colorMask = ( ( 1 << this.colorDepth ) - 1 ) << shift;
+        int countMask = ( 1 << shift ) - 1;
+        int col1 = col0 + numCols;
+
+        ByteBuffer data = this.data;
+        int p = this.rowOffsets[row];
+
+        // row number
+        while ( ( data.get( p++ ) & 0x80 ) != 0 );
+
+        int col = 0;
+        int nextByte;
+        while ( col < col1 && ( nextByte = data.get( p++ ) & 0xff ) != 0 )
+        {
+            byte colorValue = ( byte ) ( ( nextByte & colorMask ) >> shift );
+            int runLength = ( nextByte & countMask );
+
+            while ( ( nextByte & 0x80 ) != 0 )
+            {
+                nextByte = data.get( p++ ) & 0xff;
+                runLength = runLength * 128 + ( nextByte & 0x7f );
+            }
+
+            int runEnd = col + runLength + 1;
+            for ( int c = max( col, col0 ), end = min( runEnd, col1 ); c < end; c++ )
+            {
+                dest[destOffset + c - col0] = colorValue;
+            }
+            col = runEnd;
+        }
+    }
+
+    /**
+     * Decodes the whole image, in parallel.
+     */
+    public BsbRasterData readImage( )
+    {
+        byte[] imageData = this.decode( 0, 0, this.width_PIXELS, this.height_PIXELS );
+        return new BsbRasterData( this.imageName, this.header, this.width_PIXELS, this.height_PIXELS, imageData, this.colorModel, this.registrationPoints );
+    }
+
+    /**
+     * Creates a texture holding a window of the image, positioned within the full-image
+     * {@code projection} (as returned by {@link #getProjection(MercatorProjection)}).
+     */
+    public ByteTextureProjected2D getDataTexture( int col0, int row0, int numCols, int numRows, FlatProjection projection )
+    {
+        byte[] window = this.decode( col0, row0, numCols, numRows );
+
+        ByteTextureProjected2D texture = new ByteTextureProjected2D( numCols, numRows );
+        texture.mutate( ( data, dataSizeX, dataSizeY ) -> data.put( window, 0, dataSizeX * dataSizeY ) );
+        texture.setProjection( this.getWindowProjection( col0, row0, numCols, numRows, projection ) );
+        return texture;
+    }
+
+    public FlatProjection getWindowProjection( int col0, int row0, int numCols, int numRows, FlatProjection projection )
+    {
+        double sizeX = projection.getMaxX( ) - projection.getMinX( );
+        double sizeY = projection.getMaxY( ) - projection.getMinY( );
+
+        double minX = projection.getMinX( ) + sizeX * col0 / this.width_PIXELS;
+        double maxX = projection.getMinX( ) + sizeX * ( col0 + numCols ) / this.width_PIXELS;
+        double minY = projection.getMinY( ) + sizeY * row0 / this.height_PIXELS;
+        double maxY = projection.getMinY( ) + sizeY * ( row0 + numRows ) / this.height_PIXELS;
+
+        return new FlatProjection( minX, maxX, minY, maxY );
+    }
+
+    public FlatProjection getProjection( MercatorProjection projection )
+    {
+        return BsbRasterData.getProjection( this.registrationPoints, this.width_PIXELS, this.height_PIXELS, projection );
+    }
+
+    public int getWidth( )
+    {
+        return this.width_PIXELS;
+    }
+
+    public int getHeight( )
+    {
+        return this.height_PIXELS;
+    }
+
+    public String getName( )
+    {
+        return this.imageName;
+    }
+
+    public String getHeader( )
+    {
+        return this.header;
+    }
+
+    public IndexColorModel getColorModel( )
+    {
+        return this.colorModel;
+    }
+
+    public Set<Pair<IntPoint2d, LatLonGeo>> getRegistrationPoints( )
+    {
+        return this.registrationPoints;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.charts.raster;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.metsci.glimpse.core.axis.Axis2D;
+import com.metsci.glimpse.core.context.GlimpseContext;
+import com.metsci.glimpse.core.painter.texture.ShadedTexturePainter;
+import com.metsci.glimpse.core.support.projection.FlatProjection;
+import com.metsci.glimpse.core.support.texture.ByteTextureProjected2D;
+
+/**
+ * Displays a {@link BsbRasterSource} as a grid of tiles, decoding and uploading only the
+ * tiles which intersect the visible axis bounds. Tiles are decoded asynchronously, and
+ * up to {@code maxCachedTiles} decoded tiles are kept on the GPU (least recently
+ * visible tiles are released first).<p>
+ *
+ * Like the single texture returned by {@link BsbRasterData#getDataTexture()}, the tiles hold
+ * color indices, so the painter should be given a program (e.g. {@code ColorMapIntegerProgram})
+ * and a color texture ({@link BsbRasterData#getColorTexture()}) as a non-drawable texture.
+ *
+ * @see BsbRasterSource
+ */
+public class BsbTiledPainter extends ShadedTexturePainter
+{
+    private static final Logger logger = Logger.getLogger( BsbTiledPainter.class.getName( ) );
+
+    public static final int DEFAULT_TILE_SIZE = 512;
+    public static final int DEFAULT_MAX_CACHED_TILES = 64;
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder( ).setDaemon( true ).setNameFormat( "bsb-tile-decoder-%d" ).build( );
+
+    private static final ExecutorService SHARED_EXEC = Executors.newFixedThreadPool( max( Runtime.getRuntime( ).availableProcessors( ) - 1, 1 ), THREAD_FACTORY );
+
+    protected final BsbRasterSource source;
+    protected final FlatProjection projection;
+    protected final int tileSize;
+    protected final int maxCachedTiles;
+    protected final ExecutorService exec;
+
+    protected final int numTilesX;
+    protected final int numTilesY;
+
+    // access-ordered, so iteration starts with the least recently visible tile
+    protected final Map<Long, ByteTextureProjected2D> tiles;
+    protected final Set<Long> pending;
+    protected final Queue<Map.Entry<Long, ByteTextureProjected2D>> decoded;
+
+    /**
+     * The visible tile range { minTileX, maxTileX, minTileY, maxTileY } (inclusive), checked by
+     * decode tasks so that tiles which have scrolled out of view before their turn are skipped.
+     */
+    protected final AtomicReference<int[]> visibleTiles;
+
+    public BsbTiledPainter( BsbRasterSource source, FlatProjection projection )
+    {
+        this( source, projection, DEFAULT_TILE_SIZE, DEFAULT_MAX_CACHED_TILES, SHARED_EXEC );
+    }
+
+    public BsbTiledPainter( BsbRasterSource source, FlatProjection projection, int tileSize, int maxCachedTiles, ExecutorService exec )
+    {
+        this.source = source;
+        this.projection = projection;
+        this.tileSize = tileSize;
+        this.maxCachedTiles = maxCachedTiles;
+        this.exec = exec;
+
+        this.numTilesX = ( source.getWidth( ) + tileSize - 1 ) / tileSize;
+        this.numTilesY = ( source.getHeight( ) + tileSize - 1 ) / tileSize;
+
+        this.tiles = new LinkedHashMap<>( 16, 0.75f, true );
+        this.pending = ConcurrentHashMap.newKeySet( );
+        this.decoded = new ConcurrentLinkedQueue<>( );
+        this.visibleTiles = new AtomicReference<>( new int[] { 0, -1, 0, -1 } );
+    }
+
+    @Override
+    public void doPaintTo( GlimpseContext context )
+    {
+        Axis2D axis = getAxis2D( context );
+        if ( axis == null ) return;
+
+        painterLock.lock( );
+        try
+        {
+            int[] visible = this.updateVisibleTiles( axis );
+            this.acceptDecodedTiles( );
+
+            this.removeAllDrawableTextures( );
+            for ( int tileY = visible[2]; tileY <= visible[3]; tileY++ )
+            {
+                for ( int tileX = visible[0]; tileX <= visible[1]; tileX++ )
+                {
+                    Long key = tileKey( tileX, tileY );
+                    ByteTextureProjected2D texture = this.tiles.get( key );
+                    if ( texture != null )
+                    {
+                        this.addDrawableTexture( texture, DEFAULT_DRAWABLE_TEXTURE_UNIT );
+                    }
+                    else if ( this.pending.add( key ) )
+                    {
+                        this.exec.submit( new DecodeTile( tileX, tileY ) );
+                    }
+                }
+            }
+
+            this.evictTiles( context, visible );
+        }
+        finally
+        {
+            painterLock.unlock( );
+        }
+
+        super.doPaintTo( context );
+    }
+
+    protected int[] updateVisibleTiles( Axis2D axis )
+    {
+        double fracX0 = this.projection.getTextureFractionX( axis.getMinX( ), axis.getMinY( ) );
+        double fracX1 = this.projection.getTextureFractionX( axis.getMaxX( ), axis.getMaxY( ) );
+        double fracY0 = this.projection.getTextureFractionY( axis.getMinX( ), axis.getMinY( ) );
+        double fracY1 = this.projection.getTextureFractionY( axis.getMaxX( ), axis.getMaxY( ) );
+
+        // the projection may be flipped (row 0 is usually the northern edge)
+        int minTileX = max( 0, ( int ) floor( min( fracX0, fracX1 ) * this.source.getWidth( ) / this.tileSize ) );
+        int maxTileX = min( this.numTilesX - 1, ( int ) ceil( max( fracX0, fracX1 ) * this.source.getWidth( ) / this.tileSize ) - 1 );
+        int minTileY = max( 0, ( int ) floor( min( fracY0, fracY1 ) * this.source.getHeight( ) / this.tileSize ) );
+        int maxTileY = min( this.numTilesY - 1, ( int ) ceil( max( fracY0, fracY1 ) * this.source.getHeight( ) / this.tileSize ) - 1 );
+
+        int[] visible = new int[] { minTileX, maxTileX, minTileY, maxTileY };
+        this.visibleTiles.set( visible );
+        return visible;
+    }
+
+    protected void acceptDecodedTiles( )
+    {
+        Map.Entry<Long, ByteTextureProjected2D> en;
+        while ( ( en = this.decoded.poll( ) ) != null )
+        {
+            this.tiles.put( en.getKey( ), en.getValue( ) );
+            this.pending.remove( en.getKey( ) );
+        }
+    }
+
+    protected void evictTiles( GlimpseContext context, int[] visible )
+    {
+        Iterator<Map.Entry<Long, ByteTextureProjected2D>> it = this.tiles.entrySet( ).iterator( );
+        while ( this.tiles.size( ) > this.maxCachedTiles && it.hasNext( ) )
+        {
+            Map.Entry<Long, ByteTextureProjected2D> en = it.next( );
+            if ( !isTileVisible( en.getKey( ), visible ) )
+            {
+                en.getValue( ).dispose( context.getGLContext( ) );
+                it.remove( );
+            }
+        }
+    }
+
+    protected static Long tileKey( int tileX, int tileY )
+    {
+        return ( ( long ) tileY << 32 ) | ( tileX & 0xffffffffL );
+    }
+
+    protected static boolean isTileVisible( long key, int[] visible )
+    {
+        int tileX = ( int ) key;
+        int tileY = ( int ) ( key >>> 32 );
+        return isTileVisible( tileX, tileY, visible );
+    }
+
+    protected static boolean isTileVisible( int tileX, int tileY, int[] visible )
+    {
+        return visible[0] <= tileX && tileX <= visible[1] && visible[2] <= tileY && tileY <= visible[3];
+    }
+
+    @Override
+    public void doDispose( GlimpseContext context )
+    {
+        painterLock.lock( );
+        try
+        {
+            this.acceptDecodedTiles( );
+            for ( ByteTextureProjected2D texture : this.tiles.values( ) )
+            {
+                texture.dispose( context.getGLContext( ) );
+            }
+            this.tiles.clear( );
+        }
+        finally
+        {
+            painterLock.unlock( );
+        }
+
+        super.doDispose( context );
+    }
+
+    private final class DecodeTile implements Runnable
+    {
+        private final int tileX;
+        private final int tileY;
+
+        private DecodeTile( int tileX, int tileY )
+        {
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public void run( )
+        {
+            Long key = tileKey( tileX, tileY );
+            try
+            {
+                if ( !isTileVisible( tileX, tileY, visibleTiles.get( ) ) || isDisposed( ) )
+                {
+                    // scrolled out of view before we got to it -- it will be requested again if it comes back
+                    pending.remove( key );
+                    return;
+                }
+
+                int col0 = tileX * tileSize;
+                int row0 = tileY * tileSize;
+                int numCols = min( tileSize, source.getWidth( ) - col0 );
+                int numRows = min( tileSize, source.getHeight( ) - row0 );
+
+                ByteTextureProjected2D texture = source.getDataTexture( col0, row0, numCols, numRows, projection );
+                decoded.add( new AbstractMap.SimpleImmutableEntry<>( key, texture ) );
+            }
+            catch ( Exception e )
+            {
+                // leave the tile marked as pending, so a bad tile isn't retried every frame
+                logger.log( Level.WARNING, "Failed to decode BSB tile " + tileX + ", " + tileY, e );
+            }
+        }
+    }
+}
@@ -70,6 +70,11 @@ public class ShorelineTilePainter extends TilePainter<float[]>
 {
     private static final Logger LOGGER = Logger.getLogger( ShorelineTilePainter.class.getName( ) );
 
+    /**
+     * Upper bound on the total size of cached tile vertices.
+     */
+    public static final long DEFAULT_CACHE_BYTES = 256L * 1024 * 1024;
+
     protected final File file;
     protected final Map<TileKey, Long> offsets;
 
@@ -81,7 +86,12 @@ public class ShorelineTilePainter extends TilePainter<float[]>
 
     public ShorelineTilePainter( GeoProjection projection, File file ) throws IOException
     {
-        super( projection );
+        this( projection, file, DEFAULT_CACHE_BYTES );
+    }
+
+    public ShorelineTilePainter( GeoProjection projection, File file, long maxCacheBytes ) throws IOException
+    {
+        super( projection, ( key, vertices ) -> vertices.length * Float.BYTES, maxCacheBytes );
         this.file = file;
         offsets = loadOffsets( file );
         logInfo( LOGGER, "Found %,d tiles in %s", offsets.size( ), file );
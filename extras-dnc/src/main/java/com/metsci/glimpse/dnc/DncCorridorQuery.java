@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dnc;
+
+import static com.metsci.glimpse.util.GeneralUtils.floatsEqual;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+import com.metsci.glimpse.dnc.DncChunks.DncChunkKey;
+import com.metsci.glimpse.util.GeneralUtils;
+
+/**
+ * Finds features within halfWidth of a polyline, e.g. hazards along a planned route. The
+ * polyline is given as x,y pairs in projected coordinates, and halfWidth is in projected
+ * units. The inherited bounds are the bounds of the whole corridor.
+ */
+public class DncCorridorQuery extends DncQuery
+{
+
+    protected final float[] xys;
+    public final float halfWidth;
+
+
+    public DncCorridorQuery( Collection<DncChunkKey> chunkKeys, float[] xys, float halfWidth )
+    {
+        this( chunkKeys, new DncTree.CorridorRegion( xys, halfWidth ), null, null );
+    }
+
+    public DncCorridorQuery( Collection<DncChunkKey> chunkKeys, float[] xys, float halfWidth, Collection<String> fcodes, Predicate<? super DncFeature> featureFilter )
+    {
+        this( chunkKeys, new DncTree.CorridorRegion( xys, halfWidth ), fcodes, featureFilter );
+    }
+
+    protected DncCorridorQuery( Collection<DncChunkKey> chunkKeys, DncTree.CorridorRegion region, Collection<String> fcodes, Predicate<? super DncFeature> featureFilter )
+    {
+        super( chunkKeys, region.xMin, region.xMax, region.yMin, region.yMax, fcodes, featureFilter );
+        this.xys = region.xys;
+        this.halfWidth = region.halfWidth;
+    }
+
+    public float[] xys( )
+    {
+        return xys.clone( );
+    }
+
+    @Override
+    public DncTree.Region region( )
+    {
+        return new DncTree.CorridorRegion( xys, halfWidth );
+    }
+
+    @Override
+    public int hashCode( )
+    {
+        int prime = 1031;
+        int result = super.hashCode( );
+        result = prime * result + Arrays.hashCode( xys );
+        result = prime * result + GeneralUtils.hashCode( halfWidth );
+        return result;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( !super.equals( o ) ) return false;
+
+        DncCorridorQuery other = ( DncCorridorQuery ) o;
+        return ( Arrays.equals( other.xys, xys )
+              && floatsEqual( other.halfWidth, halfWidth ) );
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.dnc;
+
+import static com.metsci.glimpse.util.GeneralUtils.floatsEqual;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.metsci.glimpse.dnc.DncChunks.DncChunkKey;
+import com.metsci.glimpse.util.GeneralUtils;
+
+/**
+ * Finds up to maxCount features nearest to a point, in projected coordinates, across all
+ * the given chunks. Features farther than maxDistance (in projected units) are ignored.
+ */
+public class DncNearestQuery
+{
+
+    public static class Hit
+    {
+        public final DncFeature feature;
+        public final float distance;
+
+        public Hit( DncFeature feature, float distance )
+        {
+            this.feature = feature;
+            this.distance = distance;
+        }
+    }
+
+
+    public final ImmutableCollection<DncChunkKey> chunkKeys;
+    public final float x;
+    public final float y;
+    public final int maxCount;
+    public final float maxDistance;
+
+    /**
+     * See {@link DncQuery#fcodes}.
+     */
+    public final ImmutableSet<String> fcodes;
+
+    /**
+     * See {@link DncQuery#featureFilter}. Rejected features don't count toward maxCount.
+     */
+    public final Predicate<? super DncFeature> featureFilter;
+
+
+    public DncNearestQuery( Collection<DncChunkKey> chunkKeys, float x, float y, int maxCount, float maxDistance )
+    {
+        this( chunkKeys, x, y, maxCount, maxDistance, null, null );
+    }
+
+    public DncNearestQuery( Collection<DncChunkKey> chunkKeys, float x, float y, int maxCount, float maxDistance, Collection<String> fcodes, Predicate<? super DncFeature> featureFilter )
+    {
+        this.chunkKeys = ImmutableList.copyOf( chunkKeys );
+        this.x = x;
+        this.y = y;
+        this.maxCount = maxCount;
+        this.maxDistance = maxDistance;
+        this.fcodes = ( fcodes == null ? null : ImmutableSet.copyOf( fcodes ) );
+        this.featureFilter = featureFilter;
+    }
+
+    @Override
+    public int hashCode( )
+    {
+        int prime = 1021;
+        int result = 1;
+        result = prime * result + Objects.hashCode( chunkKeys );
+        result = prime * result + GeneralUtils.hashCode( x );
+        result = prime * result + GeneralUtils.hashCode( y );
+        result = prime * result + maxCount;
+        result = prime * result + GeneralUtils.hashCode( maxDistance );
+        result = prime * result + Objects.hashCode( fcodes );
+        result = prime * result + Objects.hashCode( featureFilter );
+        return result;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( o == this ) return true;
+        if ( o == null ) return false;
+        if ( o.getClass( ) != getClass( ) ) return false;
+
+        DncNearestQuery other = ( DncNearestQuery ) o;
+        return ( Objects.equals( other.chunkKeys, chunkKeys )
+              && floatsEqual( other.x, x )
+              && floatsEqual( other.y, y )
+              && other.maxCount == maxCount
+              && floatsEqual( other.maxDistance, maxDistance )
+              && Objects.equals( other.fcodes, fcodes )
+              && Objects.equals( other.featureFilter, featureFilter ) );
+    }
+
+}
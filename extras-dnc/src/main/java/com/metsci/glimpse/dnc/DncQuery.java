@@ -28,11 +28,15 @@ package com.metsci.glimpse.dnc;
 
 import static com.metsci.glimpse.util.GeneralUtils.floatsEqual;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Predicate;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.metsci.glimpse.dnc.DncChunks.DncChunkKey;
 import com.metsci.glimpse.util.GeneralUtils;
 
@@ -45,14 +49,63 @@ public class DncQuery
     public final float yMin;
     public final float yMax;
 
+    /**
+     * If non-null, only features with one of these FCODEs are returned. The FCODE test is
+     * pushed down into the per-chunk tree search.
+     */
+    public final ImmutableSet<String> fcodes;
+
+    /**
+     * If non-null, applied to each feature that passes the spatial and FCODE tests. Compared
+     * by identity in {@link #equals(Object)}, so reuse the same instance across queries that
+     * should be considered equal.
+     */
+    public final Predicate<? super DncFeature> featureFilter;
+
 
     public DncQuery( Collection<DncChunkKey> chunkKeys, float xMin, float xMax, float yMin, float yMax )
+    {
+        this( chunkKeys, xMin, xMax, yMin, yMax, null, null );
+    }
+
+    public DncQuery( Collection<DncChunkKey> chunkKeys, float xMin, float xMax, float yMin, float yMax, Collection<String> fcodes, Predicate<? super DncFeature> featureFilter )
     {
         this.chunkKeys = ImmutableList.copyOf( chunkKeys );
         this.xMin = xMin;
         this.xMax = xMax;
         this.yMin = yMin;
         this.yMax = yMax;
+        this.fcodes = ( fcodes == null ? null : ImmutableSet.copyOf( fcodes ) );
+        this.featureFilter = featureFilter;
+    }
+
+    public DncTree.Region region( )
+    {
+        return new DncTree.BoxRegion( xMin, xMax, yMin, yMax );
+    }
+
+    public boolean accepts( DncFeature feature )
+    {
+        return ( ( fcodes == null || fcodes.contains( feature.fcode ) )
+              && ( featureFilter == null || featureFilter.test( feature ) ) );
+    }
+
+    public Collection<DncFeature> filter( Collection<DncFeature> features )
+    {
+        if ( fcodes == null && featureFilter == null )
+        {
+            return features;
+        }
+
+        List<DncFeature> accepted = new ArrayList<>( );
+        for ( DncFeature feature : features )
+        {
+            if ( accepts( feature ) )
+            {
+                accepted.add( feature );
+            }
+        }
+        return accepted;
     }
 
     @Override
@@ -65,6 +118,8 @@ public class DncQuery
         result = prime * result + GeneralUtils.hashCode( xMax );
         result = prime * result + GeneralUtils.hashCode( yMin );
         result = prime * result + GeneralUtils.hashCode( yMax );
+        result = prime * result + Objects.hashCode( fcodes );
+        result = prime * result + Objects.hashCode( featureFilter );
         return result;
     }
 
@@ -80,7 +135,9 @@ public class DncQuery
               && floatsEqual( other.xMin, xMin )
               && floatsEqual( other.xMax, xMax )
               && floatsEqual( other.yMin, yMin )
-              && floatsEqual( other.yMax, yMax ) );
+              && floatsEqual( other.yMax, yMax )
+              && Objects.equals( other.fcodes, fcodes )
+              && Objects.equals( other.featureFilter, featureFilter ) );
     }
 
 }
@@ -29,40 +29,306 @@ package com.metsci.glimpse.dnc;
 import static com.metsci.glimpse.dnc.convert.Flat2Query.boxContainsPoint;
 import static com.metsci.glimpse.dnc.convert.Flat2Query.boxIntersectsLine;
 import static com.metsci.glimpse.dnc.convert.Flat2Query.boxIntersectsTriangle;
+import static com.metsci.glimpse.dnc.convert.Flat2Query.boxLineDistanceSq;
+import static com.metsci.glimpse.dnc.convert.Flat2Query.boxPointDistanceSq;
+import static com.metsci.glimpse.dnc.convert.Flat2Query.lineLineDistanceSq;
+import static com.metsci.glimpse.dnc.convert.Flat2Query.pointLineDistanceSq;
+import static com.metsci.glimpse.dnc.convert.Flat2Query.triangleContainsPoint;
+import static com.metsci.glimpse.dnc.convert.Flat2Query.trianglePointDistanceSq;
 import static com.metsci.glimpse.dnc.convert.Query.intsPerQueryLineItem;
 import static com.metsci.glimpse.dnc.convert.Query.intsPerQueryPointItem;
 import static com.metsci.glimpse.dnc.convert.Query.intsPerQueryTriangleItem;
 import static com.metsci.glimpse.dnc.util.DncMiscUtils.last;
+import static java.lang.Float.NEGATIVE_INFINITY;
+import static java.lang.Float.POSITIVE_INFINITY;
 import static java.lang.Float.intBitsToFloat;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
 
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
 
+import it.unimi.dsi.fastutil.ints.Int2FloatLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2FloatMap;
+import it.unimi.dsi.fastutil.ints.Int2FloatOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 
 public class DncTree
 {
 
-    protected static interface Node
+    /**
+     * A region of the projected plane that can be tested against tree cells and items.
+     * Box tests are allowed to be conservative: {@link #intersectsBox(float, float, float, float)}
+     * may return true for a box that doesn't actually touch the region, and
+     * {@link #containsBox(float, float, float, float)} may return false for a box that is
+     * actually contained.
+     */
+    public static interface Region
     {
-        void search( float xMin, float xMax, float yMin, float yMax, IntSet featureNums );
+        boolean intersectsBox( float xMin, float xMax, float yMin, float yMax );
+
+        boolean containsBox( float xMin, float xMax, float yMin, float yMax );
+
+        boolean intersectsPoint( float x, float y );
+
+        boolean intersectsLine( float xA, float yA, float xB, float yB );
+
+        boolean intersectsTriangle( float xA, float yA, float xB, float yB, float xC, float yC );
     }
 
 
-    protected static class EmptyNode implements Node
+    public static class BoxRegion implements Region
+    {
+        public final float xMin;
+        public final float xMax;
+        public final float yMin;
+        public final float yMax;
+
+        public BoxRegion( float xMin, float xMax, float yMin, float yMax )
+        {
+            this.xMin = xMin;
+            this.xMax = xMax;
+            this.yMin = yMin;
+            this.yMax = yMax;
+        }
+
+        @Override
+        public boolean intersectsBox( float xMin, float xMax, float yMin, float yMax )
+        {
+            // Treating both min and max as inclusive simplifies handling of degenerate items (e.g. points)
+            return ( xMin <= this.xMax && this.xMin <= xMax && yMin <= this.yMax && this.yMin <= yMax );
+        }
+
+        @Override
+        public boolean containsBox( float xMin, float xMax, float yMin, float yMax )
+        {
+            return ( this.xMin <= xMin && xMax <= this.xMax && this.yMin <= yMin && yMax <= this.yMax );
+        }
+
+        @Override
+        public boolean intersectsPoint( float x, float y )
+        {
+            return boxContainsPoint( xMin, yMin, xMax, yMax, x, y );
+        }
+
+        @Override
+        public boolean intersectsLine( float xA, float yA, float xB, float yB )
+        {
+            return boxIntersectsLine( xMin, yMin, xMax, yMax, xA, yA, xB, yB );
+        }
+
+        @Override
+        public boolean intersectsTriangle( float xA, float yA, float xB, float yB, float xC, float yC )
+        {
+            return boxIntersectsTriangle( xMin, yMin, xMax, yMax, xA, yA, xB, yB, xC, yC );
+        }
+    }
+
+
+    /**
+     * The set of points within halfWidth of a polyline (e.g. a planned route), in projected
+     * coordinates.
+     */
+    public static class CorridorRegion implements Region
+    {
+        public final float halfWidth;
+        public final float xMin;
+        public final float xMax;
+        public final float yMin;
+        public final float yMax;
+
+        protected final float[] xys;
+        protected final int vertexCount;
+        protected final float halfWidthSq;
+
+        public CorridorRegion( float[] xys, float halfWidth )
+        {
+            if ( xys.length < 2 || xys.length % 2 != 0 ) throw new IllegalArgumentException( "Corridor needs at least one vertex, given as x,y pairs: length = " + xys.length );
+
+            this.xys = xys.clone( );
+            this.vertexCount = xys.length / 2;
+            this.halfWidth = halfWidth;
+            this.halfWidthSq = halfWidth * halfWidth;
+
+            float xMin = POSITIVE_INFINITY;
+            float xMax = NEGATIVE_INFINITY;
+            float yMin = POSITIVE_INFINITY;
+            float yMax = NEGATIVE_INFINITY;
+            for ( int v = 0; v < vertexCount; v++ )
+            {
+                xMin = min( xMin, xys[ 2*v + 0 ] );
+                xMax = max( xMax, xys[ 2*v + 0 ] );
+                yMin = min( yMin, xys[ 2*v + 1 ] );
+                yMax = max( yMax, xys[ 2*v + 1 ] );
+            }
+            this.xMin = xMin - halfWidth;
+            this.xMax = xMax + halfWidth;
+            this.yMin = yMin - halfWidth;
+            this.yMax = yMax + halfWidth;
+        }
+
+        /**
+         * A single vertex is treated as a degenerate segment, so segment n runs from vertex
+         * min(n, vertexCount-1) to vertex min(n+1, vertexCount-1).
+         */
+        protected int segmentCount( )
+        {
+            return max( 1, vertexCount - 1 );
+        }
+
+        protected float xA( int s ) { return xys[ 2*s + 0 ]; }
+        protected float yA( int s ) { return xys[ 2*s + 1 ]; }
+        protected float xB( int s ) { return xys[ 2*min( s+1, vertexCount-1 ) + 0 ]; }
+        protected float yB( int s ) { return xys[ 2*min( s+1, vertexCount-1 ) + 1 ]; }
+
+        @Override
+        public boolean intersectsBox( float xMin, float xMax, float yMin, float yMax )
+        {
+            if ( xMin > this.xMax || this.xMin > xMax || yMin > this.yMax || this.yMin > yMax ) return false;
+
+            for ( int s = 0; s < segmentCount( ); s++ )
+            {
+                if ( boxLineDistanceSq( xMin, yMin, xMax, yMax, xA( s ), yA( s ), xB( s ), yB( s ) ) <= halfWidthSq )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean containsBox( float xMin, float xMax, float yMin, float yMax )
+        {
+            // Each segment's buffer is convex, so a box is inside it iff all four corners are --
+            // boxes that are only covered by a union of segment buffers fall back to item tests
+            for ( int s = 0; s < segmentCount( ); s++ )
+            {
+                float xA = xA( s );
+                float yA = yA( s );
+                float xB = xB( s );
+                float yB = yB( s );
+                if ( pointLineDistanceSq( xA, yA, xB, yB, xMin, yMin ) <= halfWidthSq
+                  && pointLineDistanceSq( xA, yA, xB, yB, xMax, yMin ) <= halfWidthSq
+                  && pointLineDistanceSq( xA, yA, xB, yB, xMin, yMax ) <= halfWidthSq
+                  && pointLineDistanceSq( xA, yA, xB, yB, xMax, yMax ) <= halfWidthSq )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean intersectsPoint( float x, float y )
+        {
+            if ( !boxContainsPoint( xMin, yMin, xMax, yMax, x, y ) ) return false;
+
+            for ( int s = 0; s < segmentCount( ); s++ )
+            {
+                if ( pointLineDistanceSq( xA( s ), yA( s ), xB( s ), yB( s ), x, y ) <= halfWidthSq )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean intersectsLine( float xA, float yA, float xB, float yB )
+        {
+            if ( !boxIntersectsLine( xMin, yMin, xMax, yMax, xA, yA, xB, yB ) ) return false;
+
+            for ( int s = 0; s < segmentCount( ); s++ )
+            {
+                if ( lineLineDistanceSq( xA( s ), yA( s ), xB( s ), yB( s ), xA, yA, xB, yB ) <= halfWidthSq )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean intersectsTriangle( float xA, float yA, float xB, float yB, float xC, float yC )
+        {
+            if ( !boxIntersectsTriangle( xMin, yMin, xMax, yMax, xA, yA, xB, yB, xC, yC ) ) return false;
+
+            for ( int v = 0; v < vertexCount; v++ )
+            {
+                if ( triangleContainsPoint( xA, yA, xB, yB, xC, yC, xys[ 2*v + 0 ], xys[ 2*v + 1 ] ) )
+                {
+                    return true;
+                }
+            }
+            return ( intersectsLine( xA, yA, xB, yB )
+                  || intersectsLine( xB, yB, xC, yC )
+                  || intersectsLine( xC, yC, xA, yA ) );
+        }
+    }
+
+
+    /**
+     * Cell bounds come from the on-disk tree. FCODE bits are computed when the tree is loaded,
+     * and are null if the tree was created without per-feature FCODE ids.
+     */
+    protected static abstract class Node
+    {
+        public final float xMin;
+        public final float xMax;
+        public final float yMin;
+        public final float yMax;
+        public final BitSet fcodeIds;
+
+        public Node( float xMin, float xMax, float yMin, float yMax, BitSet fcodeIds )
+        {
+            this.xMin = xMin;
+            this.xMax = xMax;
+            this.yMin = yMin;
+            this.yMax = yMax;
+            this.fcodeIds = fcodeIds;
+        }
+
+        public boolean mayContainFcodes( BitSet fcodeFilter )
+        {
+            return ( fcodeFilter == null || fcodeIds == null || fcodeIds.intersects( fcodeFilter ) );
+        }
+
+        public float distanceSq( float x, float y )
+        {
+            return boxPointDistanceSq( xMin, yMin, xMax, yMax, x, y );
+        }
+
+        public abstract void search( Region region, BitSet fcodeFilter, IntSet featureNums );
+    }
+
+
+    protected static class EmptyNode extends Node
     {
         public EmptyNode( )
-        { }
+        {
+            super( POSITIVE_INFINITY, NEGATIVE_INFINITY, POSITIVE_INFINITY, NEGATIVE_INFINITY, new BitSet( ) );
+        }
+
+        @Override
+        public float distanceSq( float x, float y )
+        {
+            return POSITIVE_INFINITY;
+        }
 
         @Override
-        public void search( float xMin, float xMax, float yMin, float yMax, IntSet featureNums )
+        public void search( Region region, BitSet fcodeFilter, IntSet featureNums )
         { }
     }
 
 
-    protected static class InteriorNode implements Node
+    protected static class InteriorNode extends Node
     {
         public final float xDivider;
         public final float yDivider;
@@ -73,6 +339,12 @@ public class DncTree
 
         public InteriorNode( float xDivider, float yDivider, Node child0, Node child1, Node child2, Node child3 )
         {
+            super( min( min( child0.xMin, child1.xMin ), min( child2.xMin, child3.xMin ) ),
+                   max( max( child0.xMax, child1.xMax ), max( child2.xMax, child3.xMax ) ),
+                   min( min( child0.yMin, child1.yMin ), min( child2.yMin, child3.yMin ) ),
+                   max( max( child0.yMax, child1.yMax ), max( child2.yMax, child3.yMax ) ),
+                   unionFcodeIds( child0, child1, child2, child3 ) );
+
             this.xDivider = xDivider;
             this.yDivider = yDivider;
             this.child0 = child0;
@@ -82,28 +354,38 @@ public class DncTree
         }
 
         @Override
-        public void search( float xMin, float xMax, float yMin, float yMax, IntSet featureNums )
+        public void search( Region region, BitSet fcodeFilter, IntSet featureNums )
         {
-            // Treating both min and max as inclusive simplifies handling of degenerate items (e.g. points)
-            boolean includeSmallX = ( xMin <= xDivider );
-            boolean includeLargeX = ( xMax >= xDivider );
-            boolean includeSmallY = ( yMin <= yDivider );
-            boolean includeLargeY = ( yMax >= yDivider );
+            searchChild( child0, region, fcodeFilter, featureNums );
+            searchChild( child1, region, fcodeFilter, featureNums );
+            searchChild( child2, region, fcodeFilter, featureNums );
+            searchChild( child3, region, fcodeFilter, featureNums );
+        }
 
-            if ( includeSmallX && includeSmallY ) child0.search( xMin, xMax, yMin, yMax, featureNums );
-            if ( includeLargeX && includeSmallY ) child1.search( xMin, xMax, yMin, yMax, featureNums );
-            if ( includeSmallX && includeLargeY ) child2.search( xMin, xMax, yMin, yMax, featureNums );
-            if ( includeLargeX && includeLargeY ) child3.search( xMin, xMax, yMin, yMax, featureNums );
+        protected static void searchChild( Node child, Region region, BitSet fcodeFilter, IntSet featureNums )
+        {
+            if ( child.mayContainFcodes( fcodeFilter ) && region.intersectsBox( child.xMin, child.xMax, child.yMin, child.yMax ) )
+            {
+                child.search( region, fcodeFilter, featureNums );
+            }
         }
     }
 
 
-    protected class LeafNode implements Node
+    protected static BitSet unionFcodeIds( Node... nodes )
+    {
+        BitSet union = new BitSet( );
+        for ( Node node : nodes )
+        {
+            if ( node.fcodeIds == null ) return null;
+            union.or( node.fcodeIds );
+        }
+        return union;
+    }
+
+
+    protected class LeafNode extends Node
     {
-        public final float xMin;
-        public final float xMax;
-        public final float yMin;
-        public final float yMax;
         public final int pointFirst;
         public final int pointCount;
         public final int lineFirst;
@@ -113,10 +395,8 @@ public class DncTree
 
         public LeafNode( float xMin, float xMax, float yMin, float yMax, int pointFirst, int pointCount, int lineFirst, int lineCount, int triangleFirst, int triangleCount )
         {
-            this.xMin = xMin;
-            this.xMax = xMax;
-            this.yMin = yMin;
-            this.yMax = yMax;
+            super( xMin, xMax, yMin, yMax, leafFcodeIds( pointFirst, pointCount, lineFirst, lineCount, triangleFirst, triangleCount ) );
+
             this.pointFirst = pointFirst;
             this.pointCount = pointCount;
             this.lineFirst = lineFirst;
@@ -126,26 +406,33 @@ public class DncTree
         }
 
         @Override
-        public void search( float xMin, float xMax, float yMin, float yMax, IntSet featureNums )
+        public void search( Region region, BitSet fcodeFilter, IntSet featureNums )
         {
-            boolean xAll = ( xMin <= this.xMin && this.xMax <= xMax );
-            boolean yAll = ( yMin <= this.yMin && this.yMax <= yMax );
-            if ( xAll && yAll )
+            if ( region.containsBox( xMin, xMax, yMin, yMax ) )
             {
                 for ( int pointNum = pointFirst; pointNum < ( pointFirst + pointCount ); pointNum++ )
                 {
                     int featureNum = pointFeatureNum( pointNum );
-                    featureNums.add( featureNum );
+                    if ( hasFcode( featureNum, fcodeFilter ) )
+                    {
+                        featureNums.add( featureNum );
+                    }
                 }
                 for ( int lineNum = lineFirst; lineNum < ( lineFirst + lineCount ); lineNum++ )
                 {
                     int featureNum = lineFeatureNum( lineNum );
-                    featureNums.add( featureNum );
+                    if ( hasFcode( featureNum, fcodeFilter ) )
+                    {
+                        featureNums.add( featureNum );
+                    }
                 }
                 for ( int triangleNum = triangleFirst; triangleNum < ( triangleFirst + triangleCount ); triangleNum++ )
                 {
                     int featureNum = triangleFeatureNum( triangleNum );
-                    featureNums.add( featureNum );
+                    if ( hasFcode( featureNum, fcodeFilter ) )
+                    {
+                        featureNums.add( featureNum );
+                    }
                 }
             }
             else
@@ -153,11 +440,11 @@ public class DncTree
                 for ( int pointNum = pointFirst; pointNum < ( pointFirst + pointCount ); pointNum++ )
                 {
                     int featureNum = pointFeatureNum( pointNum );
-                    if ( !featureNums.contains( featureNum ) )
+                    if ( !featureNums.contains( featureNum ) && hasFcode( featureNum, fcodeFilter ) )
                     {
                         float x = pointX( pointNum );
                         float y = pointY( pointNum );
-                        if ( boxContainsPoint( xMin, yMin, xMax, yMax, x, y ) )
+                        if ( region.intersectsPoint( x, y ) )
                         {
                             featureNums.add( featureNum );
                         }
@@ -166,13 +453,13 @@ public class DncTree
                 for ( int lineNum = lineFirst; lineNum < ( lineFirst + lineCount ); lineNum++ )
                 {
                     int featureNum = lineFeatureNum( lineNum );
-                    if ( !featureNums.contains( featureNum ) )
+                    if ( !featureNums.contains( featureNum ) && hasFcode( featureNum, fcodeFilter ) )
                     {
                         float xA = lineXA( lineNum );
                         float yA = lineYA( lineNum );
                         float xB = lineXB( lineNum );
                         float yB = lineYB( lineNum );
-                        if ( boxIntersectsLine( xMin, yMin, xMax, yMax, xA, yA, xB, yB ) )
+                        if ( region.intersectsLine( xA, yA, xB, yB ) )
                         {
                             featureNums.add( featureNum );
                         }
@@ -181,7 +468,7 @@ public class DncTree
                 for ( int triangleNum = triangleFirst; triangleNum < ( triangleFirst + triangleCount ); triangleNum++ )
                 {
                     int featureNum = triangleFeatureNum( triangleNum );
-                    if ( !featureNums.contains( featureNum ) )
+                    if ( !featureNums.contains( featureNum ) && hasFcode( featureNum, fcodeFilter ) )
                     {
                         float xA = triangleXA( triangleNum );
                         float yA = triangleYA( triangleNum );
@@ -189,7 +476,7 @@ public class DncTree
                         float yB = triangleYB( triangleNum );
                         float xC = triangleXC( triangleNum );
                         float yC = triangleYC( triangleNum );
-                        if ( boxIntersectsTriangle( xMin, yMin, xMax, yMax, xA, yA, xB, yB, xC, yC ) )
+                        if ( region.intersectsTriangle( xA, yA, xB, yB, xC, yC ) )
                         {
                             featureNums.add( featureNum );
                         }
@@ -197,6 +484,73 @@ public class DncTree
                 }
             }
         }
+
+        /**
+         * Adds each feature that has an item in this leaf to the candidates map, keeping the
+         * smallest squared distance seen so far for each feature.
+         */
+        public void nearest( float x, float y, float maxDistanceSq, BitSet fcodeFilter, Int2FloatMap candidates )
+        {
+            for ( int pointNum = pointFirst; pointNum < ( pointFirst + pointCount ); pointNum++ )
+            {
+                int featureNum = pointFeatureNum( pointNum );
+                if ( hasFcode( featureNum, fcodeFilter ) )
+                {
+                    float dx = pointX( pointNum ) - x;
+                    float dy = pointY( pointNum ) - y;
+                    putNearer( candidates, featureNum, dx*dx + dy*dy, maxDistanceSq );
+                }
+            }
+            for ( int lineNum = lineFirst; lineNum < ( lineFirst + lineCount ); lineNum++ )
+            {
+                int featureNum = lineFeatureNum( lineNum );
+                if ( hasFcode( featureNum, fcodeFilter ) )
+                {
+                    float distanceSq = pointLineDistanceSq( lineXA( lineNum ), lineYA( lineNum ), lineXB( lineNum ), lineYB( lineNum ), x, y );
+                    putNearer( candidates, featureNum, distanceSq, maxDistanceSq );
+                }
+            }
+            for ( int triangleNum = triangleFirst; triangleNum < ( triangleFirst + triangleCount ); triangleNum++ )
+            {
+                int featureNum = triangleFeatureNum( triangleNum );
+                if ( hasFcode( featureNum, fcodeFilter ) )
+                {
+                    float distanceSq = trianglePointDistanceSq( triangleXA( triangleNum ), triangleYA( triangleNum ),
+                                                                triangleXB( triangleNum ), triangleYB( triangleNum ),
+                                                                triangleXC( triangleNum ), triangleYC( triangleNum ),
+                                                                x, y );
+                    putNearer( candidates, featureNum, distanceSq, maxDistanceSq );
+                }
+            }
+        }
+    }
+
+
+    protected static void putNearer( Int2FloatMap candidates, int featureNum, float distanceSq, float maxDistanceSq )
+    {
+        if ( distanceSq <= maxDistanceSq && distanceSq < candidates.get( featureNum ) )
+        {
+            candidates.put( featureNum, distanceSq );
+        }
+    }
+
+
+    protected static class NodeDistance implements Comparable<NodeDistance>
+    {
+        public final Node node;
+        public final float distanceSq;
+
+        public NodeDistance( Node node, float distanceSq )
+        {
+            this.node = node;
+            this.distanceSq = distanceSq;
+        }
+
+        @Override
+        public int compareTo( NodeDistance o )
+        {
+            return Float.compare( distanceSq, o.distanceSq );
+        }
     }
 
 
@@ -207,6 +561,12 @@ public class DncTree
     protected final IntBuffer linesBuf;
     protected final IntBuffer trianglesBuf;
 
+    /**
+     * FCODE id of each feature, indexed by featureNum. May be null, in which case FCODE
+     * filters are not applied by the tree.
+     */
+    protected final int[] featureFcodeIds;
+
 
     public DncTree( IntBuffer interiorNodesBuf,
                     IntBuffer leafNodesBuf,
@@ -214,6 +574,22 @@ public class DncTree
                     IntBuffer linesBuf,
                     IntBuffer trianglesBuf )
     {
+        this( interiorNodesBuf, leafNodesBuf, pointsBuf, linesBuf, trianglesBuf, null );
+    }
+
+    public DncTree( IntBuffer interiorNodesBuf,
+                    IntBuffer leafNodesBuf,
+                    IntBuffer pointsBuf,
+                    IntBuffer linesBuf,
+                    IntBuffer trianglesBuf,
+                    int[] featureFcodeIds )
+    {
+        // Leaf nodes read the item buffers while computing their FCODE bits
+        this.pointsBuf = pointsBuf;
+        this.linesBuf = linesBuf;
+        this.trianglesBuf = trianglesBuf;
+        this.featureFcodeIds = featureFcodeIds;
+
         List<LeafNode> leafNodes = new ArrayList<>( );
         while ( leafNodesBuf.hasRemaining( ) )
         {
@@ -264,16 +640,47 @@ public class DncTree
         {
             this.root = new EmptyNode( );
         }
+    }
 
-        this.pointsBuf = pointsBuf;
-        this.linesBuf = linesBuf;
-        this.trianglesBuf = trianglesBuf;
+    protected BitSet leafFcodeIds( int pointFirst, int pointCount, int lineFirst, int lineCount, int triangleFirst, int triangleCount )
+    {
+        if ( featureFcodeIds == null ) return null;
+
+        BitSet fcodeIds = new BitSet( );
+        for ( int pointNum = pointFirst; pointNum < ( pointFirst + pointCount ); pointNum++ )
+        {
+            fcodeIds.set( featureFcodeIds[ pointFeatureNum( pointNum ) ] );
+        }
+        for ( int lineNum = lineFirst; lineNum < ( lineFirst + lineCount ); lineNum++ )
+        {
+            fcodeIds.set( featureFcodeIds[ lineFeatureNum( lineNum ) ] );
+        }
+        for ( int triangleNum = triangleFirst; triangleNum < ( triangleFirst + triangleCount ); triangleNum++ )
+        {
+            fcodeIds.set( featureFcodeIds[ triangleFeatureNum( triangleNum ) ] );
+        }
+        return fcodeIds;
+    }
+
+    protected boolean hasFcode( int featureNum, BitSet fcodeFilter )
+    {
+        return ( fcodeFilter == null || featureFcodeIds == null || fcodeFilter.get( featureFcodeIds[ featureNum ] ) );
     }
 
     public IntSet search( float xMin, float xMax, float yMin, float yMax )
+    {
+        return search( new BoxRegion( xMin, xMax, yMin, yMax ), null );
+    }
+
+    /**
+     * Returns the features that touch the region. If fcodeFilter is non-null, only features
+     * whose FCODE id is set in the filter are returned, and subtrees with no such features
+     * are pruned without being visited.
+     */
+    public IntSet search( Region region, BitSet fcodeFilter )
     {
         IntSet featureNums = new IntOpenHashSet( );
-        root.search( xMin, xMax, yMin, yMax, featureNums );
+        search( region, fcodeFilter, featureNums );
         return featureNums;
     }
 
@@ -284,7 +691,106 @@ public class DncTree
      */
     protected void search( float xMin, float xMax, float yMin, float yMax, IntSet featureNums )
     {
-        root.search( xMin, xMax, yMin, yMax, featureNums );
+        search( new BoxRegion( xMin, xMax, yMin, yMax ), null, featureNums );
+    }
+
+    protected void search( Region region, BitSet fcodeFilter, IntSet featureNums )
+    {
+        if ( root.mayContainFcodes( fcodeFilter ) && region.intersectsBox( root.xMin, root.xMax, root.yMin, root.yMax ) )
+        {
+            root.search( region, fcodeFilter, featureNums );
+        }
+    }
+
+    /**
+     * Returns up to maxCount features within maxDistance of (x,y), mapped to their distances,
+     * in order of increasing distance. Distance to an area feature is zero if the point is
+     * inside the area.
+     * <p>
+     * Cells are visited best-first, so the search stops as soon as the next cell is farther
+     * away than the current maxCount-th nearest feature. If featureFilter is non-null, it is
+     * called at most once per candidate feature, and rejected features don't count toward
+     * maxCount.
+     */
+    public Int2FloatMap nearest( float x, float y, int maxCount, float maxDistance, BitSet fcodeFilter, IntPredicate featureFilter )
+    {
+        float maxDistanceSq = maxDistance * maxDistance;
+
+        Int2FloatMap candidates = new Int2FloatOpenHashMap( );
+        candidates.defaultReturnValue( POSITIVE_INFINITY );
+        IntSet accepted = new IntOpenHashSet( );
+        IntSet rejected = new IntOpenHashSet( );
+
+        float cutoffSq = maxDistanceSq;
+        PriorityQueue<NodeDistance> queue = new PriorityQueue<>( );
+        if ( maxCount > 0 && root.mayContainFcodes( fcodeFilter ) )
+        {
+            queue.add( new NodeDistance( root, root.distanceSq( x, y ) ) );
+        }
+        while ( !queue.isEmpty( ) )
+        {
+            NodeDistance next = queue.poll( );
+            if ( next.distanceSq > cutoffSq )
+            {
+                break;
+            }
+
+            if ( next.node instanceof InteriorNode )
+            {
+                InteriorNode interior = ( InteriorNode ) next.node;
+                for ( Node child : new Node[] { interior.child0, interior.child1, interior.child2, interior.child3 } )
+                {
+                    if ( child.mayContainFcodes( fcodeFilter ) )
+                    {
+                        float childDistanceSq = child.distanceSq( x, y );
+                        if ( childDistanceSq <= cutoffSq )
+                        {
+                            queue.add( new NodeDistance( child, childDistanceSq ) );
+                        }
+                    }
+                }
+            }
+            else if ( next.node instanceof LeafNode )
+            {
+                ( ( LeafNode ) next.node ).nearest( x, y, cutoffSq, fcodeFilter, candidates );
+
+                if ( featureFilter != null )
+                {
+                    for ( Int2FloatMap.Entry en : candidates.int2FloatEntrySet( ) )
+                    {
+                        int featureNum = en.getIntKey( );
+                        if ( !accepted.contains( featureNum ) && !rejected.contains( featureNum ) )
+                        {
+                            ( featureFilter.test( featureNum ) ? accepted : rejected ).add( featureNum );
+                        }
+                    }
+                    candidates.keySet( ).removeAll( rejected );
+                }
+
+                if ( candidates.size( ) >= maxCount )
+                {
+                    float[] distancesSq = candidates.values( ).toFloatArray( );
+                    Arrays.sort( distancesSq );
+                    cutoffSq = min( cutoffSq, distancesSq[ maxCount - 1 ] );
+                }
+            }
+        }
+
+        // Candidates may include features that lost out to nearer ones found in later cells
+        Int2FloatMap results = new Int2FloatLinkedOpenHashMap( );
+        int[] featureNums = candidates.keySet( ).toIntArray( );
+        Integer[] order = new Integer[ featureNums.length ];
+        for ( int i = 0; i < order.length; i++ )
+        {
+            order[ i ] = i;
+        }
+        Arrays.sort( order, ( a, b ) -> Float.compare( candidates.get( featureNums[ a ] ), candidates.get( featureNums[ b ] ) ) );
+        for ( int i = 0; i < min( maxCount, order.length ); i++ )
+        {
+            int featureNum = featureNums[ order[ i ] ];
+            results.put( featureNum, ( float ) sqrt( candidates.get( featureNum ) ) );
+        }
+        return results;
     }
 
 
@@ -101,6 +101,7 @@ import static java.lang.Float.floatToIntBits;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.lang.Math.ulp;
+import static java.lang.Runtime.getRuntime;
 import static java.lang.System.currentTimeMillis;
 import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
 import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
@@ -108,6 +109,7 @@ import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.WRITE;
 import static java.util.Arrays.asList;
 import static java.util.Arrays.sort;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.unmodifiableList;
 import static java.util.Collections.unmodifiableMap;
 
@@ -124,6 +126,7 @@ import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -131,9 +134,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
@@ -141,10 +147,12 @@ import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.metsci.glimpse.dnc.DncAreaFeature;
 import com.metsci.glimpse.dnc.DncChunks.DncChunkKey;
+import com.metsci.glimpse.dnc.DncCorridorQuery;
 import com.metsci.glimpse.dnc.DncCoverage;
 import com.metsci.glimpse.dnc.DncFeature;
 import com.metsci.glimpse.dnc.DncLibrary;
 import com.metsci.glimpse.dnc.DncLineFeature;
+import com.metsci.glimpse.dnc.DncNearestQuery;
 import com.metsci.glimpse.dnc.DncPointFeature;
 import com.metsci.glimpse.dnc.DncQuery;
 import com.metsci.glimpse.dnc.DncTree;
@@ -160,6 +168,7 @@ import com.metsci.glimpse.util.primitives.IntsModifiable;
 import com.metsci.glimpse.util.primitives.sorted.SortedFloats;
 import com.metsci.glimpse.util.primitives.sorted.SortedFloatsArray;
 
+import it.unimi.dsi.fastutil.ints.Int2FloatMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
@@ -199,6 +208,7 @@ public class Flat2Query
         public final List<DncCoverage> coverages;
 
         protected final ExecutorService conversionExec;
+        protected final ExecutorService queryExec;
 
         protected final Map<DncChunkKey,DncTree> trees;
         protected final Int2ObjectMap<QueryDatabase> databases;
@@ -228,6 +238,9 @@ public class Flat2Query
 
             this.conversionExec = newChunkJobsExec( "DncQueryCache", numConverterThreads );
 
+            // Searching already-converted chunks is CPU-bound, and independent of conversion
+            this.queryExec = newChunkJobsExec( "DncQueryRunner", getRuntime( ).availableProcessors( ) );
+
             this.trees = new HashMap<>( );
 
             this.databases = new Int2ObjectLinkedOpenHashMap<>( );
@@ -370,22 +383,133 @@ public class Flat2Query
             poslim( chunkBuf, triangleItemWordFirst, triangleItemWordCount, 1 );
             IntBuffer trianglesBuf = chunkBuf.slice( );
 
-            return new DncTree( interiorNodesBuf, leafNodesBuf, pointsBuf, linesBuf, trianglesBuf );
+            QueryDatabase database = databases.get( chunk.chunkKey.library.databaseNum );
+            int[] featureFcodeIds = database.featureFcodeIds( chunk.chunkKey );
+
+            return new DncTree( interiorNodesBuf, leafNodesBuf, pointsBuf, linesBuf, trianglesBuf, featureFcodeIds );
         }
 
+        /**
+         * Searches each chunk in query.chunkKeys, calling the callback once per chunk. Chunks
+         * are searched in parallel, so the callback may be called concurrently from multiple
+         * threads. FCODE filtering happens inside the tree search; the query's feature filter
+         * is applied to the features that pass the tree search.
+         * <p>
+         * Works for any {@link DncQuery} subclass, e.g. {@link DncCorridorQuery}.
+         */
         public void runQuery( DncQuery query, Function<DncChunkKey,DncChunkPriority> priorityFn, BiConsumer<DncChunkKey,Collection<DncFeature>> callback )
         {
+            DncTree.Region region = query.region( );
             for ( DncChunkKey chunkKey : query.chunkKeys )
             {
+                BitSet fcodeIds = fcodeIds( chunkKey, query.fcodes );
                 getChunk( chunkKey, priorityFn, ( tree ) ->
                 {
-                    IntSet featureNums = tree.search( query.xMin, query.xMax, query.yMin, query.yMax );
-                    Int2ObjectMap<DncFeature> features = loadFeatures( chunkKey, featureNums );
-                    callback.accept( chunkKey, features.values( ) );
+                    queryExec.execute( new DncChunkJob( chunkKey, currentTimeMillis( ), priorityFn.apply( chunkKey ) )
+                    {
+                        public void runThrows( )
+                        {
+                            IntSet featureNums = tree.search( region, fcodeIds );
+                            Int2ObjectMap<DncFeature> features = loadFeatures( chunkKey, featureNums );
+                            callback.accept( chunkKey, query.filter( features.values( ) ) );
+                        }
+                    } );
                 } );
             }
         }
 
+        /**
+         * Finds the features nearest to the query point across all of query.chunkKeys. Chunks
+         * are searched in parallel, and the merged hits are passed to the callback exactly
+         * once, in order of increasing distance, after every chunk has either been searched
+         * or skipped.
+         */
+        public void runNearestQuery( DncNearestQuery query, Function<DncChunkKey,DncChunkPriority> priorityFn, Consumer<List<DncNearestQuery.Hit>> callback )
+        {
+            List<DncNearestQuery.Hit> hits = new ArrayList<>( );
+            AtomicInteger chunksRemaining = new AtomicInteger( query.chunkKeys.size( ) );
+            Runnable chunkDone = ( ) ->
+            {
+                if ( chunksRemaining.decrementAndGet( ) == 0 )
+                {
+                    List<DncNearestQuery.Hit> nearest;
+                    synchronized ( hits )
+                    {
+                        hits.sort( ( a, b ) -> Float.compare( a.distance, b.distance ) );
+                        nearest = new ArrayList<>( hits.subList( 0, min( query.maxCount, hits.size( ) ) ) );
+                    }
+                    callback.accept( unmodifiableList( nearest ) );
+                }
+            };
+
+            if ( query.chunkKeys.isEmpty( ) )
+            {
+                callback.accept( emptyList( ) );
+                return;
+            }
+
+            for ( DncChunkKey chunkKey : query.chunkKeys )
+            {
+                BitSet fcodeIds = fcodeIds( chunkKey, query.fcodes );
+                getChunk( chunkKey, priorityFn, ( tree ) ->
+                {
+                    queryExec.execute( new DncChunkJob( chunkKey, currentTimeMillis( ), priorityFn.apply( chunkKey ) )
+                    {
+                        public void runThrows( )
+                        {
+                            try
+                            {
+                                // The search calls the filter one candidate at a time, so look up the chunk's
+                                // features once, and keep the candidates it loads to use for the hits
+                                Int2ObjectMap<DncFeature> candidates = new Int2ObjectOpenHashMap<>( );
+                                IntPredicate featureFilter = null;
+                                if ( query.featureFilter != null )
+                                {
+                                    IntFunction<DncFeature> featureLoader = featureLoader( chunkKey );
+                                    featureFilter = ( featureNum ) ->
+                                    {
+                                        DncFeature feature = candidates.get( featureNum );
+                                        if ( feature == null && featureLoader != null )
+                                        {
+                                            feature = featureLoader.apply( featureNum );
+                                            candidates.put( featureNum, feature );
+                                        }
+                                        return query.featureFilter.test( feature );
+                                    };
+                                }
+
+                                Int2FloatMap distances = tree.nearest( query.x, query.y, query.maxCount, query.maxDistance, fcodeIds, featureFilter );
+                                Int2ObjectMap<DncFeature> features = ( featureFilter == null ? loadFeatures( chunkKey, distances.keySet( ) ) : candidates );
+                                synchronized ( hits )
+                                {
+                                    for ( Int2FloatMap.Entry en : distances.int2FloatEntrySet( ) )
+                                    {
+                                        hits.add( new DncNearestQuery.Hit( features.get( en.getIntKey( ) ), en.getFloatValue( ) ) );
+                                    }
+                                }
+                            }
+                            finally
+                            {
+                                chunkDone.run( );
+                            }
+                        }
+                    } );
+                }, chunkDone );
+            }
+        }
+
+        /**
+         * Returns the ids, in the chunk's database, of the given FCODEs, or null if fcodes
+         * is null. FCODEs that don't appear in the database are ignored.
+         */
+        protected BitSet fcodeIds( DncChunkKey chunkKey, Collection<String> fcodes )
+        {
+            if ( fcodes == null ) return null;
+
+            QueryDatabase database = databases.get( chunkKey.library.databaseNum );
+            return database.fcodeIds( fcodes );
+        }
+
         public Int2ObjectMap<DncFeature> loadFeatures( DncChunkKey chunkKey, IntCollection featureNums )
         {
             // TODO: Try caching DncFeature instances (might not make much difference, though)
@@ -394,7 +518,26 @@ public class Flat2Query
             return database.loadFeatures( chunkKey, featureNums );
         }
 
+        /**
+         * See {@link QueryDatabase#featureLoader(DncChunkKey)}.
+         */
+        public IntFunction<DncFeature> featureLoader( DncChunkKey chunkKey )
+        {
+            int databaseNum = chunkKey.library.databaseNum;
+            QueryDatabase database = databases.get( databaseNum );
+            return database.featureLoader( chunkKey );
+        }
+
         public void getChunk( DncChunkKey chunkKey, Function<DncChunkKey,DncChunkPriority> priorityFunc, Consumer<DncTree> callback )
+        {
+            getChunk( chunkKey, priorityFunc, callback, ( ) -> { } );
+        }
+
+        /**
+         * Like {@link #getChunk(DncChunkKey, Function, Consumer)}, but runs skipCallback if the
+         * chunk will not be delivered -- because it was skipped, or because conversion failed.
+         */
+        public void getChunk( DncChunkKey chunkKey, Function<DncChunkKey,DncChunkPriority> priorityFunc, Consumer<DncTree> callback, Runnable skipCallback )
         {
             // Maybe it's already in the cache
             DncTree tree;
@@ -413,16 +556,17 @@ public class Flat2Query
             if ( earlyPriority == SKIP )
             {
                 logger.finer( "Skipping chunk conversion: early-priority = " + earlyPriority + ", database = " + chunkKey.library.databaseNum + ", library = " + chunkKey.library.libraryName + ", coverage = " + chunkKey.coverage.coverageName );
+                skipCallback.run( );
             }
             else
             {
                 long time_PMILLIS = currentTimeMillis( );
                 logger.finer( "Enqueueing chunk for conversion: early-priority = " + earlyPriority + ", database = " + chunkKey.library.databaseNum + ", library = " + chunkKey.library.libraryName + ", coverage = " + chunkKey.coverage.coverageName );
-                enqueueConversion( chunkKey, priorityFunc, callback, time_PMILLIS, earlyPriority, 0 );
+                enqueueConversion( chunkKey, priorityFunc, callback, skipCallback, time_PMILLIS, earlyPriority, 0 );
             }
         }
 
-        protected void enqueueConversion( DncChunkKey chunkKey, Function<DncChunkKey,DncChunkPriority> priorityFunc, Consumer<DncTree> callback, long origTime_PMILLIS, DncChunkPriority earlyPriority, int numDeferrals )
+        protected void enqueueConversion( DncChunkKey chunkKey, Function<DncChunkKey,DncChunkPriority> priorityFunc, Consumer<DncTree> callback, Runnable skipCallback, long origTime_PMILLIS, DncChunkPriority earlyPriority, int numDeferrals )
         {
             conversionExec.execute( new DncChunkJob( chunkKey, origTime_PMILLIS, earlyPriority )
             {
@@ -446,18 +590,34 @@ public class Flat2Query
                     if ( latePriority == SKIP )
                     {
                         logger.finer( "Skipping chunk conversion: new-priority = " + latePriority + ", old-priority = " + earlyPriority + ", deferrals = " + numDeferrals + ", total-wait = " + wait_MILLIS + " ms, database = " + chunkKey.library.databaseNum + ", library = " + chunkKey.library.libraryName + ", coverage = " + chunkKey.coverage.coverageName );
+                        skipCallback.run( );
                     }
                     else
                     {
                         if ( latePriority.priority < earlyPriority.priority )
                         {
                             logger.finer( "Deferring chunk conversion: new-priority = " + latePriority + ", old-priority = " + earlyPriority + ", prior-deferrals = " + numDeferrals + ", wait-so-far = " + wait_MILLIS + " ms, database = " + chunkKey.library.databaseNum + ", library = " + chunkKey.library.libraryName + ", coverage = " + chunkKey.coverage.coverageName );
-                            enqueueConversion( chunkKey, priorityFunc, callback, origTime_PMILLIS, latePriority, numDeferrals + 1 );
+                            enqueueConversion( chunkKey, priorityFunc, callback, skipCallback, origTime_PMILLIS, latePriority, numDeferrals + 1 );
                         }
                         else
                         {
                             logger.finer( "Converting chunk: late-priority = " + latePriority + ", early-priority = " + earlyPriority + ", deferrals = " + numDeferrals + ", total-wait = " + wait_MILLIS + " ms, database = " + chunkKey.library.databaseNum + ", library = " + chunkKey.library.libraryName + ", coverage = " + chunkKey.coverage.coverageName );
-                            convertChunk( chunkKey, callback );
+                            // The tree callback may already have run by the time an exception is
+                            // thrown (e.g. from unlockFile), in which case the chunk is accounted for
+                            boolean[] delivered = { false };
+                            try
+                            {
+                                convertChunk( chunkKey, t ->
+                                {
+                                    delivered[0] = true;
+                                    callback.accept( t );
+                                } );
+                            }
+                            catch ( IOException | RuntimeException e )
+                            {
+                                if ( !delivered[0] ) skipCallback.run( );
+                                throw e;
+                            }
                         }
                     }
                 }
@@ -834,6 +994,7 @@ public class Flat2Query
 
         protected final Charset charset;
         protected final Int2ObjectMap<String> fcodeNames;
+        protected final Object2IntMap<String> fcodeIdsByName;
         protected final Int2ObjectMap<String> attrNames;
         public final Object2IntMap<String> flatLibraryNums;
         public final Object2IntMap<String> flatCoverageNums;
@@ -853,6 +1014,7 @@ public class Flat2Query
             this.exec = exec;
             this.charset = readFlatCharset( flatDir );
             this.fcodeNames = Int2ObjectMaps.unmodifiable( readFlatFcodeNames( flatDir, charset ) );
+            this.fcodeIdsByName = Object2IntMaps.unmodifiable( invertIdsMap( fcodeNames ) );
             this.attrNames = Int2ObjectMaps.unmodifiable( readFlatAttrNames( flatDir, charset ) );
             this.flatLibraryNums = Object2IntMaps.unmodifiable( invertIdsMap( readFlatLibraryNames( flatDir, charset ) ) );
             this.flatCoverageNums = Object2IntMaps.unmodifiable( invertIdsMap( readFlatCoverageNames( flatDir, charset ) ) );
@@ -865,108 +1027,166 @@ public class Flat2Query
             this.stringsBufMaster = memmapFlatStringsBuf( flatDir );
         }
 
-        public Int2ObjectMap<DncFeature> loadFeatures( DncChunkKey chunkKey, IntCollection featureNums )
+        public BitSet fcodeIds( Collection<String> fcodes )
+        {
+            BitSet fcodeIds = new BitSet( );
+            for ( String fcode : fcodes )
+            {
+                if ( fcodeIdsByName.containsKey( fcode ) )
+                {
+                    fcodeIds.set( fcodeIdsByName.getInt( fcode ) );
+                }
+            }
+            return fcodeIds;
+        }
+
+        /**
+         * Returns the FCODE id of each feature in the chunk, indexed by featureNum.
+         */
+        public int[] featureFcodeIds( DncChunkKey chunkKey )
         {
             int flatLibraryNum = flatLibraryNums.getInt( chunkKey.library.libraryName );
             int flatCoverageNum = flatCoverageNums.getInt( chunkKey.coverage.coverageName );
 
-            Int2ObjectMap<DncFeature> features = new Int2ObjectOpenHashMap<>( );
-
             IntBuffer featuresBufMaster = featuresBufMasters.get( new FlatChunkKey( flatLibraryNum, flatCoverageNum ) );
-            if ( featuresBufMaster != null )
+            if ( featuresBufMaster == null )
             {
-                IntBuffer featuresBuf;
-                synchronized ( bufMutex )
-                {
-                    featuresBuf = featuresBufMaster.duplicate( );
-                }
+                return new int[ 0 ];
+            }
+
+            IntBuffer featuresBuf;
+            synchronized ( bufMutex )
+            {
+                featuresBuf = featuresBufMaster.duplicate( );
+            }
+
+            int featureCount = featuresBuf.capacity( ) / intsPerFlatFeature;
+            int[] fcodeIds = new int[ featureCount ];
+            for ( int featureNum = 0; featureNum < featureCount; featureNum++ )
+            {
+                // FCODE id is the first int of each feature record
+                fcodeIds[ featureNum ] = featuresBuf.get( featureNum * intsPerFlatFeature );
+            }
+            return fcodeIds;
+        }
+
+        public Int2ObjectMap<DncFeature> loadFeatures( DncChunkKey chunkKey, IntCollection featureNums )
+        {
+            Int2ObjectMap<DncFeature> features = new Int2ObjectOpenHashMap<>( );
 
+            IntFunction<DncFeature> featureLoader = featureLoader( chunkKey );
+            if ( featureLoader != null )
+            {
                 for ( IntIterator it = featureNums.iterator( ); it.hasNext( ); )
                 {
                     int featureNum = it.nextInt( );
+                    features.put( featureNum, featureLoader.apply( featureNum ) );
+                }
+            }
 
-                    poslim( featuresBuf, featureNum, 1, intsPerFlatFeature );
+            return features;
+        }
 
-                    int fcodeId = featuresBuf.get( );
-                    int featureTypeId = featuresBuf.get( );
-                    int attrFirst = featuresBuf.get( );
-                    int attrCount = featuresBuf.get( );
-                    int featureItemFirst = featuresBuf.get( );
-                    int featureItemCount = featuresBuf.get( );
+        /**
+         * Returns a function that loads individual features of the chunk, or null if the chunk
+         * has no features. The chunk's buffers are looked up once, rather than once per call.
+         * The returned function must not be used by more than one thread at a time.
+         */
+        public IntFunction<DncFeature> featureLoader( DncChunkKey chunkKey )
+        {
+            int flatLibraryNum = flatLibraryNums.getInt( chunkKey.library.libraryName );
+            int flatCoverageNum = flatCoverageNums.getInt( chunkKey.coverage.coverageName );
+
+            IntBuffer featuresBufMaster = featuresBufMasters.get( new FlatChunkKey( flatLibraryNum, flatCoverageNum ) );
+            if ( featuresBufMaster == null ) return null;
+
+            IntBuffer featuresBuf;
+            synchronized ( bufMutex )
+            {
+                featuresBuf = featuresBufMaster.duplicate( );
+            }
+
+            return ( featureNum ) ->
+            {
+                poslim( featuresBuf, featureNum, 1, intsPerFlatFeature );
 
-                    String fcode = fcodeNames.get( fcodeId );
+                int fcodeId = featuresBuf.get( );
+                int featureTypeId = featuresBuf.get( );
+                int attrFirst = featuresBuf.get( );
+                int attrCount = featuresBuf.get( );
+                int featureItemFirst = featuresBuf.get( );
+                int featureItemCount = featuresBuf.get( );
 
-                    Supplier<Map<String,Object>> attrsLoader = ( ) ->
+                String fcode = fcodeNames.get( fcodeId );
+
+                Supplier<Map<String,Object>> attrsLoader = ( ) ->
+                {
+                    LongBuffer attrsBuf;
+                    ByteBuffer stringsBuf;
+                    synchronized ( bufMutex )
                     {
-                        LongBuffer attrsBuf;
-                        ByteBuffer stringsBuf;
-                        synchronized ( bufMutex )
-                        {
-                            attrsBuf = attrsBufMaster.duplicate( );
-                            stringsBuf = stringsBufMaster.duplicate( );
-                        }
-                        return readFlatAttrs( attrsBuf, attrFirst, attrCount, attrNames, stringsBuf, charset );
-                    };
+                        attrsBuf = attrsBufMaster.duplicate( );
+                        stringsBuf = stringsBufMaster.duplicate( );
+                    }
+                    return readFlatAttrs( attrsBuf, attrFirst, attrCount, attrNames, stringsBuf, charset );
+                };
 
-                    DncFeature feature;
-                    switch ( featureTypeId )
+                DncFeature feature;
+                switch ( featureTypeId )
+                {
+                    case FLAT_AREA_FEATURE:
                     {
-                        case FLAT_AREA_FEATURE:
+                        feature = new DncAreaFeature( chunkKey, featureNum, fcode, attrsLoader, ( ) ->
                         {
-                            feature = new DncAreaFeature( chunkKey, featureNum, fcode, attrsLoader, ( ) ->
+                            IntBuffer ringsBuf;
+                            DoubleBuffer verticesBuf;
+                            synchronized ( bufMutex )
                             {
-                                IntBuffer ringsBuf;
-                                DoubleBuffer verticesBuf;
-                                synchronized ( bufMutex )
-                                {
-                                    ringsBuf = ringsBufMaster.duplicate( );
-                                    verticesBuf = verticesBufMaster.duplicate( );
-                                }
-                                int ringFirst = featureItemFirst;
-                                int ringCount = featureItemCount;
-                                return readFlatAreaRings( ringsBuf, ringFirst, ringCount, verticesBuf );
-                            } );
-                        }
-                        break;
+                                ringsBuf = ringsBufMaster.duplicate( );
+                                verticesBuf = verticesBufMaster.duplicate( );
+                            }
+                            int ringFirst = featureItemFirst;
+                            int ringCount = featureItemCount;
+                            return readFlatAreaRings( ringsBuf, ringFirst, ringCount, verticesBuf );
+                        } );
+                    }
+                    break;
 
-                        case FLAT_LINE_FEATURE:
+                    case FLAT_LINE_FEATURE:
+                    {
+                        feature = new DncLineFeature( chunkKey, featureNum, fcode, attrsLoader, ( ) ->
                         {
-                            feature = new DncLineFeature( chunkKey, featureNum, fcode, attrsLoader, ( ) ->
+                            DoubleBuffer verticesBuf;
+                            synchronized ( bufMutex )
                             {
-                                DoubleBuffer verticesBuf;
-                                synchronized ( bufMutex )
-                                {
-                                    verticesBuf = verticesBufMaster.duplicate( );
-                                }
-                                int vertexFirst = featureItemFirst;
-                                int vertexCount = featureItemCount;
-                                return readFlatLineVertices( verticesBuf, vertexFirst, vertexCount );
-                            } );
-                        }
-                        break;
+                                verticesBuf = verticesBufMaster.duplicate( );
+                            }
+                            int vertexFirst = featureItemFirst;
+                            int vertexCount = featureItemCount;
+                            return readFlatLineVertices( verticesBuf, vertexFirst, vertexCount );
+                        } );
+                    }
+                    break;
 
-                        case FLAT_POINT_FEATURE:
+                    case FLAT_POINT_FEATURE:
+                    {
+                        feature = new DncPointFeature( chunkKey, featureNum, fcode, attrsLoader, ( ) ->
                         {
-                            feature = new DncPointFeature( chunkKey, featureNum, fcode, attrsLoader, ( ) ->
+                            DoubleBuffer verticesBuf;
+                            synchronized ( bufMutex )
                             {
-                                DoubleBuffer verticesBuf;
-                                synchronized ( bufMutex )
-                                {
-                                    verticesBuf = verticesBufMaster.duplicate( );
-                                }
-                                int vertexIndex = featureItemFirst;
-                                return readFlatPointVertex( verticesBuf, vertexIndex );
-                            } );
-                        }
-                        break;
-
-                        default: throw new RuntimeException( "Unrecognized feature-type ID: " + featureTypeId );
+                                verticesBuf = verticesBufMaster.duplicate( );
+                            }
+                            int vertexIndex = featureItemFirst;
+                            return readFlatPointVertex( verticesBuf, vertexIndex );
+                        } );
                     }
-                    features.put( featureNum, feature );
-                }
-            }
+                    break;
 
-            return features;
+                    default: throw new RuntimeException( "Unrecognized feature-type ID: " + featureTypeId );
+                }
+                return feature;
+            };
         }
 
         public Tree createTree( DncLibrary library, DncCoverage coverage )
@@ -1569,6 +1789,82 @@ public class Flat2Query
         }
     }
 
+    public static boolean linesIntersect( float xA, float yA, float xB, float yB, float xC, float yC, float xD, float yD )
+    {
+        double crossC = cross( xB-xA, yB-yA, xC-xA, yC-yA );
+        double crossD = cross( xB-xA, yB-yA, xD-xA, yD-yA );
+        double crossA = cross( xD-xC, yD-yC, xA-xC, yA-yC );
+        double crossB = cross( xD-xC, yD-yC, xB-xC, yB-yC );
+
+        if ( ( ( crossC > 0 && crossD < 0 ) || ( crossC < 0 && crossD > 0 ) )
+          && ( ( crossA > 0 && crossB < 0 ) || ( crossA < 0 && crossB > 0 ) ) )
+        {
+            return true;
+        }
+
+        // Collinear and touching cases are picked up by the endpoint distances
+        return ( pointLineDistanceSq( xA, yA, xB, yB, xC, yC ) == 0f
+              || pointLineDistanceSq( xA, yA, xB, yB, xD, yD ) == 0f
+              || pointLineDistanceSq( xC, yC, xD, yD, xA, yA ) == 0f
+              || pointLineDistanceSq( xC, yC, xD, yD, xB, yB ) == 0f );
+    }
+
+    public static float pointLineDistanceSq( float xA, float yA, float xB, float yB, float x, float y )
+    {
+        double dxAB = xB - xA;
+        double dyAB = yB - yA;
+        double dxAP = x - xA;
+        double dyAP = y - yA;
+
+        double lengthSq = dxAB*dxAB + dyAB*dyAB;
+        double alpha = ( lengthSq > 0 ? ( dxAP*dxAB + dyAP*dyAB ) / lengthSq : 0 );
+        alpha = Math.max( 0, Math.min( 1, alpha ) );
+
+        double dx = dxAP - alpha*dxAB;
+        double dy = dyAP - alpha*dyAB;
+        return ( float ) ( dx*dx + dy*dy );
+    }
+
+    public static float lineLineDistanceSq( float xA, float yA, float xB, float yB, float xC, float yC, float xD, float yD )
+    {
+        if ( linesIntersect( xA, yA, xB, yB, xC, yC, xD, yD ) ) return 0f;
+
+        return min( min( pointLineDistanceSq( xA, yA, xB, yB, xC, yC ),
+                         pointLineDistanceSq( xA, yA, xB, yB, xD, yD ) ),
+                    min( pointLineDistanceSq( xC, yC, xD, yD, xA, yA ),
+                         pointLineDistanceSq( xC, yC, xD, yD, xB, yB ) ) );
+    }
+
+    public static float boxPointDistanceSq( float xMin, float yMin, float xMax, float yMax, float x, float y )
+    {
+        float dx = max( 0f, max( xMin - x, x - xMax ) );
+        float dy = max( 0f, max( yMin - y, y - yMax ) );
+        return ( dx*dx + dy*dy );
+    }
+
+    public static float boxLineDistanceSq( float xMin, float yMin, float xMax, float yMax, float xA, float yA, float xB, float yB )
+    {
+        if ( boxIntersectsLine( xMin, yMin, xMax, yMax, xA, yA, xB, yB ) ) return 0f;
+
+        // Between disjoint convex shapes, the closest pair includes a vertex of one shape
+        float distSq = min( boxPointDistanceSq( xMin, yMin, xMax, yMax, xA, yA ),
+                            boxPointDistanceSq( xMin, yMin, xMax, yMax, xB, yB ) );
+        distSq = min( distSq, pointLineDistanceSq( xA, yA, xB, yB, xMin, yMin ) );
+        distSq = min( distSq, pointLineDistanceSq( xA, yA, xB, yB, xMax, yMin ) );
+        distSq = min( distSq, pointLineDistanceSq( xA, yA, xB, yB, xMin, yMax ) );
+        distSq = min( distSq, pointLineDistanceSq( xA, yA, xB, yB, xMax, yMax ) );
+        return distSq;
+    }
+
+    public static float trianglePointDistanceSq( float xA, float yA, float xB, float yB, float xC, float yC, float x, float y )
+    {
+        if ( triangleContainsPoint( xA, yA, xB, yB, xC, yC, x, y ) ) return 0f;
+
+        return min3f( pointLineDistanceSq( xA, yA, xB, yB, x, y ),
+                      pointLineDistanceSq( xB, yB, xC, yC, x, y ),
+                      pointLineDistanceSq( xC, yC, xA, yA, x, y ) );
+    }
+
     public static int max4i( int a, int b, int c, int d )
     {
         return max( max( a, b ), max( c, d ) );
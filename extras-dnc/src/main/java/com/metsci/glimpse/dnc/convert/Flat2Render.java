@@ -60,6 +60,9 @@ import static com.metsci.glimpse.dnc.convert.Flat.FlatFeatureType.FLAT_AREA_FEAT
 import static com.metsci.glimpse.dnc.convert.Flat.FlatFeatureType.FLAT_LINE_FEATURE;
 import static com.metsci.glimpse.dnc.convert.Flat.FlatFeatureType.FLAT_POINT_FEATURE;
 import static com.metsci.glimpse.dnc.convert.Render.coordsPerRenderLabelVertex;
+import static com.metsci.glimpse.dnc.convert.Render.coordsPerRenderSectionVertex;
+import static com.metsci.glimpse.dnc.convert.Render.decodeRenderVertices;
+import static com.metsci.glimpse.dnc.convert.Render.encodeRenderVertices;
 import static com.metsci.glimpse.dnc.convert.Render.intsPerRenderGroup;
 import static com.metsci.glimpse.dnc.convert.Render.longsPerRenderChunk;
 import static com.metsci.glimpse.dnc.convert.Render.readRenderCharset;
@@ -67,6 +70,7 @@ import static com.metsci.glimpse.dnc.convert.Render.readRenderChunks;
 import static com.metsci.glimpse.dnc.convert.Render.readRenderConfig;
 import static com.metsci.glimpse.dnc.convert.Render.readRenderCoveragesFile;
 import static com.metsci.glimpse.dnc.convert.Render.readRenderLibrariesFile;
+import static com.metsci.glimpse.dnc.convert.Render.readRenderSectionCoordCounts;
 import static com.metsci.glimpse.dnc.convert.Render.renderChunksFilename;
 import static com.metsci.glimpse.dnc.convert.Render.renderCoveragesFilename;
 import static com.metsci.glimpse.dnc.convert.Render.renderCursorFilename;
@@ -76,6 +80,7 @@ import static com.metsci.glimpse.dnc.convert.Render.renderLabelCharsFilename;
 import static com.metsci.glimpse.dnc.convert.Render.renderLabelLengthsFilename;
 import static com.metsci.glimpse.dnc.convert.Render.renderLibrariesFilename;
 import static com.metsci.glimpse.dnc.convert.Render.renderMutexFilename;
+import static com.metsci.glimpse.dnc.convert.Render.renderQuantizedVerticesEncoding;
 import static com.metsci.glimpse.dnc.convert.Render.renderVerticesFilename;
 import static com.metsci.glimpse.dnc.convert.Render.writeRenderCharset;
 import static com.metsci.glimpse.dnc.convert.Render.writeRenderConfig;
@@ -128,6 +133,7 @@ import java.nio.LongBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -209,6 +215,15 @@ public class Flat2Render
         public long verticesFileSize = 20 * GiB;
         public boolean reloadChunksTableBeforeConverting = false;
         public Charset charset = UTF_8;
+
+        /**
+         * If true, vertices are stored quantized and deflated (see {@link Render#renderQuantizedVerticesEncoding}),
+         * and decoded when a chunk is loaded. A quantized cache is several times smaller than a float cache,
+         * at the cost of snapping vertices to a 16-bit grid over each chunk's bounds. Quantized and float
+         * caches live in separate cache dirs; use {@link Flat2Render#copyRenderCache(RenderCache, RenderCache)}
+         * to convert one to the other.
+         */
+        public boolean quantizeVertices = false;
     }
 
 
@@ -228,6 +243,7 @@ public class Flat2Render
         protected final File renderDir;
 
         protected final boolean reloadChunksTableBeforeConverting;
+        protected final boolean quantizeVertices;
 
         protected final File mutexFile;
 
@@ -298,6 +314,7 @@ public class Flat2Render
 
 
             this.reloadChunksTableBeforeConverting = config.reloadChunksTableBeforeConverting;
+            this.quantizeVertices = config.quantizeVertices;
 
             mutexFile.createNewFile( );
             lockFile( mutexFile );
@@ -414,13 +431,81 @@ public class Flat2Render
             return groupsBuf.slice( );
         }
 
+        /**
+         * For a quantized cache, the returned buffer holds freshly decoded vertices, rather than
+         * being mapped directly onto the vertices file.
+         */
         public FloatBuffer memmapChunkVertices( RenderChunk chunk ) throws IOException
         {
+            if ( quantizeVertices )
+            {
+                // Chunk's vertexCoordFirst is a byte offset, pointing at a length-prefixed block
+                int blockByteCount = readVertexBlockByteCount( chunk.vertexCoordFirst );
+                MappedByteBuffer blockMapped = verticesChannel.map( READ_ONLY, chunk.vertexCoordFirst + SIZEOF_INT, blockByteCount );
+                byte[] block = new byte[ blockByteCount ];
+                blockMapped.get( block );
+                int[] sectionCoordCounts = readRenderSectionCoordCounts( sliceChunkGroups( chunk ) );
+                return decodeRenderVertices( block, chunk.vertexCoordCount, sectionCoordCounts );
+            }
+
             MappedByteBuffer verticesMapped = verticesChannel.map( READ_ONLY, chunk.vertexCoordFirst * SIZEOF_FLOAT, chunk.vertexCoordCount * SIZEOF_FLOAT );
             verticesMapped.order( ByteOrder.nativeOrder( ) );
             return verticesMapped.asFloatBuffer( );
         }
 
+        protected int readVertexBlockByteCount( long blockFirst ) throws IOException
+        {
+            MappedByteBuffer countMapped = verticesChannel.map( READ_ONLY, blockFirst, SIZEOF_INT );
+            countMapped.order( ByteOrder.nativeOrder( ) );
+            return countMapped.getInt( 0 );
+        }
+
+        /**
+         * Reads an already-converted chunk back into transitional form, e.g. to write it into
+         * another cache.
+         */
+        public TransitionalChunk readChunk( RenderChunk chunk ) throws IOException
+        {
+            IntBuffer groupsBuf = sliceChunkGroups( chunk );
+            CharBuffer labelCharsBuf = sliceChunkLabelChars( chunk );
+            IntBuffer labelLengthsBuf = sliceChunkLabelLengths( chunk );
+            FloatBuffer verticesBuf = memmapChunkVertices( chunk );
+
+            List<TransitionalGroup> groups = new ArrayList<>( );
+            while ( groupsBuf.hasRemaining( ) )
+            {
+                int geosymAssignmentId = groupsBuf.get( );
+                groupsBuf.get( ); // labelFirst
+                int labelCharFirst = groupsBuf.get( );
+                int labelCharCount = groupsBuf.get( );
+                int labelLengthFirst = groupsBuf.get( );
+                int labelLengthCount = groupsBuf.get( );
+                int vertexCoordFirst = groupsBuf.get( );
+                int triangleCoordCount = groupsBuf.get( );
+                int lineCoordCount = groupsBuf.get( );
+                int iconCoordCount = groupsBuf.get( );
+                int labelCoordCount = groupsBuf.get( );
+
+                TransitionalGroup group = new TransitionalGroup( geosymAssignments.get( geosymAssignmentId ) );
+
+                poslim( labelCharsBuf, labelCharFirst, labelCharCount, 1 );
+                group.labelChars.append( labelCharsBuf );
+
+                poslim( labelLengthsBuf, labelLengthFirst, labelLengthCount, 1 );
+                group.labelLengths.append( labelLengthsBuf );
+
+                poslim( verticesBuf, vertexCoordFirst, triangleCoordCount + lineCoordCount + iconCoordCount + labelCoordCount, 1 );
+                group.triangleCoords.append( verticesBuf, triangleCoordCount );
+                group.lineCoords.append( verticesBuf, lineCoordCount );
+                group.iconCoords.append( verticesBuf, iconCoordCount );
+                group.labelCoords.append( verticesBuf, labelCoordCount );
+
+                groups.add( group );
+            }
+
+            return new TransitionalChunk( chunk.featureCount, groups );
+        }
+
         public CharBuffer sliceChunkLabelChars( RenderChunk chunk )
         {
             CharBuffer labelCharsBuf;
@@ -576,6 +661,14 @@ public class Flat2Render
 
             TransitionalDatabase database = databases.get( databaseNum );
             TransitionalChunk tChunk = database.createChunk( libraryName, coverageName );
+            writeChunk( chunkKey, tChunk, callback );
+        }
+
+        protected void writeChunk( DncChunkKey chunkKey, TransitionalChunk tChunk, Consumer<RenderChunk> callback ) throws IOException
+        {
+            DncLibrary library = chunkKey.library;
+            DncCoverage coverage = chunkKey.coverage;
+
             int featureCount = tChunk.featureCount;
             Collection<TransitionalGroup> groups = tChunk.groups;
 
@@ -589,6 +682,9 @@ public class Flat2Render
                 vertexCoordCount += ( group.triangleCoords.n + group.lineCoords.n + group.iconCoords.n + group.labelCoords.n );
             }
 
+            // Encode before taking the file lock, so other converters aren't kept waiting
+            byte[] vertexBlock = ( quantizeVertices ? encodeChunkVertices( groups, vertexCoordCount ) : null );
+
 
 
             // Write to cache files
@@ -671,7 +767,8 @@ public class Flat2Render
                     groupNext = lastChunkGroupFirst + lastChunkGroupCount;
                     labelCharNext = lastChunkLabelCharFirst + lastChunkLabelCharCount;
                     labelLengthNext = lastChunkLabelLengthFirst + lastChunkLabelLengthCount;
-                    vertexCoordNext = lastChunkVertexCoordFirst + lastChunkVertexCoordCount;
+                    vertexCoordNext = ( quantizeVertices ? lastChunkVertexCoordFirst + SIZEOF_INT + readVertexBlockByteCount( lastChunkVertexCoordFirst )
+                                                         : lastChunkVertexCoordFirst + lastChunkVertexCoordCount );
                 }
 
                 chunksBuf.limit( chunksBuf.capacity( ) );
@@ -695,9 +792,24 @@ public class Flat2Render
                 // Memmap a section of the vertex file
                 //
 
-                MappedByteBuffer verticesMapped = verticesChannel.map( READ_WRITE, vertexCoordFirst * SIZEOF_FLOAT, vertexCoordCount * SIZEOF_FLOAT );
-                verticesMapped.order( ByteOrder.nativeOrder( ) );
-                FloatBuffer verticesBuf = verticesMapped.asFloatBuffer( );
+                MappedByteBuffer verticesMapped;
+                FloatBuffer verticesBuf;
+                if ( vertexBlock != null )
+                {
+                    // In a quantized cache, vertexCoordFirst is a byte offset
+                    verticesMapped = verticesChannel.map( READ_WRITE, vertexCoordFirst, SIZEOF_INT + vertexBlock.length );
+                    verticesMapped.order( ByteOrder.nativeOrder( ) );
+                    verticesMapped.putInt( vertexBlock.length ).put( vertexBlock );
+
+                    // Group vertices are already written, as part of the block
+                    verticesBuf = null;
+                }
+                else
+                {
+                    verticesMapped = verticesChannel.map( READ_WRITE, vertexCoordFirst * SIZEOF_FLOAT, vertexCoordCount * SIZEOF_FLOAT );
+                    verticesMapped.order( ByteOrder.nativeOrder( ) );
+                    verticesBuf = verticesMapped.asFloatBuffer( );
+                }
 
 
 
@@ -722,10 +834,13 @@ public class Flat2Render
 
                     labelLengthsBuf.put( group.labelLengths.a, 0, group.labelLengths.n );
 
-                    verticesBuf.put( group.triangleCoords.a, 0, group.triangleCoords.n );
-                    verticesBuf.put( group.lineCoords.a, 0, group.lineCoords.n );
-                    verticesBuf.put( group.iconCoords.a, 0, group.iconCoords.n );
-                    verticesBuf.put( group.labelCoords.a, 0, group.labelCoords.n );
+                    if ( verticesBuf != null )
+                    {
+                        verticesBuf.put( group.triangleCoords.a, 0, group.triangleCoords.n );
+                        verticesBuf.put( group.lineCoords.a, 0, group.lineCoords.n );
+                        verticesBuf.put( group.iconCoords.a, 0, group.iconCoords.n );
+                        verticesBuf.put( group.labelCoords.a, 0, group.labelCoords.n );
+                    }
 
                     groupsBuf.put( group.geosymAssignment.id )
                              .put( groupLabelFirst )
@@ -811,6 +926,72 @@ public class Flat2Render
 
 
 
+    public static byte[] encodeChunkVertices( Collection<TransitionalGroup> groups, int vertexCoordCount ) throws IOException
+    {
+        FloatsArray coords = new FloatsArray( vertexCoordCount );
+        int[] sectionCoordCounts = new int[ groups.size( ) * coordsPerRenderSectionVertex.length ];
+        int i = 0;
+        for ( TransitionalGroup group : groups )
+        {
+            coords.append( group.triangleCoords );
+            coords.append( group.lineCoords );
+            coords.append( group.iconCoords );
+            coords.append( group.labelCoords );
+
+            sectionCoordCounts[ i++ ] = group.triangleCoords.n;
+            sectionCoordCounts[ i++ ] = group.lineCoords.n;
+            sectionCoordCounts[ i++ ] = group.iconCoords.n;
+            sectionCoordCounts[ i++ ] = group.labelCoords.n;
+        }
+        return encodeRenderVertices( coords.a, coords.n, sectionCoordCounts );
+    }
+
+
+
+    /**
+     * Copies every chunk that src has converted into dst, skipping chunks that dst already
+     * has. This is how an existing float cache gets converted to a quantized one (or back),
+     * without redoing the conversion from flat files: open both caches with configs that
+     * differ only in {@link RenderCacheConfig#quantizeVertices}, and copy.
+     *
+     * @return the number of chunks copied
+     */
+    public static int copyRenderCache( RenderCache src, RenderCache dst ) throws IOException
+    {
+        if ( !src.geosymAssignments.keySet( ).equals( dst.geosymAssignments.keySet( ) ) )
+        {
+            throw new IllegalArgumentException( "Render caches use different geosym assignments: src = " + src.renderDir + ", dst = " + dst.renderDir );
+        }
+
+        List<RenderChunk> srcChunks;
+        synchronized ( src.chunks )
+        {
+            srcChunks = new ArrayList<>( src.chunks.values( ) );
+        }
+
+        int copyCount = 0;
+        for ( RenderChunk srcChunk : srcChunks )
+        {
+            DncChunkKey chunkKey = srcChunk.chunkKey;
+            boolean alreadyCopied;
+            synchronized ( dst.chunks )
+            {
+                alreadyCopied = dst.chunks.containsKey( chunkKey );
+            }
+            if ( !alreadyCopied )
+            {
+                logger.finer( "Copying chunk: database = " + chunkKey.library.databaseNum + ", library = " + chunkKey.library.libraryName + ", coverage = " + chunkKey.coverage.coverageName );
+                dst.writeChunk( chunkKey, src.readChunk( srcChunk ), ( chunk ) -> { } );
+                copyCount++;
+            }
+        }
+
+        logger.fine( "Copied render cache: chunks = " + copyCount + ", src = " + src.renderDir + ", dst = " + dst.renderDir );
+        return copyCount;
+    }
+
+
+
     public static class TransitionalChunk
     {
         public final int featureCount;
@@ -995,6 +1176,11 @@ public class Flat2Render
 
         configString.append( "proj = " ).append( config.proj.configString( ) ).append( "\n" );
         configString.append( "geosymAssignments = " ).append( config.geosymAssignmentsFilename ).append( "\n" );
+        if ( config.quantizeVertices )
+        {
+            // Only mentioned when enabled, so existing float caches keep their config hash
+            configString.append( "vertexEncoding = " ).append( renderQuantizedVerticesEncoding ).append( "\n" );
+        }
         configString.append( "\n" );
 
         for ( Entry<String,Object> en : config.externalAttrs.entrySet( ) )
@@ -27,18 +27,37 @@
 package com.metsci.glimpse.dnc.convert;
 
 import static com.google.common.base.Charsets.US_ASCII;
+import static com.jogamp.common.nio.Buffers.newDirectFloatBuffer;
+import static java.lang.Float.NEGATIVE_INFINITY;
+import static java.lang.Float.POSITIVE_INFINITY;
+import static java.lang.Float.isFinite;
 import static java.lang.Float.parseFloat;
 import static java.lang.Integer.parseInt;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import com.google.common.io.Files;
 import com.metsci.glimpse.dnc.DncChunks.DncChunkKey;
@@ -84,6 +103,32 @@ public class Render
     // x, y, featureNum
     public static final int coordsPerRenderLabelVertex = 3;
 
+    // Each group's vertices are stored as these sections, in this order
+    public static final int[] coordsPerRenderSectionVertex = { coordsPerRenderTriangleVertex,
+                                                               coordsPerRenderLineVertex,
+                                                               coordsPerRenderIconVertex,
+                                                               coordsPerRenderLabelVertex };
+
+
+    /**
+     * Marks a render cache whose vertices file holds one encoded block per chunk, instead of
+     * raw floats. In such a cache, a chunk's vertexCoordFirst is the byte offset of its block,
+     * and vertexCoordCount is still the number of floats the block decodes to.
+     * <p>
+     * A block is an int byte-count, followed by that many bytes of deflated data. The deflated
+     * data starts with a one-byte encoding id. For {@link #renderVertexEncodingQuantized}, the
+     * chunk's x,y bounds come next, followed by every vertex in group and section order: x and
+     * y as 16-bit offsets within the bounds, delta-encoded against the previous vertex of the
+     * section; featureNum delta-encoded the same way; and any per-vertex extra (cumulative
+     * distance, rotation) as raw float bits. Deltas are written as zig-zag varints.
+     */
+    public static final String renderQuantizedVerticesEncoding = "quantized16";
+
+    public static final byte renderVertexEncodingRaw = 0;
+    public static final byte renderVertexEncodingQuantized = 1;
+
+    public static final int renderQuantizedVertexSteps = 0xFFFF;
+
 
     public static Charset readRenderCharset( File renderDir ) throws IOException
     {
@@ -229,6 +274,210 @@ public class Render
     }
 
 
+    /**
+     * Returns the coord count of each section of each group, in the order the sections are
+     * stored in the vertices file.
+     */
+    public static int[] readRenderSectionCoordCounts( IntBuffer groupsBuf )
+    {
+        IntBuffer buf = groupsBuf.duplicate( );
+        int groupCount = buf.remaining( ) / intsPerRenderGroup;
+        int[] sectionCoordCounts = new int[ groupCount * coordsPerRenderSectionVertex.length ];
+        for ( int g = 0; g < groupCount; g++ )
+        {
+            // Section coord counts are the last four ints of each group record
+            int countsFirst = buf.position( ) + ( g * intsPerRenderGroup ) + 7;
+            for ( int s = 0; s < coordsPerRenderSectionVertex.length; s++ )
+            {
+                sectionCoordCounts[ g*coordsPerRenderSectionVertex.length + s ] = buf.get( countsFirst + s );
+            }
+        }
+        return sectionCoordCounts;
+    }
+
+
+    public static byte[] encodeRenderVertices( float[] coords, int coordCount, int[] sectionCoordCounts ) throws IOException
+    {
+        float xMin = POSITIVE_INFINITY;
+        float xMax = NEGATIVE_INFINITY;
+        float yMin = POSITIVE_INFINITY;
+        float yMax = NEGATIVE_INFINITY;
+        boolean allFinite = true;
+        int coordFirst = 0;
+        for ( int i = 0; i < sectionCoordCounts.length; i++ )
+        {
+            int coordsPerVertex = coordsPerRenderSectionVertex[ i % coordsPerRenderSectionVertex.length ];
+            for ( int c = coordFirst; c < coordFirst + sectionCoordCounts[ i ]; c += coordsPerVertex )
+            {
+                float x = coords[ c + 0 ];
+                float y = coords[ c + 1 ];
+                allFinite &= ( isFinite( x ) && isFinite( y ) );
+                xMin = min( xMin, x );
+                xMax = max( xMax, x );
+                yMin = min( yMin, y );
+                yMax = max( yMax, y );
+            }
+            coordFirst += sectionCoordCounts[ i ];
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( );
+        Deflater deflater = new Deflater( Deflater.BEST_COMPRESSION );
+        try ( DataOutputStream out = new DataOutputStream( new DeflaterOutputStream( bytes, deflater ) ) )
+        {
+            if ( !allFinite || coordFirst != coordCount )
+            {
+                out.writeByte( renderVertexEncodingRaw );
+                for ( int c = 0; c < coordCount; c++ )
+                {
+                    out.writeFloat( coords[ c ] );
+                }
+            }
+            else
+            {
+                out.writeByte( renderVertexEncodingQuantized );
+                out.writeFloat( xMin );
+                out.writeFloat( xMax );
+                out.writeFloat( yMin );
+                out.writeFloat( yMax );
+
+                coordFirst = 0;
+                for ( int i = 0; i < sectionCoordCounts.length; i++ )
+                {
+                    int coordsPerVertex = coordsPerRenderSectionVertex[ i % coordsPerRenderSectionVertex.length ];
+                    int qxPrev = 0;
+                    int qyPrev = 0;
+                    int featureNumPrev = 0;
+                    for ( int c = coordFirst; c < coordFirst + sectionCoordCounts[ i ]; c += coordsPerVertex )
+                    {
+                        int qx = quantizeRenderCoord( coords[ c + 0 ], xMin, xMax );
+                        int qy = quantizeRenderCoord( coords[ c + 1 ], yMin, yMax );
+                        int featureNum = ( int ) coords[ c + 2 ];
+
+                        writeZigZagVarint( out, qx - qxPrev );
+                        writeZigZagVarint( out, qy - qyPrev );
+                        writeZigZagVarint( out, featureNum - featureNumPrev );
+                        for ( int k = 3; k < coordsPerVertex; k++ )
+                        {
+                            out.writeFloat( coords[ c + k ] );
+                        }
+
+                        qxPrev = qx;
+                        qyPrev = qy;
+                        featureNumPrev = featureNum;
+                    }
+                    coordFirst += sectionCoordCounts[ i ];
+                }
+            }
+        }
+        finally
+        {
+            deflater.end( );
+        }
+        return bytes.toByteArray( );
+    }
+
+
+    /**
+     * Returns a direct buffer, suitable for passing straight to GL.
+     */
+    public static FloatBuffer decodeRenderVertices( byte[] block, int coordCount, int[] sectionCoordCounts ) throws IOException
+    {
+        FloatBuffer coords = newDirectFloatBuffer( coordCount );
+        Inflater inflater = new Inflater( );
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( new InflaterInputStream( new ByteArrayInputStream( block ), inflater ) ) ) )
+        {
+            byte encoding = in.readByte( );
+            if ( encoding == renderVertexEncodingRaw )
+            {
+                for ( int c = 0; c < coordCount; c++ )
+                {
+                    coords.put( in.readFloat( ) );
+                }
+            }
+            else if ( encoding == renderVertexEncodingQuantized )
+            {
+                float xMin = in.readFloat( );
+                float xMax = in.readFloat( );
+                float yMin = in.readFloat( );
+                float yMax = in.readFloat( );
+
+                for ( int i = 0; i < sectionCoordCounts.length; i++ )
+                {
+                    int coordsPerVertex = coordsPerRenderSectionVertex[ i % coordsPerRenderSectionVertex.length ];
+                    int qx = 0;
+                    int qy = 0;
+                    int featureNum = 0;
+                    for ( int c = 0; c < sectionCoordCounts[ i ]; c += coordsPerVertex )
+                    {
+                        qx += readZigZagVarint( in );
+                        qy += readZigZagVarint( in );
+                        featureNum += readZigZagVarint( in );
+
+                        coords.put( dequantizeRenderCoord( qx, xMin, xMax ) );
+                        coords.put( dequantizeRenderCoord( qy, yMin, yMax ) );
+                        coords.put( featureNum );
+                        for ( int k = 3; k < coordsPerVertex; k++ )
+                        {
+                            coords.put( in.readFloat( ) );
+                        }
+                    }
+                }
+            }
+            else
+            {
+                throw new IOException( "Unrecognized render vertex encoding: " + encoding );
+            }
+        }
+        finally
+        {
+            inflater.end( );
+        }
+
+        if ( coords.hasRemaining( ) ) throw new IOException( "Render vertex block decoded to too few coords: expected = " + coordCount + ", actual = " + coords.position( ) );
+        coords.flip( );
+        return coords;
+    }
+
+
+    public static int quantizeRenderCoord( float v, float vMin, float vMax )
+    {
+        if ( vMax <= vMin ) return 0;
+        return ( int ) Math.round( ( ( double ) v - vMin ) / ( ( double ) vMax - vMin ) * renderQuantizedVertexSteps );
+    }
+
+
+    public static float dequantizeRenderCoord( int q, float vMin, float vMax )
+    {
+        if ( vMax <= vMin ) return vMin;
+        return ( float ) ( vMin + q * ( ( ( double ) vMax - vMin ) / renderQuantizedVertexSteps ) );
+    }
+
+
+    public static void writeZigZagVarint( DataOutput out, int v ) throws IOException
+    {
+        int u = ( v << 1 ) ^ ( v >> 31 );
+        while ( ( u & ~0x7F ) != 0 )
+        {
+            out.writeByte( ( u & 0x7F ) | 0x80 );
+            u >>>= 7;
+        }
+        out.writeByte( u );
+    }
+
+
+    public static int readZigZagVarint( DataInput in ) throws IOException
+    {
+        int u = 0;
+        for ( int shift = 0; true; shift += 7 )
+        {
+            int b = in.readUnsignedByte( );
+            u |= ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 ) break;
+        }
+        return ( u >>> 1 ) ^ -( u & 1 );
+    }
+
+
     public static List<RenderChunk> readRenderChunks( LongBuffer chunksBuf, List<DncLibrary> libraries, List<DncCoverage> coverages )
     {
         List<RenderChunk> chunks = new ArrayList<>( );
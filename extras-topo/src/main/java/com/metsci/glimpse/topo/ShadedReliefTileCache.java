@@ -29,9 +29,11 @@ package com.metsci.glimpse.topo;
 import static com.metsci.glimpse.topo.TopoLevelSet.createTopoLevels;
 import static com.metsci.glimpse.topo.io.TopoCache.topoConfigString;
 import static com.metsci.glimpse.topo.io.TopoDataPaths.glimpseTopoCacheDir;
+import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.newDaemonThreadFactory;
 import static com.metsci.glimpse.util.io.FileSync.lockFile;
 import static com.metsci.glimpse.util.io.FileSync.unlockFile;
 import static com.metsci.glimpse.util.logging.LoggerUtils.logFine;
+import static com.metsci.glimpse.util.logging.LoggerUtils.logInfo;
 import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
 import static com.metsci.glimpse.util.units.Angle.fromDeg;
 import static com.metsci.glimpse.util.units.Angle.unwrap;
@@ -42,6 +44,8 @@ import static java.lang.Math.cos;
 import static java.lang.Math.sin;
 import static java.lang.Math.sqrt;
 import static java.lang.Math.toDegrees;
+import static java.util.Comparator.comparingInt;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import java.io.File;
 import java.io.IOException;
@@ -55,6 +59,11 @@ import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import com.google.common.hash.Hashing;
@@ -71,6 +80,7 @@ public class ShadedReliefTileCache
     private static final Logger LOGGER = Logger.getLogger( ShadedReliefTileCache.class.getName( ) );
 
     public static final int CACHE_VERSION_ID = 6;
+    public static final int STORE_VERSION_ID = ShadedReliefTileStore.STORE_VERSION_ID;
 
     private static final int PIXELS_TILE_BUFFER = 1;
     private static final int PIXELS_PER_TILE_LAT = 1_024;
@@ -80,11 +90,28 @@ public class ShadedReliefTileCache
     public static final double SIN_LIGHT_ZENITH = sin( fromDeg( 45 ) );
     public static final double LIGHT_AZIMUTH = fromDeg( -135 );
 
+    /**
+     * Receives progress updates from {@link ShadedReliefTileCache#pregenerate(int, PregenerateListener)}.
+     * Called from worker threads.
+     */
+    @FunctionalInterface
+    public static interface PregenerateListener
+    {
+        void tilesDone( int numTilesDone, int numTilesTotal );
+    }
+
     protected final TopoLevelSet topoLevelSet;
 
+    // One packed store per level, opened lazily -- a null entry with storeFailed set means fall back to one file per tile
+    protected final ShadedReliefTileStore[] stores;
+    protected final boolean[] storeFailed;
+
     public ShadedReliefTileCache( TopoDataset topoDataset )
     {
         this.topoLevelSet = createTopoLevels( topoDataset, PIXELS_PER_TILE_LAT, PIXELS_PER_TILE_LON );
+
+        this.stores = new ShadedReliefTileStore[this.topoLevelSet.size( )];
+        this.storeFailed = new boolean[this.topoLevelSet.size( )];
     }
 
     public Collection<TileKey> getAllTileKeys( )
@@ -120,7 +147,161 @@ public class ShadedReliefTileCache
         return tileKeys;
     }
 
+    /**
+     * Returns the packed store for the given level, or null if it can't be opened.
+     */
+    protected synchronized ShadedReliefTileStore store( int levelIdx )
+    {
+        if ( this.stores[levelIdx] == null && !this.storeFailed[levelIdx] )
+        {
+            TopoLevel level = topoLevelSet.levels.get( levelIdx );
+            String configString = topoConfigString( topoLevelSet.levels.get( 0 ).file );
+            String hash = Hashing.murmur3_128( ).newHasher( )
+                    .putString( configString, Charset.defaultCharset( ) )
+                    .putInt( levelIdx )
+                    .putDouble( level.cellSize_DEG )
+                    .putInt( level.numBands )
+                    .putInt( level.numTiles )
+                    .putInt( PIXELS_PER_TILE_LAT )
+                    .putInt( PIXELS_PER_TILE_LON )
+                    .hash( )
+                    .toString( );
+
+            String name = String.format( "%s/tiles_s%d_%s.bin", ShadedReliefTiledPainter.class.getSimpleName( ), STORE_VERSION_ID, hash );
+            File storeFile = new File( glimpseTopoCacheDir, name );
+            try
+            {
+                this.stores[levelIdx] = new ShadedReliefTileStore( storeFile, level, PIXELS_TILE_BUFFER );
+            }
+            catch ( IOException | RuntimeException ex )
+            {
+                logWarning( LOGGER, "Failed to open packed tile store, falling back to one file per tile: " + storeFile, ex );
+                this.storeFailed[levelIdx] = true;
+            }
+        }
+
+        return this.stores[levelIdx];
+    }
+
+    public boolean isTileCached( ReliefTileKey key )
+    {
+        ShadedReliefTileStore store = this.store( key.level );
+        if ( store != null )
+        {
+            return store.isComplete( key.bandNum, key.tileNum );
+        }
+        else
+        {
+            return this.tileFile( key ).isFile( );
+        }
+    }
+
     public CachedTileData readOrBuildTile( ReliefTileKey key )
+    {
+        ShadedReliefTileStore store = this.store( key.level );
+        if ( store == null )
+        {
+            return this.readOrBuildTileFile( key );
+        }
+
+        CachedTileData tile = store.read( key.bandNum, key.tileNum );
+        if ( tile == null )
+        {
+            logFine( LOGGER, "Building topo tile for %s", key );
+            tile = this.buildTile( key );
+            store.write( key.bandNum, key.tileNum, tile );
+        }
+
+        return tile;
+    }
+
+    /**
+     * Builds and stores every tile that isn't already cached, using the given number of threads.
+     * Tiles are built coarsest level first. Tiles are stored as they are finished, so if this
+     * is interrupted, calling it again picks up where it left off.
+     */
+    public void pregenerate( int numThreads, PregenerateListener listener ) throws InterruptedException
+    {
+        List<ReliefTileKey> keys = new ArrayList<>( );
+        for ( TileKey key : this.getAllTileKeys( ) )
+        {
+            keys.add( ( ReliefTileKey ) key );
+        }
+        keys.sort( comparingInt( ( ReliefTileKey key ) -> key.level ).reversed( ) );
+
+        int numTilesTotal = keys.size( );
+        List<ReliefTileKey> keysToBuild = new ArrayList<>( );
+        for ( ReliefTileKey key : keys )
+        {
+            if ( !this.isTileCached( key ) )
+            {
+                keysToBuild.add( key );
+            }
+        }
+
+        AtomicInteger numTilesDone = new AtomicInteger( numTilesTotal - keysToBuild.size( ) );
+        listener.tilesDone( numTilesDone.get( ), numTilesTotal );
+        logInfo( LOGGER, "Pregenerating shaded relief tiles: to-build = %d, total = %d, threads = %d", keysToBuild.size( ), numTilesTotal, numThreads );
+
+        ExecutorService exec = newFixedThreadPool( numThreads, newDaemonThreadFactory( "ShadedReliefPregenerate-%d" ) );
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>( );
+            for ( ReliefTileKey key : keysToBuild )
+            {
+                futures.add( exec.submit( ( ) ->
+                {
+                    this.readOrBuildTile( key );
+                    listener.tilesDone( numTilesDone.incrementAndGet( ), numTilesTotal );
+                } ) );
+            }
+
+            for ( Future<?> future : futures )
+            {
+                future.get( );
+            }
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( "Failed to pregenerate shaded relief tiles", e.getCause( ) );
+        }
+        finally
+        {
+            exec.shutdownNow( );
+
+            for ( int levelIdx = 0; levelIdx < this.stores.length; levelIdx++ )
+            {
+                ShadedReliefTileStore store = this.store( levelIdx );
+                if ( store != null )
+                {
+                    store.force( );
+                }
+            }
+        }
+
+        logInfo( LOGGER, "Finished pregenerating shaded relief tiles" );
+    }
+
+    /**
+     * Like {@link #pregenerate(int, PregenerateListener)}, with one thread per available processor.
+     */
+    public void pregenerate( PregenerateListener listener ) throws InterruptedException
+    {
+        this.pregenerate( Runtime.getRuntime( ).availableProcessors( ), listener );
+    }
+
+    protected CachedTileData buildTile( ReliefTileKey key )
+    {
+        TopoHostTile data = readTopoData( key );
+        CachedTileData tile = new CachedTileData( data );
+        copyElevationData( data, tile );
+
+        hillshade( tile );
+
+        return tile;
+    }
+
+    protected File tileFile( ReliefTileKey key )
     {
         String configString = topoConfigString( topoLevelSet.levels.get( 0 ).file );
         String hash = Hashing.murmur3_128( ).newHasher( )
@@ -133,9 +314,18 @@ public class ShadedReliefTileCache
                 .hash( )
                 .toString( );
 
-        CachedTileData tile = null;
         String name = String.format( "%s/tile_v%d_%s.bin", ShadedReliefTiledPainter.class.getSimpleName( ), CACHE_VERSION_ID, hash );
-        File cacheFile = new File( glimpseTopoCacheDir, name );
+        return new File( glimpseTopoCacheDir, name );
+    }
+
+    /**
+     * Reads or builds a tile using one cache file per tile. Used when the packed store for
+     * the tile's level can't be opened.
+     */
+    protected CachedTileData readOrBuildTileFile( ReliefTileKey key )
+    {
+        CachedTileData tile = null;
+        File cacheFile = this.tileFile( key );
         if ( cacheFile.isFile( ) )
         {
             logFine( LOGGER, "Loading cached topo tile from %s", cacheFile );
@@ -154,12 +344,7 @@ public class ShadedReliefTileCache
             logFine( LOGGER, "Building topo tile for %s", key );
             try
             {
-                TopoHostTile data = readTopoData( key );
-                tile = new CachedTileData( data );
-                copyElevationData( data, tile );
-
-                hillshade( tile );
-
+                tile = this.buildTile( key );
                 writeCachedTile( cacheFile, tile );
             }
             catch ( IOException ex )
@@ -416,6 +601,19 @@ public class ShadedReliefTileCache
             this.shaded = ByteBuffer.allocateDirect( numLat * numLon * Float.BYTES ).order( ByteOrder.nativeOrder( ) );
         }
 
+        protected CachedTileData( double latStep_DEG, double lonStep_DEG, double startLat_DEG, double startLon_DEG, int numLat, int numLon, ByteBuffer elevation, ByteBuffer shaded )
+        {
+            this.latStep_DEG = latStep_DEG;
+            this.lonStep_DEG = lonStep_DEG;
+            this.startLat_DEG = startLat_DEG;
+            this.startLon_DEG = startLon_DEG;
+            this.numLat = numLat;
+            this.numLon = numLon;
+
+            this.elevation = elevation;
+            this.shaded = shaded;
+        }
+
         protected CachedTileData( TopoHostTile data )
         {
             this.startLon_DEG = toDegrees( data.westLon_RAD );
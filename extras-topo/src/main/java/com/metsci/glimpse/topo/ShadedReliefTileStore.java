@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.topo;
+
+import static com.metsci.glimpse.util.io.FileSync.lockFile;
+import static com.metsci.glimpse.util.io.FileSync.unlockFile;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.metsci.glimpse.topo.ShadedReliefTileCache.CachedTileData;
+import com.metsci.glimpse.util.io.MappedFile;
+
+/**
+ * Packed, memory-mapped store for all the shaded relief tiles of one {@link TopoLevel}.
+ * <p>
+ * The file holds a small header, an index entry for every tile in the level, and then the
+ * elevation and hillshade values for every tile. Space for every tile is allocated when the
+ * file is created, so tiles can be filled in any order, by any number of threads or processes.
+ * A tile's index entry is marked complete only after its data has been written, so a partly
+ * built store can be resumed by building just the incomplete tiles.
+ * <p>
+ * Tiles read from the store are backed directly by the mapped file, without copying.
+ */
+public class ShadedReliefTileStore
+{
+    public static final int STORE_MAGIC = 0x47535254;
+    public static final int STORE_VERSION_ID = 1;
+
+    protected static final int HEADER_BYTES = 64;
+    protected static final int INDEX_ENTRY_BYTES = 64;
+
+    protected static final int TILE_EMPTY = 0;
+    protected static final int TILE_COMPLETE = 1;
+
+    public final File file;
+    public final int numBands;
+    public final int numTiles;
+    public final int numBorderCells;
+
+    protected final int[] numLats;
+    protected final int[] numLons;
+    protected final long[] dataOffsets;
+
+    protected final MappedFile mapped;
+
+    public ShadedReliefTileStore( File file, TopoLevel level, int numBorderCells ) throws IOException
+    {
+        this.file = file;
+        this.numBands = level.numBands;
+        this.numTiles = level.numTiles;
+        this.numBorderCells = numBorderCells;
+
+        int numSlots = this.numBands * this.numTiles;
+        this.numLats = new int[numSlots];
+        this.numLons = new int[numSlots];
+        this.dataOffsets = new long[numSlots];
+
+        long offset = HEADER_BYTES + ( ( long ) numSlots ) * INDEX_ENTRY_BYTES;
+        for ( int bandNum = 0; bandNum < this.numBands; bandNum++ )
+        {
+            for ( int tileNum = 0; tileNum < this.numTiles; tileNum++ )
+            {
+                // Same dimensions that TopoLevel.copyTile will produce
+                TopoTileBounds bounds = level.tileBounds( bandNum, tileNum );
+                int slot = this.slot( bandNum, tileNum );
+                this.numLats[slot] = bounds.numRows + 2 * numBorderCells;
+                this.numLons[slot] = bounds.numCols + 2 * numBorderCells;
+                this.dataOffsets[slot] = offset;
+                offset += 2L * this.numLats[slot] * this.numLons[slot] * Float.BYTES;
+            }
+        }
+        long fileSize = offset;
+
+        file.getParentFile( ).mkdirs( );
+        File lockFile = new File( file.getParentFile( ), ".lock" );
+
+        // Get an exclusive lock while creating or validating the file
+        lockFile( lockFile );
+        try
+        {
+            MappedFile mapped = null;
+            if ( file.isFile( ) && file.length( ) == fileSize )
+            {
+                mapped = new MappedFile( file, LITTLE_ENDIAN, true );
+                if ( !this.isHeaderValid( mapped.slice( 0, HEADER_BYTES ) ) )
+                {
+                    mapped.dispose( );
+                    mapped = null;
+                }
+            }
+
+            if ( mapped == null )
+            {
+                // Missing, stale, or truncated -- start over
+                file.delete( );
+                mapped = new MappedFile( file, LITTLE_ENDIAN, fileSize );
+
+                ByteBuffer header = mapped.slice( 0, HEADER_BYTES );
+                header.putInt( 0, STORE_MAGIC );
+                header.putInt( 4, STORE_VERSION_ID );
+                header.putInt( 8, this.numBands );
+                header.putInt( 12, this.numTiles );
+                header.putInt( 16, this.numBorderCells );
+
+                // In case the delete failed, make sure no stale entries claim to be complete
+                for ( int slot = 0; slot < numSlots; slot++ )
+                {
+                    mapped.slice( HEADER_BYTES + ( ( long ) slot ) * INDEX_ENTRY_BYTES, INDEX_ENTRY_BYTES ).putInt( 0, TILE_EMPTY );
+                }
+
+                mapped.force( );
+            }
+
+            this.mapped = mapped;
+        }
+        finally
+        {
+            unlockFile( lockFile );
+        }
+    }
+
+    protected boolean isHeaderValid( ByteBuffer header )
+    {
+        return ( header.getInt( 0 ) == STORE_MAGIC
+                && header.getInt( 4 ) == STORE_VERSION_ID
+                && header.getInt( 8 ) == this.numBands
+                && header.getInt( 12 ) == this.numTiles
+                && header.getInt( 16 ) == this.numBorderCells );
+    }
+
+    protected int slot( int bandNum, int tileNum )
+    {
+        return bandNum * this.numTiles + tileNum;
+    }
+
+    protected ByteBuffer indexEntry( int slot )
+    {
+        return this.mapped.slice( HEADER_BYTES + ( ( long ) slot ) * INDEX_ENTRY_BYTES, INDEX_ENTRY_BYTES );
+    }
+
+    public synchronized boolean isComplete( int bandNum, int tileNum )
+    {
+        return ( this.indexEntry( this.slot( bandNum, tileNum ) ).getInt( 0 ) == TILE_COMPLETE );
+    }
+
+    public synchronized int numComplete( )
+    {
+        int count = 0;
+        for ( int slot = 0; slot < this.numLats.length; slot++ )
+        {
+            if ( this.indexEntry( slot ).getInt( 0 ) == TILE_COMPLETE )
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns null if the tile has not been written yet.
+     */
+    public CachedTileData read( int bandNum, int tileNum )
+    {
+        int slot = this.slot( bandNum, tileNum );
+
+        double startLat_DEG;
+        double startLon_DEG;
+        double latStep_DEG;
+        double lonStep_DEG;
+        synchronized ( this )
+        {
+            ByteBuffer entry = this.indexEntry( slot );
+            if ( entry.getInt( 0 ) != TILE_COMPLETE )
+            {
+                return null;
+            }
+
+            startLat_DEG = entry.getDouble( 16 );
+            startLon_DEG = entry.getDouble( 24 );
+            latStep_DEG = entry.getDouble( 32 );
+            lonStep_DEG = entry.getDouble( 40 );
+        }
+
+        int numLat = this.numLats[slot];
+        int numLon = this.numLons[slot];
+        int numBytes = numLat * numLon * Float.BYTES;
+        ByteBuffer elevation = this.mapped.slice( this.dataOffsets[slot], numBytes );
+        ByteBuffer shaded = this.mapped.slice( this.dataOffsets[slot] + numBytes, numBytes );
+
+        return new CachedTileData( latStep_DEG, lonStep_DEG, startLat_DEG, startLon_DEG, numLat, numLon, elevation, shaded );
+    }
+
+    public void write( int bandNum, int tileNum, CachedTileData tile )
+    {
+        int slot = this.slot( bandNum, tileNum );
+        if ( tile.numLat != this.numLats[slot] || tile.numLon != this.numLons[slot] )
+        {
+            throw new IllegalArgumentException( "Tile dimensions do not match store: band = " + bandNum + ", tile = " + tileNum + ", expected = " + this.numLons[slot] + "x" + this.numLats[slot] + ", actual = " + tile.numLon + "x" + tile.numLat );
+        }
+
+        int numBytes = tile.numLat * tile.numLon * Float.BYTES;
+
+        tile.elevation.rewind( );
+        this.mapped.slice( this.dataOffsets[slot], numBytes ).asFloatBuffer( ).put( tile.elevation.asFloatBuffer( ) );
+
+        tile.shaded.rewind( );
+        this.mapped.slice( this.dataOffsets[slot] + numBytes, numBytes ).asFloatBuffer( ).put( tile.shaded.asFloatBuffer( ) );
+
+        // Mark complete last, so that readers never see a partly written tile
+        synchronized ( this )
+        {
+            ByteBuffer entry = this.indexEntry( slot );
+            entry.putInt( 4, tile.numLat );
+            entry.putInt( 8, tile.numLon );
+            entry.putDouble( 16, tile.startLat_DEG );
+            entry.putDouble( 24, tile.startLon_DEG );
+            entry.putDouble( 32, tile.latStep_DEG );
+            entry.putDouble( 40, tile.lonStep_DEG );
+            entry.putLong( 48, this.dataOffsets[slot] );
+            entry.putInt( 0, TILE_COMPLETE );
+        }
+    }
+
+    /**
+     * Flushes written tiles to disk.
+     */
+    public void force( )
+    {
+        this.mapped.force( );
+    }
+}
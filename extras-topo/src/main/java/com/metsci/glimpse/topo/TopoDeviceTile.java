@@ -57,6 +57,8 @@ public class TopoDeviceTile
 
     public final int texture;
     public final TopoDataType textureDataType;
+    public final int textureWidth;
+    public final int textureHeight;
 
     public final int xyBuffer;
     public final int numVertices;
@@ -77,6 +79,24 @@ public class TopoDeviceTile
 
                            long frameNum )
     {
+        this( northLat_RAD, southLat_RAD, eastLon_RAD, westLon_RAD, texture, textureDataType, 0, 0, xyBuffer, numVertices, frameNum );
+    }
+
+    public TopoDeviceTile( double northLat_RAD,
+                           double southLat_RAD,
+                           double eastLon_RAD,
+                           double westLon_RAD,
+
+                           int texture,
+                           TopoDataType textureDataType,
+                           int textureWidth,
+                           int textureHeight,
+
+                           int xyBuffer,
+                           int numVertices,
+
+                           long frameNum )
+    {
         this.northLat_RAD = northLat_RAD;
         this.southLat_RAD = southLat_RAD;
         this.eastLon_RAD = eastLon_RAD;
@@ -84,6 +104,8 @@ public class TopoDeviceTile
 
         this.texture = texture;
         this.textureDataType = textureDataType;
+        this.textureWidth = textureWidth;
+        this.textureHeight = textureHeight;
 
         this.xyBuffer = xyBuffer;
         this.numVertices = numVertices;
@@ -91,6 +113,11 @@ public class TopoDeviceTile
         this.frameNumOfLastUse = frameNum;
     }
 
+    public long textureBytes( )
+    {
+        return ( ( long ) this.textureDataType.numBytes ) * this.textureWidth * this.textureHeight;
+    }
+
     public void dispose( GL gl )
     {
         deleteBuffers( gl, this.xyBuffer );
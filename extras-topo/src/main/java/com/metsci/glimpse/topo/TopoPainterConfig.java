@@ -29,7 +29,7 @@ package com.metsci.glimpse.topo;
 public class TopoPainterConfig
 {
 
-    public static final TopoPainterConfig topoPainterConfig_DEFAULT = new TopoPainterConfig( 2048, 2048, 1, 1, 1, true, false );
+    public static final TopoPainterConfig topoPainterConfig_DEFAULT = new TopoPainterConfig( 2048, 2048, 1, 1, 1, true, false, 4, 0.25, 256L * 1024 * 1024, 1 );
 
 
     public final int maxRowsPerBand;
@@ -40,6 +40,32 @@ public class TopoPainterConfig
     public final boolean preloadLowerResTiles;
     public final boolean preloadHigherResTiles;
 
+    /**
+     * Number of threads loading host tiles. Pending loads are ordered by level (current level
+     * first, then preloads, then prefetches), and by distance from the view center.
+     */
+    public final int hTileLoaderThreads;
+
+    /**
+     * Width of the ring around the viewport, as a fraction of the viewport's size, in which
+     * current-level tiles are prefetched. Zero disables prefetching.
+     */
+    public final double prefetchRingFraction;
+
+    /**
+     * If positive, device tiles are kept until their textures exceed this many bytes, and then
+     * evicted least-recently-used first. Textures of evicted tiles are reused for new tiles of
+     * the same size. If zero, a dTile is disposed once it goes unused for a full frame, at most
+     * dTileDisposalsPerFrame per frame.
+     */
+    public final long dTileBudgetBytes;
+
+    /**
+     * Number of coarsest levels whose device tiles are never evicted, so they are always
+     * available as fallbacks. Only applies when dTileBudgetBytes is positive.
+     */
+    public final int dTilePermanentLevels;
+
 
     public TopoPainterConfig( int maxRowsPerBand,
                               int maxColsPerTile,
@@ -48,6 +74,52 @@ public class TopoPainterConfig
                               int tileXfersPerFrame,
                               boolean preloadLowerResTiles,
                               boolean preloadHigherResTiles )
+    {
+        this( maxRowsPerBand,
+              maxColsPerTile,
+              hTileDisposalsPerFrame,
+              dTileDisposalsPerFrame,
+              tileXfersPerFrame,
+              preloadLowerResTiles,
+              preloadHigherResTiles,
+              1,
+              0.0 );
+    }
+
+    public TopoPainterConfig( int maxRowsPerBand,
+                              int maxColsPerTile,
+                              int hTileDisposalsPerFrame,
+                              int dTileDisposalsPerFrame,
+                              int tileXfersPerFrame,
+                              boolean preloadLowerResTiles,
+                              boolean preloadHigherResTiles,
+                              int hTileLoaderThreads,
+                              double prefetchRingFraction )
+    {
+        this( maxRowsPerBand,
+              maxColsPerTile,
+              hTileDisposalsPerFrame,
+              dTileDisposalsPerFrame,
+              tileXfersPerFrame,
+              preloadLowerResTiles,
+              preloadHigherResTiles,
+              hTileLoaderThreads,
+              prefetchRingFraction,
+              0,
+              0 );
+    }
+
+    public TopoPainterConfig( int maxRowsPerBand,
+                              int maxColsPerTile,
+                              int hTileDisposalsPerFrame,
+                              int dTileDisposalsPerFrame,
+                              int tileXfersPerFrame,
+                              boolean preloadLowerResTiles,
+                              boolean preloadHigherResTiles,
+                              int hTileLoaderThreads,
+                              double prefetchRingFraction,
+                              long dTileBudgetBytes,
+                              int dTilePermanentLevels )
     {
         this.maxRowsPerBand = maxRowsPerBand;
         this.maxColsPerTile = maxColsPerTile;
@@ -56,6 +128,10 @@ public class TopoPainterConfig
         this.tileXfersPerFrame = tileXfersPerFrame;
         this.preloadLowerResTiles = preloadLowerResTiles;
         this.preloadHigherResTiles = preloadHigherResTiles;
+        this.hTileLoaderThreads = hTileLoaderThreads;
+        this.prefetchRingFraction = prefetchRingFraction;
+        this.dTileBudgetBytes = dTileBudgetBytes;
+        this.dTilePermanentLevels = dTilePermanentLevels;
     }
 
     public String toLongString( String linePrefix )
@@ -69,6 +145,10 @@ public class TopoPainterConfig
         s.append( linePrefix ).append( "tileXfersPerFrame:      " ).append( this.tileXfersPerFrame ).append( "\n" );
         s.append( linePrefix ).append( "preloadLowerResTiles:   " ).append( this.preloadLowerResTiles ).append( "\n" );
         s.append( linePrefix ).append( "preloadHigherResTiles:  " ).append( this.preloadHigherResTiles ).append( "\n" );
+        s.append( linePrefix ).append( "hTileLoaderThreads:     " ).append( this.hTileLoaderThreads ).append( "\n" );
+        s.append( linePrefix ).append( "prefetchRingFraction:   " ).append( this.prefetchRingFraction ).append( "\n" );
+        s.append( linePrefix ).append( "dTileBudgetBytes:       " ).append( this.dTileBudgetBytes ).append( "\n" );
+        s.append( linePrefix ).append( "dTilePermanentLevels:   " ).append( this.dTilePermanentLevels ).append( "\n" );
 
         return s.toString( );
     }
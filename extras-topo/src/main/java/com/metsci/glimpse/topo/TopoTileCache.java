@@ -41,22 +41,31 @@ import static com.jogamp.opengl.GL.GL_TEXTURE_WRAP_T;
 import static com.jogamp.opengl.GL.GL_UNPACK_ALIGNMENT;
 import static com.jogamp.opengl.GL2ES2.GL_RED;
 import static com.jogamp.opengl.GL2GL3.GL_R16_SNORM;
+import static com.metsci.glimpse.core.gl.util.GLUtils.deleteBuffers;
+import static com.metsci.glimpse.core.gl.util.GLUtils.deleteTextures;
 import static com.metsci.glimpse.core.gl.util.GLUtils.genTexture;
 import static com.metsci.glimpse.core.support.QuickUtils.requireSwingThread;
 import static com.metsci.glimpse.topo.TopoLevelSet.createTopoLevels;
+import static com.metsci.glimpse.topo.TopoUtils.expand;
 import static com.metsci.glimpse.topo.TopoUtils.intersect;
 import static com.metsci.glimpse.util.concurrent.ConcurrencyUtils.newDaemonThreadFactory;
+import static com.metsci.glimpse.util.logging.LoggerUtils.getLogger;
+import static com.metsci.glimpse.util.logging.LoggerUtils.logWarning;
 import static com.metsci.glimpse.util.math.MathConstants.HALF_PI;
 import static java.lang.Math.ceil;
 import static java.lang.Math.floor;
+import static java.lang.Math.hypot;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -65,28 +74,182 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Logger;
 
 import javax.swing.SwingUtilities;
 
 import com.jogamp.opengl.GL3;
 import com.metsci.glimpse.core.context.GlimpseContext;
 import com.metsci.glimpse.core.gl.GLEditableBuffer;
+import com.metsci.glimpse.topo.io.TopoDataType;
 import com.metsci.glimpse.topo.io.TopoDataset;
 import com.metsci.glimpse.topo.proj.NormalCylindricalProjection;
 
 public class TopoTileCache
 {
 
+    private static final Logger logger = getLogger( TopoTileCache.class );
+
+
+    // Load ranks, in the order loads should happen
+    protected static final int LOAD_RANK_VISIBLE = 0;
+    protected static final int LOAD_RANK_LOWER_RES = 1;
+    protected static final int LOAD_RANK_HIGHER_RES = 2;
+    protected static final int LOAD_RANK_PREFETCH = 3;
+
+
+    /**
+     * Loads are immutable once submitted. To change a queued load's priority, remove it from
+     * the executor and submit a replacement.
+     */
+    protected class HostTileLoad implements Runnable, Comparable<HostTileLoad>
+    {
+        public final TopoTileKey tileKey;
+        public final int rank;
+        public final double distance_DEG;
+        public final long seqNum;
+
+        public HostTileLoad( TopoTileKey tileKey, int rank, double distance_DEG, long seqNum )
+        {
+            this.tileKey = tileKey;
+            this.rank = rank;
+            this.distance_DEG = distance_DEG;
+            this.seqNum = seqNum;
+        }
+
+        @Override
+        public void run( )
+        {
+            TopoHostTile hTile;
+            try
+            {
+                // Include a 1-cell border, so that texture interpolation works right across tile boundaries
+                hTile = createHostTile( TopoTileCache.this.levels, this.tileKey, 1 );
+            }
+            catch ( RuntimeException e )
+            {
+                logWarning( logger, "Failed to load topo tile: level = " + this.tileKey.levelNum + ", band = " + this.tileKey.bandNum + ", tile = " + this.tileKey.tileNum, e );
+                hTile = null;
+            }
+
+            TopoHostTile hTile0 = hTile;
+            SwingUtilities.invokeLater( ( ) ->
+            {
+                TopoTileCache.this.finishHostTileLoad( this, hTile0 );
+            } );
+        }
+
+        @Override
+        public int compareTo( HostTileLoad o )
+        {
+            int rankComparison = Integer.compare( this.rank, o.rank );
+            if ( rankComparison != 0 ) return rankComparison;
+
+            int distanceComparison = Double.compare( this.distance_DEG, o.distance_DEG );
+            if ( distanceComparison != 0 ) return distanceComparison;
+
+            return Long.compare( this.seqNum, o.seqNum );
+        }
+    }
+
+
+    protected static class PooledTexture
+    {
+        public final int texture;
+        public final TopoDataType dataType;
+        public final int width;
+        public final int height;
+
+        public PooledTexture( int texture, TopoDataType dataType, int width, int height )
+        {
+            this.texture = texture;
+            this.dataType = dataType;
+            this.width = width;
+            this.height = height;
+        }
+
+        public long numBytes( )
+        {
+            return ( ( long ) this.dataType.numBytes ) * this.width * this.height;
+        }
+    }
+
+
+    /**
+     * Snapshot of device-tile residency, plus counts for the most recent frame.
+     */
+    public static class Stats
+    {
+        public final int residentTiles;
+        public final long residentBytes;
+        public final int pooledTextures;
+        public final long pooledBytes;
+        public final int pendingLoads;
+
+        public final int frameUploads;
+        public final long frameUploadBytes;
+        public final int frameTextureReuses;
+        public final int frameEvictions;
+
+        public Stats( int residentTiles,
+                      long residentBytes,
+                      int pooledTextures,
+                      long pooledBytes,
+                      int pendingLoads,
+
+                      int frameUploads,
+                      long frameUploadBytes,
+                      int frameTextureReuses,
+                      int frameEvictions )
+        {
+            this.residentTiles = residentTiles;
+            this.residentBytes = residentBytes;
+            this.pooledTextures = pooledTextures;
+            this.pooledBytes = pooledBytes;
+            this.pendingLoads = pendingLoads;
+
+            this.frameUploads = frameUploads;
+            this.frameUploadBytes = frameUploadBytes;
+            this.frameTextureReuses = frameTextureReuses;
+            this.frameEvictions = frameEvictions;
+        }
+
+        @Override
+        public String toString( )
+        {
+            return "resident-tiles = " + this.residentTiles + ", resident-bytes = " + this.residentBytes + ", pooled-textures = " + this.pooledTextures + ", pooled-bytes = " + this.pooledBytes + ", pending-loads = " + this.pendingLoads + ", frame-uploads = " + this.frameUploads + ", frame-upload-bytes = " + this.frameUploadBytes + ", frame-texture-reuses = " + this.frameTextureReuses + ", frame-evictions = " + this.frameEvictions;
+        }
+    }
+
+
     public final TopoPainterConfig config;
     public final TopoLevelSet levels;
     public final NormalCylindricalProjection proj;
 
-    protected final ExecutorService async;
+    protected final ThreadPoolExecutor async;
+    protected final Map<TopoTileKey,HostTileLoad> hTileLoads;
+    protected long hTileLoadSeqNum;
+
+    // Tiles whose hTile load failed, which are not retried -- a tile that failed once (e.g. a
+    // corrupt or truncated store entry) will almost certainly fail again
+    protected final Set<TopoTileKey> hTileLoadFailures;
 
     protected final Map<TopoTileKey,TopoHostTile> hTiles;
     protected final Map<TopoTileKey,TopoDeviceTile> dTiles;
 
+    // Textures of evicted dTiles, oldest first, available for reuse by new dTiles of the same size
+    protected final Deque<PooledTexture> texturePool;
+
+    protected long residentBytes;
+    protected long pooledBytes;
+
+    protected int frameUploads;
+    protected long frameUploadBytes;
+    protected int frameTextureReuses;
+    protected int frameEvictions;
+
     protected long frameNum;
 
     protected boolean disposed;
@@ -98,12 +261,21 @@ public class TopoTileCache
         this.levels = createTopoLevels( dataset, this.config.maxRowsPerBand, this.config.maxColsPerTile );
         this.proj = proj;
 
-        this.async = newSingleThreadExecutor( newDaemonThreadFactory( "TopoTileCache.Async.%d" ) );
+        // Only HostTileLoads go through this executor, via execute(), so the queue can order them
+        int numThreads = max( 1, this.config.hTileLoaderThreads );
+        this.async = new ThreadPoolExecutor( numThreads, numThreads, 0, MILLISECONDS, new PriorityBlockingQueue<>( ), newDaemonThreadFactory( "TopoTileCache.Async.%d" ) );
+        this.hTileLoads = new HashMap<>( );
+        this.hTileLoadSeqNum = 0;
+        this.hTileLoadFailures = new HashSet<>( );
 
         // Create hTiles and dTiles with access ordering, so iteration visits the least recently accessed entry first
         this.hTiles = new LinkedHashMap<>( 16, 0.75f, /* accessOrder */ true );
         this.dTiles = new LinkedHashMap<>( 16, 0.75f, /* accessOrder */ true );
 
+        this.texturePool = new ArrayDeque<>( );
+        this.residentBytes = 0;
+        this.pooledBytes = 0;
+
         this.frameNum = 0;
 
         this.disposed = false;
@@ -116,6 +288,11 @@ public class TopoTileCache
         // Update latest frameNum
         this.frameNum = frameNum;
 
+        this.frameUploads = 0;
+        this.frameUploadBytes = 0;
+        this.frameTextureReuses = 0;
+        this.frameEvictions = 0;
+
         // Dispose of unneeded hTiles
         // We created hTiles with access ordering, so iteration visits the least recently accessed entry first
         int hTileDisposeCount = 0;
@@ -137,21 +314,25 @@ public class TopoTileCache
         }
 
         // Dispose of unneeded dTiles
-        // We created dTiles with access ordering, so iteration visits the least recently accessed entry first
-        int dTileDisposeCount = 0;
-        for ( Iterator<Entry<TopoTileKey,TopoDeviceTile>> it = this.dTiles.entrySet( ).iterator( ); it.hasNext( ); )
+        // With a byte budget, eviction happens after this frame's tiles have been marked as used
+        if ( this.config.dTileBudgetBytes <= 0 )
         {
-            Entry<TopoTileKey,TopoDeviceTile> en = it.next( );
-            TopoDeviceTile dTile = en.getValue( );
-
-            // If we've gone a complete frame without using this dTile, it's elligible for disposal
-            if ( this.frameNum >= dTile.frameNumOfLastUse + 2 )
+            // We created dTiles with access ordering, so iteration visits the least recently accessed entry first
+            int dTileDisposeCount = 0;
+            for ( Iterator<Entry<TopoTileKey,TopoDeviceTile>> it = this.dTiles.entrySet( ).iterator( ); it.hasNext( ); )
             {
-                if ( dTileDisposeCount < this.config.dTileDisposalsPerFrame )
+                Entry<TopoTileKey,TopoDeviceTile> en = it.next( );
+                TopoDeviceTile dTile = en.getValue( );
+
+                // If we've gone a complete frame without using this dTile, it's elligible for disposal
+                if ( this.frameNum >= dTile.frameNumOfLastUse + 2 )
                 {
-                    it.remove( );
-                    dTile.dispose( gl );
-                    dTileDisposeCount++;
+                    if ( dTileDisposeCount < this.config.dTileDisposalsPerFrame )
+                    {
+                        it.remove( );
+                        this.releaseDeviceTile( gl, dTile );
+                        dTileDisposeCount++;
+                    }
                 }
             }
         }
@@ -159,46 +340,87 @@ public class TopoTileCache
         // Identify tiles visible on the current level
         Collection<TopoTileKey> tilesToDraw = this.findTiles( viewBounds, levelNum );
 
-        // Identify tiles worth having ready
-        List<TopoTileKey> tilesToPrep = new ArrayList<>( );
+        // Identify tiles worth having ready, and how urgently
+        Map<TopoTileKey,Integer> prepRanks = new LinkedHashMap<>( );
 
-        tilesToPrep.addAll( tilesToDraw );
+        for ( TopoTileKey tileKey : tilesToDraw )
+        {
+            prepRanks.putIfAbsent( tileKey, LOAD_RANK_VISIBLE );
+        }
 
         if ( this.config.preloadLowerResTiles && levelNum < this.levels.size( ) - 1 )
         {
-            tilesToPrep.addAll( this.findTiles( viewBounds, levelNum + 1 ) );
+            for ( TopoTileKey tileKey : this.findTiles( viewBounds, levelNum + 1 ) )
+            {
+                prepRanks.putIfAbsent( tileKey, LOAD_RANK_LOWER_RES );
+            }
         }
 
         if ( this.config.preloadHigherResTiles && levelNum > 0 )
         {
-            tilesToPrep.addAll( this.findTiles( viewBounds, levelNum - 1 ) );
+            for ( TopoTileKey tileKey : this.findTiles( viewBounds, levelNum - 1 ) )
+            {
+                prepRanks.putIfAbsent( tileKey, LOAD_RANK_HIGHER_RES );
+            }
+        }
+
+        if ( this.config.prefetchRingFraction > 0 )
+        {
+            for ( TopoTileKey tileKey : this.findTiles( expand( viewBounds, this.config.prefetchRingFraction ), levelNum ) )
+            {
+                prepRanks.putIfAbsent( tileKey, LOAD_RANK_PREFETCH );
+            }
+        }
+
+        // Order tiles by rank, then by distance from view center
+        double viewCenterLat_DEG = 0.5 * ( viewBounds.northLat_DEG + viewBounds.southLat_DEG );
+        double viewCenterLon_DEG = 0.5 * ( viewBounds.eastLon_DEG + viewBounds.westLon_DEG );
+        Map<TopoTileKey,Double> prepDistances_DEG = new HashMap<>( );
+        for ( TopoTileKey tileKey : prepRanks.keySet( ) )
+        {
+            prepDistances_DEG.put( tileKey, this.tileDistance_DEG( tileKey, viewCenterLat_DEG, viewCenterLon_DEG ) );
+        }
+        List<TopoTileKey> tilesToPrep = new ArrayList<>( prepRanks.keySet( ) );
+        tilesToPrep.sort( ( a, b ) ->
+        {
+            int rankComparison = Integer.compare( prepRanks.get( a ), prepRanks.get( b ) );
+            if ( rankComparison != 0 ) return rankComparison;
+
+            return Double.compare( prepDistances_DEG.get( a ), prepDistances_DEG.get( b ) );
+        } );
+
+        // Cancel queued hTile loads for tiles we no longer want
+        // Loads that have already started can't be cancelled -- they finish, and their hTiles get disposed in the usual way
+        for ( Iterator<HostTileLoad> it = this.hTileLoads.values( ).iterator( ); it.hasNext( ); )
+        {
+            HostTileLoad load = it.next( );
+            if ( !prepRanks.containsKey( load.tileKey ) && this.async.remove( load ) )
+            {
+                it.remove( );
+                this.hTiles.remove( load.tileKey );
+            }
         }
 
         // Load hTiles
         for ( TopoTileKey tileKey : tilesToPrep )
         {
-            if ( !this.dTiles.containsKey( tileKey ) && !this.hTiles.containsKey( tileKey ) )
+            int rank = prepRanks.get( tileKey );
+            double distance_DEG = prepDistances_DEG.get( tileKey );
+
+            HostTileLoad load = this.hTileLoads.get( tileKey );
+            if ( load != null )
+            {
+                // If the load is still queued, update its priority for the current view
+                if ( ( load.rank != rank || load.distance_DEG != distance_DEG ) && this.async.remove( load ) )
+                {
+                    this.submitHostTileLoad( tileKey, rank, distance_DEG );
+                }
+            }
+            else if ( !this.dTiles.containsKey( tileKey ) && !this.hTiles.containsKey( tileKey ) && !this.hTileLoadFailures.contains( tileKey ) )
             {
                 // While an hTile load is in progress: containsKey() will return true, but get() will return null
                 this.hTiles.put( tileKey, null );
-
-                this.async.submit( ( ) ->
-                {
-                    // Include a 1-cell border, so that texture interpolation works right across tile boundaries
-                    TopoHostTile hTile = createHostTile( this.levels, tileKey, 1 );
-                    SwingUtilities.invokeLater( ( ) ->
-                    {
-                        if ( !this.disposed )
-                        {
-                            this.hTiles.put( tileKey, hTile );
-                            hTile.frameNumOfLastUse = this.frameNum;
-                        }
-                        else
-                        {
-                            hTile.dispose( );
-                        }
-                    } );
-                } );
+                this.submitHostTileLoad( tileKey, rank, distance_DEG );
             }
         }
 
@@ -210,9 +432,18 @@ public class TopoTileCache
             TopoHostTile hTile = this.hTiles.get( tileKey );
             if ( hTile != null && !this.dTiles.containsKey( tileKey ) && tileXferCount < this.config.tileXfersPerFrame )
             {
-                TopoDeviceTile dTile = xferHostTileToDevice( gl, hTile, this.proj );
+                int reusedTexture = this.takePooledTexture( gl, hTile.dataType, hTile.numDataCols, hTile.numDataRows );
+                TopoDeviceTile dTile = xferHostTileToDevice( gl, hTile, this.proj, reusedTexture );
                 this.dTiles.put( tileKey, dTile );
 
+                this.residentBytes += dTile.textureBytes( );
+                this.frameUploads++;
+                this.frameUploadBytes += dTile.textureBytes( );
+                if ( reusedTexture != 0 )
+                {
+                    this.frameTextureReuses++;
+                }
+
                 this.hTiles.remove( tileKey );
                 hTile.dispose( );
 
@@ -276,6 +507,12 @@ public class TopoTileCache
             }
         }
 
+        // Evict least-recently-used dTiles, if we're over budget
+        if ( this.config.dTileBudgetBytes > 0 )
+        {
+            this.evictDeviceTiles( gl );
+        }
+
         // List tiles to be drawn
         List<TopoDeviceTile> dTilesToDraw = new ArrayList<>( );
 
@@ -302,6 +539,152 @@ public class TopoTileCache
         return dTilesToDraw;
     }
 
+    /**
+     * Must be called on the Swing thread.
+     */
+    public Stats stats( )
+    {
+        requireSwingThread( );
+
+        return new Stats( this.dTiles.size( ),
+                          this.residentBytes,
+                          this.texturePool.size( ),
+                          this.pooledBytes,
+                          this.hTileLoads.size( ),
+
+                          this.frameUploads,
+                          this.frameUploadBytes,
+                          this.frameTextureReuses,
+                          this.frameEvictions );
+    }
+
+    /**
+     * Evicts dTiles not used in the current frame, least recently used first, until resident
+     * textures fit within the budget. Tiles on the coarsest dTilePermanentLevels levels are
+     * never evicted, so there is always something to fall back on.
+     */
+    protected void evictDeviceTiles( GL3 gl )
+    {
+        long budgetBytes = this.config.dTileBudgetBytes;
+        if ( this.residentBytes > budgetBytes )
+        {
+            int minPermanentLevelNum = this.levels.size( ) - this.config.dTilePermanentLevels;
+
+            List<Entry<TopoTileKey,TopoDeviceTile>> candidates = new ArrayList<>( );
+            for ( Entry<TopoTileKey,TopoDeviceTile> en : this.dTiles.entrySet( ) )
+            {
+                if ( en.getValue( ).frameNumOfLastUse < this.frameNum && en.getKey( ).levelNum < minPermanentLevelNum )
+                {
+                    candidates.add( en );
+                }
+            }
+            candidates.sort( ( a, b ) -> Long.compare( a.getValue( ).frameNumOfLastUse, b.getValue( ).frameNumOfLastUse ) );
+
+            for ( Entry<TopoTileKey,TopoDeviceTile> en : candidates )
+            {
+                if ( this.residentBytes <= budgetBytes )
+                {
+                    break;
+                }
+
+                this.dTiles.remove( en.getKey( ) );
+                this.releaseDeviceTile( gl, en.getValue( ) );
+                this.frameEvictions++;
+            }
+        }
+
+        // Keep only as many pooled textures as a couple of frames of uploads could use
+        int maxPooledTextures = 2 * max( 1, this.config.tileXfersPerFrame );
+        while ( this.texturePool.size( ) > maxPooledTextures )
+        {
+            PooledTexture pooled = this.texturePool.removeFirst( );
+            deleteTextures( gl, pooled.texture );
+            this.pooledBytes -= pooled.numBytes( );
+        }
+    }
+
+    /**
+     * With a byte budget, the dTile's texture goes into the pool for reuse. Otherwise the
+     * dTile is simply disposed.
+     */
+    protected void releaseDeviceTile( GL3 gl, TopoDeviceTile dTile )
+    {
+        this.residentBytes -= dTile.textureBytes( );
+
+        if ( this.config.dTileBudgetBytes > 0 && dTile.textureWidth > 0 && dTile.textureHeight > 0 )
+        {
+            deleteBuffers( gl, dTile.xyBuffer );
+            PooledTexture pooled = new PooledTexture( dTile.texture, dTile.textureDataType, dTile.textureWidth, dTile.textureHeight );
+            this.texturePool.addLast( pooled );
+            this.pooledBytes += pooled.numBytes( );
+        }
+        else
+        {
+            dTile.dispose( gl );
+        }
+    }
+
+    /**
+     * Returns a pooled texture with the given format and size, or 0 if there isn't one.
+     */
+    protected int takePooledTexture( GL3 gl, TopoDataType dataType, int width, int height )
+    {
+        for ( Iterator<PooledTexture> it = this.texturePool.iterator( ); it.hasNext( ); )
+        {
+            PooledTexture pooled = it.next( );
+            if ( pooled.dataType == dataType && pooled.width == width && pooled.height == height )
+            {
+                it.remove( );
+                this.pooledBytes -= pooled.numBytes( );
+                return pooled.texture;
+            }
+        }
+        return 0;
+    }
+
+    protected void submitHostTileLoad( TopoTileKey tileKey, int rank, double distance_DEG )
+    {
+        HostTileLoad load = new HostTileLoad( tileKey, rank, distance_DEG, this.hTileLoadSeqNum++ );
+        this.hTileLoads.put( tileKey, load );
+        this.async.execute( load );
+    }
+
+    protected void finishHostTileLoad( HostTileLoad load, TopoHostTile hTile )
+    {
+        if ( this.hTileLoads.get( load.tileKey ) == load )
+        {
+            this.hTileLoads.remove( load.tileKey );
+        }
+
+        if ( hTile == null )
+        {
+            // Load failed -- drop the placeholder, and remember the failure so that later frames
+            // don't retry the tile, and log the failure again, every frame
+            if ( !this.disposed && this.hTiles.containsKey( load.tileKey ) && this.hTiles.get( load.tileKey ) == null )
+            {
+                this.hTiles.remove( load.tileKey );
+            }
+            this.hTileLoadFailures.add( load.tileKey );
+        }
+        else if ( !this.disposed )
+        {
+            this.hTiles.put( load.tileKey, hTile );
+            hTile.frameNumOfLastUse = this.frameNum;
+        }
+        else
+        {
+            hTile.dispose( );
+        }
+    }
+
+    protected double tileDistance_DEG( TopoTileKey tileKey, double lat_DEG, double lon_DEG )
+    {
+        TopoTileBounds tileBounds = this.levels.get( tileKey.levelNum ).tileBounds( tileKey.bandNum, tileKey.tileNum );
+        double tileCenterLat_DEG = 0.5 * ( tileBounds.northLat_DEG + tileBounds.southLat_DEG );
+        double tileCenterLon_DEG = 0.5 * ( tileBounds.eastLon_DEG + tileBounds.westLon_DEG );
+        return hypot( tileCenterLat_DEG - lat_DEG, tileCenterLon_DEG - lon_DEG );
+    }
+
     protected Collection<TopoTileKey> findTiles( LatLonBox viewBounds, int levelNum )
     {
         TopoLevel level = this.levels.get( levelNum );
@@ -331,12 +714,31 @@ public class TopoTileCache
 
     protected static TopoDeviceTile xferHostTileToDevice( GL3 gl, TopoHostTile hTile, NormalCylindricalProjection proj )
     {
-        int texture = genTexture( gl );
-        gl.glBindTexture( GL_TEXTURE_2D, texture );
-        gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR );
-        gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR );
-        gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE );
-        gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE );
+        return xferHostTileToDevice( gl, hTile, proj, 0 );
+    }
+
+    /**
+     * If reusedTexture is non-zero, it must have been created by this method for a tile with
+     * the same data type and dimensions. Its storage is overwritten in place, instead of being
+     * reallocated.
+     */
+    protected static TopoDeviceTile xferHostTileToDevice( GL3 gl, TopoHostTile hTile, NormalCylindricalProjection proj, int reusedTexture )
+    {
+        int texture;
+        if ( reusedTexture != 0 )
+        {
+            texture = reusedTexture;
+            gl.glBindTexture( GL_TEXTURE_2D, texture );
+        }
+        else
+        {
+            texture = genTexture( gl );
+            gl.glBindTexture( GL_TEXTURE_2D, texture );
+            gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR );
+            gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR );
+            gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE );
+            gl.glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE );
+        }
 
         gl.glPixelStorei( GL_UNPACK_ALIGNMENT, hTile.dataType.numBytes );
 
@@ -345,14 +747,28 @@ public class TopoTileCache
             case TOPO_I2:
             {
                 ShortBuffer dataShorts = hTile.dataBytes.asShortBuffer( );
-                gl.glTexImage2D( GL_TEXTURE_2D, 0, GL_R16_SNORM, hTile.numDataCols, hTile.numDataRows, 0, GL_RED, GL_SHORT, dataShorts );
+                if ( reusedTexture != 0 )
+                {
+                    gl.glTexSubImage2D( GL_TEXTURE_2D, 0, 0, 0, hTile.numDataCols, hTile.numDataRows, GL_RED, GL_SHORT, dataShorts );
+                }
+                else
+                {
+                    gl.glTexImage2D( GL_TEXTURE_2D, 0, GL_R16_SNORM, hTile.numDataCols, hTile.numDataRows, 0, GL_RED, GL_SHORT, dataShorts );
+                }
             }
             break;
 
             case TOPO_F4:
             {
                 FloatBuffer dataFloats = hTile.dataBytes.asFloatBuffer( );
-                gl.glTexImage2D( GL_TEXTURE_2D, 0, GL_R32F, hTile.numDataCols, hTile.numDataRows, 0, GL_RED, GL_FLOAT, dataFloats );
+                if ( reusedTexture != 0 )
+                {
+                    gl.glTexSubImage2D( GL_TEXTURE_2D, 0, 0, 0, hTile.numDataCols, hTile.numDataRows, GL_RED, GL_FLOAT, dataFloats );
+                }
+                else
+                {
+                    gl.glTexImage2D( GL_TEXTURE_2D, 0, GL_R32F, hTile.numDataCols, hTile.numDataRows, 0, GL_RED, GL_FLOAT, dataFloats );
+                }
             }
             break;
 
@@ -403,6 +819,8 @@ public class TopoTileCache
 
                                    texture,
                                    hTile.dataType,
+                                   hTile.numDataCols,
+                                   hTile.numDataRows,
 
                                    xyBuffer.deviceBuffer( gl ),
                                    numVertices,
@@ -416,7 +834,10 @@ public class TopoTileCache
 
         this.disposed = true;
 
+        // Drop queued loads, and let in-progress loads finish (their hTiles get disposed when they arrive)
+        this.async.getQueue( ).clear( );
         this.async.shutdown( );
+        this.hTileLoads.clear( );
 
         this.levels.dispose( );
 
@@ -434,6 +855,14 @@ public class TopoTileCache
             dTile.dispose( context.getGL( ) );
         }
         this.dTiles.clear( );
+        this.residentBytes = 0;
+
+        for ( PooledTexture pooled : this.texturePool )
+        {
+            deleteTextures( context.getGL( ), pooled.texture );
+        }
+        this.texturePool.clear( );
+        this.pooledBytes = 0;
     }
 
 }
@@ -62,6 +62,23 @@ public class TopoUtils
         return new LatLonBox( northLat_DEG, southLat_DEG, eastLon_DEG, westLon_DEG );
     }
 
+    /**
+     * Grows the box by fraction of its height on the north and south edges, and fraction of its
+     * width on the east and west edges. Latitudes are clamped to [-90,+90].
+     */
+    public static LatLonBox expand( LatLonBox box, double fraction )
+    {
+        double latMargin_DEG = fraction * ( box.northLat_DEG - box.southLat_DEG );
+        double lonMargin_DEG = fraction * ( box.eastLon_DEG - box.westLon_DEG );
+
+        double northLat_DEG = min( +90, box.northLat_DEG + latMargin_DEG );
+        double southLat_DEG = max( -90, box.southLat_DEG - latMargin_DEG );
+        double eastLon_DEG = box.eastLon_DEG + lonMargin_DEG;
+        double westLon_DEG = box.westLon_DEG - lonMargin_DEG;
+
+        return new LatLonBox( northLat_DEG, southLat_DEG, eastLon_DEG, westLon_DEG );
+    }
+
     public static float dataDenormFactor( TopoDataType dataType )
     {
         switch ( dataType )
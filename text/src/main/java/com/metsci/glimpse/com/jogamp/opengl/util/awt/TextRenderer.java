@@ -36,7 +36,10 @@ import java.awt.geom.Rectangle2D;
 import java.lang.Character.UnicodeBlock;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GLContext;
@@ -151,6 +154,38 @@ public final class TextRenderer
      */
     private boolean ready = false;
 
+    /**
+     * Maximum number of strings whose bounds are remembered.
+     */
+    private static final int BOUNDS_CACHE_SIZE = 1024;
+
+    /**
+     * Recently measured string bounds, in access order.
+     */
+    /*@Nonnull*/
+    private final Map<String, Rectangle2D> boundsCache = new LinkedHashMap<String, Rectangle2D>( 64, 0.75f, true )
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( final Map.Entry<String, Rectangle2D> eldest )
+        {
+            return size( ) > BOUNDS_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Advances of Latin-1 characters, or NaN if not yet measured.
+     */
+    /*@Nonnull*/
+    private final float[] latinAdvances = newNaNs( 256 );
+
+    /**
+     * Advances of other characters.
+     */
+    /*@Nonnull*/
+    private final Map<Character, Float> otherAdvances = new HashMap<Character, Float>( );
+
     /**
      * Constructs a {@link TextRenderer}.
      *
@@ -387,6 +422,9 @@ public final class TextRenderer
 
         // Destroy the glyph renderer
         glyphRenderer.dispose( gl );
+
+        boundsCache.clear( );
+        otherAdvances.clear( );
     }
 
     public FontRenderContext getFontRenderContext( )
@@ -577,7 +615,16 @@ public final class TextRenderer
     public Rectangle2D getBounds( /*@Nonnull*/ final String text )
     {
         Check.notNull( text, "Text cannot be null" );
-        return glyphProducer.findBounds( text );
+
+        // Laying out a string is expensive, and callers tend to measure the same labels every frame
+        Rectangle2D bounds = boundsCache.get( text );
+        if ( bounds == null )
+        {
+            bounds = glyphProducer.findBounds( text ).getBounds2D( );
+            boundsCache.put( text, bounds );
+        }
+
+        return bounds.getBounds2D( );
     }
 
     /**
@@ -588,7 +635,110 @@ public final class TextRenderer
      */
     public float getCharWidth( final char c )
     {
-        return glyphProducer.findAdvance( c );
+        if ( c < latinAdvances.length )
+        {
+            float advance = latinAdvances[c];
+            if ( Float.isNaN( advance ) )
+            {
+                advance = glyphProducer.findAdvance( c );
+                latinAdvances[c] = advance;
+            }
+            return advance;
+        }
+
+        Float advance = otherAdvances.get( c );
+        if ( advance == null )
+        {
+            advance = glyphProducer.findAdvance( c );
+            otherAdvances.put( c, advance );
+        }
+        return advance;
+    }
+
+    /**
+     * Finds the longest prefix of a string which, followed by a suffix (such as an ellipsis),
+     * is narrower than a given width.
+     *
+     * <p>
+     * The prefix length is estimated by binary search over cumulative character advances, and
+     * then adjusted by measuring the bounds of nearby candidates, so only a few strings are laid
+     * out regardless of the length of the text.
+     *
+     * @param text Full text, not null
+     * @param suffix Text to append to the prefix, not null
+     * @param maxWidth Width the result must be narrower than
+     * @return Prefix of text followed by suffix, or an empty string if even the suffix alone is too wide
+     * @throws NullPointerException if text or suffix is null
+     */
+    /*@Nonnull*/
+    public String truncateToWidth( /*@Nonnull*/ final String text, /*@Nonnull*/ final String suffix, final double maxWidth )
+    {
+        Check.notNull( text, "Text cannot be null" );
+        Check.notNull( suffix, "Suffix cannot be null" );
+
+        final int n = text.length( );
+
+        // Cumulative advances of the text
+        final float[] advances = new float[n + 1];
+        for ( int i = 0; i < n; i++ )
+        {
+            advances[i + 1] = advances[i] + getCharWidth( text.charAt( i ) );
+        }
+
+        float suffixAdvance = 0;
+        for ( int i = 0; i < suffix.length( ); i++ )
+        {
+            suffixAdvance += getCharWidth( suffix.charAt( i ) );
+        }
+
+        // Largest prefix whose estimated width fits
+        int lo = 0;
+        int hi = n;
+        while ( lo < hi )
+        {
+            final int mid = ( lo + hi + 1 ) >>> 1;
+            if ( advances[mid] + suffixAdvance < maxWidth )
+            {
+                lo = mid;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+
+        // Correct the estimate using actual bounds
+        int k = lo;
+        while ( k >= 0 && !fitsWidth( text, k, suffix, maxWidth ) )
+        {
+            k--;
+        }
+
+        if ( k < 0 )
+        {
+            return "";
+        }
+
+        while ( k < n && fitsWidth( text, k + 1, suffix, maxWidth ) )
+        {
+            k++;
+        }
+
+        return text.substring( 0, k ) + suffix;
+    }
+
+    private boolean fitsWidth( final String text, final int prefixLength, final String suffix, final double maxWidth )
+    {
+        // Bypass the bounds cache: most candidates are never drawn, and would evict labels that are actually drawn
+        return glyphProducer.findBounds( text.substring( 0, prefixLength ) + suffix ).getWidth( ) < maxWidth;
+    }
+
+    /*@Nonnull*/
+    private static float[] newNaNs( final int n )
+    {
+        final float[] a = new float[n];
+        Arrays.fill( a, Float.NaN );
+        return a;
     }
 
     /**
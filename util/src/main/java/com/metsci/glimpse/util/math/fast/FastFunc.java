@@ -26,6 +26,8 @@
  */
 package com.metsci.glimpse.util.math.fast;
 
+import java.nio.FloatBuffer;
+
 /**
  * A function that precomputes its values for speed.  Intended
  * to accelerate the evaluation of transcendental functions in cases
@@ -55,9 +57,18 @@ public abstract class FastFunc
     /** - min * invdx + 0.5 */
     private final double b;
 
+    /** 1 / dx, as a float */
+    private final float invdxFloat;
+
+    /** - min * invdx + 0.5, as a float */
+    private final float bFloat;
+
     /** computed samples of function */
     protected double[] f;
 
+    /** computed samples of function, rounded to float */
+    protected float[] fFloat;
+
     /**
      * Main Constructor in which the values of this function are computed
      *
@@ -74,6 +85,8 @@ public abstract class FastFunc
         this.dx = ( max - min ) / ( nSamples - 1 );
         this.invdx = 1 / dx;
         this.b = -min * invdx + 0.5;
+        this.invdxFloat = ( float ) invdx;
+        this.bFloat = ( float ) b;
 
         precompute( );
     }
@@ -89,6 +102,12 @@ public abstract class FastFunc
         }
 
         this.f[nSamples - 1] = f( max );
+
+        fFloat = new float[nSamples];
+        for ( int i = 0; i < nSamples; i++ )
+        {
+            fFloat[i] = ( float ) f[i];
+        }
     }
 
     /**
@@ -124,6 +143,66 @@ public abstract class FastFunc
         }
     }
 
+    /**
+     * Float-precision version of {@link #lookup(double)}, using the float table.
+     *
+     * @param x function argument (you must ensure this is in range)
+     * @return value of the function
+     */
+    public float lookup( float x )
+    {
+        return fFloat[( int ) ( x * invdxFloat + bFloat )];
+    }
+
+    /**
+     * Bulk version of {@link #lookup(double)}, for indices [from,to) of x and dest.
+     * The loop body has no branches or calls, so the JIT can unroll it and vectorize
+     * the index arithmetic.
+     */
+    public void lookup( double[] x, double[] dest, int from, int to )
+    {
+        double[] f = this.f;
+        double invdx = this.invdx;
+        double b = this.b;
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = f[( int ) ( x[i] * invdx + b )];
+        }
+    }
+
+    /**
+     * Bulk version of {@link #lookup(float)}, for indices [from,to) of x and dest.
+     */
+    public void lookup( float[] x, float[] dest, int from, int to )
+    {
+        float[] f = this.fFloat;
+        float invdx = this.invdxFloat;
+        float b = this.bFloat;
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = f[( int ) ( x[i] * invdx + b )];
+        }
+    }
+
+    /**
+     * Bulk version of {@link #lookup(float)}, from the remaining values of x to the
+     * remaining values of dest. Uses absolute gets and puts, so does not modify the
+     * positions of either buffer.
+     */
+    public void lookup( FloatBuffer x, FloatBuffer dest )
+    {
+        float[] f = this.fFloat;
+        float invdx = this.invdxFloat;
+        float b = this.bFloat;
+        int xFirst = x.position( );
+        int destFirst = dest.position( );
+        int n = x.remaining( );
+        for ( int i = 0; i < n; i++ )
+        {
+            dest.put( destFirst + i, f[( int ) ( x.get( xFirst + i ) * invdx + b )] );
+        }
+    }
+
     /**
      * Computes the actual value of the function at x.
      *
@@ -139,4 +218,96 @@ public abstract class FastFunc
         return lookup( x );
     }
 
+    /**
+     * Returns {@link #lookup(float)} if x is in range, or {@code outOfRange} otherwise.
+     * Building block for subclasses' float-precision {@code evaluate} methods.
+     */
+    protected float lookupOrDefault( float x, float outOfRange )
+    {
+        return ( x >= min && x <= max ) ? lookup( x ) : outOfRange;
+    }
+
+    /**
+     * Bulk version of {@link #lookup(double)} that writes {@code outOfRange} for arguments
+     * outside [min,max]. Building block for subclasses' bulk {@code evaluate} methods.
+     */
+    protected void lookupOrDefault( double[] x, double[] dest, int from, int to, double outOfRange )
+    {
+        double[] f = this.f;
+        double min = this.min;
+        double max = this.max;
+        double invdx = this.invdx;
+        double b = this.b;
+        for ( int i = from; i < to; i++ )
+        {
+            double xi = x[i];
+            dest[i] = ( xi >= min && xi <= max ) ? f[( int ) ( xi * invdx + b )] : outOfRange;
+        }
+    }
+
+    /**
+     * Float-precision version of {@link #lookupOrDefault(double[], double[], int, int, double)}.
+     */
+    protected void lookupOrDefault( float[] x, float[] dest, int from, int to, float outOfRange )
+    {
+        float[] f = this.fFloat;
+        float min = ( float ) this.min;
+        float max = ( float ) this.max;
+        float invdx = this.invdxFloat;
+        float b = this.bFloat;
+        for ( int i = from; i < to; i++ )
+        {
+            float xi = x[i];
+            dest[i] = ( xi >= min && xi <= max ) ? f[( int ) ( xi * invdx + b )] : outOfRange;
+        }
+    }
+
+    /**
+     * Float-precision version of {@link #evaluate(double)}. Subclasses that override
+     * {@link #evaluate(double)} must also override this method to use the float table;
+     * by default it delegates to {@link #evaluate(double)}.
+     */
+    public float evaluate( float x )
+    {
+        return ( float ) evaluate( ( double ) x );
+    }
+
+    /**
+     * Bulk version of {@link #evaluate(double)}, for indices [from,to) of x and dest.
+     */
+    public void evaluate( double[] x, double[] dest, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = evaluate( x[i] );
+        }
+    }
+
+    /**
+     * Bulk version of {@link #evaluate(float)}, for indices [from,to) of x and dest.
+     */
+    public void evaluate( float[] x, float[] dest, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = evaluate( x[i] );
+        }
+    }
+
+    /**
+     * Bulk version of {@link #evaluate(float)}, from the remaining values of x to the
+     * remaining values of dest. Uses absolute gets and puts, so does not modify the
+     * positions of either buffer.
+     */
+    public void evaluate( FloatBuffer x, FloatBuffer dest )
+    {
+        int xFirst = x.position( );
+        int destFirst = dest.position( );
+        int n = x.remaining( );
+        for ( int i = 0; i < n; i++ )
+        {
+            dest.put( destFirst + i, evaluate( x.get( xFirst + i ) ) );
+        }
+    }
+
 }
@@ -78,6 +78,46 @@ public abstract class FastFuncUnboundedDomain extends FastFunc
         }
     }
 
+    @Override
+    public float evaluate( float x )
+    {
+        if ( x == Float.POSITIVE_INFINITY )
+        {
+            return ( float ) this.gPositiveInfinity;
+        }
+        else if ( x == Float.NEGATIVE_INFINITY )
+        {
+            return ( float ) this.gNegativeInfinity;
+        }
+        else
+        {
+            return lookupOrDefault( x / ( 1f + Math.abs( x ) ), Float.NaN );
+        }
+    }
+
+    @Override
+    public void evaluate( double[] x, double[] dest, int from, int to )
+    {
+        // Map onto [-1,1] in place, then look up -- infinities map to +/-1, the ends of the table
+        for ( int i = from; i < to; i++ )
+        {
+            double xi = x[i];
+            dest[i] = ( xi == Double.POSITIVE_INFINITY ? 1.0 : ( xi == Double.NEGATIVE_INFINITY ? -1.0 : xi / ( 1.0 + Math.abs( xi ) ) ) );
+        }
+        lookupOrDefault( dest, dest, from, to, Double.NaN );
+    }
+
+    @Override
+    public void evaluate( float[] x, float[] dest, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            float xi = x[i];
+            dest[i] = ( xi == Float.POSITIVE_INFINITY ? 1f : ( xi == Float.NEGATIVE_INFINITY ? -1f : xi / ( 1f + Math.abs( xi ) ) ) );
+        }
+        lookupOrDefault( dest, dest, from, to, Float.NaN );
+    }
+
     /**
      * Overridden with function to be represented.
      */
@@ -110,4 +110,22 @@ public class FastGaussian extends FastFunc
         }
     }
 
+    @Override
+    public float evaluate( float x )
+    {
+        return lookupOrDefault( x, 0f );
+    }
+
+    @Override
+    public void evaluate( double[] x, double[] dest, int from, int to )
+    {
+        lookupOrDefault( x, dest, from, to, 0.0 );
+    }
+
+    @Override
+    public void evaluate( float[] x, float[] dest, int from, int to )
+    {
+        lookupOrDefault( x, dest, from, to, 0f );
+    }
+
 }
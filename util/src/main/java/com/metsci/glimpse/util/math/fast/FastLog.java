@@ -94,4 +94,67 @@ public class FastLog extends FastFunc
     {
         return log2( x ) * LOG10_2;
     }
+
+    /**
+     * Float-precision version of {@link #log2(double)}, using the float table.
+     */
+    public float log2( float x )
+    {
+        int bits = Float.floatToRawIntBits( x );
+        int exponent = ( ( bits & 0x7f800000 ) >> 23 ) - 127;
+        float xx = Float.intBitsToFloat( ( bits & 0x007fffff ) | 0x3f800000 );
+        return exponent + lookup( xx );
+    }
+
+    @Override
+    public float evaluate( float x )
+    {
+        return log2( x ) * ( float ) LN_2;
+    }
+
+    /**
+     * Bulk version of {@link #log2(double)}, for indices [from,to) of x and dest.
+     */
+    public void log2( double[] x, double[] dest, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            long bits = Double.doubleToRawLongBits( x[i] );
+            long exponent = ( ( bits & 0x7ff0000000000000L ) >> 52 ) - 1023;
+            double xx = Double.longBitsToDouble( ( bits & 0x000fffffffffffffL ) | 0x3ff0000000000000L );
+            dest[i] = exponent + lookup( xx );
+        }
+    }
+
+    /**
+     * Bulk version of {@link #log2(float)}, for indices [from,to) of x and dest.
+     */
+    public void log2( float[] x, float[] dest, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = log2( x[i] );
+        }
+    }
+
+    @Override
+    public void evaluate( double[] x, double[] dest, int from, int to )
+    {
+        log2( x, dest, from, to );
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] *= LN_2;
+        }
+    }
+
+    @Override
+    public void evaluate( float[] x, float[] dest, int from, int to )
+    {
+        log2( x, dest, from, to );
+        float ln2 = ( float ) LN_2;
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] *= ln2;
+        }
+    }
 }
@@ -41,4 +41,22 @@ public final class FastSin extends FastFunc
     {
         return Math.sin( x );
     }
+
+    @Override
+    public float evaluate( float x )
+    {
+        return lookupOrDefault( x, Float.NaN );
+    }
+
+    @Override
+    public void evaluate( double[] x, double[] dest, int from, int to )
+    {
+        lookupOrDefault( x, dest, from, to, Double.NaN );
+    }
+
+    @Override
+    public void evaluate( float[] x, float[] dest, int from, int to )
+    {
+        lookupOrDefault( x, dest, from, to, Float.NaN );
+    }
 }
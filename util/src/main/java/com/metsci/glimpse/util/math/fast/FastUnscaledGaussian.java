@@ -50,6 +50,21 @@ public class FastUnscaledGaussian extends FastFunc
         return ( x < min || x > max ) ? 0.0 : lookup( x );
     }
 
+    public float evaluate( float x )
+    {
+        return lookupOrDefault( x, 0f );
+    }
+
+    public void evaluate( double[] x, double[] dest, int from, int to )
+    {
+        lookupOrDefault( x, dest, from, to, 0.0 );
+    }
+
+    public void evaluate( float[] x, float[] dest, int from, int to )
+    {
+        lookupOrDefault( x, dest, from, to, 0f );
+    }
+
     public static FastUnscaledGaussian createFastUnscaledGaussian( int numSamples )
     {
         double z = exp( 1.0 ) * numSamples * numSamples;
@@ -48,4 +48,39 @@ public interface Generator
      */
     int nextBits( int numBits );
 
+    /**
+     * Fills {@code dest} with uniform draws on [0,1). Gives the same values as calling
+     * {@link #nextDouble()} once per element, but implementations may do it faster.
+     */
+    default void fill( double[] dest )
+    {
+        fill( dest, 0, dest.length );
+    }
+
+    /**
+     * Fills indices {@code [from,to)} of {@code dest} with uniform draws on [0,1). Gives
+     * the same values as calling {@link #nextDouble()} once per element, but implementations
+     * may do it faster.
+     */
+    default void fill( double[] dest, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = nextDouble( );
+        }
+    }
+
+    /**
+     * Fills indices {@code [from,to)} of {@code dest} with integers drawn uniformly between
+     * 0 (inclusive) and n (exclusive). Gives the same values as calling {@link #nextInt(int)}
+     * once per element.
+     */
+    default void fill( int[] dest, int from, int to, int n )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = nextInt( n );
+        }
+    }
+
 }
@@ -41,4 +41,28 @@ public interface StochasticEngine
 
     Generator getGenerator( );
 
+    /**
+     * Returns a new engine whose stream does not overlap this engine's, and advances
+     * this engine past the returned stream. The result depends only on this engine's
+     * state, so a fixed seed and a fixed sequence of splits give the same streams on
+     * every run -- e.g. one engine per parallel worker, split off up front in worker order.
+     */
+    default StochasticEngine split( )
+    {
+        throw new UnsupportedOperationException( getClass( ).getName( ) + " does not support splitting" );
+    }
+
+    /**
+     * Convenience method that calls {@link #split()} {@code count} times.
+     */
+    default StochasticEngine[] split( int count )
+    {
+        StochasticEngine[] engines = new StochasticEngine[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            engines[i] = this.split( );
+        }
+        return engines;
+    }
+
 }
@@ -34,6 +34,17 @@ package com.metsci.glimpse.util.math.stochastic;
  */
 public final class StochasticEngineLcp implements StochasticEngine
 {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = ( 1L << 48 ) - 1;
+
+    /**
+     * Number of steps between the streams returned by successive calls to {@link #split()}.
+     * Each {@link Generator#nextDouble()} takes 2 steps, so a split stream can supply 2^35
+     * doubles before running into the next one, and the 2^48 period allows 4096 splits.
+     */
+    public static final long SPLIT_STEPS = 1L << 36;
+
     private long _state;
     private final Generator _generator;
 
@@ -57,10 +68,50 @@ public final class StochasticEngineLcp implements StochasticEngine
 
     protected final int next( int bits )
     {
-        _state = ( _state*0x5DEECE66DL + 0xBL ) & ( ( 1L << 48 ) - 1 );
+        _state = ( _state*MULTIPLIER + ADDEND ) & MASK;
         return ( int ) ( _state >>> ( 48 - bits ) );
     }
 
+    /**
+     * Advances the state by {@code steps} calls to {@link #next(int)}, in O(log steps) time.
+     */
+    public final void jump( long steps )
+    {
+        if ( steps < 0 )
+        {
+            throw new IllegalArgumentException( "Cannot jump backwards: steps = " + steps );
+        }
+
+        // Compose the affine step x -> a*x + c (mod 2^48) by repeated squaring
+        long mulAcc = 1;
+        long addAcc = 0;
+        long mul = MULTIPLIER;
+        long add = ADDEND;
+        for ( long k = steps; k != 0; k >>>= 1 )
+        {
+            if ( ( k & 1 ) != 0 )
+            {
+                mulAcc = ( mulAcc*mul ) & MASK;
+                addAcc = ( addAcc*mul + add ) & MASK;
+            }
+            add = ( ( mul + 1 )*add ) & MASK;
+            mul = ( mul*mul ) & MASK;
+        }
+        _state = ( mulAcc*_state + addAcc ) & MASK;
+    }
+
+    /**
+     * Returns an engine starting at this engine's current state, then jumps this engine
+     * ahead by {@link #SPLIT_STEPS}.
+     */
+    @Override
+    public final StochasticEngineLcp split( )
+    {
+        StochasticEngineLcp engine = new StochasticEngineLcp( new LcpState( _state ) );
+        jump( SPLIT_STEPS );
+        return engine;
+    }
+
     public static StochasticEngineLcp createEngine( long lcpStateSeed )
     {
         LcpState state = new LcpState( lcpStateSeed );
@@ -120,5 +171,21 @@ public final class StochasticEngineLcp implements StochasticEngine
         {
             return next( numBits );
         }
+
+        @Override
+        public final void fill( double[] dest, int from, int to )
+        {
+            // Same arithmetic as nextDouble, but with the state kept in a local
+            long state = _state;
+            for ( int i = from; i < to; i++ )
+            {
+                state = ( state*MULTIPLIER + ADDEND ) & MASK;
+                long hi = state >>> ( 48 - 26 );
+                state = ( state*MULTIPLIER + ADDEND ) & MASK;
+                long lo = state >>> ( 48 - 27 );
+                dest[i] = ( ( hi << 27 ) + lo ) / ( double ) ( 1L << 53 );
+            }
+            _state = state;
+        }
     }
 }
@@ -49,16 +49,34 @@ public final class StochasticEngineMersenne implements StochasticEngine
     private transient int[] mt;
     private transient int mti;
 
+    /**
+     * Number of words drawn from a parent engine to seed each engine returned by {@link #split()}.
+     */
+    private final static int SPLIT_KEY_LENGTH = 8;
+
     private StochasticEngineMersenne( int seed )
     {
         setSeed( seed );
         _generator = new GeneratorImpl( );
     }
 
+    private StochasticEngineMersenne( int[] seedKey )
+    {
+        setSeed( seedKey );
+        _generator = new GeneratorImpl( );
+    }
+
+    public StochasticEngineMersenne( MersenneState state )
+    {
+        mt = state._mt.clone( );
+        mti = state._mti;
+        _generator = new GeneratorImpl( );
+    }
+
     @Override
-    public final State getState( )
+    public final MersenneState getState( )
     {
-        return null;
+        return new MersenneState( mt, mti );
     }
 
     @Override
@@ -72,6 +90,33 @@ public final class StochasticEngineMersenne implements StochasticEngine
         return new StochasticEngineMersenne( seed );
     }
 
+    /**
+     * Seeds the full state from an array of words, like {@code init_by_array} in the
+     * original C-program.
+     */
+    public static StochasticEngineMersenne createEngine( int[] seedKey )
+    {
+        return new StochasticEngineMersenne( seedKey );
+    }
+
+    /**
+     * Returns an engine seeded from the next few words of this engine's stream.
+     * <p>
+     * MT19937 has no cheap jump-ahead, so the streams are not provably disjoint. With a
+     * period of 2^19937-1 and a 256-bit seed key per split, overlap is not a practical
+     * concern.
+     */
+    @Override
+    public final StochasticEngineMersenne split( )
+    {
+        int[] seedKey = new int[ SPLIT_KEY_LENGTH ];
+        for ( int i = 0; i < seedKey.length; i++ )
+        {
+            seedKey[ i ] = next( 32 );
+        }
+        return new StochasticEngineMersenne( seedKey );
+    }
+
     private final void setSeed( int seed )
     {
         mt = new int[ N ];
@@ -83,6 +128,43 @@ public final class StochasticEngineMersenne implements StochasticEngine
         }
     }
 
+    private final void setSeed( int[] seedKey )
+    {
+        setSeed( 19650218 );
+
+        int i = 1;
+        int j = 0;
+        for ( int k = Math.max( N, seedKey.length ); k > 0; k-- )
+        {
+            mt[ i ] = ( mt[ i ] ^ ( ( mt[ i - 1 ] ^ ( mt[ i - 1 ] >>> 30 ) ) * 1664525 ) ) + seedKey[ j ] + j;
+            i++;
+            j++;
+            if ( i >= N )
+            {
+                mt[ 0 ] = mt[ N - 1 ];
+                i = 1;
+            }
+            if ( j >= seedKey.length )
+            {
+                j = 0;
+            }
+        }
+
+        for ( int k = N - 1; k > 0; k-- )
+        {
+            mt[ i ] = ( mt[ i ] ^ ( ( mt[ i - 1 ] ^ ( mt[ i - 1 ] >>> 30 ) ) * 1566083941 ) ) - i;
+            i++;
+            if ( i >= N )
+            {
+                mt[ 0 ] = mt[ N - 1 ];
+                i = 1;
+            }
+        }
+
+        // MSB is 1, assuring non-zero initial state
+        mt[ 0 ] = 0x80000000;
+    }
+
     protected final int next( int bits )
     {
         int y, kk;
@@ -117,6 +199,24 @@ public final class StochasticEngineMersenne implements StochasticEngine
         return ( y >>> ( 32 - bits ) );
     }
 
+    public static class MersenneState implements StochasticEngine.State
+    {
+        private final int[] _mt;
+        private final int _mti;
+
+        public MersenneState( int[] mt, int mti )
+        {
+            _mt = mt.clone( );
+            _mti = mti;
+        }
+
+        @Override
+        public StochasticEngineMersenne intializeEngine( )
+        {
+            return new StochasticEngineMersenne( this );
+        }
+    }
+
     private final class GeneratorImpl implements Generator
     {
         @Override
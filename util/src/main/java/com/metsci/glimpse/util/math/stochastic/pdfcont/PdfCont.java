@@ -41,4 +41,27 @@ public interface PdfCont extends Pdf
      */
     double draw( Generator g );
 
+    /**
+     * Fills {@code dest} with random draws from this PDF.
+     */
+    default void draw( Generator g, double[] dest )
+    {
+        draw( g, dest, 0, dest.length );
+    }
+
+    /**
+     * Fills indices {@code [from,to)} of {@code dest} with random draws from this PDF.
+     * <p>
+     * Implementations may consume the generator differently than repeated calls to
+     * {@link #draw(Generator)} would, so the values are not necessarily the same --
+     * but they are deterministic for a given generator state.
+     */
+    default void draw( Generator g, double[] dest, int from, int to )
+    {
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = draw( g );
+        }
+    }
+
 }
@@ -49,6 +49,18 @@ public class PdfContExponential implements PdfCont
         return -Math.log( 1.0 - g.nextDouble( ) ) * _invLambda;
     }
 
+    @Override
+    public void draw( Generator g, double[] dest, int from, int to )
+    {
+        g.fill( dest, from, to );
+
+        double invLambda = _invLambda;
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = -Math.log( 1.0 - dest[i] ) * invLambda;
+        }
+    }
+
     @Override
     public int hashCode( )
     {
@@ -60,6 +60,36 @@ public class PdfContGaussianBoxMuller implements PdfCont
         return _mean + _stdev * v1 * norm;
     }
 
+    /**
+     * Uses both values from each accepted pair, so draws half as many uniforms as
+     * repeated calls to {@link #draw(Generator)}.
+     */
+    @Override
+    public void draw( Generator g, double[] dest, int from, int to )
+    {
+        double mean = _mean;
+        double stdev = _stdev;
+        int i = from;
+        while ( i < to )
+        {
+            double v1, v2, s;
+            do
+            {
+                v1 = 2 * g.nextDouble( ) - 1; // between -1.0 and 1.0
+                v2 = 2 * g.nextDouble( ) - 1; // between -1.0 and 1.0
+                s = v1 * v1 + v2 * v2;
+            }
+            while ( s >= 1 || s == 0 );
+
+            double norm = stdev * Math.sqrt( -2 * Math.log( s ) / s );
+            dest[i++] = mean + v1 * norm;
+            if ( i < to )
+            {
+                dest[i++] = mean + v2 * norm;
+            }
+        }
+    }
+
     @Override
     public int hashCode( )
     {
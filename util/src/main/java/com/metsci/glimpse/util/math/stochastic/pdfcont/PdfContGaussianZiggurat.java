@@ -113,6 +113,60 @@ public class PdfContGaussianZiggurat implements PdfCont
         return _mean + sign * _stdev * x;
     }
 
+    /**
+     * Takes the step and the 24-bit sample from a single 32-bit draw, instead of separate
+     * {@link Generator#nextInt(int)} calls, so draws half as many words as repeated calls
+     * to {@link #draw(Generator)} in the common case.
+     */
+    @Override
+    public void draw( Generator g, double[] dest, int from, int to )
+    {
+        double mean = _mean;
+        double stdev = _stdev;
+        for ( int k = from; k < to; k++ )
+        {
+            int i, j;
+            double sign, x, y;
+
+            while ( true )
+            {
+                // low 8 bits choose the step and sign, high 24 bits are the sample
+                int bits = g.nextBits( 32 );
+                i = bits & 0x7f;
+                j = bits >>> 8;
+                sign = ( ( bits & 0x80 ) == 128 ) ? 1 : -1;
+
+                x = j * wtab[ i ];
+                if ( j < ktab[ i ] )
+                    break;
+
+                if ( i < 127 )
+                {
+                    double y0, y1, U1;
+                    y0 = ytab[ i ];
+                    y1 = ytab[ i + 1 ];
+                    U1 = g.nextDouble( );
+                    y = y1 + ( y0 - y1 ) * U1;
+                }
+                else
+                {
+                    double U1, U2;
+                    U1 = 1.0 - g.nextDouble( );
+                    U2 = g.nextDouble( );
+                    x = PARAM_R - Math.log( U1 ) / PARAM_R;
+                    y = Math.exp( -PARAM_R * ( x - 0.5 * PARAM_R ) ) * U2;
+                }
+
+                if ( y < Math.exp( -0.5 * x * x ) )
+                {
+                    break;
+                }
+            }
+
+            dest[ k ] = mean + sign * stdev * x;
+        }
+    }
+
     /* position of right-most step */
     private final static double PARAM_R = 3.44428647676;
 
@@ -57,6 +57,19 @@ public class PdfContGumbel implements PdfCont
         return _mu - _beta * Math.log( -Math.log( g.nextDouble( ) ) );
     }
 
+    @Override
+    public void draw( Generator g, double[] dest, int from, int to )
+    {
+        g.fill( dest, from, to );
+
+        double mu = _mu;
+        double beta = _beta;
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = mu - beta * Math.log( -Math.log( dest[i] ) );
+        }
+    }
+
     @Override
     public int hashCode( )
     {
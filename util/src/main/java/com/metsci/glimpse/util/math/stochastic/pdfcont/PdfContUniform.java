@@ -60,6 +60,19 @@ public class PdfContUniform implements PdfCont
         return _min + ( _max - _min ) * g.nextDouble( );
     }
 
+    @Override
+    public void draw( Generator g, double[] dest, int from, int to )
+    {
+        g.fill( dest, from, to );
+
+        double min = _min;
+        double span = _max - _min;
+        for ( int i = from; i < to; i++ )
+        {
+            dest[i] = min + span * dest[i];
+        }
+    }
+
     @Override
     public int hashCode( )
     {
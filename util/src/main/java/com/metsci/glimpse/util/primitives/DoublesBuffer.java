@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.primitives;
+
+import static java.lang.Math.multiplyExact;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import com.metsci.glimpse.util.io.MappedFile;
+
+/**
+ * Fixed-length sequence backed by a {@link DoubleBuffer}, typically a direct buffer
+ * or a region of a {@link MappedFile}. Unlike {@link DoublesArray}, the values can be
+ * handed to NIO and OpenGL APIs via {@link #buffer()} without first being copied into
+ * a separate direct buffer.
+ */
+public class DoublesBuffer implements Doubles
+{
+
+    public final DoubleBuffer b;
+    public final int n;
+
+    // Instantiation
+
+    public static DoublesBuffer allocateDirect( int n )
+    {
+        ByteBuffer bytes = ByteBuffer.allocateDirect( multiplyExact( n, Double.BYTES ) );
+        bytes.order( ByteOrder.nativeOrder( ) );
+        return new DoublesBuffer( bytes.asDoubleBuffer( ) );
+    }
+
+    /**
+     * Wraps {@code n} values starting at byte {@code position} of the mapped file. The
+     * returned sequence is writable if the file was mapped writable. It keeps the file
+     * reachable, but will be invalid once {@link MappedFile#dispose()} has been called.
+     */
+    public static DoublesBuffer mapped( MappedFile file, long position, int n )
+    {
+        return new DoublesBuffer( file.slice( position, multiplyExact( n, Double.BYTES ) ).asDoubleBuffer( ) );
+    }
+
+    /**
+     * For efficiency, does <em>not</em> copy the buffer arg. The sequence is a view of
+     * the buffer's remaining values at the time of the call; later changes to the buffer's
+     * position or limit do not affect it.
+     */
+    public DoublesBuffer( DoubleBuffer b )
+    {
+        this.b = b.slice( );
+        this.n = this.b.remaining( );
+    }
+
+    // Accessors
+
+    @Override
+    public double v( int i )
+    {
+        return b.get( i );
+    }
+
+    @Override
+    public int n( )
+    {
+        return n;
+    }
+
+    /**
+     * Returns a new view of the values, with position 0 and limit {@link #n()}. The
+     * view shares content with this sequence, but has its own position and limit, so
+     * it can be passed to methods that consume a buffer's remaining values.
+     */
+    public DoubleBuffer buffer( )
+    {
+        return b.duplicate( );
+    }
+
+    /**
+     * Returns a new view of values {@code [i,i+c)}, with position 0 and limit {@code c}.
+     */
+    public DoubleBuffer buffer( int i, int c )
+    {
+        DoubleBuffer dup = b.duplicate( );
+        dup.limit( i + c );
+        dup.position( i );
+        return dup.slice( );
+    }
+
+    public boolean isDirect( )
+    {
+        return b.isDirect( );
+    }
+
+    public boolean isReadOnly( )
+    {
+        return b.isReadOnly( );
+    }
+
+    @Override
+    public void copyTo( int i, double[] dest, int iDest, int c )
+    {
+        buffer( i, c ).get( dest, iDest, c );
+    }
+
+    @Override
+    public void copyTo( int i, DoubleBuffer dest, int c )
+    {
+        dest.put( buffer( i, c ) );
+    }
+
+    @Override
+    public void copyTo( DoubleBuffer dest )
+    {
+        dest.put( buffer( ) );
+    }
+
+    @Override
+    public double[] copyOf( int i, int c )
+    {
+        double[] copy = new double[c];
+        copyTo( i, copy, 0, c );
+        return copy;
+    }
+
+    @Override
+    public double[] copyOf( )
+    {
+        return copyOf( 0, n );
+    }
+
+    /**
+     * Returns a heap-backed copy.
+     */
+    @Override
+    public DoublesArray copy( )
+    {
+        return new DoublesArray( copyOf( ) );
+    }
+
+    @Override
+    public boolean isEmpty( )
+    {
+        return ( n == 0 );
+    }
+
+    @Override
+    public double first( )
+    {
+        return b.get( 0 );
+    }
+
+    @Override
+    public double last( )
+    {
+        return b.get( n - 1 );
+    }
+
+    // Mutators
+
+    public void set( int i, double v )
+    {
+        b.put( i, v );
+    }
+
+    public void set( int i, double[] vs )
+    {
+        set( i, vs, 0, vs.length );
+    }
+
+    public void set( int i, double[] vs, int from, int to )
+    {
+        int c = to - from;
+        buffer( i, c ).put( vs, from, c );
+    }
+
+    public void set( int i, Doubles vs )
+    {
+        vs.copyTo( 0, buffer( i, vs.n( ) ), vs.n( ) );
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.primitives;
+
+import static java.lang.Math.min;
+import static java.lang.Math.multiplyExact;
+import static java.lang.Math.toIntExact;
+
+import java.nio.IntBuffer;
+
+import com.metsci.glimpse.util.io.MappedFile;
+
+/**
+ * Fixed-length sequence with 64-bit indexing, for datasets too large for a single
+ * array or NIO buffer. Values are stored in a list of {@link IntsBuffer} segments,
+ * each holding {@code 2^segmentShift} values (except the last, which may be shorter).
+ * <p>
+ * Each segment implements {@link Ints}, so code that accepts the existing interfaces
+ * can process a large sequence segment by segment, and {@link #slice(long, int)} gives
+ * zero-copy access to any range that does not straddle a segment boundary.
+ */
+public class IntsSegmented
+{
+
+    /**
+     * Largest segment shift for which a segment still fits in a single {@link java.nio.ByteBuffer}.
+     */
+    public static final int MAX_SEGMENT_SHIFT = 30 - Integer.numberOfTrailingZeros( Integer.BYTES );
+
+    public final IntsBuffer[] segments;
+    public final int segmentShift;
+    public final long segmentMask;
+    public final long n;
+
+    // Instantiation
+
+    public static IntsSegmented allocateDirect( long n )
+    {
+        return allocateDirect( n, MAX_SEGMENT_SHIFT );
+    }
+
+    public static IntsSegmented allocateDirect( long n, int segmentShift )
+    {
+        IntsBuffer[] segments = new IntsBuffer[segmentCount( n, segmentShift )];
+        for ( int k = 0; k < segments.length; k++ )
+        {
+            segments[k] = IntsBuffer.allocateDirect( segmentLength( n, segmentShift, k ) );
+        }
+        return new IntsSegmented( segments, segmentShift, n );
+    }
+
+    /**
+     * Wraps {@code n} values starting at byte {@code position} of the mapped file. See
+     * {@link IntsBuffer#mapped(MappedFile, long, int)} for lifecycle caveats.
+     */
+    public static IntsSegmented mapped( MappedFile file, long position, long n )
+    {
+        return mapped( file, position, n, MAX_SEGMENT_SHIFT );
+    }
+
+    public static IntsSegmented mapped( MappedFile file, long position, long n, int segmentShift )
+    {
+        IntsBuffer[] segments = new IntsBuffer[segmentCount( n, segmentShift )];
+        for ( int k = 0; k < segments.length; k++ )
+        {
+            long segmentPosition = position + multiplyExact( ( ( long ) k ) << segmentShift, ( long ) Integer.BYTES );
+            segments[k] = IntsBuffer.mapped( file, segmentPosition, segmentLength( n, segmentShift, k ) );
+        }
+        return new IntsSegmented( segments, segmentShift, n );
+    }
+
+    protected static int segmentCount( long n, int segmentShift )
+    {
+        checkSegmentShift( segmentShift );
+        if ( n < 0 )
+        {
+            throw new IllegalArgumentException( "Illegal length: n = " + n );
+        }
+        return toIntExact( ( n + ( 1L << segmentShift ) - 1 ) >>> segmentShift );
+    }
+
+    protected static int segmentLength( long n, int segmentShift, int k )
+    {
+        return ( int ) min( 1L << segmentShift, n - ( ( ( long ) k ) << segmentShift ) );
+    }
+
+    protected static void checkSegmentShift( int segmentShift )
+    {
+        if ( segmentShift < 0 || segmentShift > MAX_SEGMENT_SHIFT )
+        {
+            throw new IllegalArgumentException( "Illegal segment shift: segment-shift = " + segmentShift + ", max = " + MAX_SEGMENT_SHIFT );
+        }
+    }
+
+    /**
+     * For efficiency, does <em>not</em> copy the segments arg. Every segment except the
+     * last must have exactly {@code 2^segmentShift} values.
+     */
+    public IntsSegmented( IntsBuffer[] segments, int segmentShift, long n )
+    {
+        checkSegmentShift( segmentShift );
+        this.segments = segments;
+        this.segmentShift = segmentShift;
+        this.segmentMask = ( 1L << segmentShift ) - 1;
+        this.n = n;
+    }
+
+    // Accessors
+
+    public int v( long i )
+    {
+        return segments[( int ) ( i >>> segmentShift )].b.get( ( int ) ( i & segmentMask ) );
+    }
+
+    public long n( )
+    {
+        return n;
+    }
+
+    public boolean isEmpty( )
+    {
+        return ( n == 0 );
+    }
+
+    public int segmentCount( )
+    {
+        return segments.length;
+    }
+
+    public IntsBuffer segment( int k )
+    {
+        return segments[k];
+    }
+
+    /**
+     * Returns a zero-copy view of values {@code [i,i+c)}. The range must not straddle
+     * a segment boundary; use {@link #copyTo(long, IntBuffer, int)} for ranges that may.
+     */
+    public IntsBuffer slice( long i, int c )
+    {
+        int k = ( int ) ( i >>> segmentShift );
+        int j = ( int ) ( i & segmentMask );
+        IntsBuffer segment = segments[k];
+        if ( j + c > segment.n )
+        {
+            throw new IllegalArgumentException( "Slice crosses a segment boundary: slice-first = " + i + ", slice-count = " + c + ", segment-size = " + ( 1L << segmentShift ) );
+        }
+        return new IntsBuffer( segment.buffer( j, c ) );
+    }
+
+    public void copyTo( long i, int[] dest, int iDest, int c )
+    {
+        while ( c > 0 )
+        {
+            IntsBuffer segment = segments[( int ) ( i >>> segmentShift )];
+            int j = ( int ) ( i & segmentMask );
+            int cSegment = min( c, segment.n - j );
+            segment.copyTo( j, dest, iDest, cSegment );
+            i += cSegment;
+            iDest += cSegment;
+            c -= cSegment;
+        }
+    }
+
+    public void copyTo( long i, IntBuffer dest, int c )
+    {
+        while ( c > 0 )
+        {
+            IntsBuffer segment = segments[( int ) ( i >>> segmentShift )];
+            int j = ( int ) ( i & segmentMask );
+            int cSegment = min( c, segment.n - j );
+            segment.copyTo( j, dest, cSegment );
+            i += cSegment;
+            c -= cSegment;
+        }
+    }
+
+    public int[] copyOf( long i, int c )
+    {
+        int[] copy = new int[c];
+        copyTo( i, copy, 0, c );
+        return copy;
+    }
+
+    // Mutators
+
+    public void set( long i, int v )
+    {
+        segments[( int ) ( i >>> segmentShift )].b.put( ( int ) ( i & segmentMask ), v );
+    }
+
+    public void set( long i, int[] vs )
+    {
+        set( i, vs, 0, vs.length );
+    }
+
+    public void set( long i, int[] vs, int from, int to )
+    {
+        while ( from < to )
+        {
+            IntsBuffer segment = segments[( int ) ( i >>> segmentShift )];
+            int j = ( int ) ( i & segmentMask );
+            int cSegment = min( to - from, segment.n - j );
+            segment.set( j, vs, from, from + cSegment );
+            i += cSegment;
+            from += cSegment;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.quadtree;
+
+import static java.lang.Math.max;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A quadtree of axis-aligned boxes. Each box is stored at its center point, and
+ * the tree keeps track of the largest half-width and half-height it has seen, so
+ * that an overlap search only has to widen the query window by those amounts and
+ * then test the candidates' actual extents.
+ *
+ * Works best when boxes are of similar size (e.g. tiles at a single zoom level).
+ */
+public abstract class QuadTreeBoxes<V> extends QuadTreeObjects<V>
+{
+
+    protected float maxHalfWidth;
+    protected float maxHalfHeight;
+
+    public QuadTreeBoxes( int maxBucketSize )
+    {
+        super( maxBucketSize );
+        this.maxHalfWidth = 0;
+        this.maxHalfHeight = 0;
+    }
+
+    public abstract float xMin( V v );
+
+    public abstract float xMax( V v );
+
+    public abstract float yMin( V v );
+
+    public abstract float yMax( V v );
+
+    @Override
+    public float x( V v )
+    {
+        return 0.5f * ( xMin( v ) + xMax( v ) );
+    }
+
+    @Override
+    public float y( V v )
+    {
+        return 0.5f * ( yMin( v ) + yMax( v ) );
+    }
+
+    @Override
+    public void add( V v )
+    {
+        float x = x( v );
+        float y = y( v );
+        if ( Float.isNaN( x ) || Float.isNaN( y ) ) return;
+
+        // Round up, so that the center-based search window is never too small
+        this.maxHalfWidth = max( this.maxHalfWidth, Math.nextUp( xMax( v ) - x ) );
+        this.maxHalfWidth = max( this.maxHalfWidth, Math.nextUp( x - xMin( v ) ) );
+        this.maxHalfHeight = max( this.maxHalfHeight, Math.nextUp( yMax( v ) - y ) );
+        this.maxHalfHeight = max( this.maxHalfHeight, Math.nextUp( y - yMin( v ) ) );
+
+        super.add( v );
+    }
+
+    public float maxHalfWidth( )
+    {
+        return this.maxHalfWidth;
+    }
+
+    public float maxHalfHeight( )
+    {
+        return this.maxHalfHeight;
+    }
+
+    public Collection<V> searchOverlapping( float xMin, float xMax, float yMin, float yMax )
+    {
+        Collection<V> results = new ArrayList<V>( );
+        searchOverlapping( xMin, xMax, yMin, yMax, results );
+        return results;
+    }
+
+    /**
+     * Finds boxes that overlap the specified window. Boxes that merely touch
+     * the window edge are included.
+     *
+     * @return The number of elements appended to {@code results}.
+     */
+    public int searchOverlapping( final float xMin, final float xMax, final float yMin, final float yMax, final Collection<V> results )
+    {
+        int nBefore = results.size( );
+
+        float xMinCenter = xMin - this.maxHalfWidth;
+        float xMaxCenter = xMax + this.maxHalfWidth;
+        float yMinCenter = yMin - this.maxHalfHeight;
+        float yMaxCenter = yMax + this.maxHalfHeight;
+
+        accumulate( xMinCenter, xMaxCenter, yMinCenter, yMaxCenter, new Accumulator<Collection<V>>( )
+        {
+            public void accumulate( Collection<V> bucket, float xMinBucket, float xMaxBucket, float yMinBucket, float yMaxBucket )
+            {
+                for ( V v : bucket )
+                {
+                    if ( xMax( v ) < xMin || xMin( v ) > xMax ) continue;
+                    if ( yMax( v ) < yMin || yMin( v ) > yMax ) continue;
+
+                    results.add( v );
+                }
+            }
+        } );
+
+        return results.size( ) - nBefore;
+    }
+
+}
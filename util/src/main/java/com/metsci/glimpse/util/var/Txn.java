@@ -43,6 +43,14 @@ public class Txn
         commonTxnMan.addToActiveTxn( member );
     }
 
+    /**
+     * Returns true if the current thread is inside a txn.
+     */
+    public static boolean isTxnActive( )
+    {
+        return commonTxnMan.isTxnActive( );
+    }
+
     public static void doTxn( Runnable task )
     {
         commonTxnMan.doTxn( task );
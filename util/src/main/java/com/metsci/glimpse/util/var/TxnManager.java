@@ -67,6 +67,16 @@ public class TxnManager
         }
     }
 
+    /**
+     * Returns true if the current thread is inside a txn. When it is not, members
+     * passed to {@link #addToActiveTxn(TxnMember)} are committed immediately, so
+     * callers can skip creating members that only matter for rollback.
+     */
+    public boolean isTxnActive( )
+    {
+        return ( this.activeTxns.get( ) != null );
+    }
+
     public void doTxn( Runnable task )
     {
         this.doTxn( ( ) ->
@@ -27,9 +27,10 @@
 package com.metsci.glimpse.util.var2;
 
 import static com.metsci.glimpse.util.var.Txn.addToActiveTxn;
+import static com.metsci.glimpse.util.var.Txn.isTxnActive;
 
+import java.util.Arrays;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.metsci.glimpse.util.var.Disposable;
 import com.metsci.glimpse.util.var.TxnMember;
@@ -49,13 +50,27 @@ public class ListenableBasic implements Listenable
         }
     }
 
+    protected static final ListenerEntry[] NO_ENTRIES = new ListenerEntry[0];
 
-    protected final CopyOnWriteArrayList<ListenerEntry> entries;
+
+    /**
+     * Sorted by {@link ListenerFlagSet#order}, with ties in the order they were added.
+     * Replaced (never modified) on add and remove, so {@link #fire()} can iterate over
+     * it without locking or allocating.
+     */
+    protected volatile ListenerEntry[] entries;
+
+    /**
+     * The member registered by {@link #fireCoalesced()} with the active txn, if it has
+     * not yet been committed or rolled back.
+     */
+    protected TxnMember pendingCoalesced;
 
 
     public ListenableBasic( )
     {
-        this.entries = new CopyOnWriteArrayList<>( );
+        this.entries = NO_ENTRIES;
+        this.pendingCoalesced = null;
     }
 
     @Override
@@ -72,36 +87,138 @@ public class ListenableBasic implements Listenable
             }
         }
 
-        this.entries.add( entry );
-        this.entries.sort( ( a, b ) ->
-        {
-            return ( a.flags.order - b.flags.order );
-        } );
+        this.addEntry( entry );
 
         return ( ) ->
         {
-            this.entries.remove( entry );
+            this.removeEntry( entry );
         };
     }
 
+    protected synchronized void addEntry( ListenerEntry entry )
+    {
+        ListenerEntry[] oldEntries = this.entries;
+
+        // Insert after any existing entries with the same order
+        int i = oldEntries.length;
+        while ( i > 0 && oldEntries[i - 1].flags.order > entry.flags.order )
+        {
+            i--;
+        }
+
+        ListenerEntry[] newEntries = new ListenerEntry[oldEntries.length + 1];
+        System.arraycopy( oldEntries, 0, newEntries, 0, i );
+        newEntries[i] = entry;
+        System.arraycopy( oldEntries, i, newEntries, i + 1, oldEntries.length - i );
+        this.entries = newEntries;
+    }
+
+    protected synchronized void removeEntry( ListenerEntry entry )
+    {
+        ListenerEntry[] oldEntries = this.entries;
+        for ( int i = 0; i < oldEntries.length; i++ )
+        {
+            if ( oldEntries[i] == entry )
+            {
+                ListenerEntry[] newEntries = Arrays.copyOf( oldEntries, oldEntries.length - 1 );
+                System.arraycopy( oldEntries, i + 1, newEntries, i, oldEntries.length - i - 1 );
+                this.entries = newEntries;
+                return;
+            }
+        }
+    }
+
+    protected void runListeners( )
+    {
+        for ( ListenerEntry entry : this.entries )
+        {
+            entry.listener.run( );
+            if ( entry.flags.once )
+            {
+                // Iterating over a snapshot makes this safe
+                this.removeEntry( entry );
+            }
+        }
+    }
+
+    /**
+     * Runs listeners when the active txn commits, once per call. If there is no
+     * active txn, runs listeners immediately, without allocating.
+     */
     public void fire( )
     {
-        addToActiveTxn( new TxnMember( )
+        if ( !isTxnActive( ) )
+        {
+            this.runListeners( );
+        }
+        else
         {
-            @Override
-            public void postCommit( )
+            addToActiveTxn( new TxnMember( )
             {
-                for ( ListenerEntry entry : ListenableBasic.this.entries )
+                @Override
+                public void postCommit( )
                 {
-                    entry.listener.run( );
-                    if ( entry.flags.once )
-                    {
-                        // COW list makes this safe while iterating
-                        ListenableBasic.this.entries.remove( entry );
-                    }
+                    ListenableBasic.this.runListeners( );
                 }
-            }
-        } );
+            } );
+        }
+    }
+
+    /**
+     * Like {@link #fire()}, except that within a txn, all calls between the first one and
+     * the next call to {@link #endCoalescing()} (or the end of the txn) result in a single
+     * run of the listeners, when the txn commits.
+     */
+    public void fireCoalesced( )
+    {
+        if ( !isTxnActive( ) )
+        {
+            this.runListeners( );
+        }
+        else if ( this.pendingCoalesced == null )
+        {
+            TxnMember member = new TxnMember( )
+            {
+                @Override
+                public void rollback( )
+                {
+                    ListenableBasic.this.endCoalescing( this );
+                }
+
+                @Override
+                public void commit( )
+                {
+                    ListenableBasic.this.endCoalescing( this );
+                }
+
+                @Override
+                public void postCommit( )
+                {
+                    ListenableBasic.this.runListeners( );
+                }
+            };
+
+            this.pendingCoalesced = member;
+            addToActiveTxn( member );
+        }
+    }
+
+    /**
+     * Makes the next call to {@link #fireCoalesced()} schedule a new run of the listeners,
+     * rather than merging with the one already scheduled. Use this when something else has
+     * fired in between, and listeners need to see the firings in order.
+     */
+    public void endCoalescing( )
+    {
+        this.pendingCoalesced = null;
+    }
+
+    protected void endCoalescing( TxnMember member )
+    {
+        if ( this.pendingCoalesced == member )
+        {
+            this.pendingCoalesced = null;
+        }
     }
 
 }
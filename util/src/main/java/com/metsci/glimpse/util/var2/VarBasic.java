@@ -28,6 +28,7 @@ package com.metsci.glimpse.util.var2;
 
 import static com.google.common.base.Objects.equal;
 import static com.metsci.glimpse.util.var.Txn.addToActiveTxn;
+import static com.metsci.glimpse.util.var.Txn.isTxnActive;
 import static com.metsci.glimpse.util.var2.VarUtils.doAddActivityListener;
 import static com.metsci.glimpse.util.var2.VarUtils.doHandleImmediateFlag;
 import static com.metsci.glimpse.util.var2.VarUtils.filterListenable;
@@ -109,8 +110,9 @@ public class VarBasic<V> implements Var<V>
             this.requireValid( value );
 
             // If this will be the first change since the start of the current
-            // txn, register a TxnMember to handle the possibility of rollback
-            if ( !this.hasTxnMember )
+            // txn, register a TxnMember to handle the possibility of rollback --
+            // outside a txn the change commits immediately, so skip the member
+            if ( !this.hasTxnMember && isTxnActive( ) )
             {
                 this.hasTxnMember = true;
                 V rollbackValue = this.value;
@@ -139,8 +141,18 @@ public class VarBasic<V> implements Var<V>
             // ongoing (set the flag), or completed (clear the flag)
             this.hasOngoingChanges = ongoing;
 
-            // Fire listeners on txn commit
-            ( ongoing ? this.ongoingRaw : this.completedRaw ).fire( );
+            // Fire listeners on txn commit -- consecutive ongoing changes within
+            // a txn coalesce into a single firing, but a completed change ends the
+            // run, so that listeners still see ongoing and completed firings in order
+            if ( ongoing )
+            {
+                this.ongoingRaw.fireCoalesced( );
+            }
+            else
+            {
+                this.ongoingRaw.endCoalescing( );
+                this.completedRaw.fire( );
+            }
 
             return true;
         }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.math.fast;
+
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compares bulk {@link FastFunc} evaluation, in double and float precision, against
+ * scalar {@link FastFunc} calls and the corresponding {@link Math} functions, over a
+ * grid the size of a typical heat-map texture. Not a unit test -- run {@link #main(String[])}
+ * by hand.
+ */
+public class FastFuncTimingTest
+{
+
+    protected static final int gridSize = 1024 * 1024;
+    protected static final int numWarmupPasses = 20;
+    protected static final int numTimedPasses = 50;
+
+    protected static double sink = 0;
+
+    public static void main( String[] args )
+    {
+        Random random = new Random( 0 );
+
+        time( "exp", new FastExp( -20, 0, 100000 ), Math::exp, randomGrid( random, -20, 0 ) );
+        time( "sin", new FastSin( 0, ( float ) ( 2 * Math.PI ), 100000 ), Math::sin, randomGrid( random, 0, 2 * Math.PI ) );
+        time( "log", FastLog.getInstance( ), Math::log, randomGrid( random, 1e-6, 1e3 ) );
+        time( "atan", FastAtan.getInstance( ), Math::atan, randomGrid( random, -50, 50 ) );
+        time( "gaussian", FastGaussian.getInstance( ), x -> Math.exp( -0.5 * x * x ) / Math.sqrt( 2 * Math.PI ), randomGrid( random, -6, 6 ) );
+
+        System.out.format( "(ignore: %f)%n", sink );
+    }
+
+    protected static double[] randomGrid( Random random, double min, double max )
+    {
+        double[] xs = new double[gridSize];
+        for ( int i = 0; i < xs.length; i++ )
+        {
+            xs[i] = min + ( max - min ) * random.nextDouble( );
+        }
+        return xs;
+    }
+
+    protected static void time( String name, FastFunc fast, DoubleUnaryOperator exact, double[] x )
+    {
+        float[] xFloat = new float[x.length];
+        for ( int i = 0; i < x.length; i++ )
+        {
+            xFloat[i] = ( float ) x[i];
+        }
+        double[] dest = new double[x.length];
+        float[] destFloat = new float[x.length];
+
+        double math_NS = 0;
+        double scalar_NS = 0;
+        double bulk_NS = 0;
+        double bulkFloat_NS = 0;
+        for ( int pass = 0; pass < numWarmupPasses + numTimedPasses; pass++ )
+        {
+            boolean timed = ( pass >= numWarmupPasses );
+
+            long t0_NS = System.nanoTime( );
+            for ( int i = 0; i < x.length; i++ )
+            {
+                dest[i] = exact.applyAsDouble( x[i] );
+            }
+            long t1_NS = System.nanoTime( );
+            for ( int i = 0; i < x.length; i++ )
+            {
+                dest[i] = fast.evaluate( x[i] );
+            }
+            long t2_NS = System.nanoTime( );
+            fast.evaluate( x, dest, 0, x.length );
+            long t3_NS = System.nanoTime( );
+            fast.evaluate( xFloat, destFloat, 0, xFloat.length );
+            long t4_NS = System.nanoTime( );
+
+            sink += dest[pass] + destFloat[pass];
+            if ( timed )
+            {
+                math_NS += t1_NS - t0_NS;
+                scalar_NS += t2_NS - t1_NS;
+                bulk_NS += t3_NS - t2_NS;
+                bulkFloat_NS += t4_NS - t3_NS;
+            }
+        }
+
+        double maxError = 0;
+        for ( int i = 0; i < x.length; i++ )
+        {
+            maxError = Math.max( maxError, Math.abs( destFloat[i] - exact.applyAsDouble( x[i] ) ) );
+        }
+
+        double n = ( ( double ) numTimedPasses ) * x.length;
+        System.out.format( "%-8s  Math = %5.2f ns, scalar = %5.2f ns, bulk double = %5.2f ns, bulk float = %5.2f ns  (max float error = %.2e)%n", name, math_NS / n, scalar_NS / n, bulk_NS / n, bulkFloat_NS / n, maxError );
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.math.stochastic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.metsci.glimpse.util.math.stochastic.pdfcont.PdfCont;
+import com.metsci.glimpse.util.math.stochastic.pdfcont.PdfContGaussianBoxMuller;
+import com.metsci.glimpse.util.math.stochastic.pdfcont.PdfContGaussianZiggurat;
+
+public class StochasticEngineTest
+{
+
+    @Test
+    public void lcpJumpShouldMatchSteppingOneAtATime( )
+    {
+        StochasticEngineLcp stepped = StochasticEngineLcp.createEngine( 12345L );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            stepped.getGenerator( ).nextBits( 1 );
+        }
+
+        StochasticEngineLcp jumped = StochasticEngineLcp.createEngine( 12345L );
+        jumped.jump( 1000 );
+
+        assertEquals( ( ( StochasticEngineLcp.LcpState ) stepped.getState( ) ).getState( ), ( ( StochasticEngineLcp.LcpState ) jumped.getState( ) ).getState( ) );
+    }
+
+    @Test
+    public void lcpFillShouldMatchNextDouble( )
+    {
+        Generator scalar = StochasticEngineLcp.createEngine( 7L ).getGenerator( );
+        double[] expected = new double[100];
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            expected[i] = scalar.nextDouble( );
+        }
+
+        double[] actual = new double[100];
+        StochasticEngineLcp.createEngine( 7L ).getGenerator( ).fill( actual );
+
+        assertArrayEquals( expected, actual );
+    }
+
+    @Test
+    public void splitShouldBeReproducible( )
+    {
+        for ( StochasticEngine parent : new StochasticEngine[] { StochasticEngineLcp.createEngine( 99L ), StochasticEngineMersenne.createEngine( 99 ) } )
+        {
+            StochasticEngine parentCopy = parent.getState( ).intializeEngine( );
+
+            StochasticEngine[] a = parent.split( 4 );
+            StochasticEngine[] b = parentCopy.split( 4 );
+
+            double[][] samples = new double[4][];
+            for ( int i = 0; i < 4; i++ )
+            {
+                double[] xs = new double[16];
+                double[] ys = new double[16];
+                a[i].getGenerator( ).fill( xs );
+                b[i].getGenerator( ).fill( ys );
+                assertArrayEquals( xs, ys );
+                samples[i] = xs;
+            }
+
+            assertFalse( Arrays.equals( samples[0], samples[1] ) );
+        }
+    }
+
+    @Test
+    public void mersenneStateShouldRoundTrip( )
+    {
+        StochasticEngineMersenne engine = StochasticEngineMersenne.createEngine( 5 );
+        engine.getGenerator( ).nextDouble( );
+
+        StochasticEngine copy = engine.getState( ).intializeEngine( );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            assertEquals( engine.getGenerator( ).nextBits( 32 ), copy.getGenerator( ).nextBits( 32 ) );
+        }
+    }
+
+    @Test
+    public void bulkGaussianDrawsShouldHaveExpectedMoments( )
+    {
+        for ( PdfCont pdf : new PdfCont[] { new PdfContGaussianZiggurat( 3, 2 ), new PdfContGaussianBoxMuller( 3, 2 ) } )
+        {
+            double[] xs = new double[200001];
+            pdf.draw( StochasticEngineLcp.createEngine( 42L ).getGenerator( ), xs );
+
+            double sum = 0;
+            for ( double x : xs )
+            {
+                sum += x;
+            }
+            double mean = sum / xs.length;
+
+            double sumSq = 0;
+            for ( double x : xs )
+            {
+                sumSq += ( x - mean ) * ( x - mean );
+            }
+            double stdev = Math.sqrt( sumSq / ( xs.length - 1 ) );
+
+            assertEquals( 3, mean, 0.02 );
+            assertEquals( 2, stdev, 0.02 );
+        }
+    }
+
+}
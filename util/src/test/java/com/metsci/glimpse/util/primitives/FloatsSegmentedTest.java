@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.primitives;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.FloatBuffer;
+
+import org.junit.jupiter.api.Test;
+
+public class FloatsSegmentedTest
+{
+
+    @Test
+    public void bufferShouldViewRemainingValues( )
+    {
+        FloatBuffer b = FloatBuffer.wrap( new float[] { 1, 2, 3, 4, 5 } );
+        b.position( 1 );
+        b.limit( 4 );
+
+        FloatsBuffer xs = new FloatsBuffer( b );
+        assertEquals( 3, xs.n( ) );
+        assertEquals( 2f, xs.first( ) );
+        assertEquals( 4f, xs.last( ) );
+
+        xs.set( 1, 30f );
+        assertEquals( 30f, b.get( 2 ) );
+        assertArrayEquals( new float[] { 2, 30, 4 }, xs.copyOf( ) );
+        assertArrayEquals( new float[] { 30, 4 }, xs.copy( ).copyOf( 1, 2 ) );
+    }
+
+    @Test
+    public void segmentedShouldSpanSegmentBoundaries( )
+    {
+        // 4 values per segment
+        FloatsSegmented xs = FloatsSegmented.allocateDirect( 10, 2 );
+        assertEquals( 3, xs.segmentCount( ) );
+        assertEquals( 2, xs.segment( 2 ).n( ) );
+
+        float[] values = new float[10];
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[i] = 10 * i;
+        }
+        xs.set( 0, values );
+
+        for ( long i = 0; i < xs.n( ); i++ )
+        {
+            assertEquals( values[( int ) i], xs.v( i ) );
+        }
+        assertArrayEquals( new float[] { 30, 40, 50, 60, 70, 80 }, xs.copyOf( 3, 6 ) );
+
+        FloatBuffer dest = FloatBuffer.allocate( 5 );
+        xs.copyTo( 2, dest, 5 );
+        assertArrayEquals( new float[] { 20, 30, 40, 50, 60 }, dest.array( ) );
+
+        FloatsBuffer slice = xs.slice( 5, 3 );
+        assertArrayEquals( new float[] { 50, 60, 70 }, slice.copyOf( ) );
+        assertThrows( IllegalArgumentException.class, ( ) -> xs.slice( 6, 3 ) );
+    }
+
+    @Test
+    public void segmentShiftShouldBeBoundedByBufferSize( )
+    {
+        assertEquals( 28, FloatsSegmented.MAX_SEGMENT_SHIFT );
+        assertEquals( 27, DoublesSegmented.MAX_SEGMENT_SHIFT );
+        assertThrows( IllegalArgumentException.class, ( ) -> DoublesSegmented.allocateDirect( 1, 28 ) );
+    }
+
+}
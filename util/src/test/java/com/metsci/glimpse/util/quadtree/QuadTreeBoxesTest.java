@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.quadtree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class QuadTreeBoxesTest
+{
+
+    protected static class Box
+    {
+        public final float xMin;
+        public final float xMax;
+        public final float yMin;
+        public final float yMax;
+
+        public Box( float xMin, float xMax, float yMin, float yMax )
+        {
+            this.xMin = xMin;
+            this.xMax = xMax;
+            this.yMin = yMin;
+            this.yMax = yMax;
+        }
+    }
+
+    protected static class Boxes extends QuadTreeBoxes<Box>
+    {
+        public Boxes( )
+        {
+            super( 4 );
+        }
+
+        @Override
+        public float xMin( Box v )
+        {
+            return v.xMin;
+        }
+
+        @Override
+        public float xMax( Box v )
+        {
+            return v.xMax;
+        }
+
+        @Override
+        public float yMin( Box v )
+        {
+            return v.yMin;
+        }
+
+        @Override
+        public float yMax( Box v )
+        {
+            return v.yMax;
+        }
+    }
+
+    @Test
+    void overlapSearchShouldMatchBruteForce( )
+    {
+        Boxes tree = new Boxes( );
+        Set<Box> all = new HashSet<>( );
+        for ( int i = 0; i < 40; i++ )
+        {
+            for ( int j = 0; j < 20; j++ )
+            {
+                Box box = new Box( i * 9, i * 9 + 10, j * 18, j * 18 + 20 );
+                tree.add( box );
+                all.add( box );
+            }
+        }
+
+        float[][] windows = { { 0, 5, 0, 5 }, { 95, 96, 100, 101 }, { -50, -1, -50, 400 }, { 100, 200, 50, 60 }, { -10, 1000, -10, 1000 } };
+        for ( float[] w : windows )
+        {
+            Set<Box> expected = new HashSet<>( );
+            for ( Box b : all )
+            {
+                if ( b.xMax >= w[0] && b.xMin <= w[1] && b.yMax >= w[2] && b.yMin <= w[3] ) expected.add( b );
+            }
+
+            assertEquals( expected, new HashSet<>( tree.searchOverlapping( w[0], w[1], w[2], w[3] ) ) );
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020, Metron, Inc.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of Metron, Inc. nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL METRON, INC. BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.metsci.glimpse.util.var2;
+
+import static com.metsci.glimpse.util.var.Txn.doTxn;
+import static com.metsci.glimpse.util.var2.VarUtils.propertyVar;
+
+/**
+ * Times {@link VarBasic#set(boolean, Object)} at the head of a chain of derived vars,
+ * the way an axis var is set repeatedly during a mouse drag. Not a unit test -- run
+ * {@link #main(String[])} by hand.
+ */
+public class VarChainTimingTest
+{
+
+    protected static final int chainLength = 8;
+    protected static final int setsPerTxn = 16;
+    protected static final int numWarmupIterations = 2_000_000;
+    protected static final int numTimedIterations = 10_000_000;
+
+    public static void main( String[] args )
+    {
+        Var<Double> head = new VarBasic<>( 0.0 );
+
+        ReadableVar<Double> tail = head;
+        for ( int i = 0; i < chainLength; i++ )
+        {
+            tail = propertyVar( tail, v -> v + 1.0 );
+        }
+
+        double[] sink = { 0 };
+        ReadableVar<Double> tail0 = tail;
+        tail.addListener( ongoing ->
+        {
+            sink[0] += tail0.v( );
+        } );
+
+        for ( int pass = 0; pass < 3; pass++ )
+        {
+            timeNoTxn( head, numWarmupIterations );
+            timeInTxn( head, numWarmupIterations );
+
+            double noTxn_NS = timeNoTxn( head, numTimedIterations );
+            double inTxn_NS = timeInTxn( head, numTimedIterations );
+
+            System.out.format( "Pass %d: no txn = %.1f ns/set, %d sets per txn = %.1f ns/set%n", pass, noTxn_NS, setsPerTxn, inTxn_NS );
+        }
+
+        System.out.format( "(ignore: %f)%n", sink[0] );
+    }
+
+    protected static double timeNoTxn( Var<Double> head, int numIterations )
+    {
+        long start_NS = System.nanoTime( );
+        for ( int i = 0; i < numIterations; i++ )
+        {
+            head.set( true, ( double ) i );
+        }
+        head.set( false, head.v( ) );
+        return ( ( double ) ( System.nanoTime( ) - start_NS ) ) / numIterations;
+    }
+
+    protected static double timeInTxn( Var<Double> head, int numIterations )
+    {
+        long start_NS = System.nanoTime( );
+        for ( int i = 0; i < numIterations; i += setsPerTxn )
+        {
+            int first = i;
+            doTxn( ( ) ->
+            {
+                for ( int j = 0; j < setsPerTxn; j++ )
+                {
+                    head.set( true, ( double ) ( first + j ) );
+                }
+            } );
+        }
+        head.set( false, head.v( ) );
+        return ( ( double ) ( System.nanoTime( ) - start_NS ) ) / numIterations;
+    }
+
+}
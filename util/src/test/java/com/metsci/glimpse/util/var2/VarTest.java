@@ -26,6 +26,7 @@
  */
 package com.metsci.glimpse.util.var2;
 
+import static com.metsci.glimpse.util.var.Txn.doTxn;
 import static com.metsci.glimpse.util.var2.ListenerFlag.IMMEDIATE;
 import static com.metsci.glimpse.util.var2.VarTestUtils.f;
 import static com.metsci.glimpse.util.var2.VarUtils.addOldNewListener;
@@ -263,4 +264,83 @@ class VarTest
         assertEquals( ImmutableList.of( "B" ), vs );
     }
 
+    @Test
+    void coalescedFiringsInTxnShouldRunListenersOnce( )
+    {
+        ListenableBasic listenable = new ListenableBasic( );
+
+        int[] count = { 0 };
+        listenable.addListener( ( ) -> count[0]++ );
+
+        // Consecutive coalesced firings run listeners once, but
+        // endCoalescing() starts a new run
+        doTxn( ( ) ->
+        {
+            listenable.fireCoalesced( );
+            listenable.fireCoalesced( );
+            listenable.endCoalescing( );
+            listenable.fireCoalesced( );
+            assertEquals( 0, count[0] );
+        } );
+        assertEquals( 2, count[0] );
+
+        // Outside a txn, every firing runs listeners immediately
+        listenable.fireCoalesced( );
+        listenable.fireCoalesced( );
+        assertEquals( 4, count[0] );
+    }
+
+    @Test
+    void ongoingChangesInTxnShouldFireInOrder( )
+    {
+        Var<String> a = new VarBasic<>( "x" );
+
+        List<VarFiring<String>> fs = new ArrayList<>( );
+        a.addListener( ongoing ->
+        {
+            fs.add( f( ongoing, a.v( ) ) );
+        } );
+
+        doTxn( ( ) ->
+        {
+            a.set(  true, "A" );
+            a.set(  true, "B" );
+            a.set( false, "C" );
+        } );
+
+        assertEquals( asList( f(  true, "C" ),
+                              f( false, "C" ) ),
+                      fs );
+    }
+
+    @Test
+    void rolledBackTxnShouldNotFire( )
+    {
+        Var<String> a = new VarBasic<>( "x" );
+
+        List<String> vs = new ArrayList<>( );
+        a.addListener( ( ) ->
+        {
+            vs.add( a.v( ) );
+        } );
+
+        try
+        {
+            doTxn( ( ) ->
+            {
+                a.set( true, "A" );
+                throw new RuntimeException( "rollback" );
+            } );
+        }
+        catch ( RuntimeException e )
+        { }
+
+        assertEquals( "x", a.v( ) );
+        assertEquals( 0, vs.size( ) );
+
+        // A later txn should still fire normally
+        doTxn( ( ) -> a.set( true, "B" ) );
+        assertEquals( ImmutableList.of( "B" ), vs );
+    }
+
 }